@@ -2,6 +2,7 @@ package ceksioglu.vet_management_sys.controller;
 
 import ceksioglu.vet_management_sys.dto.AnimalDTO;
 import ceksioglu.vet_management_sys.service.abstracts.AnimalService;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,8 +15,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 /**
  * Controller for managing animals.
  */
@@ -117,14 +116,17 @@ public class AnimalController {
     /**
      * Retrieves a list of all animals.
      *
-     * @return the response entity with the list of animal DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of animal DTOs and OK status
      */
-    @Operation(summary = "Get all animals", description = "Retrieves a list of all animals")
-    @ApiResponse(responseCode = "200", description = "List of animals retrieved successfully",
-            content = @Content(schema = @Schema(implementation = AnimalDTO.class)))
+    @Operation(summary = "Get all animals", description = "Retrieves a list of all animals, one page at a time ordered by ID")
+    @ApiResponse(responseCode = "200", description = "List of animals retrieved successfully")
     @GetMapping
-    public ResponseEntity<List<AnimalDTO>> getAllAnimals() {
-        List<AnimalDTO> animals = animalService.getAllAnimals();
+    public ResponseEntity<CursorPageDTO<AnimalDTO>> getAllAnimals(
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<AnimalDTO> animals = animalService.getAllAnimals(cursor, size);
         return ResponseEntity.ok(animals);
     }
 
@@ -132,15 +134,18 @@ public class AnimalController {
      * Retrieves a list of animals with the given name.
      *
      * @param name the name of the animals to retrieve
-     * @return the response entity with the list of animal DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of animal DTOs and OK status
      */
-    @Operation(summary = "Get animals by name", description = "Retrieves a list of animals with the given name")
-    @ApiResponse(responseCode = "200", description = "List of animals retrieved successfully",
-            content = @Content(schema = @Schema(implementation = AnimalDTO.class)))
+    @Operation(summary = "Get animals by name", description = "Retrieves a list of animals with the given name, one page at a time ordered by ID")
+    @ApiResponse(responseCode = "200", description = "List of animals retrieved successfully")
     @GetMapping("/name/{name}")
-    public ResponseEntity<List<AnimalDTO>> getAnimalsByName(
-            @Parameter(description = "Name of the animals to retrieve") @PathVariable String name) {
-        List<AnimalDTO> animals = animalService.getAnimalsByName(name);
+    public ResponseEntity<CursorPageDTO<AnimalDTO>> getAnimalsByName(
+            @Parameter(description = "Name of the animals to retrieve") @PathVariable String name,
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<AnimalDTO> animals = animalService.getAnimalsByName(name, cursor, size);
         return ResponseEntity.ok(animals);
     }
 
@@ -148,15 +153,18 @@ public class AnimalController {
      * Retrieves a list of animals belonging to a specific customer.
      *
      * @param customerId the ID of the customer whose animals to retrieve
-     * @return the response entity with the list of animal DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of animal DTOs and OK status
      */
-    @Operation(summary = "Get animals by customer ID", description = "Retrieves a list of animals belonging to a specific customer")
-    @ApiResponse(responseCode = "200", description = "List of animals retrieved successfully",
-            content = @Content(schema = @Schema(implementation = AnimalDTO.class)))
+    @Operation(summary = "Get animals by customer ID", description = "Retrieves a list of animals belonging to a specific customer, one page at a time ordered by ID")
+    @ApiResponse(responseCode = "200", description = "List of animals retrieved successfully")
     @GetMapping("/customer/{customerId}")
-    public ResponseEntity<List<AnimalDTO>> getAnimalsByCustomerId(
-            @Parameter(description = "ID of the customer whose animals to retrieve") @PathVariable Long customerId) {
-        List<AnimalDTO> animals = animalService.getAnimalsByCustomerId(customerId);
+    public ResponseEntity<CursorPageDTO<AnimalDTO>> getAnimalsByCustomerId(
+            @Parameter(description = "ID of the customer whose animals to retrieve") @PathVariable Long customerId,
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<AnimalDTO> animals = animalService.getAnimalsByCustomerId(customerId, cursor, size);
         return ResponseEntity.ok(animals);
     }
 }
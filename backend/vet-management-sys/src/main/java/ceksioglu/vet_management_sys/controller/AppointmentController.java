@@ -1,7 +1,12 @@
 package ceksioglu.vet_management_sys.controller;
 
+import ceksioglu.vet_management_sys.core.cache.IdempotencyStore;
+import ceksioglu.vet_management_sys.dto.AppointmentBatchResultDTO;
+import ceksioglu.vet_management_sys.dto.AppointmentBulkRequestDTO;
+import ceksioglu.vet_management_sys.dto.AppointmentBulkResultDTO;
 import ceksioglu.vet_management_sys.dto.AppointmentDTO;
 import ceksioglu.vet_management_sys.service.abstracts.AppointmentService;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -27,36 +32,61 @@ import java.util.List;
 public class AppointmentController {
 
     private final AppointmentService appointmentService;
+    private final IdempotencyStore idempotencyStore;
 
     /**
      * Constructor for AppointmentController.
      *
      * @param appointmentService the appointment service
+     * @param idempotencyStore the store of results of requests sent with an idempotency key
      */
     @Autowired
-    public AppointmentController(AppointmentService appointmentService) {
+    public AppointmentController(AppointmentService appointmentService, IdempotencyStore idempotencyStore) {
         this.appointmentService = appointmentService;
+        this.idempotencyStore = idempotencyStore;
     }
 
     /**
-     * Creates a new appointment.
+     * Creates a new appointment. A retry sent with the same idempotency key gets the first result back.
      *
+     * @param idempotencyKey the idempotency key, optional
      * @param appointmentDTO the appointment DTO
      * @return the response entity with the saved appointment DTO and CREATED status
      */
-    @Operation(summary = "Create a new appointment", description = "Creates a new appointment with the provided details")
+    @Operation(summary = "Create a new appointment", description = "Creates a new appointment with the provided details; retries with the same Idempotency-Key header return the first result")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Appointment created successfully",
                     content = @Content(schema = @Schema(implementation = AppointmentDTO.class))),
             @ApiResponse(responseCode = "400", description = "Invalid input"),
-            @ApiResponse(responseCode = "409", description = "Appointment conflict")
+            @ApiResponse(responseCode = "409", description = "Appointment conflict, the day is full and the animal can join the waitlist, or idempotency key conflict")
     })
     @PostMapping
-    public ResponseEntity<AppointmentDTO> createAppointment(@RequestBody AppointmentDTO appointmentDTO) {
-        AppointmentDTO savedAppointment = appointmentService.saveAppointment(appointmentDTO);
+    public ResponseEntity<AppointmentDTO> createAppointment(
+            @Parameter(description = "Key that makes retries of the same request return the first result") @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody AppointmentDTO appointmentDTO) {
+        AppointmentDTO savedAppointment = idempotencyStore.execute("appointments", idempotencyKey, appointmentDTO,
+                () -> appointmentService.saveAppointment(appointmentDTO));
         return new ResponseEntity<>(savedAppointment, HttpStatus.CREATED);
     }
 
+    /**
+     * Creates several appointments in one request.
+     *
+     * @param appointmentDTOs the appointment DTOs
+     * @return the response entity with one result per appointment and OK status
+     */
+    @Operation(summary = "Create appointments in batch", description = "Creates several appointments at once and reports the outcome of each one in request order")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed",
+                    content = @Content(schema = @Schema(implementation = AppointmentBatchResultDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Batch is too large")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<List<AppointmentBatchResultDTO>> createAppointments(@RequestBody List<AppointmentDTO> appointmentDTOs) {
+        List<AppointmentBatchResultDTO> results = appointmentService.saveAppointments(appointmentDTOs);
+        return ResponseEntity.ok(results);
+    }
+
     /**
      * Updates an existing appointment.
      *
@@ -98,6 +128,25 @@ public class AppointmentController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Moves or cancels every appointment of a doctor in a day range at once.
+     *
+     * @param request the bulk request
+     * @return the response entity with the number of processed appointments, the ones left in place and OK status
+     */
+    @Operation(summary = "Move or cancel a doctor's days", description = "Moves every appointment of a doctor in a day range to another doctor or other days, or cancels them, in one transaction; appointments that overlap or exceed the target day's limit stay in place and are reported")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Appointments moved or cancelled",
+                    content = @Content(schema = @Schema(implementation = AppointmentBulkResultDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "404", description = "Doctor not found")
+    })
+    @PostMapping("/bulk")
+    public ResponseEntity<AppointmentBulkResultDTO> rescheduleDoctorDays(@RequestBody AppointmentBulkRequestDTO request) {
+        AppointmentBulkResultDTO result = appointmentService.rescheduleDoctorDays(request);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Retrieves an appointment's details by its ID.
      *
@@ -120,14 +169,17 @@ public class AppointmentController {
     /**
      * Retrieves a list of all appointments.
      *
-     * @return the response entity with the list of appointment DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of appointment DTOs and OK status
      */
-    @Operation(summary = "Get all appointments", description = "Retrieves a list of all appointments")
-    @ApiResponse(responseCode = "200", description = "List of appointments retrieved successfully",
-            content = @Content(schema = @Schema(implementation = AppointmentDTO.class)))
+    @Operation(summary = "Get all appointments", description = "Retrieves a list of all appointments, one page at a time ordered by appointment date and ID")
+    @ApiResponse(responseCode = "200", description = "List of appointments retrieved successfully")
     @GetMapping
-    public ResponseEntity<List<AppointmentDTO>> getAllAppointments() {
-        List<AppointmentDTO> appointments = appointmentService.getAllAppointments();
+    public ResponseEntity<CursorPageDTO<AppointmentDTO>> getAllAppointments(
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<AppointmentDTO> appointments = appointmentService.getAllAppointments(cursor, size);
         return ResponseEntity.ok(appointments);
     }
 
@@ -137,17 +189,20 @@ public class AppointmentController {
      * @param startDate the start date of the range
      * @param endDate the end date of the range
      * @param animalId the ID of the animal
-     * @return the response entity with the list of appointment DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of appointment DTOs and OK status
      */
-    @Operation(summary = "Get appointments by date range and animal", description = "Retrieves a list of appointments for a specific animal within a date range")
-    @ApiResponse(responseCode = "200", description = "List of appointments retrieved successfully",
-            content = @Content(schema = @Schema(implementation = AppointmentDTO.class)))
+    @Operation(summary = "Get appointments by date range and animal", description = "Retrieves a list of appointments for a specific animal within a date range, one page at a time ordered by appointment date and ID")
+    @ApiResponse(responseCode = "200", description = "List of appointments retrieved successfully")
     @GetMapping("/animal/{animalId}")
-    public ResponseEntity<List<AppointmentDTO>> getAppointmentsByDateRangeAndAnimal(
+    public ResponseEntity<CursorPageDTO<AppointmentDTO>> getAppointmentsByDateRangeAndAnimal(
             @Parameter(description = "Start date of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") Date startDate,
             @Parameter(description = "End date of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") Date endDate,
-            @Parameter(description = "ID of the animal") @PathVariable Long animalId) {
-        List<AppointmentDTO> appointments = appointmentService.getAppointmentsByDateRangeAndAnimal(startDate, endDate, animalId);
+            @Parameter(description = "ID of the animal") @PathVariable Long animalId,
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<AppointmentDTO> appointments = appointmentService.getAppointmentsByDateRangeAndAnimal(startDate, endDate, animalId, cursor, size);
         return ResponseEntity.ok(appointments);
     }
 
@@ -157,17 +212,20 @@ public class AppointmentController {
      * @param startDate the start date of the range
      * @param endDate the end date of the range
      * @param doctorId the ID of the doctor
-     * @return the response entity with the list of appointment DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of appointment DTOs and OK status
      */
-    @Operation(summary = "Get appointments by date range and doctor", description = "Retrieves a list of appointments for a specific doctor within a date range")
-    @ApiResponse(responseCode = "200", description = "List of appointments retrieved successfully",
-            content = @Content(schema = @Schema(implementation = AppointmentDTO.class)))
+    @Operation(summary = "Get appointments by date range and doctor", description = "Retrieves a list of appointments for a specific doctor within a date range, one page at a time ordered by appointment date and ID")
+    @ApiResponse(responseCode = "200", description = "List of appointments retrieved successfully")
     @GetMapping("/doctor/{doctorId}")
-    public ResponseEntity<List<AppointmentDTO>> getAppointmentsByDateRangeAndDoctor(
+    public ResponseEntity<CursorPageDTO<AppointmentDTO>> getAppointmentsByDateRangeAndDoctor(
             @Parameter(description = "Start date of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") Date startDate,
             @Parameter(description = "End date of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") Date endDate,
-            @Parameter(description = "ID of the doctor") @PathVariable Long doctorId) {
-        List<AppointmentDTO> appointments = appointmentService.getAppointmentsByDateRangeAndDoctor(startDate, endDate, doctorId);
+            @Parameter(description = "ID of the doctor") @PathVariable Long doctorId,
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<AppointmentDTO> appointments = appointmentService.getAppointmentsByDateRangeAndDoctor(startDate, endDate, doctorId, cursor, size);
         return ResponseEntity.ok(appointments);
     }
 
@@ -0,0 +1,164 @@
+package ceksioglu.vet_management_sys.controller;
+
+import ceksioglu.vet_management_sys.dto.AvailabilityOverrideDTO;
+import ceksioglu.vet_management_sys.dto.AvailabilityTemplateDTO;
+import ceksioglu.vet_management_sys.service.abstracts.AvailabilityTemplateService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller for managing weekly availability templates and their overrides.
+ */
+@RestController
+@RequestMapping("/api/availability-templates")
+@Tag(name = "Availability Template", description = "Weekly availability template management APIs")
+public class AvailabilityTemplateController {
+
+    private final AvailabilityTemplateService availabilityTemplateService;
+
+    /**
+     * Constructor for AvailabilityTemplateController.
+     *
+     * @param availabilityTemplateService the availability template service
+     */
+    @Autowired
+    public AvailabilityTemplateController(AvailabilityTemplateService availabilityTemplateService) {
+        this.availabilityTemplateService = availabilityTemplateService;
+    }
+
+    /**
+     * Creates a weekly availability template for a doctor.
+     *
+     * @param availabilityTemplateDTO the availability template DTO
+     * @return the response entity with the saved availability template DTO and CREATED status
+     */
+    @Operation(summary = "Create a weekly availability template", description = "Makes a doctor available on the given days of week; the days up to the horizon are created at once, later ones as the horizon moves on or on their first booking")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Availability template created successfully",
+                    content = @Content(schema = @Schema(implementation = AvailabilityTemplateDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "404", description = "Doctor not found"),
+            @ApiResponse(responseCode = "409", description = "Another template of the doctor covers these days")
+    })
+    @PostMapping
+    public ResponseEntity<AvailabilityTemplateDTO> createAvailabilityTemplate(@RequestBody AvailabilityTemplateDTO availabilityTemplateDTO) {
+        AvailabilityTemplateDTO savedAvailabilityTemplate = availabilityTemplateService.saveAvailabilityTemplate(availabilityTemplateDTO);
+        return new ResponseEntity<>(savedAvailabilityTemplate, HttpStatus.CREATED);
+    }
+
+    /**
+     * Retrieves an availability template by its ID.
+     *
+     * @param id the availability template ID
+     * @return the response entity with the availability template DTO and OK status
+     */
+    @Operation(summary = "Get an availability template by ID", description = "Retrieves an availability template, including the day it has been expanded to")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Availability template found",
+                    content = @Content(schema = @Schema(implementation = AvailabilityTemplateDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Availability template not found")
+    })
+    @GetMapping("/{id}")
+    public ResponseEntity<AvailabilityTemplateDTO> getAvailabilityTemplateById(
+            @Parameter(description = "ID of the availability template to retrieve") @PathVariable Long id) {
+        AvailabilityTemplateDTO availabilityTemplate = availabilityTemplateService.getAvailabilityTemplateById(id);
+        return ResponseEntity.ok(availabilityTemplate);
+    }
+
+    /**
+     * Retrieves the availability templates of a doctor.
+     *
+     * @param doctorId the doctor ID
+     * @return the response entity with the list of availability template DTOs and OK status
+     */
+    @Operation(summary = "Get availability templates by doctor ID", description = "Retrieves the weekly availability templates of a doctor")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the availability templates")
+    @GetMapping("/doctor/{doctorId}")
+    public ResponseEntity<List<AvailabilityTemplateDTO>> getAvailabilityTemplatesByDoctorId(
+            @Parameter(description = "ID of the doctor") @PathVariable Long doctorId) {
+        List<AvailabilityTemplateDTO> availabilityTemplates = availabilityTemplateService.getAvailabilityTemplatesByDoctorId(doctorId);
+        return ResponseEntity.ok(availabilityTemplates);
+    }
+
+    /**
+     * Deletes an availability template by its ID.
+     *
+     * @param id the availability template ID
+     * @return the response entity with no content and NO_CONTENT status
+     */
+    @Operation(summary = "Delete an availability template", description = "Stops the template from creating new days; days already created are kept")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Availability template deleted successfully"),
+            @ApiResponse(responseCode = "404", description = "Availability template not found")
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteAvailabilityTemplate(
+            @Parameter(description = "ID of the availability template to delete") @PathVariable Long id) {
+        availabilityTemplateService.deleteAvailabilityTemplate(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Creates an override of a doctor's templates for one day.
+     *
+     * @param availabilityOverrideDTO the availability override DTO
+     * @return the response entity with the saved availability override DTO and CREATED status
+     */
+    @Operation(summary = "Create an availability override", description = "Closes a day of the doctor's templates when no limit is given, or sets a different limit for it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Availability override created successfully",
+                    content = @Content(schema = @Schema(implementation = AvailabilityOverrideDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "404", description = "Doctor not found"),
+            @ApiResponse(responseCode = "409", description = "Override already exists, or the closed day has appointments")
+    })
+    @PostMapping("/overrides")
+    public ResponseEntity<AvailabilityOverrideDTO> createAvailabilityOverride(@RequestBody AvailabilityOverrideDTO availabilityOverrideDTO) {
+        AvailabilityOverrideDTO savedAvailabilityOverride = availabilityTemplateService.saveAvailabilityOverride(availabilityOverrideDTO);
+        return new ResponseEntity<>(savedAvailabilityOverride, HttpStatus.CREATED);
+    }
+
+    /**
+     * Retrieves the availability overrides of a doctor.
+     *
+     * @param doctorId the doctor ID
+     * @return the response entity with the list of availability override DTOs and OK status
+     */
+    @Operation(summary = "Get availability overrides by doctor ID", description = "Retrieves the overrides of a doctor's templates ordered by date")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the availability overrides")
+    @GetMapping("/overrides/doctor/{doctorId}")
+    public ResponseEntity<List<AvailabilityOverrideDTO>> getAvailabilityOverridesByDoctorId(
+            @Parameter(description = "ID of the doctor") @PathVariable Long doctorId) {
+        List<AvailabilityOverrideDTO> availabilityOverrides = availabilityTemplateService.getAvailabilityOverridesByDoctorId(doctorId);
+        return ResponseEntity.ok(availabilityOverrides);
+    }
+
+    /**
+     * Deletes an availability override by its ID.
+     *
+     * @param id the availability override ID
+     * @return the response entity with no content and NO_CONTENT status
+     */
+    @Operation(summary = "Delete an availability override", description = "Deletes an override; days it already closed or changed are not restored")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Availability override deleted successfully"),
+            @ApiResponse(responseCode = "404", description = "Availability override not found")
+    })
+    @DeleteMapping("/overrides/{id}")
+    public ResponseEntity<Void> deleteAvailabilityOverride(
+            @Parameter(description = "ID of the availability override to delete") @PathVariable Long id) {
+        availabilityTemplateService.deleteAvailabilityOverride(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,7 +1,14 @@
 package ceksioglu.vet_management_sys.controller;
 
 import ceksioglu.vet_management_sys.dto.AvailableDateDTO;
+import ceksioglu.vet_management_sys.dto.AvailableDateLimitRequestDTO;
+import ceksioglu.vet_management_sys.dto.AvailableDateLimitResultDTO;
+import ceksioglu.vet_management_sys.dto.CapacityReconciliationDTO;
 import ceksioglu.vet_management_sys.service.abstracts.AvailableDateService;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
+import ceksioglu.vet_management_sys.dto.DayCounterCacheStatsDTO;
+import ceksioglu.vet_management_sys.dto.OccupancyCalendarDTO;
+import ceksioglu.vet_management_sys.dto.OpenSlotDTO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,6 +22,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
 
@@ -79,6 +87,25 @@ public class AvailableDateController {
         return ResponseEntity.ok(updatedAvailableDate);
     }
 
+    /**
+     * Changes the daily appointment limit of every available date in a date range.
+     *
+     * @param request the doctor, date range and new limit
+     * @return the response entity with the number of changed days, the overbooked ones and OK status
+     */
+    @Operation(summary = "Change the limits of a date range", description = "Sets the daily appointment limit of every available date in a date range, for one doctor or for all doctors, and lists the days whose bookings now exceed the limit")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Limits changed successfully",
+                    content = @Content(schema = @Schema(implementation = AvailableDateLimitResultDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "404", description = "Doctor not found")
+    })
+    @PutMapping("/limits")
+    public ResponseEntity<AvailableDateLimitResultDTO> updateDailyAppointmentLimits(@RequestBody AvailableDateLimitRequestDTO request) {
+        AvailableDateLimitResultDTO result = availableDateService.updateDailyAppointmentLimits(request);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Deletes an available date by its ID.
      *
@@ -119,14 +146,17 @@ public class AvailableDateController {
     /**
      * Retrieves a list of all available dates.
      *
-     * @return the response entity with the list of available date DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of available date DTOs and OK status
      */
-    @Operation(summary = "Get all available dates", description = "Retrieves a list of all available dates")
-    @ApiResponse(responseCode = "200", description = "List of available dates retrieved successfully",
-            content = @Content(schema = @Schema(implementation = AvailableDateDTO.class)))
+    @Operation(summary = "Get all available dates", description = "Retrieves a list of all available dates, one page at a time ordered by date and ID")
+    @ApiResponse(responseCode = "200", description = "List of available dates retrieved successfully")
     @GetMapping
-    public ResponseEntity<List<AvailableDateDTO>> getAllAvailableDates() {
-        List<AvailableDateDTO> availableDates = availableDateService.getAllAvailableDates();
+    public ResponseEntity<CursorPageDTO<AvailableDateDTO>> getAllAvailableDates(
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<AvailableDateDTO> availableDates = availableDateService.getAllAvailableDates(cursor, size);
         return ResponseEntity.ok(availableDates);
     }
 
@@ -134,15 +164,18 @@ public class AvailableDateController {
      * Retrieves a list of available dates for a specific doctor.
      *
      * @param doctorId the ID of the doctor
-     * @return the response entity with the list of available date DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of available date DTOs and OK status
      */
-    @Operation(summary = "Get available dates by doctor ID", description = "Retrieves a list of available dates for a specific doctor")
-    @ApiResponse(responseCode = "200", description = "List of available dates retrieved successfully",
-            content = @Content(schema = @Schema(implementation = AvailableDateDTO.class)))
+    @Operation(summary = "Get available dates by doctor ID", description = "Retrieves a list of available dates for a specific doctor, one page at a time ordered by date and ID")
+    @ApiResponse(responseCode = "200", description = "List of available dates retrieved successfully")
     @GetMapping("/doctor/{doctorId}")
-    public ResponseEntity<List<AvailableDateDTO>> getAvailableDatesByDoctorId(
-            @Parameter(description = "ID of the doctor") @PathVariable Long doctorId) {
-        List<AvailableDateDTO> availableDates = availableDateService.getAvailableDatesByDoctorId(doctorId);
+    public ResponseEntity<CursorPageDTO<AvailableDateDTO>> getAvailableDatesByDoctorId(
+            @Parameter(description = "ID of the doctor") @PathVariable Long doctorId,
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<AvailableDateDTO> availableDates = availableDateService.getAvailableDatesByDoctorId(doctorId, cursor, size);
         return ResponseEntity.ok(availableDates);
     }
 
@@ -162,4 +195,96 @@ public class AvailableDateController {
         Integer count = availableDateService.getCurrentAppointmentCount(date, doctorId);
         return ResponseEntity.ok(count);
     }
+
+    /**
+     * Retrieves the statistics of the cache behind the appointment count and order endpoints.
+     *
+     * @return the response entity with the cache statistics and OK status
+     */
+    @Operation(summary = "Get count cache statistics", description = "Retrieves the size, hits, misses and drops since startup of the cache behind the appointment count and order endpoints")
+    @ApiResponse(responseCode = "200", description = "Cache statistics retrieved successfully",
+            content = @Content(schema = @Schema(implementation = DayCounterCacheStatsDTO.class)))
+    @GetMapping("/count/cache-stats")
+    public ResponseEntity<DayCounterCacheStatsDTO> getDayCounterCacheStats() {
+        DayCounterCacheStatsDTO stats = availableDateService.getDayCounterCacheStats();
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Retrieves the occupancy calendar of all doctors for a date range.
+     *
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @return the response entity with the occupancy calendar DTO and OK status
+     */
+    @Operation(summary = "Get occupancy calendar", description = "Retrieves the limit, booked and free appointment counts of every available doctor for each day of a date range")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Occupancy calendar retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = OccupancyCalendarDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid date range")
+    })
+    @GetMapping("/occupancy")
+    public ResponseEntity<OccupancyCalendarDTO> getOccupancyCalendar(
+            @Parameter(description = "First day of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") LocalDate startDate,
+            @Parameter(description = "Last day of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") LocalDate endDate) {
+        OccupancyCalendarDTO calendar = availableDateService.getOccupancyCalendar(startDate, endDate);
+        return ResponseEntity.ok(calendar);
+    }
+
+    /**
+     * Finds the earliest doctor-days with free appointment capacity in a date range.
+     *
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @param limit the maximum number of doctor-days returned
+     * @param doctorId the ID of the doctor to search, or null for all doctors
+     * @param city the city of the doctors to search, or null for all cities
+     * @return the response entity with the open doctor-days and OK status
+     */
+    @Operation(summary = "Find open slots", description = "Finds the earliest doctor-days with free appointment capacity in a date range, ordered by date and doctor ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Open slots retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid date range or limit")
+    })
+    @GetMapping("/open-slots")
+    public ResponseEntity<List<OpenSlotDTO>> findOpenSlots(
+            @Parameter(description = "First day of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") LocalDate startDate,
+            @Parameter(description = "Last day of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") LocalDate endDate,
+            @Parameter(description = "Maximum number of doctor-days returned") @RequestParam(defaultValue = "10") int limit,
+            @Parameter(description = "ID of the doctor") @RequestParam(required = false) Long doctorId,
+            @Parameter(description = "City of the doctors") @RequestParam(required = false) String city) {
+        List<OpenSlotDTO> openSlots = availableDateService.findOpenSlots(startDate, endDate, limit, doctorId, city);
+        return ResponseEntity.ok(openSlots);
+    }
+
+    /**
+     * Recounts the appointments of every doctor-day and corrects the stored counts that drifted.
+     *
+     * @return the response entity with the drift report and OK status
+     */
+    @Operation(summary = "Reconcile appointment counts", description = "Recounts the appointments of every doctor-day in chunks, corrects the stored counts that drifted and reports how many days drifted and by how much")
+    @ApiResponse(responseCode = "200", description = "Reconciliation finished",
+            content = @Content(schema = @Schema(implementation = CapacityReconciliationDTO.class)))
+    @PostMapping("/reconciliation")
+    public ResponseEntity<CapacityReconciliationDTO> reconcileAppointmentCounts() {
+        CapacityReconciliationDTO report = availableDateService.reconcileAppointmentCounts();
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Retrieves the drift report of the last appointment count reconciliation.
+     *
+     * @return the response entity with the drift report and OK status
+     */
+    @Operation(summary = "Get last reconciliation", description = "Retrieves the drift report of the last scheduled or requested appointment count reconciliation")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Drift report retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = CapacityReconciliationDTO.class))),
+            @ApiResponse(responseCode = "404", description = "No reconciliation has finished yet")
+    })
+    @GetMapping("/reconciliation")
+    public ResponseEntity<CapacityReconciliationDTO> getLastReconciliation() {
+        CapacityReconciliationDTO report = availableDateService.getLastReconciliation();
+        return ResponseEntity.ok(report);
+    }
 }
@@ -2,6 +2,7 @@ package ceksioglu.vet_management_sys.controller;
 
 import ceksioglu.vet_management_sys.dto.CustomerDTO;
 import ceksioglu.vet_management_sys.service.abstracts.CustomerService;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,8 +15,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 /**
  * Controller for managing customers.
  */
@@ -117,14 +116,17 @@ public class CustomerController {
     /**
      * Retrieves a list of all customers.
      *
-     * @return the response entity with the list of customer DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of customer DTOs and OK status
      */
-    @Operation(summary = "Get all customers", description = "Retrieves a list of all customers")
-    @ApiResponse(responseCode = "200", description = "List of customers retrieved successfully",
-            content = @Content(schema = @Schema(implementation = CustomerDTO.class)))
+    @Operation(summary = "Get all customers", description = "Retrieves a list of all customers, one page at a time ordered by ID")
+    @ApiResponse(responseCode = "200", description = "List of customers retrieved successfully")
     @GetMapping
-    public ResponseEntity<List<CustomerDTO>> getAllCustomers() {
-        List<CustomerDTO> customers = customerService.getAllCustomers();
+    public ResponseEntity<CursorPageDTO<CustomerDTO>> getAllCustomers(
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<CustomerDTO> customers = customerService.getAllCustomers(cursor, size);
         return ResponseEntity.ok(customers);
     }
 
@@ -132,15 +134,18 @@ public class CustomerController {
      * Retrieves a list of customers with the given name.
      *
      * @param name the name of the customers to retrieve
-     * @return the response entity with the list of customer DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of customer DTOs and OK status
      */
-    @Operation(summary = "Get customers by name", description = "Retrieves a list of customers with the given name")
-    @ApiResponse(responseCode = "200", description = "List of customers retrieved successfully",
-            content = @Content(schema = @Schema(implementation = CustomerDTO.class)))
+    @Operation(summary = "Get customers by name", description = "Retrieves a list of customers with the given name, one page at a time ordered by ID")
+    @ApiResponse(responseCode = "200", description = "List of customers retrieved successfully")
     @GetMapping("/name/{name}")
-    public ResponseEntity<List<CustomerDTO>> getCustomersByName(
-            @Parameter(description = "Name of the customers to retrieve") @PathVariable String name) {
-        List<CustomerDTO> customers = customerService.getCustomersByName(name);
+    public ResponseEntity<CursorPageDTO<CustomerDTO>> getCustomersByName(
+            @Parameter(description = "Name of the customers to retrieve") @PathVariable String name,
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<CustomerDTO> customers = customerService.getCustomersByName(name, cursor, size);
         return ResponseEntity.ok(customers);
     }
 }
@@ -2,6 +2,7 @@ package ceksioglu.vet_management_sys.controller;
 
 import ceksioglu.vet_management_sys.dto.DoctorDTO;
 import ceksioglu.vet_management_sys.service.abstracts.DoctorService;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,8 +15,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 /**
  * Controller for managing doctors.
  */
@@ -117,14 +116,17 @@ public class DoctorController {
     /**
      * Retrieves a list of all doctors.
      *
-     * @return the response entity with the list of doctor DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of doctor DTOs and OK status
      */
-    @Operation(summary = "Get all doctors", description = "Retrieves a list of all doctors")
-    @ApiResponse(responseCode = "200", description = "List of doctors retrieved successfully",
-            content = @Content(schema = @Schema(implementation = DoctorDTO.class)))
+    @Operation(summary = "Get all doctors", description = "Retrieves a list of all doctors, one page at a time ordered by ID")
+    @ApiResponse(responseCode = "200", description = "List of doctors retrieved successfully")
     @GetMapping
-    public ResponseEntity<List<DoctorDTO>> getAllDoctors() {
-        List<DoctorDTO> doctors = doctorService.getAllDoctors();
+    public ResponseEntity<CursorPageDTO<DoctorDTO>> getAllDoctors(
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<DoctorDTO> doctors = doctorService.getAllDoctors(cursor, size);
         return ResponseEntity.ok(doctors);
     }
 }
@@ -0,0 +1,130 @@
+package ceksioglu.vet_management_sys.controller;
+
+import ceksioglu.vet_management_sys.dto.VaccinationScheduleDTO;
+import ceksioglu.vet_management_sys.service.abstracts.VaccinationScheduleService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller for managing species-specific vaccination schedules.
+ */
+@RestController
+@RequestMapping("/api/vaccination-schedules")
+@Tag(name = "Vaccination Schedule", description = "Vaccination schedule management APIs")
+public class VaccinationScheduleController {
+
+    private final VaccinationScheduleService vaccinationScheduleService;
+
+    /**
+     * Constructor for VaccinationScheduleController.
+     *
+     * @param vaccinationScheduleService the vaccination schedule service
+     */
+    @Autowired
+    public VaccinationScheduleController(VaccinationScheduleService vaccinationScheduleService) {
+        this.vaccinationScheduleService = vaccinationScheduleService;
+    }
+
+    /**
+     * Creates a vaccination schedule.
+     *
+     * @param vaccinationScheduleDTO the vaccination schedule DTO
+     * @return the response entity with the saved vaccination schedule DTO and CREATED status
+     */
+    @Operation(summary = "Create a vaccination schedule", description = "Makes a vaccine code due for animals of a species at an age and then after every booster interval; the due vaccinations of all animals are recomputed in the background")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Vaccination schedule created successfully",
+                    content = @Content(schema = @Schema(implementation = VaccinationScheduleDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "409", description = "The species already has a schedule for the vaccine code")
+    })
+    @PostMapping
+    public ResponseEntity<VaccinationScheduleDTO> createVaccinationSchedule(@RequestBody VaccinationScheduleDTO vaccinationScheduleDTO) {
+        VaccinationScheduleDTO savedVaccinationSchedule = vaccinationScheduleService.saveVaccinationSchedule(vaccinationScheduleDTO);
+        return new ResponseEntity<>(savedVaccinationSchedule, HttpStatus.CREATED);
+    }
+
+    /**
+     * Updates an existing vaccination schedule.
+     *
+     * @param id the vaccination schedule ID
+     * @param vaccinationScheduleDTO the vaccination schedule DTO
+     * @return the response entity with the updated vaccination schedule DTO and OK status
+     */
+    @Operation(summary = "Update a vaccination schedule", description = "Updates a vaccination schedule; the due vaccinations of all animals are recomputed in the background")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Vaccination schedule updated successfully",
+                    content = @Content(schema = @Schema(implementation = VaccinationScheduleDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "404", description = "Vaccination schedule not found"),
+            @ApiResponse(responseCode = "409", description = "The species already has a schedule for the vaccine code")
+    })
+    @PutMapping("/{id}")
+    public ResponseEntity<VaccinationScheduleDTO> updateVaccinationSchedule(
+            @Parameter(description = "ID of the vaccination schedule to update") @PathVariable Long id,
+            @RequestBody VaccinationScheduleDTO vaccinationScheduleDTO) {
+        VaccinationScheduleDTO updatedVaccinationSchedule = vaccinationScheduleService.updateVaccinationSchedule(id, vaccinationScheduleDTO);
+        return ResponseEntity.ok(updatedVaccinationSchedule);
+    }
+
+    /**
+     * Retrieves a vaccination schedule by its ID.
+     *
+     * @param id the vaccination schedule ID
+     * @return the response entity with the vaccination schedule DTO and OK status
+     */
+    @Operation(summary = "Get a vaccination schedule by ID", description = "Retrieves a vaccination schedule")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Vaccination schedule found",
+                    content = @Content(schema = @Schema(implementation = VaccinationScheduleDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Vaccination schedule not found")
+    })
+    @GetMapping("/{id}")
+    public ResponseEntity<VaccinationScheduleDTO> getVaccinationScheduleById(
+            @Parameter(description = "ID of the vaccination schedule to retrieve") @PathVariable Long id) {
+        VaccinationScheduleDTO vaccinationSchedule = vaccinationScheduleService.getVaccinationScheduleById(id);
+        return ResponseEntity.ok(vaccinationSchedule);
+    }
+
+    /**
+     * Retrieves all vaccination schedules.
+     *
+     * @return the response entity with the list of vaccination schedule DTOs and OK status
+     */
+    @Operation(summary = "Get all vaccination schedules", description = "Retrieves all vaccination schedules ordered by species and vaccine code")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the vaccination schedules")
+    @GetMapping
+    public ResponseEntity<List<VaccinationScheduleDTO>> getAllVaccinationSchedules() {
+        List<VaccinationScheduleDTO> vaccinationSchedules = vaccinationScheduleService.getAllVaccinationSchedules();
+        return ResponseEntity.ok(vaccinationSchedules);
+    }
+
+    /**
+     * Deletes a vaccination schedule by its ID.
+     *
+     * @param id the vaccination schedule ID
+     * @return the response entity with no content and NO_CONTENT status
+     */
+    @Operation(summary = "Delete a vaccination schedule", description = "Deletes a vaccination schedule; its vaccine code is no longer due for the species")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Vaccination schedule deleted successfully"),
+            @ApiResponse(responseCode = "404", description = "Vaccination schedule not found")
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteVaccinationSchedule(
+            @Parameter(description = "ID of the vaccination schedule to delete") @PathVariable Long id) {
+        vaccinationScheduleService.deleteVaccinationSchedule(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,7 +1,17 @@
 package ceksioglu.vet_management_sys.controller;
 
+import ceksioglu.vet_management_sys.core.cache.IdempotencyStore;
+import ceksioglu.vet_management_sys.dto.VaccineCatalogDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCoverageRebuildDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCoverageReportDTO;
 import ceksioglu.vet_management_sys.dto.VaccineDTO;
+import ceksioglu.vet_management_sys.dto.VaccineDueDTO;
+import ceksioglu.vet_management_sys.dto.VaccineDueRecomputeDTO;
+import ceksioglu.vet_management_sys.dto.VaccineImportResultDTO;
+import ceksioglu.vet_management_sys.dto.VaccineReminderRunDTO;
+import ceksioglu.vet_management_sys.dto.VaccineTimelineDTO;
 import ceksioglu.vet_management_sys.service.abstracts.VaccineService;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,11 +20,16 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
 
@@ -27,33 +42,40 @@ import java.util.List;
 public class VaccineController {
 
     private final VaccineService vaccineService;
+    private final IdempotencyStore idempotencyStore;
 
     /**
      * Constructor for VaccineController.
      *
      * @param vaccineService the vaccine service
+     * @param idempotencyStore the store of results of requests sent with an idempotency key
      */
     @Autowired
-    public VaccineController(VaccineService vaccineService) {
+    public VaccineController(VaccineService vaccineService, IdempotencyStore idempotencyStore) {
         this.vaccineService = vaccineService;
+        this.idempotencyStore = idempotencyStore;
     }
 
     /**
-     * Creates a new vaccine.
+     * Creates a new vaccine. A retry sent with the same idempotency key gets the first result back.
      *
+     * @param idempotencyKey the idempotency key, optional
      * @param vaccineDTO the vaccine DTO
      * @return the response entity with the saved vaccine DTO and CREATED status
      */
-    @Operation(summary = "Create a new vaccine", description = "Creates a new vaccine with the provided details")
+    @Operation(summary = "Create a new vaccine", description = "Creates a new vaccine with the provided details; retries with the same Idempotency-Key header return the first result")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Vaccine created successfully",
                     content = @Content(schema = @Schema(implementation = VaccineDTO.class))),
             @ApiResponse(responseCode = "400", description = "Invalid input"),
-            @ApiResponse(responseCode = "409", description = "Vaccine already exists")
+            @ApiResponse(responseCode = "409", description = "Vaccine already exists, no usable stock left, or idempotency key conflict")
     })
     @PostMapping
-    public ResponseEntity<VaccineDTO> createVaccine(@RequestBody VaccineDTO vaccineDTO) {
-        VaccineDTO savedVaccine = vaccineService.saveVaccine(vaccineDTO);
+    public ResponseEntity<VaccineDTO> createVaccine(
+            @Parameter(description = "Key that makes retries of the same request return the first result") @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody VaccineDTO vaccineDTO) {
+        VaccineDTO savedVaccine = idempotencyStore.execute("vaccines", idempotencyKey, vaccineDTO,
+                () -> vaccineService.saveVaccine(vaccineDTO));
         return new ResponseEntity<>(savedVaccine, HttpStatus.CREATED);
     }
 
@@ -119,14 +141,17 @@ public class VaccineController {
     /**
      * Retrieves a list of all vaccines.
      *
-     * @return the response entity with the list of vaccine DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of vaccine DTOs and OK status
      */
-    @Operation(summary = "Get all vaccines", description = "Retrieves a list of all vaccines")
-    @ApiResponse(responseCode = "200", description = "List of vaccines retrieved successfully",
-            content = @Content(schema = @Schema(implementation = VaccineDTO.class)))
+    @Operation(summary = "Get all vaccines", description = "Retrieves a list of all vaccines, one page at a time ordered by ID")
+    @ApiResponse(responseCode = "200", description = "List of vaccines retrieved successfully")
     @GetMapping
-    public ResponseEntity<List<VaccineDTO>> getAllVaccines() {
-        List<VaccineDTO> vaccines = vaccineService.getAllVaccines();
+    public ResponseEntity<CursorPageDTO<VaccineDTO>> getAllVaccines(
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<VaccineDTO> vaccines = vaccineService.getAllVaccines(cursor, size);
         return ResponseEntity.ok(vaccines);
     }
 
@@ -134,33 +159,183 @@ public class VaccineController {
      * Retrieves a list of vaccines for a specific animal.
      *
      * @param animalId the ID of the animal
-     * @return the response entity with the list of vaccine DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of vaccine DTOs and OK status
      */
-    @Operation(summary = "Get vaccines by animal ID", description = "Retrieves a list of vaccines for a specific animal")
-    @ApiResponse(responseCode = "200", description = "List of vaccines retrieved successfully",
-            content = @Content(schema = @Schema(implementation = VaccineDTO.class)))
+    @Operation(summary = "Get vaccines by animal ID", description = "Retrieves a list of vaccines for a specific animal, one page at a time ordered by ID")
+    @ApiResponse(responseCode = "200", description = "List of vaccines retrieved successfully")
     @GetMapping("/animal/{animalId}")
-    public ResponseEntity<List<VaccineDTO>> getVaccinesByAnimalId(
-            @Parameter(description = "ID of the animal") @PathVariable Long animalId) {
-        List<VaccineDTO> vaccines = vaccineService.getVaccinesByAnimalId(animalId);
+    public ResponseEntity<CursorPageDTO<VaccineDTO>> getVaccinesByAnimalId(
+            @Parameter(description = "ID of the animal") @PathVariable Long animalId,
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<VaccineDTO> vaccines = vaccineService.getVaccinesByAnimalId(animalId, cursor, size);
         return ResponseEntity.ok(vaccines);
     }
 
+    /**
+     * Retrieves the protection timeline of an animal.
+     *
+     * @param animalId the ID of the animal
+     * @return the response entity with the protection timeline and OK status
+     */
+    @Operation(summary = "Get protection timeline of an animal", description = "Retrieves per vaccine code the continuous protections of an animal, with overlapping and adjacent vaccines merged, and the gaps between them")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Protection timeline retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = VaccineTimelineDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Animal not found")
+    })
+    @GetMapping("/animal/{animalId}/timeline")
+    public ResponseEntity<VaccineTimelineDTO> getVaccineTimeline(
+            @Parameter(description = "ID of the animal") @PathVariable Long animalId) {
+        VaccineTimelineDTO timeline = vaccineService.getVaccineTimeline(animalId);
+        return ResponseEntity.ok(timeline);
+    }
+
     /**
      * Retrieves a list of vaccines within a specific protection end date range.
      *
      * @param startDate the start date of the range
      * @param endDate the end date of the range
-     * @return the response entity with the list of vaccine DTOs and OK status
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of vaccine DTOs and OK status
      */
-    @Operation(summary = "Get vaccines by protection end date range", description = "Retrieves a list of vaccines within a specific protection end date range")
-    @ApiResponse(responseCode = "200", description = "List of vaccines retrieved successfully",
-            content = @Content(schema = @Schema(implementation = VaccineDTO.class)))
+    @Operation(summary = "Get vaccines by protection end date range", description = "Retrieves a list of vaccines within a specific protection end date range, one page at a time ordered by protection end date and ID")
+    @ApiResponse(responseCode = "200", description = "List of vaccines retrieved successfully")
     @GetMapping("/protection-end-date")
-    public ResponseEntity<List<VaccineDTO>> getVaccinesByProtectionEndDateRange(
+    public ResponseEntity<CursorPageDTO<VaccineDTO>> getVaccinesByProtectionEndDateRange(
             @Parameter(description = "Start date of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") Date startDate,
-            @Parameter(description = "End date of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") Date endDate) {
-        List<VaccineDTO> vaccines = vaccineService.getVaccinesByProtectionEndDateRange(startDate, endDate);
+            @Parameter(description = "End date of the range") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") Date endDate,
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<VaccineDTO> vaccines = vaccineService.getVaccinesByProtectionEndDateRange(startDate, endDate, cursor, size);
         return ResponseEntity.ok(vaccines);
     }
+
+    /**
+     * Imports vaccines from a CSV or JSON stream, e.g. the records of a vaccination campaign.
+     * The body is read as it arrives and is not held in memory as a whole.
+     *
+     * @param contentType the content type of the body
+     * @param request the request whose body is imported
+     * @return the response entity with the import result and OK status
+     * @throws IOException if the body cannot be read
+     */
+    @Operation(summary = "Import vaccines", description = "Saves the vaccines of a CSV file with a header row, a JSON array or newline separated JSON objects, with the same checks as creating one vaccine; rows that fail are reported with their row number and do not stop the import")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "CSV with the columns name, code, protectionStartDate, protectionFinishDate (optional) and animalId, or JSON vaccines")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished",
+                    content = @Content(schema = @Schema(implementation = VaccineImportResultDTO.class))),
+            @ApiResponse(responseCode = "400", description = "CSV header is missing or incomplete")
+    })
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<VaccineImportResultDTO> importVaccines(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest request) throws IOException {
+        VaccineImportResultDTO result = vaccineService.importVaccines(request.getInputStream(), contentType);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Runs the vaccine expiry reminders now instead of waiting for the schedule.
+     *
+     * @return the response entity with the result of the run and OK status
+     */
+    @Operation(summary = "Run vaccine reminders", description = "Queues reminders for the vaccines whose protection ends within the configured number of days, continuing today's scan from its checkpoint, and sends the pending reminders")
+    @ApiResponse(responseCode = "200", description = "Reminder run finished",
+            content = @Content(schema = @Schema(implementation = VaccineReminderRunDTO.class)))
+    @PostMapping("/reminders/run")
+    public ResponseEntity<VaccineReminderRunDTO> runVaccineReminders() {
+        VaccineReminderRunDTO result = vaccineService.runVaccineReminders();
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Retrieves the vaccine catalog.
+     *
+     * @return the response entity with the vaccine products and OK status
+     */
+    @Operation(summary = "Get the vaccine catalog", description = "Lists the vaccine products with their standard protection duration in days")
+    @ApiResponse(responseCode = "200", description = "Vaccine catalog retrieved successfully")
+    @GetMapping("/catalog")
+    public ResponseEntity<List<VaccineCatalogDTO>> getVaccineCatalog() {
+        return ResponseEntity.ok(vaccineService.getVaccineCatalog());
+    }
+
+    /**
+     * Retrieves the vaccination coverage of a vaccine code.
+     *
+     * @param code the vaccine code
+     * @param species the species filter, optional
+     * @param breed the breed filter, optional
+     * @param city the owner city filter, optional
+     * @param groupBy the dimensions to group by
+     * @return the response entity with the coverage per group and OK status
+     */
+    @Operation(summary = "Get vaccination coverage", description = "Returns the share of animals protected by a vaccine code per species, breed and owner city, read from the coverage rollups")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Coverage retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = VaccineCoverageReportDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Unknown group by dimension"),
+            @ApiResponse(responseCode = "404", description = "No vaccine with this code")
+    })
+    @GetMapping("/coverage")
+    public ResponseEntity<VaccineCoverageReportDTO> getVaccineCoverage(
+            @Parameter(description = "Vaccine code") @RequestParam String code,
+            @Parameter(description = "Only animals of this species") @RequestParam(required = false) String species,
+            @Parameter(description = "Only animals of this breed") @RequestParam(required = false) String breed,
+            @Parameter(description = "Only animals of customers in this city") @RequestParam(required = false) String city,
+            @Parameter(description = "Dimensions to group by, out of species, breed and city; the others are summed up")
+            @RequestParam(defaultValue = "species,breed,city") List<String> groupBy) {
+        return ResponseEntity.ok(vaccineService.getVaccineCoverage(code, species, breed, city, groupBy));
+    }
+
+    /**
+     * Recounts the vaccination coverage rollups.
+     *
+     * @return the response entity with the result of the rebuild and OK status
+     */
+    @Operation(summary = "Rebuild vaccination coverage", description = "Recounts the coverage rollups in parallel chunks and corrects the counts that drifted; writes are not blocked meanwhile")
+    @ApiResponse(responseCode = "200", description = "Coverage rebuilt",
+            content = @Content(schema = @Schema(implementation = VaccineCoverageRebuildDTO.class)))
+    @PostMapping("/coverage/rebuild")
+    public ResponseEntity<VaccineCoverageRebuildDTO> rebuildVaccineCoverage() {
+        return ResponseEntity.ok(vaccineService.rebuildVaccineCoverage());
+    }
+
+    /**
+     * Retrieves the vaccinations due in a date range.
+     *
+     * @param startDate the first due date
+     * @param endDate the last due date
+     * @param cursor the cursor of the page, taken from the nextCursor of the previous page
+     * @param size the page size
+     * @return the response entity with the page of due vaccinations and OK status
+     */
+    @Operation(summary = "Get vaccinations due", description = "Retrieves the next due vaccination of every animal and scheduled vaccine code due in a date range, computed from the vaccination schedules of the animal's species, its date of birth and its vaccines, one page at a time ordered by due date")
+    @ApiResponse(responseCode = "200", description = "List of due vaccinations retrieved successfully")
+    @GetMapping("/due")
+    public ResponseEntity<CursorPageDTO<VaccineDueDTO>> getVaccinesDue(
+            @Parameter(description = "First due date") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") LocalDate startDate,
+            @Parameter(description = "Last due date") @RequestParam @DateTimeFormat(pattern="yyyy-MM-dd") LocalDate endDate,
+            @Parameter(description = "Cursor of the page, taken from nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, between 1 and 100") @RequestParam(defaultValue = "20") int size) {
+        CursorPageDTO<VaccineDueDTO> due = vaccineService.getVaccinesDue(startDate, endDate, cursor, size);
+        return ResponseEntity.ok(due);
+    }
+
+    /**
+     * Recomputes the due vaccinations of all animals.
+     *
+     * @return the response entity with the result of the recomputation and OK status
+     */
+    @Operation(summary = "Recompute vaccinations due", description = "Recomputes the due vaccinations of all animals in parallel ranges of animal IDs, e.g. after vaccines were changed directly in the database")
+    @ApiResponse(responseCode = "200", description = "Vaccinations due recomputed",
+            content = @Content(schema = @Schema(implementation = VaccineDueRecomputeDTO.class)))
+    @PostMapping("/due/recompute")
+    public ResponseEntity<VaccineDueRecomputeDTO> recomputeVaccinesDue() {
+        return ResponseEntity.ok(vaccineService.recomputeVaccinesDue());
+    }
 }
@@ -0,0 +1,90 @@
+package ceksioglu.vet_management_sys.controller;
+
+import ceksioglu.vet_management_sys.dto.VaccineStockAlertDTO;
+import ceksioglu.vet_management_sys.dto.VaccineStockLotDTO;
+import ceksioglu.vet_management_sys.service.abstracts.VaccineStockService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller for managing the vaccine stock.
+ */
+@RestController
+@RequestMapping("/api/vaccine-stock")
+@Tag(name = "Vaccine Stock", description = "Vaccine stock management APIs")
+public class VaccineStockController {
+
+    private final VaccineStockService vaccineStockService;
+
+    /**
+     * Constructor for VaccineStockController.
+     *
+     * @param vaccineStockService the vaccine stock service
+     */
+    @Autowired
+    public VaccineStockController(VaccineStockService vaccineStockService) {
+        this.vaccineStockService = vaccineStockService;
+    }
+
+    /**
+     * Receives a lot of a vaccine product.
+     *
+     * @param vaccineStockLotDTO the vaccine stock lot DTO
+     * @return the response entity with the saved vaccine stock lot DTO and CREATED status
+     */
+    @Operation(summary = "Receive a vaccine lot", description = "Adds a lot of a vaccine product to the stock; administered vaccines of the product are taken from its usable lot expiring first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Vaccine lot received successfully",
+                    content = @Content(schema = @Schema(implementation = VaccineStockLotDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "409", description = "The vaccine already has a lot with the lot number")
+    })
+    @PostMapping("/lots")
+    public ResponseEntity<VaccineStockLotDTO> receiveLot(@RequestBody VaccineStockLotDTO vaccineStockLotDTO) {
+        VaccineStockLotDTO savedLot = vaccineStockService.receiveLot(vaccineStockLotDTO);
+        return new ResponseEntity<>(savedLot, HttpStatus.CREATED);
+    }
+
+    /**
+     * Gets the stock lots, optionally of one vaccine code.
+     *
+     * @param code the vaccine code
+     * @return the response entity with the list of vaccine stock lot DTOs and OK status
+     */
+    @Operation(summary = "Get vaccine lots", description = "Lists the stock lots with the doses left, ordered by product and expiry date")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved vaccine lots",
+                    content = @Content(schema = @Schema(implementation = VaccineStockLotDTO.class)))
+    })
+    @GetMapping("/lots")
+    public ResponseEntity<List<VaccineStockLotDTO>> getLots(
+            @Parameter(description = "Vaccine code to filter by") @RequestParam(required = false) String code) {
+        return ResponseEntity.ok(vaccineStockService.getLots(code));
+    }
+
+    /**
+     * Gets the vaccine products that are low on stock.
+     *
+     * @return the response entity with the list of low stock alert DTOs and OK status
+     */
+    @Operation(summary = "Get low stock alerts", description = "Lists the vaccine products whose doses left in lots that have not expired are at or below the low stock threshold")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved low stock alerts",
+                    content = @Content(schema = @Schema(implementation = VaccineStockAlertDTO.class)))
+    })
+    @GetMapping("/alerts")
+    public ResponseEntity<List<VaccineStockAlertDTO>> getLowStockAlerts() {
+        return ResponseEntity.ok(vaccineStockService.getLowStockAlerts());
+    }
+}
@@ -0,0 +1,93 @@
+package ceksioglu.vet_management_sys.controller;
+
+import ceksioglu.vet_management_sys.dto.WaitlistEntryDTO;
+import ceksioglu.vet_management_sys.service.abstracts.WaitlistService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for managing the appointment waitlist.
+ */
+@RestController
+@RequestMapping("/api/waitlist")
+@Tag(name = "Waitlist", description = "Appointment waitlist management APIs")
+public class WaitlistController {
+
+    private final WaitlistService waitlistService;
+
+    /**
+     * Constructor for WaitlistController.
+     *
+     * @param waitlistService the waitlist service
+     */
+    @Autowired
+    public WaitlistController(WaitlistService waitlistService) {
+        this.waitlistService = waitlistService;
+    }
+
+    /**
+     * Puts an animal on the waitlist of a fully booked doctor-day.
+     *
+     * @param waitlistEntryDTO the waitlist entry DTO
+     * @return the response entity with the saved waitlist entry DTO and CREATED status
+     */
+    @Operation(summary = "Join the waitlist", description = "Puts an animal on the waitlist of a doctor for a date; the entry becomes an appointment as soon as the day has free capacity")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Waitlist entry created successfully",
+                    content = @Content(schema = @Schema(implementation = WaitlistEntryDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "404", description = "Doctor, animal or available date not found"),
+            @ApiResponse(responseCode = "409", description = "Animal is already waiting")
+    })
+    @PostMapping
+    public ResponseEntity<WaitlistEntryDTO> joinWaitlist(@RequestBody WaitlistEntryDTO waitlistEntryDTO) {
+        WaitlistEntryDTO savedWaitlistEntry = waitlistService.joinWaitlist(waitlistEntryDTO);
+        return new ResponseEntity<>(savedWaitlistEntry, HttpStatus.CREATED);
+    }
+
+    /**
+     * Retrieves a waitlist entry by its ID.
+     *
+     * @param id the waitlist entry ID
+     * @return the response entity with the waitlist entry DTO and OK status
+     */
+    @Operation(summary = "Get a waitlist entry by ID", description = "Retrieves a waitlist entry, including the appointment it was promoted to")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Waitlist entry found",
+                    content = @Content(schema = @Schema(implementation = WaitlistEntryDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Waitlist entry not found")
+    })
+    @GetMapping("/{id}")
+    public ResponseEntity<WaitlistEntryDTO> getWaitlistEntryById(
+            @Parameter(description = "ID of the waitlist entry to retrieve") @PathVariable Long id) {
+        WaitlistEntryDTO waitlistEntry = waitlistService.getWaitlistEntryById(id);
+        return ResponseEntity.ok(waitlistEntry);
+    }
+
+    /**
+     * Deletes a waitlist entry by its ID.
+     *
+     * @param id the waitlist entry ID
+     * @return the response entity with no content and NO_CONTENT status
+     */
+    @Operation(summary = "Leave the waitlist", description = "Deletes a waitlist entry by its ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Waitlist entry deleted successfully"),
+            @ApiResponse(responseCode = "404", description = "Waitlist entry not found")
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteWaitlistEntry(
+            @Parameter(description = "ID of the waitlist entry to delete") @PathVariable Long id) {
+        waitlistService.deleteWaitlistEntry(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,18 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+/**
+ * Decides what happens to the queue positions of a doctor-day when an appointment is cancelled
+ * or moved to another day. Configured with {@code vet.appointment.order-policy}.
+ */
+public enum AppointmentOrderPolicy {
+
+    /**
+     * Positions stay as they were booked. A cancelled position is left as a gap and is not reused.
+     */
+    KEEP,
+
+    /**
+     * Later appointments of the day move up by one, so the positions stay 1..n without gaps.
+     */
+    COMPACT
+}
@@ -0,0 +1,108 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory interval index of appointment times per doctor and per animal, used to check many
+ * bookings at once after their intervals have been read with one query.
+ * <p>
+ * Each doctor and animal has its intervals in a tree keyed by start time. Since the intervals
+ * of one owner never overlap, a new interval can only overlap the last one that starts before
+ * it ends, so every check is a single {@link NavigableMap#lowerEntry} lookup.
+ */
+public class AppointmentSchedule {
+
+    /**
+     * Whose appointment a new interval overlaps.
+     */
+    public enum Conflict {
+        NONE,
+        DOCTOR,
+        ANIMAL
+    }
+
+    private final Map<Long, NavigableMap<Long, Long>> doctors = new HashMap<>();
+    private final Map<Long, NavigableMap<Long, Long>> animals = new HashMap<>();
+
+    /**
+     * Adds an existing appointment of a doctor.
+     *
+     * @param doctorId the doctor ID
+     * @param startDate the start of the appointment
+     * @param endDate the exclusive end of the appointment
+     */
+    public void addDoctorInterval(Long doctorId, Date startDate, Date endDate) {
+        add(doctors, doctorId, startDate.getTime(), endDate.getTime());
+    }
+
+    /**
+     * Adds an existing appointment of an animal.
+     *
+     * @param animalId the animal ID
+     * @param startDate the start of the appointment
+     * @param endDate the exclusive end of the appointment
+     */
+    public void addAnimalInterval(Long animalId, Date startDate, Date endDate) {
+        add(animals, animalId, startDate.getTime(), endDate.getTime());
+    }
+
+    /**
+     * Books an interval for a doctor and an animal if neither of them is busy at that time.
+     *
+     * @param doctorId the doctor ID
+     * @param animalId the animal ID
+     * @param startDate the start of the appointment
+     * @param endDate the exclusive end of the appointment
+     * @return {@link Conflict#NONE} if the interval was booked, otherwise who is busy
+     */
+    public Conflict book(Long doctorId, Long animalId, Date startDate, Date endDate) {
+        long start = startDate.getTime();
+        long end = endDate.getTime();
+        if (overlaps(doctors.get(doctorId), start, end)) {
+            return Conflict.DOCTOR;
+        }
+        if (overlaps(animals.get(animalId), start, end)) {
+            return Conflict.ANIMAL;
+        }
+        add(doctors, doctorId, start, end);
+        add(animals, animalId, start, end);
+        return Conflict.NONE;
+    }
+
+    /**
+     * Takes an interval of a doctor and an animal out of the schedule, e.g. one that is about to
+     * move, so that it does not block its own new time.
+     *
+     * @param doctorId the doctor ID
+     * @param animalId the animal ID
+     * @param startDate the start of the appointment
+     * @return the end of the removed interval, or null if the schedule did not hold it
+     */
+    public Date remove(Long doctorId, Long animalId, Date startDate) {
+        Long doctorEnd = remove(doctors, doctorId, startDate.getTime());
+        Long animalEnd = remove(animals, animalId, startDate.getTime());
+        Long end = animalEnd != null ? animalEnd : doctorEnd;
+        return end != null ? new Date(end) : null;
+    }
+
+    private static boolean overlaps(NavigableMap<Long, Long> intervals, long start, long end) {
+        if (intervals == null) {
+            return false;
+        }
+        Map.Entry<Long, Long> previous = intervals.lowerEntry(end);
+        return previous != null && previous.getValue() > start;
+    }
+
+    private static void add(Map<Long, NavigableMap<Long, Long>> owners, Long ownerId, long start, long end) {
+        owners.computeIfAbsent(ownerId, id -> new TreeMap<>()).merge(start, end, Math::max);
+    }
+
+    private static Long remove(Map<Long, NavigableMap<Long, Long>> owners, Long ownerId, long start) {
+        NavigableMap<Long, Long> intervals = owners.get(ownerId);
+        return intervals != null ? intervals.remove(start) : null;
+    }
+}
@@ -0,0 +1,134 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.repository.AvailabilityTemplateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Turns the weekly availability templates of the doctors into available dates.
+ * <p>
+ * Templates are expanded in one batched statement up to a rolling horizon, on creation and then
+ * on a fixed delay as the horizon moves on, so that the calendar and the open slot search see the
+ * coming weeks. Days past the horizon are created lazily by the slot ledgers the first time a
+ * booking asks for them. Each expansion announces the changed doctors with one
+ * {@link DoctorDayChangedEvent} per doctor instead of one per day.
+ */
+@Slf4j
+@Component
+public class AvailabilityExpander {
+
+    private final AvailabilityTemplateRepository availabilityTemplateRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int horizonDays;
+
+    /**
+     * Constructor for AvailabilityExpander.
+     *
+     * @param availabilityTemplateRepository the availability template repository
+     * @param eventPublisher the event publisher
+     * @param enabled whether the scheduled expansions are enabled
+     * @param horizonDays the number of days ahead that templates are expanded to
+     */
+    @Autowired
+    public AvailabilityExpander(AvailabilityTemplateRepository availabilityTemplateRepository,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${vet.availability.expand-enabled:true}") boolean enabled,
+                                @Value("${vet.availability.horizon-days:90}") int horizonDays) {
+        this.availabilityTemplateRepository = availabilityTemplateRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.horizonDays = horizonDays;
+    }
+
+    /**
+     * Moves the expansion of every template up to the horizon on the configured schedule.
+     */
+    @Scheduled(initialDelayString = "${vet.availability.expand-initial-delay:PT30S}",
+            fixedDelayString = "${vet.availability.expand-interval:PT6H}")
+    public void runScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long created = expand(null);
+            if (created > 0) {
+                log.info("Availability templates expanded into {} days", created);
+            }
+        } catch (RuntimeException e) {
+            log.error("Availability template expansion failed", e);
+        }
+    }
+
+    /**
+     * Expands one template, or every template, from today up to the horizon.
+     *
+     * @param templateId the template ID, or null for every template
+     * @return the number of available dates created
+     */
+    public long expand(Long templateId) {
+        return expand(templateId, LocalDate.now().plusDays(horizonDays));
+    }
+
+    /**
+     * Expands one template, or every template, from today up to the given day.
+     *
+     * @param templateId the template ID, or null for every template
+     * @param untilDay the last day to create
+     * @return the number of available dates created
+     */
+    public long expand(Long templateId, LocalDate untilDay) {
+        List<AvailabilityTemplateRepository.ExpandedDays> expanded =
+                availabilityTemplateRepository.expandTemplates(templateId, LocalDate.now(), untilDay);
+        long created = 0;
+        for (AvailabilityTemplateRepository.ExpandedDays row : expanded) {
+            created += row.getDayCount();
+            eventPublisher.publishEvent(new DoctorDayChangedEvent(this, row.getDoctorId(), null));
+        }
+        return created;
+    }
+
+    /**
+     * Creates the days of a date range from the templates of one doctor, or of every doctor, e.g.
+     * before a change that has to reach them. Unlike an expansion up to a day, the days before the
+     * range are not created.
+     *
+     * @param doctorId the doctor ID, or null for every doctor
+     * @param startDate the first day to create, not before today
+     * @param endDate the last day to create
+     * @return the number of available dates created
+     */
+    public long expandRange(Long doctorId, LocalDate startDate, LocalDate endDate) {
+        LocalDate today = LocalDate.now();
+        if (endDate.isBefore(today)) {
+            return 0;
+        }
+        List<AvailabilityTemplateRepository.ExpandedDays> expanded = availabilityTemplateRepository.expandRange(
+                doctorId, startDate.isBefore(today) ? today : startDate, endDate);
+        long created = 0;
+        for (AvailabilityTemplateRepository.ExpandedDays row : expanded) {
+            created += row.getDayCount();
+            eventPublisher.publishEvent(new DoctorDayChangedEvent(this, row.getDoctorId(), null));
+        }
+        return created;
+    }
+
+    /**
+     * Creates a doctor-day from the doctor's templates if it does not exist yet. Must be called
+     * inside the booking transaction; the caller announces the day together with its booking.
+     *
+     * @param doctorDay the doctor and day asked for
+     * @return true if the day was created
+     */
+    public boolean expandDay(DoctorDay doctorDay) {
+        return availabilityTemplateRepository.expandDay(doctorDay.getDoctorId(), doctorDay.getDay()) > 0;
+    }
+}
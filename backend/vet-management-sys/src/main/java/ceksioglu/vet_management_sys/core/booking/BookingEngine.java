@@ -0,0 +1,272 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.core.exception.BookingTimeoutException;
+import ceksioglu.vet_management_sys.repository.AppointmentRepository;
+import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Optional single-writer engine for the appointment write path.
+ * <p>
+ * When enabled, every booking command is routed to one of a fixed number of single-threaded
+ * shards chosen by doctor ID. A shard owns the capacity counts of its doctors' days in memory,
+ * runs the commands it has queued up as one batch in one transaction and writes the changed
+ * counts back with a single JDBC batch. Bookings for a busy doctor therefore wait in a queue
+ * instead of competing for the same available_dates row lock.
+ * <p>
+ * Changes made outside the engine are picked up through {@link DoctorDayChangedEvent}, which
+ * evicts the affected days from the owning shard. A command for two doctors of different shards
+ * holds the shard with the higher index and runs on the other one, so the shards are always
+ * taken in the same order. Callers wait at most the configured timeout.
+ */
+@Slf4j
+@Component
+public class BookingEngine {
+
+    private final AvailableDateRepository availableDateRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final AvailabilityExpander availabilityExpander;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AppointmentOrderPolicy orderPolicy;
+    private final boolean enabled;
+    private final int shardCount;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final int cacheSize;
+    private final long timeoutMillis;
+
+    private BookingShard[] shards;
+
+    /**
+     * Constructor for BookingEngine.
+     *
+     * @param availableDateRepository the available date repository
+     * @param appointmentRepository the appointment repository
+     * @param availabilityExpander creates days from the weekly templates on first booking
+     * @param jdbcTemplate the JDBC template used to flush counts
+     * @param transactionTemplate the transaction template used for each batch
+     * @param eventPublisher the event publisher
+     * @param orderPolicy what happens to queue positions when a slot is released
+     * @param enabled whether booking commands are routed through the engine
+     * @param shardCount the number of shards
+     * @param batchSize the maximum number of commands a shard runs in one transaction
+     * @param queueCapacity the maximum number of commands waiting in one shard
+     * @param cacheSize the maximum number of doctor-days a shard keeps in memory
+     * @param timeout how long a caller waits for a queue slot or a result
+     */
+    @Autowired
+    public BookingEngine(AvailableDateRepository availableDateRepository,
+                         AppointmentRepository appointmentRepository,
+                         AvailabilityExpander availabilityExpander,
+                         JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         ApplicationEventPublisher eventPublisher,
+                         @Value("${vet.appointment.order-policy:KEEP}") AppointmentOrderPolicy orderPolicy,
+                         @Value("${vet.booking.engine.enabled:false}") boolean enabled,
+                         @Value("${vet.booking.engine.shards:4}") int shardCount,
+                         @Value("${vet.booking.engine.batch-size:64}") int batchSize,
+                         @Value("${vet.booking.engine.queue-capacity:10000}") int queueCapacity,
+                         @Value("${vet.booking.engine.cache-size:10000}") int cacheSize,
+                         @Value("${vet.booking.engine.timeout:10s}") Duration timeout) {
+        this.availableDateRepository = availableDateRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.availabilityExpander = availabilityExpander;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.orderPolicy = orderPolicy;
+        this.enabled = enabled;
+        this.shardCount = shardCount;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.cacheSize = cacheSize;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * Starts the shard threads if the engine is enabled.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        shards = new BookingShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new BookingShard(i, this, availableDateRepository, appointmentRepository, availabilityExpander,
+                    jdbcTemplate, transactionTemplate, orderPolicy, batchSize, queueCapacity, cacheSize,
+                    timeoutMillis);
+            shards[i].start();
+        }
+        log.info("Booking engine started with {} shards", shardCount);
+    }
+
+    /**
+     * Stops the shards after the commands already queued have run.
+     */
+    @PreDestroy
+    public void stop() {
+        if (shards == null) {
+            return;
+        }
+        for (BookingShard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    /**
+     * Tells whether booking commands should be routed through the engine.
+     *
+     * @return true if the engine is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs a booking command on the shard that owns the doctor and waits for its result.
+     * The command runs inside the shard's batch transaction and must only take or release
+     * slots through the given ledger.
+     *
+     * @param doctorId the doctor ID that decides the shard
+     * @param command the command to run
+     * @param <T> the result type
+     * @return the command result
+     * @throws BookingTimeoutException if the command did not finish in time
+     */
+    public <T> T execute(Long doctorId, Function<SlotLedger, T> command) {
+        return await(submit(doctorId, command));
+    }
+
+    /**
+     * Runs a booking command that changes days of two doctors and waits for its result. If the
+     * doctors belong to different shards, the shard with the higher index is held while the
+     * command runs on the other one, so that neither doctor's days change in the meantime.
+     *
+     * @param doctorId the first doctor ID
+     * @param otherDoctorId the second doctor ID
+     * @param command the command to run
+     * @param <T> the result type
+     * @return the command result
+     * @throws BookingTimeoutException if the command did not finish in time
+     */
+    public <T> T execute(Long doctorId, Long otherDoctorId, Function<SlotLedger, T> command) {
+        BookingShard shard = shardFor(doctorId);
+        BookingShard otherShard = shardFor(otherDoctorId);
+        if (shard == otherShard) {
+            return execute(doctorId, command);
+        }
+        BookingShard running = shard.getIndex() < otherShard.getIndex() ? shard : otherShard;
+        BookingShard held = running == shard ? otherShard : shard;
+        BookingShard.Hold hold = held.hold();
+        CompletableFuture<T> future;
+        try {
+            if (!hold.awaitParked(timeoutMillis)) {
+                hold.release();
+                throw new BookingTimeoutException("Booking engine is busy, try again later");
+            }
+            future = running.submit(command, held);
+        } catch (InterruptedException e) {
+            hold.release();
+            Thread.currentThread().interrupt();
+            throw new BookingTimeoutException("Interrupted while waiting for the booking engine");
+        } catch (RuntimeException e) {
+            hold.release();
+            throw e;
+        }
+        future.whenComplete((result, error) -> hold.release());
+        return await(future);
+    }
+
+    /**
+     * Waits for a queued booking command. A command that has not started when the timeout passes
+     * is cancelled.
+     *
+     * @param future the future returned by {@link #submit(Long, Function)}
+     * @param <T> the result type
+     * @return the command result
+     * @throws BookingTimeoutException if the command did not finish in time
+     */
+    public <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (future.cancel(false)) {
+                throw new BookingTimeoutException("Booking engine is busy, try again later");
+            }
+            throw new BookingTimeoutException("Booking is taking longer than expected and may still be saved, check before retrying");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new BookingTimeoutException("Interrupted while waiting for the booking engine");
+        }
+    }
+
+    /**
+     * Queues a booking command on the shard that owns the doctor without waiting for it, so that
+     * commands for doctors of different shards can run in parallel.
+     *
+     * @param doctorId the doctor ID that decides the shard
+     * @param command the command to run
+     * @param <T> the result type
+     * @return the future completed after the command's batch is committed
+     */
+    public <T> CompletableFuture<T> submit(Long doctorId, Function<SlotLedger, T> command) {
+        return shardFor(doctorId).submit(command);
+    }
+
+    /**
+     * Evicts changed days from the owning shard once the change is committed.
+     *
+     * @param event the change event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDoctorDayChanged(DoctorDayChangedEvent event) {
+        if (shards == null || event.getSource() == this) {
+            return;
+        }
+        shardFor(event.getDoctorId()).evict(event.getDoctorId(), event.getDay());
+    }
+
+    /**
+     * Tells whether the given shard owns the doctor.
+     */
+    boolean owns(BookingShard shard, Long doctorId) {
+        return shardFor(doctorId) == shard;
+    }
+
+    /**
+     * Announces a day whose counts were changed by a committed batch.
+     */
+    void publishChange(DoctorDay doctorDay) {
+        eventPublisher.publishEvent(new DoctorDayChangedEvent(this, doctorDay.getDoctorId(), doctorDay.getDay()));
+    }
+
+    BookingShard shardFor(Long doctorId) {
+        return shards[Math.floorMod(Long.hashCode(doctorId), shards.length)];
+    }
+}
@@ -0,0 +1,677 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import ceksioglu.vet_management_sys.core.exception.AppointmentConflictException;
+import ceksioglu.vet_management_sys.core.exception.BookingTimeoutException;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.entity.AvailableDate;
+import ceksioglu.vet_management_sys.repository.AppointmentRepository;
+import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * One single-threaded shard of the {@link BookingEngine}.
+ * <p>
+ * The shard thread is the only writer of the capacity counts of the doctors it owns. It takes
+ * the queued commands in batches, runs a batch in one transaction, flushes the changes of every
+ * count with one JDBC batch and completes the callers' futures after the commit. A command that
+ * fails with a business error has its own slot changes undone and does not affect the rest of
+ * the batch. A database error rolls back the whole batch and drops the cached days it touched;
+ * the commands of the batch then run again one at a time, each in its own transaction, so that
+ * only the command that causes the error fails.
+ * <p>
+ * Animals are locked in the batch transaction until it commits. So that two shards locking the
+ * same animals in opposite order cannot deadlock, only the first lock of a batch and the locks
+ * of a command that runs alone wait; any later lock fails right away if another transaction
+ * holds the animal, and the batch runs again one command at a time.
+ * <p>
+ * A command that changes days of doctors on two shards runs on one of them while the other is
+ * held: the held shard thread waits at a {@link Hold} in its queue until the command is done,
+ * and the running shard works on the held shard's cached days in the meantime.
+ */
+@Slf4j
+class BookingShard implements SlotLedger {
+
+    // Writes what the batch changed rather than the counts in memory, so that corrections made
+    // by the reconciler or directly in the database since the day was loaded are kept. Slots
+    // taken are checked against the stored limit, which may have been lowered meanwhile.
+    private static final String FLUSH_SQL =
+            "UPDATE available_dates SET " +
+                    "current_appointment_count = GREATEST(COALESCE(current_appointment_count, 0) + ?, 0), " +
+                    "last_appointment_order = GREATEST(COALESCE(last_appointment_order, current_appointment_count, 0) + ?, 0) " +
+                    "WHERE available_date_id = ? " +
+                    "AND (? <= 0 OR COALESCE(current_appointment_count, 0) + ? <= daily_appointment_limit)";
+    private static final String LOCK_ANIMALS_SQL = "SELECT animal_id FROM animals WHERE animal_id IN (%s) " +
+            "ORDER BY animal_id FOR NO KEY UPDATE";
+
+    private final int index;
+    private final BookingEngine engine;
+    private final AvailableDateRepository availableDateRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final AvailabilityExpander availabilityExpander;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AppointmentOrderPolicy orderPolicy;
+    private final int batchSize;
+    private final long submitTimeoutMillis;
+    private static final ThreadLocal<BookingShard> CURRENT = new ThreadLocal<>();
+
+    private final BlockingQueue<Task<?>> queue;
+    // Also used by the shard that runs a command while this one is held
+    final Map<DoctorDay, DayCapacity> capacities;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Batch state, only touched by the shard thread
+    private final Set<DayCapacity> dirty = new HashSet<>();
+    private final Set<DoctorDay> touched = new HashSet<>();
+    private final List<Runnable> undoLog = new ArrayList<>();
+    private final Set<Long> lockedAnimals = new HashSet<>();
+    private int batchCommands;
+    // The shard held for the running command, whose days it may change as well
+    private BookingShard held;
+    private boolean commandWroteRows;
+    private final List<Runnable> evictions = new ArrayList<>();
+    // Commands this shard thread queued on a full shard, offered again on every turn of the loop
+    private final List<Overflow> overflow = new ArrayList<>();
+
+    BookingShard(int index,
+                 BookingEngine engine,
+                 AvailableDateRepository availableDateRepository,
+                 AppointmentRepository appointmentRepository,
+                 AvailabilityExpander availabilityExpander,
+                 JdbcTemplate jdbcTemplate,
+                 TransactionTemplate transactionTemplate,
+                 AppointmentOrderPolicy orderPolicy,
+                 int batchSize,
+                 int queueCapacity,
+                 int cacheSize,
+                 long submitTimeoutMillis) {
+        this.index = index;
+        this.engine = engine;
+        this.availableDateRepository = availableDateRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.availabilityExpander = availabilityExpander;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.orderPolicy = orderPolicy;
+        this.batchSize = batchSize;
+        this.submitTimeoutMillis = submitTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.capacities = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DoctorDay, DayCapacity> eldest) {
+                // Not the dirty set of this shard: a shard running a command may have changed a day held here
+                return size() > cacheSize && !eldest.getValue().inBatch;
+            }
+        };
+        this.thread = new Thread(this::run, "booking-shard-" + index);
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a command for this shard. Callers wait while the queue is full, up to the engine's
+     * timeout, except shard threads: two full shards queueing commands on each other would wait
+     * forever, so a shard thread keeps the command in its overflow list and offers it again until
+     * it fits. The returned future can be cancelled as long as the command has not started.
+     */
+    <T> CompletableFuture<T> submit(Function<SlotLedger, T> command) {
+        return enqueue(new Task<>(command, null, null));
+    }
+
+    /**
+     * Queues a command that may also change the days of the held shard's doctors. The held shard
+     * must be waiting at a hold until the command is done.
+     */
+    <T> CompletableFuture<T> submit(Function<SlotLedger, T> command, BookingShard heldShard) {
+        return enqueue(new Task<>(command, heldShard, null));
+    }
+
+    /**
+     * Queues a hold: when the shard thread reaches it, it takes no commands until the hold is
+     * released.
+     */
+    Hold hold() {
+        Hold hold = new Hold();
+        enqueue(new Task<>(null, null, hold)).whenComplete((result, error) -> {
+            if (error != null) {
+                hold.fail();
+            }
+        });
+        return hold;
+    }
+
+    private <T> CompletableFuture<T> enqueue(Task<T> task) {
+        if (!running) {
+            task.future.completeExceptionally(new IllegalStateException("Booking engine is shutting down"));
+            return task.future;
+        }
+        BookingShard caller = CURRENT.get();
+        if (caller != null) {
+            if (!queue.offer(task)) {
+                caller.overflow.add(new Overflow(this, task));
+            }
+            return task.future;
+        }
+        try {
+            if (!queue.offer(task, submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                task.future.completeExceptionally(new BookingTimeoutException("Booking engine is busy, try again later"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+
+    /**
+     * Drops a cached day, or every cached day of the doctor when the day is null,
+     * after the batch that is running when the eviction is picked up.
+     */
+    void evict(Long doctorId, LocalDate day) {
+        submit(ledger -> {
+            evictions.add(() -> capacities.keySet().removeIf(key ->
+                    key.getDoctorId().equals(doctorId) && (day == null || key.getDay().equals(day))));
+            return null;
+        });
+    }
+
+    /**
+     * Nothing to do: the shard thread already runs the commands of its doctors one at a time, and
+     * the held shard runs nothing until the command is done.
+     */
+    @Override
+    public void lock(DoctorDay doctorDay) {
+    }
+
+    /**
+     * Locks the animals the batch transaction does not hold yet with one statement, in ID order.
+     * Waits for them only if the batch holds no animal yet or runs a single command; otherwise a
+     * lock held by another transaction rolls back the batch, whose commands then run again one
+     * at a time.
+     */
+    @Override
+    public void lockAnimals(Collection<Long> animalIds) {
+        List<Long> missing = animalIds.stream().filter(id -> !lockedAnimals.contains(id)).distinct().sorted().toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        String sql = String.format(LOCK_ANIMALS_SQL, String.join(", ", Collections.nCopies(missing.size(), "?")));
+        if (!lockedAnimals.isEmpty() && batchCommands > 1) {
+            sql += " NOWAIT";
+        }
+        jdbcTemplate.queryForList(sql, Long.class, missing.toArray());
+        lockedAnimals.addAll(missing);
+    }
+
+    @Override
+    public Optional<Integer> reserve(DoctorDay doctorDay) {
+        DayCapacity capacity = load(doctorDay);
+        if (capacity == null || capacity.count >= capacity.limit) {
+            return Optional.empty();
+        }
+        capacity.count++;
+        capacity.lastOrder++;
+        markDirty(capacity);
+        touched.add(doctorDay);
+        undoLog.add(() -> {
+            capacity.count--;
+            capacity.lastOrder--;
+        });
+        return Optional.of(capacity.lastOrder);
+    }
+
+    @Override
+    public List<Integer> reserve(DoctorDay doctorDay, int count) {
+        List<Integer> appointmentOrders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Optional<Integer> appointmentOrder = reserve(doctorDay);
+            if (appointmentOrder.isEmpty()) {
+                break;
+            }
+            appointmentOrders.add(appointmentOrder.get());
+        }
+        return appointmentOrders;
+    }
+
+    /**
+     * Releases a slot. Under {@link AppointmentOrderPolicy#COMPACT} the later appointments of the
+     * day are moved up right away in the batch transaction, so commands only release after every
+     * check that could still reject them has passed.
+     */
+    @Override
+    public void release(DoctorDay doctorDay, Integer appointmentOrder) {
+        DayCapacity capacity = load(doctorDay);
+        if (capacity == null || capacity.count == 0) {
+            return;
+        }
+        capacity.count--;
+        markDirty(capacity);
+        touched.add(doctorDay);
+        if (orderPolicy == AppointmentOrderPolicy.KEEP) {
+            undoLog.add(() -> capacity.count++);
+            return;
+        }
+        int previousLastOrder = capacity.lastOrder;
+        capacity.lastOrder = Math.max(capacity.lastOrder - 1, 0);
+        undoLog.add(() -> {
+            capacity.count++;
+            capacity.lastOrder = previousLastOrder;
+        });
+        commandWroteRows = true;
+        if (appointmentOrder != null) {
+            appointmentRepository.shiftAppointmentOrders(doctorDay.getDoctorId(), doctorDay.getDay(),
+                    doctorDay.getDay().plusDays(1), appointmentOrder);
+        } else {
+            // Nothing to shift from, the position of an old row was never stored
+            appointmentRepository.renumberAppointmentOrders(doctorDay.getDoctorId(), doctorDay.getDay(),
+                    doctorDay.getDay().plusDays(1));
+        }
+    }
+
+    /**
+     * Releases several slots. Under {@link AppointmentOrderPolicy#COMPACT} the remaining
+     * appointments of the day are renumbered right away in the batch transaction.
+     */
+    @Override
+    public void releaseSlots(DoctorDay doctorDay, int count) {
+        if (count <= 0) {
+            return;
+        }
+        DayCapacity capacity = load(doctorDay);
+        if (capacity == null || capacity.count == 0) {
+            return;
+        }
+        int previousCount = capacity.count;
+        int previousLastOrder = capacity.lastOrder;
+        capacity.count = Math.max(capacity.count - count, 0);
+        markDirty(capacity);
+        touched.add(doctorDay);
+        if (orderPolicy == AppointmentOrderPolicy.KEEP) {
+            undoLog.add(() -> capacity.count = previousCount);
+            return;
+        }
+        capacity.lastOrder = Math.max(capacity.lastOrder - count, 0);
+        undoLog.add(() -> {
+            capacity.count = previousCount;
+            capacity.lastOrder = previousLastOrder;
+        });
+        commandWroteRows = true;
+        appointmentRepository.renumberAppointmentOrders(doctorDay.getDoctorId(), doctorDay.getDay(),
+                doctorDay.getDay().plusDays(1));
+    }
+
+    /**
+     * Moves a booking by taking the new slot first, so that a full target day rejects the
+     * command before anything was released.
+     */
+    @Override
+    public Optional<Integer> move(DoctorDay from, Integer fromOrder, DoctorDay to) {
+        Optional<Integer> appointmentOrder = reserve(to);
+        appointmentOrder.ifPresent(order -> release(from, fromOrder));
+        return appointmentOrder;
+    }
+
+    private void run() {
+        CURRENT.set(this);
+        List<Task<?>> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            offerOverflow();
+            try {
+                Task<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                // Commands queued after a hold wait until it is released
+                int start = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    Task<?> task = batch.get(i);
+                    if (task.hold != null) {
+                        processStarted(batch.subList(start, i));
+                        if (task.start()) {
+                            task.hold.park();
+                            task.future.complete(null);
+                        }
+                        start = i + 1;
+                    }
+                }
+                processStarted(batch.subList(start, batch.size()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Booking shard {} failed to process a batch", thread.getName(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+        for (Overflow pending : overflow) {
+            pending.task.future.completeExceptionally(new IllegalStateException("Booking engine is shutting down"));
+        }
+    }
+
+    /**
+     * Processes the commands whose callers did not give up while they were queued.
+     */
+    private void processStarted(List<Task<?>> tasks) {
+        List<Task<?>> started = new ArrayList<>(tasks.size());
+        for (Task<?> task : tasks) {
+            if (task.start()) {
+                started.add(task);
+            }
+        }
+        if (!started.isEmpty()) {
+            process(started);
+        }
+    }
+
+    private void offerOverflow() {
+        overflow.removeIf(pending -> pending.shard.queue.offer(pending.task));
+    }
+
+    private void process(List<Task<?>> batch) {
+        boolean committed = false;
+        RuntimeException batchFailure = null;
+        batchCommands = batch.size();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Task<?> task : batch) {
+                    runCommand(task);
+                }
+                flush();
+            });
+            committed = true;
+        } catch (RuntimeException e) {
+            // The counts in memory may be ahead of the rolled back rows, so reload them next time.
+            // A held shard is still waiting, as the futures are only completed below.
+            touched.forEach(doctorDay -> engine.shardFor(doctorDay.getDoctorId()).capacities.remove(doctorDay));
+            batchFailure = e;
+        } finally {
+            dirty.forEach(capacity -> capacity.inBatch = false);
+            dirty.clear();
+            undoLog.clear();
+            lockedAnimals.clear();
+        }
+
+        if (committed) {
+            for (Task<?> task : batch) {
+                task.complete();
+            }
+            touched.forEach(engine::publishChange);
+        } else if (batch.size() > 1) {
+            // Only the command that caused the error should fail, so every command runs again in its own transaction
+            log.warn("Booking shard {} rolled back a batch of {} commands, running them one at a time",
+                    thread.getName(), batch.size(), batchFailure);
+            touched.clear();
+            evictions.clear();
+            for (Task<?> task : batch) {
+                task.reset();
+                process(List.of(task));
+            }
+            return;
+        } else {
+            for (Task<?> task : batch) {
+                task.future.completeExceptionally(task.failure != null ? task.failure : batchFailure);
+            }
+        }
+        evictions.forEach(Runnable::run);
+        touched.clear();
+        evictions.clear();
+    }
+
+    private void runCommand(Task<?> task) {
+        undoLog.clear();
+        commandWroteRows = false;
+        held = task.held;
+        try {
+            task.run(this);
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (commandWroteRows) {
+                // Rows were already shifted in this transaction, so only a rollback can undo the command
+                throw e;
+            }
+            // Business rule failures only fail their own command
+            for (int i = undoLog.size() - 1; i >= 0; i--) {
+                undoLog.get(i).run();
+            }
+            task.failure = e;
+        } finally {
+            held = null;
+        }
+    }
+
+    private void markDirty(DayCapacity capacity) {
+        if (dirty.add(capacity)) {
+            capacity.inBatch = true;
+        }
+    }
+
+    /**
+     * Writes the changed counts. If a day has fewer slots left in the database than the batch
+     * took, e.g. because its limit was lowered before the eviction of the cached day came up in
+     * the queue, the batch is rolled back; its commands then run again on freshly loaded days.
+     */
+    private void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(dirty.size());
+        for (DayCapacity capacity : dirty) {
+            int taken = capacity.count - capacity.flushedCount;
+            rows.add(new Object[]{taken, capacity.lastOrder - capacity.flushedLastOrder, capacity.id, taken, taken});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(FLUSH_SQL, rows);
+        for (int i = 0; i < rows.size(); i++) {
+            if ((int) rows.get(i)[0] > 0 && updated[i] == 0) {
+                throw new AppointmentConflictException("Doctor has reached the daily appointment limit for this date");
+            }
+        }
+        // A rollback after this point drops the touched days, so they are read again anyway
+        for (DayCapacity capacity : dirty) {
+            capacity.flushedCount = capacity.count;
+            capacity.flushedLastOrder = capacity.lastOrder;
+        }
+    }
+
+    /**
+     * Tells whether a day belongs to a shard that is neither this one nor held for the running
+     * command, so that the command must not change it.
+     */
+    private boolean isForeign(DoctorDay doctorDay) {
+        return !engine.owns(this, doctorDay.getDoctorId())
+                && (held == null || !engine.owns(held, doctorDay.getDoctorId()));
+    }
+
+    private DayCapacity load(DoctorDay doctorDay) {
+        if (isForeign(doctorDay)) {
+            throw new IllegalStateException("Doctor " + doctorDay.getDoctorId() + " is not owned by this shard");
+        }
+        Map<DoctorDay, DayCapacity> capacities = engine.shardFor(doctorDay.getDoctorId()).capacities;
+        DayCapacity capacity = capacities.get(doctorDay);
+        if (capacity != null) {
+            return capacity;
+        }
+        Optional<AvailableDate> availableDate = availableDateRepository.findByDoctorIdAndAvailableDate(
+                doctorDay.getDoctorId(), DateUtils.toDate(doctorDay.getDay()));
+        if (availableDate.isEmpty()) {
+            // Days past the expanded window of the doctor's templates are created on first booking
+            if (!availabilityExpander.expandDay(doctorDay)) {
+                return null;
+            }
+            touched.add(doctorDay);
+            availableDate = availableDateRepository.findByDoctorIdAndAvailableDate(
+                    doctorDay.getDoctorId(), DateUtils.toDate(doctorDay.getDay()));
+            if (availableDate.isEmpty()) {
+                return null;
+            }
+        }
+        capacity = new DayCapacity(availableDate.get());
+        capacities.put(doctorDay, capacity);
+        return capacity;
+    }
+
+    /**
+     * In-memory capacity of one available_dates row.
+     */
+    static final class DayCapacity {
+        private final Long id;
+        private final int limit;
+        private int count;
+        private int lastOrder;
+        // The values the database had when the day was loaded, plus what was flushed since
+        private int flushedCount;
+        private int flushedLastOrder;
+        // Changed by the running batch, so the day must stay cached until the batch is done
+        private boolean inBatch;
+
+        private DayCapacity(AvailableDate availableDate) {
+            this.id = availableDate.getId();
+            this.limit = availableDate.getDailyAppointmentLimit() != null ? availableDate.getDailyAppointmentLimit() : 0;
+            this.count = availableDate.getCurrentAppointmentCount() != null ? availableDate.getCurrentAppointmentCount() : 0;
+            this.lastOrder = availableDate.getLastAppointmentOrder() != null ? availableDate.getLastAppointmentOrder() : count;
+            this.flushedCount = count;
+            this.flushedLastOrder = lastOrder;
+        }
+    }
+
+    /**
+     * A command queued by this shard thread that did not fit into the target shard's queue yet.
+     */
+    private static final class Overflow {
+        private final BookingShard shard;
+        private final Task<?> task;
+
+        private Overflow(BookingShard shard, Task<?> task) {
+            this.shard = shard;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Makes a shard thread wait until the command that holds it is done.
+     */
+    static final class Hold {
+        private final CountDownLatch parked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean failed;
+
+        /**
+         * Waits for the shard thread to reach the hold.
+         *
+         * @param timeoutMillis how long to wait
+         * @return true if the shard thread is waiting at the hold
+         */
+        boolean awaitParked(long timeoutMillis) throws InterruptedException {
+            return parked.await(timeoutMillis, TimeUnit.MILLISECONDS) && !failed;
+        }
+
+        /**
+         * Lets the shard thread go on, or pass the hold right away if it has not reached it yet.
+         */
+        void release() {
+            released.countDown();
+        }
+
+        private void fail() {
+            failed = true;
+            parked.countDown();
+        }
+
+        private void park() throws InterruptedException {
+            parked.countDown();
+            released.await();
+        }
+    }
+
+    /**
+     * A queued command together with the future its caller waits on. A command whose future was
+     * cancelled before the shard took it is skipped.
+     */
+    private static final class Task<T> {
+        private static final int QUEUED = 0;
+        private static final int STARTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Function<SlotLedger, T> command;
+        private final BookingShard held;
+        private final Hold hold;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final CompletableFuture<T> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return state.compareAndSet(QUEUED, CANCELLED) && super.cancel(mayInterruptIfRunning);
+            }
+        };
+        private T result;
+        private RuntimeException failure;
+
+        private Task(Function<SlotLedger, T> command, BookingShard held, Hold hold) {
+            this.command = command;
+            this.held = held;
+            this.hold = hold;
+        }
+
+        private boolean start() {
+            return state.compareAndSet(QUEUED, STARTED);
+        }
+
+        private void run(SlotLedger ledger) {
+            result = command.apply(ledger);
+        }
+
+        private void reset() {
+            result = null;
+            failure = null;
+        }
+
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
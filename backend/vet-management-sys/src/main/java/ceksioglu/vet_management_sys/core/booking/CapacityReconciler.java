@@ -0,0 +1,178 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.CapacityDriftDTO;
+import ceksioglu.vet_management_sys.dto.CapacityReconciliationDTO;
+import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings the stored appointment counts of the available dates back in line with the appointments.
+ * <p>
+ * The counts are kept up to date by the booking paths, but can drift when appointments are
+ * removed without going through them, e.g. by the cascading delete of a doctor or an animal.
+ * The reconciler walks all doctor-days in (doctor, day) order in chunks. Each chunk is recounted
+ * and corrected by a single statement in its own short transaction, so bookings only wait for
+ * it on the few rows that are actually corrected. Corrected days are announced with a
+ * {@link DoctorDayChangedEvent}, which refreshes the caches, makes the booking engine reload
+ * them and lets the waitlist use capacity that was wrongly counted as booked.
+ * <p>
+ * A run starts on a fixed delay and can also be started on demand. The result of the last run
+ * is kept as the drift report.
+ */
+@Slf4j
+@Component
+public class CapacityReconciler {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(1, 1, 1);
+
+    private final AvailableDateRepository availableDateRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int maxReportedDrifts;
+
+    private volatile CapacityReconciliationDTO lastReport;
+
+    /**
+     * Constructor for CapacityReconciler.
+     *
+     * @param availableDateRepository the available date repository
+     * @param eventPublisher the event publisher
+     * @param enabled whether the scheduled runs are enabled
+     * @param chunkSize the number of doctor-days recounted by one statement
+     * @param maxReportedDrifts the maximum number of drifted doctor-days listed in a report
+     */
+    @Autowired
+    public CapacityReconciler(AvailableDateRepository availableDateRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${vet.reconciler.enabled:true}") boolean enabled,
+                              @Value("${vet.reconciler.chunk-size:1000}") int chunkSize,
+                              @Value("${vet.reconciler.max-reported-drifts:20}") int maxReportedDrifts) {
+        this.availableDateRepository = availableDateRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.maxReportedDrifts = maxReportedDrifts;
+    }
+
+    /**
+     * Runs the reconciliation on the configured schedule.
+     */
+    @Scheduled(initialDelayString = "${vet.reconciler.initial-delay:PT1M}",
+            fixedDelayString = "${vet.reconciler.interval:PT1H}")
+    public void runScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.error("Appointment count reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Recounts the appointments of every doctor-day and corrects the stored counts that drifted.
+     * A run started while another one is in progress waits for it.
+     *
+     * @return the drift report of the run
+     */
+    public synchronized CapacityReconciliationDTO reconcile() {
+        Date startedAt = new Date();
+        long startNanos = System.nanoTime();
+        long checked = 0;
+        long drifted = 0;
+        long fixed = 0;
+        long overCounted = 0;
+        long underCounted = 0;
+        long totalDrift = 0;
+        long maxDrift = 0;
+        // Smallest drift on top, so that only the largest ones are kept
+        PriorityQueue<CapacityDriftDTO> largestDrifts = new PriorityQueue<>(Comparator.comparingLong(CapacityReconciler::drift));
+
+        Long afterDoctorId = 0L;
+        LocalDate afterDate = FIRST_DAY;
+        Long afterId = 0L;
+        while (true) {
+            List<AvailableDateRepository.CountCheck> rows =
+                    availableDateRepository.reconcileCounts(afterDoctorId, afterDate, afterId, chunkSize);
+            for (AvailableDateRepository.CountCheck row : rows) {
+                checked++;
+                long stored = row.getStoredCount() != null ? row.getStoredCount() : 0;
+                long actual = row.getActualCount();
+                if (row.getStoredCount() != null && stored == actual) {
+                    continue;
+                }
+                CapacityDriftDTO drift = new CapacityDriftDTO(row.getDoctorId(), DateUtils.toLocalDate(row.getDay()),
+                        row.getStoredCount(), actual, Boolean.TRUE.equals(row.getFixed()));
+                drifted++;
+                if (stored > actual) {
+                    overCounted++;
+                } else if (stored < actual) {
+                    underCounted++;
+                }
+                totalDrift += drift(drift);
+                maxDrift = Math.max(maxDrift, drift(drift));
+                largestDrifts.add(drift);
+                if (largestDrifts.size() > maxReportedDrifts) {
+                    largestDrifts.poll();
+                }
+                if (drift.isFixed()) {
+                    fixed++;
+                    eventPublisher.publishEvent(new DoctorDayChangedEvent(this, drift.getDoctorId(), drift.getDate()));
+                }
+            }
+            if (rows.size() < chunkSize) {
+                break;
+            }
+            AvailableDateRepository.CountCheck last = rows.get(rows.size() - 1);
+            afterDoctorId = last.getDoctorId();
+            afterDate = DateUtils.toLocalDate(last.getDay());
+            afterId = last.getId();
+        }
+
+        List<CapacityDriftDTO> drifts = new ArrayList<>(largestDrifts);
+        drifts.sort(Comparator.comparingLong(CapacityReconciler::drift).reversed());
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        CapacityReconciliationDTO report = new CapacityReconciliationDTO(startedAt, durationMillis, checked, drifted,
+                fixed, overCounted, underCounted, totalDrift, maxDrift, drifts);
+        lastReport = report;
+        if (drifted > 0) {
+            log.warn("Appointment count reconciliation checked {} days in {} ms: {} drifted ({} over, {} under, " +
+                    "total drift {}, max {}), {} fixed", checked, durationMillis, drifted, overCounted, underCounted,
+                    totalDrift, maxDrift, fixed);
+        } else {
+            log.info("Appointment count reconciliation checked {} days in {} ms, no drift", checked, durationMillis);
+        }
+        return report;
+    }
+
+    /**
+     * Returns the drift report of the last finished run.
+     *
+     * @return the report, or null if no run has finished yet
+     */
+    public CapacityReconciliationDTO getLastReport() {
+        return lastReport;
+    }
+
+    private static long drift(CapacityDriftDTO drift) {
+        long stored = drift.getStoredCount() != null ? drift.getStoredCount() : 0;
+        return Math.abs(stored - drift.getActualCount());
+    }
+}
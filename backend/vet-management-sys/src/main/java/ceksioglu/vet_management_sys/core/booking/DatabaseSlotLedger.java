@@ -0,0 +1,175 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.repository.AnimalRepository;
+import ceksioglu.vet_management_sys.repository.AppointmentRepository;
+import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Slot ledger that checks and changes capacity with one conditional UPDATE per call.
+ * Must be used inside the transaction that also writes the appointment; listeners of the
+ * published {@link DoctorDayChangedEvent} see the change once that transaction commits.
+ */
+@Component
+public class DatabaseSlotLedger implements SlotLedger {
+
+    private final AvailableDateRepository availableDateRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final AnimalRepository animalRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AvailabilityExpander availabilityExpander;
+    private final AppointmentOrderPolicy orderPolicy;
+
+    /**
+     * Constructor for DatabaseSlotLedger.
+     *
+     * @param availableDateRepository the available date repository
+     * @param appointmentRepository the appointment repository
+     * @param animalRepository the animal repository
+     * @param eventPublisher the event publisher
+     * @param availabilityExpander creates days from the weekly templates on first booking
+     * @param orderPolicy what happens to queue positions when a slot is released
+     */
+    @Autowired
+    public DatabaseSlotLedger(AvailableDateRepository availableDateRepository,
+                              AppointmentRepository appointmentRepository,
+                              AnimalRepository animalRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              AvailabilityExpander availabilityExpander,
+                              @Value("${vet.appointment.order-policy:KEEP}") AppointmentOrderPolicy orderPolicy) {
+        this.availableDateRepository = availableDateRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.animalRepository = animalRepository;
+        this.eventPublisher = eventPublisher;
+        this.availabilityExpander = availabilityExpander;
+        this.orderPolicy = orderPolicy;
+    }
+
+    /**
+     * Locks the day, creating it first from the doctor's templates if it does not exist yet.
+     * A missing day is looked up again after the attempt, as a parallel booking may just have
+     * created it.
+     */
+    @Override
+    public void lock(DoctorDay doctorDay) {
+        if (availableDateRepository.lockDay(doctorDay.getDoctorId(), doctorDay.getDay()).isEmpty()) {
+            expandDay(doctorDay);
+            availableDateRepository.lockDay(doctorDay.getDoctorId(), doctorDay.getDay());
+        }
+    }
+
+    /**
+     * Locks the animals with one statement, in ID order.
+     */
+    @Override
+    public void lockAnimals(Collection<Long> animalIds) {
+        animalRepository.lockByIds(animalIds);
+    }
+
+    @Override
+    public Optional<Integer> reserve(DoctorDay doctorDay) {
+        Optional<Integer> appointmentOrder = availableDateRepository.reserveSlot(doctorDay.getDoctorId(), doctorDay.getDay());
+        if (appointmentOrder.isEmpty()) {
+            expandDay(doctorDay);
+            appointmentOrder = availableDateRepository.reserveSlot(doctorDay.getDoctorId(), doctorDay.getDay());
+        }
+        appointmentOrder.ifPresent(order -> publishChange(doctorDay));
+        return appointmentOrder;
+    }
+
+    @Override
+    public List<Integer> reserve(DoctorDay doctorDay, int count) {
+        List<Integer> appointmentOrders = new ArrayList<>();
+        Optional<AvailableDateRepository.SlotGrant> slotGrant =
+                availableDateRepository.reserveSlots(doctorDay.getDoctorId(), doctorDay.getDay(), count);
+        if (slotGrant.isEmpty()) {
+            expandDay(doctorDay);
+            slotGrant = availableDateRepository.reserveSlots(doctorDay.getDoctorId(), doctorDay.getDay(), count);
+        }
+        slotGrant.ifPresent(grant -> {
+            for (int i = 1; i <= grant.getGranted(); i++) {
+                appointmentOrders.add(grant.getPreviousOrder() + i);
+            }
+            publishChange(doctorDay);
+        });
+        return appointmentOrders;
+    }
+
+    @Override
+    public void release(DoctorDay doctorDay, Integer appointmentOrder) {
+        if (orderPolicy == AppointmentOrderPolicy.KEEP) {
+            if (availableDateRepository.releaseSlot(doctorDay.getDoctorId(), doctorDay.getDay()) > 0) {
+                publishChange(doctorDay);
+            }
+            return;
+        }
+        if (availableDateRepository.releaseSlotAndOrder(doctorDay.getDoctorId(), doctorDay.getDay()) > 0) {
+            if (appointmentOrder != null) {
+                appointmentRepository.shiftAppointmentOrders(doctorDay.getDoctorId(), doctorDay.getDay(),
+                        doctorDay.getDay().plusDays(1), appointmentOrder);
+            } else {
+                // Nothing to shift from, the position of an old row was never stored
+                appointmentRepository.renumberAppointmentOrders(doctorDay.getDoctorId(), doctorDay.getDay(),
+                        doctorDay.getDay().plusDays(1));
+            }
+            publishChange(doctorDay);
+        }
+    }
+
+    @Override
+    public void releaseSlots(DoctorDay doctorDay, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (orderPolicy == AppointmentOrderPolicy.KEEP) {
+            if (availableDateRepository.releaseSlots(doctorDay.getDoctorId(), doctorDay.getDay(), count) > 0) {
+                publishChange(doctorDay);
+            }
+            return;
+        }
+        if (availableDateRepository.releaseSlotsAndOrders(doctorDay.getDoctorId(), doctorDay.getDay(), count) > 0) {
+            appointmentRepository.renumberAppointmentOrders(doctorDay.getDoctorId(), doctorDay.getDay(),
+                    doctorDay.getDay().plusDays(1));
+            publishChange(doctorDay);
+        }
+    }
+
+    /**
+     * Moves a booking, touching the two available_dates rows in (doctor, day) order so that
+     * opposite moves cannot deadlock.
+     */
+    @Override
+    public Optional<Integer> move(DoctorDay from, Integer fromOrder, DoctorDay to) {
+        if (from.compareTo(to) < 0) {
+            release(from, fromOrder);
+            return reserve(to);
+        }
+        Optional<Integer> appointmentOrder = reserve(to);
+        appointmentOrder.ifPresent(order -> release(from, fromOrder));
+        return appointmentOrder;
+    }
+
+    /**
+     * Creates the day from the doctor's templates if it is missing. The day is announced right
+     * away, as the caller may end up not booking it. Callers try again whether or not a row was
+     * created here, since a parallel booking may have created it in the meantime.
+     */
+    private void expandDay(DoctorDay doctorDay) {
+        if (availabilityExpander.expandDay(doctorDay)) {
+            publishChange(doctorDay);
+        }
+    }
+
+    private void publishChange(DoctorDay doctorDay) {
+        eventPublisher.publishEvent(new DoctorDayChangedEvent(this, doctorDay.getDoctorId(), doctorDay.getDay()));
+    }
+}
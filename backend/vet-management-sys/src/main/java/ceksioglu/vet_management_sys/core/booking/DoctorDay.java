@@ -0,0 +1,21 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * Identifies one calendar day of one doctor, the unit that appointment capacity is tracked in.
+ */
+@Value
+public class DoctorDay implements Comparable<DoctorDay> {
+
+    Long doctorId;
+    LocalDate day;
+
+    @Override
+    public int compareTo(DoctorDay other) {
+        int byDoctor = doctorId.compareTo(other.doctorId);
+        return byDoctor != 0 ? byDoctor : day.compareTo(other.day);
+    }
+}
@@ -0,0 +1,79 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Takes and gives back appointment slots on a doctor's day and hands out queue positions.
+ * <p>
+ * {@link DatabaseSlotLedger} works directly on the available_dates rows, while the shards of
+ * {@link BookingEngine} keep the counts in memory and flush them in batches.
+ */
+public interface SlotLedger {
+
+    /**
+     * Serializes the caller with every other booking of the day until its transaction ends,
+     * without taking a slot. Needed before checks that read the day's appointments.
+     *
+     * @param doctorDay the doctor and day to lock
+     */
+    void lock(DoctorDay doctorDay);
+
+    /**
+     * Locks animals until the transaction ends, so that bookings of the same animal with other
+     * doctors wait for each other. Needed before checks that read the animals' appointments.
+     *
+     * @param animalIds the animals to lock
+     */
+    void lockAnimals(Collection<Long> animalIds);
+
+    /**
+     * Takes one slot if the day exists and still has free capacity.
+     *
+     * @param doctorDay the doctor and day to book
+     * @return the queue position of the new appointment, or empty if the day is missing or full
+     */
+    Optional<Integer> reserve(DoctorDay doctorDay);
+
+    /**
+     * Takes up to the given number of slots on one day in a single step.
+     *
+     * @param doctorDay the doctor and day to book
+     * @param count the number of slots wanted
+     * @return the queue positions handed out in booking order; shorter than count when the day
+     * fills up, and empty when the day is missing or already full
+     */
+    List<Integer> reserve(DoctorDay doctorDay, int count);
+
+    /**
+     * Gives back one slot. The count never goes below zero. Under
+     * {@link AppointmentOrderPolicy#COMPACT} the later appointments of the day move up by one,
+     * or the day is renumbered if the position of the released appointment is not known.
+     *
+     * @param doctorDay the doctor and day to release
+     * @param appointmentOrder the queue position that is given back, may be null for old rows
+     */
+    void release(DoctorDay doctorDay, Integer appointmentOrder);
+
+    /**
+     * Gives back several slots of one day in a single step, once their appointments were moved
+     * away or deleted. The count never goes below zero. Under {@link AppointmentOrderPolicy#COMPACT}
+     * the remaining appointments of the day are renumbered without gaps.
+     *
+     * @param doctorDay the doctor and day to release
+     * @param count the number of slots given back
+     */
+    void releaseSlots(DoctorDay doctorDay, int count);
+
+    /**
+     * Moves one booking from one day to another. Nothing changes if the target day is missing or
+     * full, provided that the caller rolls back its transaction on an empty result.
+     *
+     * @param from the doctor and day the appointment leaves
+     * @param fromOrder the queue position the appointment had, may be null for old rows
+     * @param to the doctor and day the appointment moves to
+     * @return the queue position on the new day, or empty if the day is missing or full
+     */
+    Optional<Integer> move(DoctorDay from, Integer fromOrder, DoctorDay to);
+}
@@ -0,0 +1,169 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import ceksioglu.vet_management_sys.core.exception.AppointmentConflictException;
+import ceksioglu.vet_management_sys.repository.AppointmentRepository;
+import ceksioglu.vet_management_sys.repository.DoctorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Works out when appointments end and keeps the appointments of a doctor, and of an animal,
+ * from overlapping.
+ * <p>
+ * An appointment lasts the slot length of its doctor, or the default length for doctors
+ * without one, and its end is stored with it. Checks must run after the doctor's day was
+ * locked through the {@link SlotLedger}, so that two bookings of the same doctor cannot both
+ * pass. The checks lock the animals through the ledger as well, so that bookings of the same
+ * animal with two doctors, which lock different days or run on different booking shards, wait
+ * for each other. Exclusion constraints on the doctor's and the animal's appointment times
+ * reject any overlap that still reaches the database.
+ */
+@Component
+public class SlotScheduler {
+
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    private final AppointmentRepository appointmentRepository;
+    private final DoctorRepository doctorRepository;
+    private final int defaultSlotMinutes;
+
+    /**
+     * Constructor for SlotScheduler.
+     *
+     * @param appointmentRepository the appointment repository
+     * @param doctorRepository the doctor repository
+     * @param defaultSlotMinutes the appointment length of doctors without their own slot length
+     */
+    @Autowired
+    public SlotScheduler(AppointmentRepository appointmentRepository,
+                         DoctorRepository doctorRepository,
+                         @Value("${vet.appointment.slot-minutes:30}") int defaultSlotMinutes) {
+        this.appointmentRepository = appointmentRepository;
+        this.doctorRepository = doctorRepository;
+        this.defaultSlotMinutes = defaultSlotMinutes;
+    }
+
+    /**
+     * Computes the end of an appointment of a doctor.
+     *
+     * @param doctorId the doctor ID
+     * @param startDate the start of the appointment
+     * @return the exclusive end of the appointment
+     */
+    public Date slotEnd(Long doctorId, Date startDate) {
+        return slotEnd(startDate, doctorRepository.findSlotMinutesById(doctorId).orElse(defaultSlotMinutes));
+    }
+
+    /**
+     * Computes the end of an appointment with a known slot length.
+     *
+     * @param startDate the start of the appointment
+     * @param slotMinutes the slot length in minutes
+     * @return the exclusive end of the appointment
+     */
+    public Date slotEnd(Date startDate, int slotMinutes) {
+        return new Date(startDate.getTime() + slotMinutes * MINUTE_MILLIS);
+    }
+
+    /**
+     * Reads the slot lengths of several doctors with one query.
+     *
+     * @param doctorIds the doctor IDs
+     * @return the slot length of each existing doctor, the default one for doctors without their own
+     */
+    public Map<Long, Integer> slotMinutes(Collection<Long> doctorIds) {
+        Map<Long, Integer> slotMinutes = new HashMap<>();
+        doctorRepository.findSlotMinutesByIds(doctorIds).forEach(row ->
+                slotMinutes.put(row.getId(), row.getSlotMinutes() != null ? row.getSlotMinutes() : defaultSlotMinutes));
+        return slotMinutes;
+    }
+
+    /**
+     * Checks that neither the doctor nor the animal has another appointment in a time interval,
+     * with one query of two index seeks, after locking the animal until the end of the transaction.
+     *
+     * @param doctorId the doctor ID
+     * @param animalId the animal ID
+     * @param startDate the start of the appointment
+     * @param endDate the exclusive end of the appointment
+     * @param excludeId the ID of the appointment being moved, or null for a new one
+     * @param ledger the ledger the day was locked through, which locks the animal
+     * @throws AppointmentConflictException if the doctor or the animal is busy at that time
+     */
+    public void checkFree(Long doctorId, Long animalId, Date startDate, Date endDate, Long excludeId, SlotLedger ledger) {
+        ledger.lockAnimals(List.of(animalId));
+        int conflict = appointmentRepository.findConflict(doctorId, animalId, new Timestamp(startDate.getTime()),
+                new Timestamp(endDate.getTime()), excludeId != null ? excludeId : 0L, defaultSlotMinutes);
+        if (conflict == 1) {
+            throw new AppointmentConflictException(conflictMessage(AppointmentSchedule.Conflict.DOCTOR));
+        }
+        if (conflict == 2) {
+            throw new AppointmentConflictException(conflictMessage(AppointmentSchedule.Conflict.ANIMAL));
+        }
+    }
+
+    /**
+     * Reads the appointments around a doctor's day, of the doctor and of the given animals, into
+     * an in-memory schedule with two queries.
+     *
+     * @param doctorDay the doctor and day
+     * @param animalIds the animals to be booked on the day
+     * @param ledger the ledger the day was locked through, which locks the animals
+     * @return the schedule
+     */
+    public AppointmentSchedule loadDay(DoctorDay doctorDay, Collection<Long> animalIds, SlotLedger ledger) {
+        return loadDays(doctorDay.getDoctorId(), doctorDay.getDay(), doctorDay.getDay(), animalIds, ledger);
+    }
+
+    /**
+     * Reads the appointments around a range of a doctor's days, of the doctor and of the given
+     * animals, into an in-memory schedule with two queries. The animals are locked until the end
+     * of the transaction first.
+     *
+     * @param doctorId the doctor ID
+     * @param firstDay the first day of the range
+     * @param lastDay the last day of the range
+     * @param animalIds the animals to be booked in the range
+     * @param ledger the ledger the days were locked through, which locks the animals
+     * @return the schedule
+     */
+    public AppointmentSchedule loadDays(Long doctorId, LocalDate firstDay, LocalDate lastDay, Collection<Long> animalIds,
+                                        SlotLedger ledger) {
+        // Appointments of the previous day may run into the range, and the range's into the next day
+        Timestamp fromDate = Timestamp.valueOf(firstDay.minusDays(1).atStartOfDay());
+        Timestamp toDate = Timestamp.valueOf(lastDay.plusDays(2).atStartOfDay());
+
+        AppointmentSchedule schedule = new AppointmentSchedule();
+        appointmentRepository.findDoctorIntervals(doctorId, fromDate, toDate, defaultSlotMinutes)
+                .forEach(interval -> schedule.addDoctorInterval(doctorId,
+                        interval.getStartDate(), interval.getEndDate()));
+        if (!animalIds.isEmpty()) {
+            ledger.lockAnimals(animalIds);
+            appointmentRepository.findAnimalIntervals(animalIds, fromDate, toDate, defaultSlotMinutes)
+                    .forEach(interval -> schedule.addAnimalInterval(interval.getAnimalId(),
+                            interval.getStartDate(), interval.getEndDate()));
+        }
+        return schedule;
+    }
+
+    /**
+     * Explains a conflict found in a schedule.
+     *
+     * @param conflict who is busy
+     * @return the message
+     */
+    public String conflictMessage(AppointmentSchedule.Conflict conflict) {
+        return conflict == AppointmentSchedule.Conflict.DOCTOR
+                ? "Doctor already has an appointment at this time"
+                : "Animal already has an appointment at this time";
+    }
+}
@@ -0,0 +1,345 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.entity.Appointment;
+import ceksioglu.vet_management_sys.entity.WaitlistEntry;
+import ceksioglu.vet_management_sys.repository.AppointmentRepository;
+import ceksioglu.vet_management_sys.repository.WaitlistEntryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns waitlist entries into appointments when their doctor-day gets free capacity.
+ * <p>
+ * The promoter remembers which doctor-days have waiting entries. When a change to one of
+ * them is committed, e.g. a cancellation or a rescheduling away from the day, the day is
+ * queued once for a single worker thread. The worker takes the queued days in batches and
+ * promotes the oldest entries of each day first, taking as many slots as the day has free
+ * with one ledger call per page of entries. Entries whose time overlaps an appointment of the
+ * doctor or the animal are skipped and keep waiting until the next change of the day, while
+ * the later entries are read on until the free slots are used up. Bookings therefore never
+ * wait for promotions, and clients waiting for a full day poll their entry instead of retrying
+ * the booking endpoint. A day that changes while it is being promoted is queued again when the
+ * promotion is done. Entries of days that have passed are expired.
+ */
+@Slf4j
+@Component
+public class WaitlistPromoter {
+
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final DatabaseSlotLedger databaseSlotLedger;
+    private final BookingEngine bookingEngine;
+    private final SlotScheduler slotScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    private final Set<DoctorDay> waitingDays = ConcurrentHashMap.newKeySet();
+    private final Set<DoctorDay> queuedDays = ConcurrentHashMap.newKeySet();
+    // Days being promoted, mapped to whether they changed since the promotion was started
+    private final Map<DoctorDay, Boolean> inFlightDays = new ConcurrentHashMap<>();
+    private final BlockingQueue<DoctorDay> queue = new LinkedBlockingQueue<>();
+    private final Thread thread = new Thread(this::run, "waitlist-promoter");
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for WaitlistPromoter.
+     *
+     * @param waitlistEntryRepository the waitlist entry repository
+     * @param appointmentRepository the appointment repository
+     * @param databaseSlotLedger the slot ledger used when the booking engine is disabled
+     * @param bookingEngine the sharded booking engine
+     * @param slotScheduler computes appointment ends and checks them for overlaps
+     * @param transactionTemplate the transaction template used for each promotion
+     * @param batchSize the maximum number of days taken from the queue, and of entries read and
+     * promoted per day at once
+     */
+    @Autowired
+    public WaitlistPromoter(WaitlistEntryRepository waitlistEntryRepository,
+                            AppointmentRepository appointmentRepository,
+                            DatabaseSlotLedger databaseSlotLedger,
+                            BookingEngine bookingEngine,
+                            SlotScheduler slotScheduler,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${vet.waitlist.batch-size:50}") int batchSize) {
+        this.waitlistEntryRepository = waitlistEntryRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.databaseSlotLedger = databaseSlotLedger;
+        this.bookingEngine = bookingEngine;
+        this.slotScheduler = slotScheduler;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Loads the days with waiting entries and starts the worker. Every such day is queued once,
+     * so capacity freed while the application was down is handed out as well. Days that passed
+     * in the meantime are expired first.
+     */
+    @PostConstruct
+    public void start() {
+        expirePastDays();
+        waitlistEntryRepository.findDays(WaitlistEntry.Status.WAITING).forEach(row ->
+                waitingDays.add(new DoctorDay(row.getDoctorId(), DateUtils.toLocalDate(row.getDay()))));
+        waitingDays.forEach(this::enqueue);
+        thread.start();
+    }
+
+    /**
+     * Stops the worker after the days already queued have been processed.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Expires the waiting entries of the days that have passed and forgets those days.
+     */
+    @Scheduled(initialDelayString = "${vet.waitlist.expire-interval:PT1H}",
+            fixedDelayString = "${vet.waitlist.expire-interval:PT1H}")
+    public void expirePastDays() {
+        LocalDate today = LocalDate.now();
+        int expired = waitlistEntryRepository.expireBefore(DateUtils.toDate(today));
+        waitingDays.removeIf(doctorDay -> doctorDay.getDay().isBefore(today));
+        if (expired > 0) {
+            log.info("Expired {} waitlist entries of past days", expired);
+        }
+    }
+
+    /**
+     * Registers a committed waitlist entry and queues its day, in case the day has free capacity
+     * again by now.
+     *
+     * @param doctorDay the doctor and day of the entry
+     */
+    public void entryAdded(DoctorDay doctorDay) {
+        waitingDays.add(doctorDay);
+        dayChanged(doctorDay);
+    }
+
+    /**
+     * Queues a changed day that has waiting entries once the change is committed.
+     *
+     * @param event the change event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDoctorDayChanged(DoctorDayChangedEvent event) {
+        if (event.getDay() == null) {
+            waitingDays.stream()
+                    .filter(doctorDay -> doctorDay.getDoctorId().equals(event.getDoctorId()))
+                    .forEach(this::dayChanged);
+            return;
+        }
+        DoctorDay doctorDay = new DoctorDay(event.getDoctorId(), event.getDay());
+        if (waitingDays.contains(doctorDay)) {
+            dayChanged(doctorDay);
+        }
+    }
+
+    /**
+     * Queues a changed day, or marks it to be queued again by finish() if it is being promoted,
+     * as the promotion may have read the day before the change.
+     */
+    private void dayChanged(DoctorDay doctorDay) {
+        if (inFlightDays.computeIfPresent(doctorDay, (key, changed) -> Boolean.TRUE) == null) {
+            enqueue(doctorDay);
+        }
+    }
+
+    private void enqueue(DoctorDay doctorDay) {
+        if (queuedDays.add(doctorDay)) {
+            queue.add(doctorDay);
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            List<DoctorDay> batch = new ArrayList<>(batchSize);
+            try {
+                DoctorDay first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            // A change committed from here on is picked up by finish()
+            batch.forEach(doctorDay -> inFlightDays.put(doctorDay, Boolean.FALSE));
+            batch.forEach(queuedDays::remove);
+            process(batch);
+        }
+    }
+
+    /**
+     * Promotes the entries of a batch of days. On the booking engine the days of different
+     * shards run in parallel; against the database every day runs in its own transaction.
+     */
+    private void process(List<DoctorDay> batch) {
+        if (bookingEngine.isEnabled()) {
+            List<CompletableFuture<Outcome>> futures = new ArrayList<>(batch.size());
+            batch.forEach(doctorDay -> futures.add(bookingEngine.submit(doctorDay.getDoctorId(),
+                    ledger -> promote(doctorDay, ledger))));
+            for (int i = 0; i < batch.size(); i++) {
+                DoctorDay doctorDay = batch.get(i);
+                futures.get(i).whenComplete((outcome, error) -> finish(doctorDay, outcome, error));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .handle((result, error) -> null)
+                    .join();
+            return;
+        }
+        for (DoctorDay doctorDay : batch) {
+            try {
+                finish(doctorDay, transactionTemplate.execute(status -> promote(doctorDay, databaseSlotLedger)), null);
+            } catch (RuntimeException e) {
+                finish(doctorDay, null, e);
+            }
+        }
+    }
+
+    /**
+     * Keeps a day as waiting while entries are left and queues it again if more entries may be
+     * promoted or the day changed during the promotion.
+     */
+    private void finish(DoctorDay doctorDay, Outcome outcome, Throwable error) {
+        boolean changed = Boolean.TRUE.equals(inFlightDays.remove(doctorDay));
+        if (error != null) {
+            // Tried again with the next change of the day
+            log.error("Could not promote waitlist of doctor {} on {}", doctorDay.getDoctorId(), doctorDay.getDay(), error);
+        } else if (outcome == Outcome.EMPTY && !changed) {
+            waitingDays.remove(doctorDay);
+            return;
+        }
+        if (changed || outcome == Outcome.MORE) {
+            enqueue(doctorDay);
+        }
+    }
+
+    /**
+     * Promotes the oldest waiting entries of a day that do not overlap other appointments, as
+     * far as its free capacity allows. The entries are read in pages by ID, and skipped entries
+     * do not stop the promotion of later ones. Must run inside a transaction.
+     *
+     * @param doctorDay the doctor and day
+     * @param ledger the slot ledger
+     * @return what is left on the waitlist of the day
+     */
+    private Outcome promote(DoctorDay doctorDay, SlotLedger ledger) {
+        if (doctorDay.getDay().isBefore(LocalDate.now())) {
+            // Left to expirePastDays()
+            return Outcome.EMPTY;
+        }
+        Integer slotMinutes = null;
+        boolean skipped = false;
+        int promoted = 0;
+        long afterId = 0L;
+        Outcome outcome;
+        while (true) {
+            List<WaitlistEntry> entries = waitlistEntryRepository.findByDoctorIdAndWaitlistDayAndStatusAndIdGreaterThanOrderById(
+                    doctorDay.getDoctorId(), DateUtils.toDate(doctorDay.getDay()), WaitlistEntry.Status.WAITING,
+                    afterId, Limit.of(batchSize));
+            if (entries.isEmpty()) {
+                outcome = skipped ? Outcome.FULL : Outcome.EMPTY;
+                break;
+            }
+            if (slotMinutes == null) {
+                ledger.lock(doctorDay);
+                slotMinutes = slotScheduler.slotMinutes(List.of(doctorDay.getDoctorId())).get(doctorDay.getDoctorId());
+                if (slotMinutes == null) {
+                    return Outcome.EMPTY;
+                }
+            }
+
+            // Appointments promoted from earlier pages are already inserted, so the schedule has them
+            AppointmentSchedule schedule = slotScheduler.loadDay(doctorDay,
+                    entries.stream().map(entry -> entry.getAnimal().getId()).distinct().toList(), ledger);
+            List<WaitlistEntry> freeEntries = new ArrayList<>(entries.size());
+            List<Date> endDates = new ArrayList<>(entries.size());
+            for (WaitlistEntry entry : entries) {
+                Date endDate = slotScheduler.slotEnd(entry.getAppointmentDate(), slotMinutes);
+                if (schedule.book(doctorDay.getDoctorId(), entry.getAnimal().getId(), entry.getAppointmentDate(), endDate)
+                        == AppointmentSchedule.Conflict.NONE) {
+                    freeEntries.add(entry);
+                    endDates.add(endDate);
+                } else {
+                    skipped = true;
+                }
+            }
+
+            List<Integer> appointmentOrders = freeEntries.isEmpty()
+                    ? List.of()
+                    : ledger.reserve(doctorDay, freeEntries.size());
+            for (int i = 0; i < appointmentOrders.size(); i++) {
+                WaitlistEntry entry = freeEntries.get(i);
+                Appointment appointment = appointmentRepository.save(new Appointment(null, entry.getAppointmentDate(),
+                        endDates.get(i), appointmentOrders.get(i), entry.getDoctor(), entry.getAnimal()));
+                entry.setStatus(WaitlistEntry.Status.PROMOTED);
+                entry.setAppointmentId(appointment.getId());
+            }
+            waitlistEntryRepository.saveAll(freeEntries.subList(0, appointmentOrders.size()));
+            promoted += appointmentOrders.size();
+
+            if (appointmentOrders.size() < freeEntries.size()) {
+                outcome = Outcome.FULL;
+                break;
+            }
+            if (entries.size() < batchSize) {
+                outcome = skipped ? Outcome.FULL : Outcome.EMPTY;
+                break;
+            }
+            if (promoted >= batchSize) {
+                outcome = Outcome.MORE;
+                break;
+            }
+            afterId = entries.get(entries.size() - 1).getId();
+        }
+
+        if (promoted > 0) {
+            log.info("Promoted {} waitlist entries of doctor {} on {}", promoted,
+                    doctorDay.getDoctorId(), doctorDay.getDay());
+        }
+        return outcome;
+    }
+
+    /**
+     * What is left on the waitlist of a day after a promotion.
+     */
+    private enum Outcome {
+        /** No entries are waiting any more. */
+        EMPTY,
+        /** Entries are waiting for the day to get free capacity again, or for an overlapping appointment to go. */
+        FULL,
+        /** A batch of entries was promoted and more entries may be waiting. */
+        MORE
+    }
+}
@@ -0,0 +1,251 @@
+package ceksioglu.vet_management_sys.core.cache;
+
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.entity.Vaccine;
+import ceksioglu.vet_management_sys.repository.VaccineRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps the active vaccine protections of every animal in memory for the duplicate check of
+ * vaccine writes.
+ * <p>
+ * Protections are grouped by animal and vaccine catalog key, and also kept in a set ordered by
+ * the end of protection, from which the ones that have ended are dropped before every lookup.
+ * The index is loaded page by page in the background after startup; until it is complete,
+ * lookups ask the database. Vaccines saved, updated or deleted during the load are marked, so
+ * that a page read before the change cannot put the old state back.
+ */
+@Slf4j
+@Component
+public class ActiveVaccineIndex {
+
+    private static final Comparator<Protection> BY_EXPIRY = Comparator
+            .comparing((Protection protection) -> protection.finishDate)
+            .thenComparing(protection -> protection.vaccineId);
+
+    private final VaccineRepository vaccineRepository;
+    private final int loadBatchSize;
+    private final Map<Key, List<Protection>> protections = new HashMap<>();
+    private final Map<Long, Protection> byVaccine = new HashMap<>();
+    private final TreeSet<Protection> byExpiry = new TreeSet<>(BY_EXPIRY);
+    private final Thread loader = new Thread(this::load, "active-vaccine-index-loader");
+    private Set<Long> changedWhileLoading = new HashSet<>();
+    private volatile boolean loaded;
+
+    /**
+     * Constructor for ActiveVaccineIndex.
+     *
+     * @param vaccineRepository the vaccine repository
+     * @param loadBatchSize the number of vaccines read per page while loading
+     */
+    @Autowired
+    public ActiveVaccineIndex(VaccineRepository vaccineRepository,
+                              @Value("${vet.vaccine-index.load-batch-size:5000}") int loadBatchSize) {
+        this.vaccineRepository = vaccineRepository;
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    /**
+     * Starts loading the active protections in the background.
+     */
+    @PostConstruct
+    public void start() {
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Checks if an animal has an active protection of a vaccine.
+     *
+     * @param animalId the animal ID
+     * @param catalogId the catalog ID of the vaccine
+     * @return true if a vaccine of the product protects the animal beyond today
+     */
+    public boolean isActive(Long animalId, Integer catalogId) {
+        if (!loaded) {
+            return vaccineRepository.existsByAnimalIdAndCatalogIdAndProtectionFinishDateAfter(animalId, catalogId, new Date());
+        }
+        synchronized (this) {
+            dropExpired();
+            return protections.containsKey(new Key(animalId, catalogId));
+        }
+    }
+
+    /**
+     * Checks for many (animal, vaccine product) pairs at once whether the animal has an active
+     * protection of the product. Until the index is loaded, all pairs are checked by one query.
+     *
+     * @param animalIds the animal IDs of the pairs
+     * @param catalogIds the catalog IDs of the pairs, in the same order
+     * @return for each pair, true if a vaccine of the product protects the animal beyond today
+     */
+    public boolean[] areActive(List<Long> animalIds, List<Integer> catalogIds) {
+        boolean[] active = new boolean[animalIds.size()];
+        if (!loaded) {
+            Set<Key> activeKeys = new HashSet<>();
+            for (Object[] row : vaccineRepository.findActivePairs(animalIds.toArray(new Long[0]),
+                    catalogIds.toArray(new Integer[0]), LocalDate.now())) {
+                activeKeys.add(new Key(((Number) row[0]).longValue(), ((Number) row[1]).intValue()));
+            }
+            for (int i = 0; i < active.length; i++) {
+                active[i] = activeKeys.contains(new Key(animalIds.get(i), catalogIds.get(i)));
+            }
+            return active;
+        }
+        synchronized (this) {
+            dropExpired();
+            for (int i = 0; i < active.length; i++) {
+                active[i] = protections.containsKey(new Key(animalIds.get(i), catalogIds.get(i)));
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Records a saved or updated vaccine. Must be called after the write is committed.
+     *
+     * @param vaccine the vaccine
+     */
+    public synchronized void put(Vaccine vaccine) {
+        markChanged(vaccine.getId());
+        unlink(byVaccine.get(vaccine.getId()));
+        add(new Protection(vaccine.getId(), new Key(vaccine.getAnimal().getId(), vaccine.getCatalog().getId()),
+                DateUtils.toLocalDate(vaccine.getProtectionFinishDate())), LocalDate.now());
+    }
+
+    /**
+     * Records vaccines inserted together. Must be called after the insert is committed.
+     *
+     * @param vaccines the vaccines
+     */
+    public synchronized void putAll(List<Vaccine> vaccines) {
+        for (Vaccine vaccine : vaccines) {
+            put(vaccine);
+        }
+    }
+
+    /**
+     * Forgets a deleted vaccine. Must be called after the delete is committed.
+     *
+     * @param vaccineId the vaccine ID
+     */
+    public synchronized void remove(Long vaccineId) {
+        markChanged(vaccineId);
+        unlink(byVaccine.get(vaccineId));
+    }
+
+    /**
+     * Reads the active protections page by page and marks the index as complete.
+     */
+    private void load() {
+        try {
+            long startNanos = System.nanoTime();
+            LocalDate today = LocalDate.now();
+            LocalDate afterDate = today;
+            Long afterId = 0L;
+            int count = 0;
+            while (true) {
+                List<Object[]> page = vaccineRepository.findActiveAfter(today, afterDate, afterId, loadBatchSize);
+                List<Protection> loadedPage = new ArrayList<>(page.size());
+                for (Object[] row : page) {
+                    loadedPage.add(new Protection(((Number) row[0]).longValue(),
+                            new Key(((Number) row[1]).longValue(), ((Number) row[2]).intValue()),
+                            DateUtils.toLocalDate((Date) row[3])));
+                }
+                synchronized (this) {
+                    for (Protection protection : loadedPage) {
+                        if (!changedWhileLoading.contains(protection.vaccineId)) {
+                            add(protection, today);
+                        }
+                    }
+                }
+                count += page.size();
+                if (page.size() < loadBatchSize) {
+                    break;
+                }
+                Protection last = loadedPage.get(loadedPage.size() - 1);
+                afterDate = last.finishDate;
+                afterId = last.vaccineId;
+            }
+            synchronized (this) {
+                changedWhileLoading = null;
+                loaded = true;
+            }
+            log.info("Active vaccine index loaded {} protections in {} ms", count, (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedWhileLoading = null;
+            }
+            log.error("Active vaccine index could not be loaded, duplicate checks stay on the database", e);
+        }
+    }
+
+    private void markChanged(Long vaccineId) {
+        if (changedWhileLoading != null) {
+            changedWhileLoading.add(vaccineId);
+        }
+    }
+
+    private void add(Protection protection, LocalDate today) {
+        if (!protection.finishDate.isAfter(today)) {
+            return;
+        }
+        protections.computeIfAbsent(protection.key, key -> new ArrayList<>(1)).add(protection);
+        byVaccine.put(protection.vaccineId, protection);
+        byExpiry.add(protection);
+    }
+
+    private void unlink(Protection protection) {
+        if (protection == null) {
+            return;
+        }
+        List<Protection> candidates = protections.get(protection.key);
+        candidates.remove(protection);
+        if (candidates.isEmpty()) {
+            protections.remove(protection.key);
+        }
+        byVaccine.remove(protection.vaccineId);
+        byExpiry.remove(protection);
+    }
+
+    /**
+     * Drops the protections that ended today or earlier, oldest first.
+     */
+    private void dropExpired() {
+        LocalDate today = LocalDate.now();
+        while (!byExpiry.isEmpty() && !byExpiry.first().finishDate.isAfter(today)) {
+            unlink(byExpiry.first());
+        }
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class Key {
+        private final long animalId;
+        private final int catalogId;
+    }
+
+    @AllArgsConstructor
+    private static class Protection {
+        private final Long vaccineId;
+        private final Key key;
+        private final LocalDate finishDate;
+    }
+}
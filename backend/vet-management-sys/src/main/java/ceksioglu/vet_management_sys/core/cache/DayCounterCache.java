@@ -0,0 +1,144 @@
+package ceksioglu.vet_management_sys.core.cache;
+
+import ceksioglu.vet_management_sys.core.booking.DoctorDay;
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.DayCounterCacheStatsDTO;
+import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the appointment count and the last queue position of recently polled doctor-days in
+ * memory, in front of the count and order endpoints.
+ * <p>
+ * Both values of a day are read with one query and kept together, least recently used days are
+ * dropped first. A day is dropped once a change to it is committed, and every entry expires
+ * after a fixed time in case the row was changed outside of the application. Every drop bumps
+ * a generation counter, and a loaded day is only stored if no drop happened while it was being
+ * read, so a read that raced with a booking cannot put a stale count back.
+ */
+@Component
+public class DayCounterCache {
+
+    private final AvailableDateRepository availableDateRepository;
+    private final Map<DoctorDay, Entry> entries;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long expirations;
+
+    /**
+     * Constructor for DayCounterCache.
+     *
+     * @param availableDateRepository the available date repository
+     * @param maxEntries the maximum number of doctor-days kept
+     * @param ttl how long a doctor-day is kept without a change
+     */
+    @Autowired
+    public DayCounterCache(AvailableDateRepository availableDateRepository,
+                           @Value("${vet.day-counter-cache.max-entries:10000}") int maxEntries,
+                           @Value("${vet.day-counter-cache.ttl:30s}") Duration ttl) {
+        this.availableDateRepository = availableDateRepository;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DoctorDay, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Returns the counters of a doctor-day, reading and caching them on a miss.
+     * Days the doctor is not available on are not cached.
+     *
+     * @param doctorDay the doctor and day
+     * @return the counters, or empty if the doctor is not available on the day
+     */
+    public Optional<DayCounters> get(DoctorDay doctorDay) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(doctorDay);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedAt < ttlNanos) {
+                    hits++;
+                    return Optional.of(entry.counters);
+                }
+                entries.remove(doctorDay);
+                expirations++;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        Optional<DayCounters> counters = availableDateRepository
+                .findCounters(doctorDay.getDoctorId(), DateUtils.toDate(doctorDay.getDay()))
+                .map(row -> new DayCounters(row.getCurrentAppointmentCount(), row.getLastAppointmentOrder()));
+        if (counters.isPresent()) {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    entries.put(doctorDay, new Entry(counters.get(), System.nanoTime()));
+                }
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Reads the hit and miss counts since startup, to size the cache.
+     *
+     * @return the cache statistics
+     */
+    public synchronized DayCounterCacheStatsDTO getStats() {
+        long requests = hits + misses;
+        return new DayCounterCacheStatsDTO(entries.size(), maxEntries, hits, misses,
+                requests == 0 ? 0.0 : (double) hits / requests, invalidations, expirations);
+    }
+
+    /**
+     * Drops a changed day, or all days of the doctor, once the change is committed.
+     *
+     * @param event the change event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDoctorDayChanged(DoctorDayChangedEvent event) {
+        generation++;
+        int before = entries.size();
+        if (event.getDay() == null) {
+            entries.keySet().removeIf(doctorDay -> doctorDay.getDoctorId().equals(event.getDoctorId()));
+        } else {
+            entries.remove(new DoctorDay(event.getDoctorId(), event.getDay()));
+        }
+        invalidations += before - entries.size();
+    }
+
+    /**
+     * Appointment count and last queue position of one doctor-day.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class DayCounters {
+        private final Integer currentAppointmentCount;
+        private final Integer lastAppointmentOrder;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final DayCounters counters;
+        private final long loadedAt;
+    }
+}
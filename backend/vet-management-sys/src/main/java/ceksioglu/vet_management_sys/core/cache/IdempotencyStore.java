@@ -0,0 +1,162 @@
+package ceksioglu.vet_management_sys.core.cache;
+
+import ceksioglu.vet_management_sys.core.exception.IdempotencyConflictException;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the results of requests sent with an {@code Idempotency-Key} header, so that a
+ * client retrying a create request gets the first result back instead of creating it twice.
+ * <p>
+ * Results are kept in memory for a fixed time, up to a maximum number of keys, oldest first
+ * out. A retry that arrives while the first request is still running waits for its result.
+ * Only successful results are kept; when the first request fails, its waiting retries fail
+ * with the same error and the next retry runs the request again.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final Map<Key, Entry> entries;
+    private final long ttlNanos;
+    private final Duration waitTimeout;
+
+    /**
+     * Constructor for IdempotencyStore.
+     *
+     * @param maxEntries the maximum number of keys kept
+     * @param ttl how long a result is kept
+     * @param waitTimeout how long a retry waits for the first request to finish
+     */
+    @Autowired
+    public IdempotencyStore(@Value("${vet.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${vet.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${vet.idempotency.wait-timeout:30s}") Duration waitTimeout) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.ttlNanos = ttl.toNanos();
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * Runs a request once per idempotency key, or returns the result of its first run.
+     *
+     * @param scope the endpoint the key belongs to, keys of different endpoints never collide
+     * @param idempotencyKey the key sent by the client, or null to run the request without a key
+     * @param request the request body, a retry must send an equal one
+     * @param action runs the request
+     * @param <T> the result type
+     * @return the result of the first run
+     * @throws InvalidRequestException if the key is blank or too long
+     * @throws IdempotencyConflictException if the key was used with a different request, or the first
+     * request did not finish in time
+     */
+    public <T> T execute(String scope, String idempotencyKey, Object request, Supplier<T> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException("Idempotency key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        Key key = new Key(scope, idempotencyKey);
+        Entry entry;
+        boolean first = false;
+        synchronized (this) {
+            long now = System.nanoTime();
+            removeExpired(now);
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(request, now + ttlNanos, new CompletableFuture<>());
+                entries.put(key, entry);
+                first = true;
+            }
+        }
+
+        if (!first) {
+            if (!Objects.equals(entry.request, request)) {
+                throw new IdempotencyConflictException("Idempotency key was already used with a different request");
+            }
+            @SuppressWarnings("unchecked")
+            T result = (T) await(entry);
+            return result;
+        }
+
+        try {
+            T result = action.get();
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Object await(Entry entry) {
+        try {
+            return entry.result.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this idempotency key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("A request with this idempotency key is still in progress");
+        }
+    }
+
+    /**
+     * Drops expired entries. Entries are kept in insertion order and all live equally long,
+     * so the expired ones are always at the front.
+     */
+    private void removeExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiresAt - now > 0) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class Key {
+        private final String scope;
+        private final String idempotencyKey;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final Object request;
+        private final long expiresAt;
+        private final CompletableFuture<Object> result;
+    }
+}
@@ -0,0 +1,98 @@
+package ceksioglu.vet_management_sys.core.cache;
+
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.dto.OccupancyCalendarDTO;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps recently requested occupancy calendars in memory.
+ * <p>
+ * A calendar is dropped once a change to one of its doctor-days is committed. Every drop also
+ * bumps a generation counter, and a calendar is only stored if no drop happened while it was
+ * being loaded, so a load that raced with a booking cannot put stale counts back.
+ */
+@Component
+public class OccupancyCalendarCache {
+
+    private final Map<Range, OccupancyCalendarDTO> calendars;
+    private long generation;
+
+    /**
+     * Constructor for OccupancyCalendarCache.
+     *
+     * @param cacheSize the maximum number of calendars kept, least recently used ones are dropped first
+     */
+    @Autowired
+    public OccupancyCalendarCache(@Value("${vet.calendar.cache-size:128}") int cacheSize) {
+        this.calendars = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Range, OccupancyCalendarDTO> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached calendar of a date range, loading and caching it on a miss.
+     *
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @param loader loads the calendar from the database
+     * @return the calendar
+     */
+    public OccupancyCalendarDTO get(LocalDate startDate, LocalDate endDate, Supplier<OccupancyCalendarDTO> loader) {
+        Range range = new Range(startDate, endDate);
+        long loadGeneration;
+        synchronized (this) {
+            OccupancyCalendarDTO calendar = calendars.get(range);
+            if (calendar != null) {
+                return calendar;
+            }
+            loadGeneration = generation;
+        }
+
+        OccupancyCalendarDTO calendar = loader.get();
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                calendars.put(range, calendar);
+            }
+        }
+        return calendar;
+    }
+
+    /**
+     * Drops the calendars that contain a changed day once the change is committed.
+     *
+     * @param event the change event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDoctorDayChanged(DoctorDayChangedEvent event) {
+        generation++;
+        if (event.getDay() == null) {
+            calendars.clear();
+            return;
+        }
+        calendars.keySet().removeIf(range -> range.contains(event.getDay()));
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class Range {
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+
+        boolean contains(LocalDate day) {
+            return !day.isBefore(startDate) && !day.isAfter(endDate);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package ceksioglu.vet_management_sys.core.cache;
+
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.OpenSlotDTO;
+import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the doctor-days with free appointment capacity in memory for the earliest slot search.
+ * <p>
+ * Every doctor with open days has an immutable pair of sorted arrays, the epoch days and their
+ * free counts, which searches read without locking. A search binary searches each candidate
+ * doctor to the start of the range and merges the doctors by day with a heap of packed longs.
+ * <p>
+ * Open days from today onward are loaded at startup. After a change to a doctor-day is
+ * committed, the day, or all days of the doctor, is noted and the doctor is queued once for a
+ * single worker thread, so the thread that committed the change does not wait for the index.
+ * The worker reads all noted days of a doctor with one query and replaces the doctor's arrays;
+ * changes noted during the read queue the doctor again, so stale counts cannot stay. Days that
+ * have passed are dropped on the configured schedule.
+ */
+@Slf4j
+@Component
+public class OpenSlotIndex {
+
+    private final AvailableDateRepository availableDateRepository;
+    private final Map<Long, DoctorSlots> doctors = new ConcurrentHashMap<>();
+    private final Map<Long, PendingChange> pendingChanges = new ConcurrentHashMap<>();
+    private final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+    private final Thread thread = new Thread(this::run, "open-slot-index");
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for OpenSlotIndex.
+     *
+     * @param availableDateRepository the available date repository
+     */
+    @Autowired
+    public OpenSlotIndex(AvailableDateRepository availableDateRepository) {
+        this.availableDateRepository = availableDateRepository;
+    }
+
+    /**
+     * Loads the open days from today onward and starts the worker.
+     */
+    @PostConstruct
+    public void load() {
+        List<AvailableDateRepository.DayCapacity> rows =
+                availableDateRepository.findOpenCapacityFrom(DateUtils.toDate(LocalDate.now()));
+        int start = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i == rows.size() || !rows.get(i).getDoctorId().equals(rows.get(start).getDoctorId())) {
+                DoctorSlots slots = DoctorSlots.of(rows.subList(start, i));
+                doctors.put(slots.doctorId, slots);
+                start = i;
+            }
+        }
+        log.info("Open slot index loaded {} days of {} doctors", rows.size(), doctors.size());
+        thread.start();
+    }
+
+    /**
+     * Stops the worker after the doctors already queued have been refreshed.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Finds the earliest doctor-days with free capacity in a date range, ordered by day and doctor ID.
+     *
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @param count the maximum number of doctor-days returned
+     * @param doctorId only this doctor's days if not null
+     * @param city only days of doctors in this city if not null, ignoring case
+     * @return the open doctor-days
+     */
+    public List<OpenSlotDTO> findFirst(LocalDate startDate, LocalDate endDate, int count, Long doctorId, String city) {
+        int startDay = (int) startDate.toEpochDay();
+        int endDay = (int) endDate.toEpochDay();
+
+        DoctorSlots[] candidates = candidates(doctorId, city);
+        int[] positions = new int[candidates.length];
+        long[] heap = new long[candidates.length];
+        int heapSize = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            int position = Arrays.binarySearch(candidates[i].days, startDay);
+            positions[i] = position >= 0 ? position : -position - 1;
+            if (positions[i] < candidates[i].days.length && candidates[i].days[positions[i]] <= endDay) {
+                heap[heapSize] = pack(candidates[i].days[positions[i]] - startDay, i);
+                siftUp(heap, heapSize++);
+            }
+        }
+
+        List<OpenSlotDTO> slots = new ArrayList<>(Math.min(count, 16));
+        while (heapSize > 0 && slots.size() < count) {
+            int candidate = (int) heap[0];
+            DoctorSlots doctor = candidates[candidate];
+            int position = positions[candidate]++;
+            slots.add(new OpenSlotDTO(doctor.doctorId, doctor.city, LocalDate.ofEpochDay(doctor.days[position]),
+                    doctor.freeCounts[position]));
+            if (position + 1 < doctor.days.length && doctor.days[position + 1] <= endDay) {
+                heap[0] = pack(doctor.days[position + 1] - startDay, candidate);
+            } else {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heapSize);
+        }
+        return slots;
+    }
+
+    /**
+     * Notes a changed day, or all days of the doctor, to be read again by the worker once the
+     * change is committed.
+     *
+     * @param event the change event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDoctorDayChanged(DoctorDayChangedEvent event) {
+        boolean[] added = new boolean[1];
+        pendingChanges.compute(event.getDoctorId(), (doctorId, change) -> {
+            if (change == null) {
+                change = new PendingChange();
+                added[0] = true;
+            }
+            change.add(event.getDay());
+            return change;
+        });
+        if (added[0]) {
+            queue.add(event.getDoctorId());
+        }
+    }
+
+    /**
+     * Drops the days that have passed.
+     */
+    @Scheduled(initialDelayString = "${vet.open-slots.prune-interval:PT1H}",
+            fixedDelayString = "${vet.open-slots.prune-interval:PT1H}")
+    public void prune() {
+        int today = (int) LocalDate.now().toEpochDay();
+        doctors.keySet().forEach(doctorId -> doctors.computeIfPresent(doctorId, (key, slots) -> slots.from(today)));
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            Long doctorId;
+            try {
+                doctorId = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (doctorId == null) {
+                continue;
+            }
+            // A change noted from here on queues the doctor again
+            PendingChange change = pendingChanges.remove(doctorId);
+            try {
+                refresh(doctorId, change);
+            } catch (RuntimeException e) {
+                // Read again with the next change of the doctor
+                log.error("Could not refresh the open slots of doctor {}", doctorId, e);
+            }
+        }
+    }
+
+    private void refresh(Long doctorId, PendingChange change) {
+        LocalDate today = LocalDate.now();
+        if (change.allDays) {
+            List<AvailableDateRepository.DayCapacity> rows = availableDateRepository
+                    .findOpenCapacityByDoctorIdFrom(doctorId, DateUtils.toDate(today));
+            doctors.compute(doctorId, (key, current) -> rows.isEmpty() ? null : DoctorSlots.of(rows));
+            return;
+        }
+        List<Date> days = change.days.stream().filter(day -> !day.isBefore(today)).map(DateUtils::toDate).toList();
+        if (days.isEmpty()) {
+            return;
+        }
+        List<AvailableDateRepository.DayCapacity> rows = availableDateRepository.findOpenCapacity(doctorId, days);
+        doctors.compute(doctorId, (key, current) -> {
+            DoctorSlots slots = current;
+            for (Date day : days) {
+                slots = slots == null ? null : slots.without((int) DateUtils.toLocalDate(day).toEpochDay());
+            }
+            if (!rows.isEmpty()) {
+                DoctorSlots changed = DoctorSlots.of(rows);
+                slots = slots == null ? changed : slots.with(changed);
+            }
+            return slots == null || slots.days.length == 0 ? null : slots;
+        });
+    }
+
+    private DoctorSlots[] candidates(Long doctorId, String city) {
+        if (doctorId != null) {
+            DoctorSlots slots = doctors.get(doctorId);
+            return slots != null && (city == null || city.equalsIgnoreCase(slots.city))
+                    ? new DoctorSlots[]{slots}
+                    : new DoctorSlots[0];
+        }
+        return doctors.values().stream()
+                .filter(slots -> city == null || city.equalsIgnoreCase(slots.city))
+                .sorted(Comparator.comparing(slots -> slots.doctorId))
+                .toArray(DoctorSlots[]::new);
+    }
+
+    /**
+     * Packs a day offset and a candidate index into one heap entry that orders by day, then by
+     * candidate, i.e. by doctor ID.
+     */
+    private static long pack(int dayOffset, int candidate) {
+        return ((long) dayOffset << 32) | candidate;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        long entry = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= entry) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = entry;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        if (size == 0) {
+            return;
+        }
+        long entry = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (entry <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = entry;
+    }
+
+    /**
+     * The open days of one doctor, sorted by epoch day. Never changed once built.
+     */
+    private static final class DoctorSlots {
+        private final Long doctorId;
+        private final String city;
+        private final int[] days;
+        private final int[] freeCounts;
+
+        private DoctorSlots(Long doctorId, String city, int[] days, int[] freeCounts) {
+            this.doctorId = doctorId;
+            this.city = city;
+            this.days = days;
+            this.freeCounts = freeCounts;
+        }
+
+        /**
+         * Builds the slots of one doctor from rows ordered by day. Duplicate rows of a day are summed.
+         */
+        static DoctorSlots of(List<AvailableDateRepository.DayCapacity> rows) {
+            int[] days = new int[rows.size()];
+            int[] freeCounts = new int[rows.size()];
+            int size = 0;
+            for (AvailableDateRepository.DayCapacity row : rows) {
+                int day = (int) DateUtils.toLocalDate(row.getDay()).toEpochDay();
+                if (size > 0 && days[size - 1] == day) {
+                    freeCounts[size - 1] += row.getFreeCount();
+                } else {
+                    days[size] = day;
+                    freeCounts[size++] = row.getFreeCount();
+                }
+            }
+            return new DoctorSlots(rows.get(0).getDoctorId(), rows.get(0).getCity(),
+                    Arrays.copyOf(days, size), Arrays.copyOf(freeCounts, size));
+        }
+
+        /**
+         * Returns these slots with the days of other slots of the doctor added or replaced.
+         */
+        DoctorSlots with(DoctorSlots other) {
+            int[] newDays = new int[days.length + other.days.length];
+            int[] newFreeCounts = new int[newDays.length];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < days.length || j < other.days.length) {
+                if (j == other.days.length || (i < days.length && days[i] < other.days[j])) {
+                    newDays[size] = days[i];
+                    newFreeCounts[size++] = freeCounts[i++];
+                } else {
+                    if (i < days.length && days[i] == other.days[j]) {
+                        i++;
+                    }
+                    newDays[size] = other.days[j];
+                    newFreeCounts[size++] = other.freeCounts[j++];
+                }
+            }
+            return new DoctorSlots(doctorId, other.city, Arrays.copyOf(newDays, size), Arrays.copyOf(newFreeCounts, size));
+        }
+
+        DoctorSlots without(int day) {
+            int position = Arrays.binarySearch(days, day);
+            if (position < 0) {
+                return this;
+            }
+            int[] newDays = new int[days.length - 1];
+            int[] newFreeCounts = new int[days.length - 1];
+            System.arraycopy(days, 0, newDays, 0, position);
+            System.arraycopy(freeCounts, 0, newFreeCounts, 0, position);
+            System.arraycopy(days, position + 1, newDays, position, days.length - position - 1);
+            System.arraycopy(freeCounts, position + 1, newFreeCounts, position, days.length - position - 1);
+            return new DoctorSlots(doctorId, city, newDays, newFreeCounts);
+        }
+
+        /**
+         * Returns these slots from a day onward, or null if no day is left.
+         */
+        DoctorSlots from(int day) {
+            int position = Arrays.binarySearch(days, day);
+            int start = position >= 0 ? position : -position - 1;
+            if (start == 0) {
+                return this;
+            }
+            if (start == days.length) {
+                return null;
+            }
+            return new DoctorSlots(doctorId, city, Arrays.copyOfRange(days, start, days.length),
+                    Arrays.copyOfRange(freeCounts, start, freeCounts.length));
+        }
+    }
+
+    /**
+     * The days of a doctor that changed since the doctor was last refreshed. Only changed under
+     * the map entry of the doctor.
+     */
+    private static final class PendingChange {
+        private boolean allDays;
+        private final Set<LocalDate> days = new HashSet<>();
+
+        void add(LocalDate day) {
+            if (day == null) {
+                allDays = true;
+                days.clear();
+            } else if (!allDays) {
+                days.add(day);
+            }
+        }
+    }
+}
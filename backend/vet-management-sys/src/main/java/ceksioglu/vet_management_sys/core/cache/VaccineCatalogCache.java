@@ -0,0 +1,135 @@
+package ceksioglu.vet_management_sys.core.cache;
+
+import ceksioglu.vet_management_sys.entity.VaccineCatalog;
+import ceksioglu.vet_management_sys.repository.VaccineCatalogRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the vaccine catalog in memory, so that vaccines are turned into DTOs and their names and
+ * codes into catalog keys without a query.
+ * <p>
+ * The catalog is small and only grows: it is loaded at startup, and a product that is not yet
+ * known is added to the database first and then cached. Products added by another instance are
+ * read on their first lookup by key.
+ */
+@Slf4j
+@Component
+public class VaccineCatalogCache {
+
+    private final VaccineCatalogRepository vaccineCatalogRepository;
+    private final Map<Integer, VaccineCatalog> byId = new ConcurrentHashMap<>();
+    private final Map<Product, VaccineCatalog> byProduct = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for VaccineCatalogCache.
+     *
+     * @param vaccineCatalogRepository the vaccine catalog repository
+     */
+    @Autowired
+    public VaccineCatalogCache(VaccineCatalogRepository vaccineCatalogRepository) {
+        this.vaccineCatalogRepository = vaccineCatalogRepository;
+    }
+
+    /**
+     * Loads the whole catalog.
+     */
+    @PostConstruct
+    public void load() {
+        vaccineCatalogRepository.findAll().forEach(this::add);
+        log.info("Vaccine catalog loaded {} products", byId.size());
+    }
+
+    /**
+     * Gets a product by its catalog key.
+     *
+     * @param id the catalog ID
+     * @return the product
+     * @throws IllegalStateException if the product is not in the catalog
+     */
+    public VaccineCatalog get(Integer id) {
+        VaccineCatalog product = byId.get(id);
+        if (product == null) {
+            product = vaccineCatalogRepository.findById(id)
+                    .orElseThrow(() -> new IllegalStateException("Vaccine catalog entry not found with id: " + id));
+            add(product);
+        }
+        return product;
+    }
+
+    /**
+     * Finds a product by its name and code.
+     *
+     * @param name the vaccine name
+     * @param code the vaccine code
+     * @return the product, or empty if it is not in the catalog
+     */
+    public Optional<VaccineCatalog> find(String name, String code) {
+        return Optional.ofNullable(byProduct.get(new Product(name, code)));
+    }
+
+    /**
+     * Gets the product with a name and code, adding it to the catalog if it is new.
+     *
+     * @param name the vaccine name
+     * @param code the vaccine code
+     * @param protectionDays the standard protection duration of a new product, or null if unknown
+     * @return the product
+     */
+    public VaccineCatalog intern(String name, String code, Integer protectionDays) {
+        VaccineCatalog product = byProduct.get(new Product(name, code));
+        if (product != null) {
+            return product;
+        }
+        return get(vaccineCatalogRepository.insertIfAbsent(name, code, protectionDays));
+    }
+
+    /**
+     * Drops products whose insert was rolled back, so that they are not handed out again.
+     *
+     * @param ids the catalog IDs
+     */
+    public void evict(Collection<Integer> ids) {
+        for (Integer id : ids) {
+            VaccineCatalog product = byId.remove(id);
+            if (product != null) {
+                byProduct.remove(new Product(product.getName(), product.getCode()), product);
+            }
+        }
+    }
+
+    /**
+     * Lists the catalog.
+     *
+     * @return all products, ordered by catalog ID
+     */
+    public List<VaccineCatalog> getAll() {
+        List<VaccineCatalog> products = new ArrayList<>(byId.values());
+        products.sort(Comparator.comparing(VaccineCatalog::getId));
+        return products;
+    }
+
+    private void add(VaccineCatalog product) {
+        byId.put(product.getId(), product);
+        byProduct.put(new Product(product.getName(), product.getCode()), product);
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class Product {
+        private final String name;
+        private final String code;
+    }
+}
@@ -0,0 +1,76 @@
+package ceksioglu.vet_management_sys.core.cache;
+
+import ceksioglu.vet_management_sys.dto.VaccineTimelineDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the protection timelines of recently requested animals in memory.
+ * <p>
+ * A timeline is dropped once a change to one of the animal's vaccines is committed. Every drop
+ * also bumps a generation counter, and a timeline is only stored if no drop happened while it
+ * was being loaded, so a load that raced with a vaccine write cannot put a stale timeline back.
+ */
+@Component
+public class VaccineTimelineCache {
+
+    private final Map<Long, VaccineTimelineDTO> timelines;
+    private long generation;
+
+    /**
+     * Constructor for VaccineTimelineCache.
+     *
+     * @param cacheSize the maximum number of timelines kept, least recently used ones are dropped first
+     */
+    @Autowired
+    public VaccineTimelineCache(@Value("${vet.vaccine-timeline.cache-size:1000}") int cacheSize) {
+        this.timelines = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, VaccineTimelineDTO> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached timeline of an animal, loading and caching it on a miss.
+     *
+     * @param animalId the animal ID
+     * @param loader loads the timeline from the database
+     * @return the timeline
+     */
+    public VaccineTimelineDTO get(Long animalId, Supplier<VaccineTimelineDTO> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            VaccineTimelineDTO timeline = timelines.get(animalId);
+            if (timeline != null) {
+                return timeline;
+            }
+            loadGeneration = generation;
+        }
+
+        VaccineTimelineDTO timeline = loader.get();
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                timelines.put(animalId, timeline);
+            }
+        }
+        return timeline;
+    }
+
+    /**
+     * Drops the timelines of animals whose vaccines changed. Called after the change is committed.
+     *
+     * @param animalIds the animal IDs
+     */
+    public synchronized void invalidate(Collection<Long> animalIds) {
+        generation++;
+        timelines.keySet().removeAll(animalIds);
+    }
+}
@@ -1,6 +1,10 @@
 package ceksioglu.vet_management_sys.core.config;
 
 import ceksioglu.vet_management_sys.core.exception.AppointmentConflictException;
+import ceksioglu.vet_management_sys.core.exception.BookingTimeoutException;
+import ceksioglu.vet_management_sys.core.exception.IdempotencyConflictException;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.exception.OutOfStockException;
 import ceksioglu.vet_management_sys.core.exception.ResourceAlreadyExistsException;
 import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
 import org.springframework.http.HttpStatus;
@@ -47,6 +51,50 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
     }
 
+    /**
+     * Handles OutOfStockException.
+     *
+     * @param ex the exception
+     * @return the response entity with error message and CONFLICT status
+     */
+    @ExceptionHandler(OutOfStockException.class)
+    public ResponseEntity<String> handleOutOfStockException(OutOfStockException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Handles BookingTimeoutException.
+     *
+     * @param ex the exception
+     * @return the response entity with error message and SERVICE_UNAVAILABLE status
+     */
+    @ExceptionHandler(BookingTimeoutException.class)
+    public ResponseEntity<String> handleBookingTimeoutException(BookingTimeoutException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Handles IdempotencyConflictException.
+     *
+     * @param ex the exception
+     * @return the response entity with error message and CONFLICT status
+     */
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<String> handleIdempotencyConflictException(IdempotencyConflictException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Handles InvalidRequestException.
+     *
+     * @param ex the exception
+     * @return the response entity with error message and BAD_REQUEST status
+     */
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<String> handleInvalidRequestException(InvalidRequestException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * Handles generic exceptions.
      *
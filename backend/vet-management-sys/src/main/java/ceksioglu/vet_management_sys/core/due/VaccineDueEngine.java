@@ -0,0 +1,440 @@
+package ceksioglu.vet_management_sys.core.due;
+
+import ceksioglu.vet_management_sys.core.event.VaccinationScheduleChangedEvent;
+import ceksioglu.vet_management_sys.core.util.CursorUtils;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
+import ceksioglu.vet_management_sys.dto.VaccineDueDTO;
+import ceksioglu.vet_management_sys.dto.VaccineDueRecomputeDTO;
+import ceksioglu.vet_management_sys.entity.VaccinationSchedule;
+import ceksioglu.vet_management_sys.entity.Vaccine;
+import ceksioglu.vet_management_sys.repository.VaccinationScheduleRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the next due vaccination of every animal from the vaccination schedules of its
+ * species, its date of birth and its vaccine history, and keeps the results in the
+ * {@code vaccine_due} table, one row per animal and scheduled vaccine code.
+ * <p>
+ * A code is first due when the animal reaches the schedule's first dose age, and then the
+ * booster interval after the start of its last vaccine of the code. Only the latest start date
+ * per animal and code is read, so the vaccine history is reduced to one row per pair.
+ * <p>
+ * The full recomputation splits the animal ID range in halves with fork/join until the ranges
+ * are small enough and computes them in parallel, each in its own transaction that share-locks
+ * the range's animals. After that, vaccine and animal writes run through this class inside
+ * their own transaction, after the coverage rollup locked the affected animals, and recompute
+ * only those animals. New vaccines only move the last dose forward, so they are applied to
+ * the stored rows without reading the animals' history again. The schedules are kept in memory
+ * and reloaded by the full recomputation, which a committed schedule change starts in the
+ * background. Changes made while a recomputation waits to start are covered by it, so a burst
+ * of changes runs it at most twice.
+ */
+@Slf4j
+@Component
+public class VaccineDueEngine {
+
+    private static final String RANGE_SQL =
+            "SELECT COALESCE(MIN(animal_id), 0), COALESCE(MAX(animal_id), -1) FROM animals";
+    private static final String LOCK_RANGE_SQL =
+            "SELECT animal_id, animal_species, animal_date_of_birth FROM animals " +
+            "WHERE animal_id >= ? AND animal_id < ? ORDER BY animal_id FOR SHARE";
+    private static final String READ_ANIMALS_SQL =
+            "SELECT animal_id, animal_species, animal_date_of_birth FROM animals " +
+            "WHERE animal_id = ANY (?) ORDER BY animal_id";
+    private static final String LAST_DOSES_SQL =
+            "SELECT v.animal_id, k.vaccine_code, MAX(v.protection_start_date) FROM vaccines v " +
+            "JOIN vaccine_catalog k ON k.vaccine_catalog_id = v.vaccine_catalog_id " +
+            "WHERE v.animal_id = ANY (?) AND k.vaccine_code = ANY (?) " +
+            "GROUP BY v.animal_id, k.vaccine_code";
+    private static final String STORED_LAST_DOSES_SQL =
+            "SELECT animal_id, vaccine_code, last_dose_date FROM vaccine_due " +
+            "WHERE animal_id = ANY (?) AND last_dose_date IS NOT NULL";
+    private static final String UPSERT_SQL =
+            "INSERT INTO vaccine_due (animal_id, vaccine_code, last_dose_date, due_date) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (animal_id, vaccine_code) DO UPDATE " +
+            "SET last_dose_date = EXCLUDED.last_dose_date, due_date = EXCLUDED.due_date " +
+            "WHERE (vaccine_due.last_dose_date, vaccine_due.due_date) " +
+            "IS DISTINCT FROM (EXCLUDED.last_dose_date, EXCLUDED.due_date)";
+    // Rows of codes that are no longer scheduled for the animal's species
+    private static final String DELETE_STALE_SQL =
+            "DELETE FROM vaccine_due d WHERE d.animal_id = ANY (?) AND NOT EXISTS (" +
+            "SELECT 1 FROM unnest(CAST(? AS bigint[]), CAST(? AS varchar[])) AS p(animal_id, vaccine_code) " +
+            "WHERE p.animal_id = d.animal_id AND p.vaccine_code = d.vaccine_code)";
+    private static final String DUE_PAGE_SQL =
+            "SELECT d.vaccine_due_id, d.animal_id, a.animal_name, a.animal_species, a.customer_id, " +
+            "d.vaccine_code, d.last_dose_date, d.due_date " +
+            "FROM vaccine_due d JOIN animals a ON a.animal_id = d.animal_id " +
+            "WHERE d.due_date BETWEEN ? AND ? AND (d.due_date, d.vaccine_due_id) > (?, ?) " +
+            "ORDER BY d.due_date, d.vaccine_due_id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final VaccinationScheduleRepository vaccinationScheduleRepository;
+    private final int parallelism;
+    private final int rangeSize;
+    private final Object scheduleLock = new Object();
+    private volatile Map<String, List<VaccinationSchedule>> schedules;
+    private final AtomicBoolean recomputeQueued = new AtomicBoolean();
+    private final ExecutorService recomputeExecutor =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "vaccine-due-recompute"));
+
+    /**
+     * Constructor for VaccineDueEngine.
+     *
+     * @param jdbcTemplate the JDBC template
+     * @param transactionTemplate the transaction template
+     * @param entityManager flushes the changes before the animals are recomputed
+     * @param vaccinationScheduleRepository the vaccination schedule repository
+     * @param parallelism the number of animal ID ranges computed at once by a full recomputation
+     * @param rangeSize the largest number of animal IDs computed in one transaction
+     */
+    @Autowired
+    public VaccineDueEngine(JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            EntityManager entityManager,
+                            VaccinationScheduleRepository vaccinationScheduleRepository,
+                            @Value("${vet.vaccine-due.parallelism:4}") int parallelism,
+                            @Value("${vet.vaccine-due.range-size:2000}") int rangeSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.vaccinationScheduleRepository = vaccinationScheduleRepository;
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * Runs a change of the vaccines or the details of some animals and recomputes them. Must
+     * be called in the change's transaction, with the animals locked.
+     *
+     * @param animalIds the animals the change affects
+     * @param change the change
+     * @return the result of the change
+     */
+    public <T> T update(Collection<Long> animalIds, Supplier<T> change) {
+        T result = change.get();
+        entityManager.flush();
+        refresh(animalIds);
+        return result;
+    }
+
+    /**
+     * Runs the creation of an animal and computes its due vaccinations. Must be called in the
+     * change's transaction.
+     *
+     * @param change the change
+     * @param animalId gets the ID of the new animal from the result of the change
+     * @return the result of the change
+     */
+    public <T> T addAnimal(Supplier<T> change, Function<T, Long> animalId) {
+        T result = change.get();
+        entityManager.flush();
+        refresh(List.of(animalId.apply(result)));
+        return result;
+    }
+
+    /**
+     * Runs the insert of new vaccines and moves the last doses of their animals forward. Must
+     * be called in the insert's transaction, with the animals locked.
+     *
+     * @param insert inserts the vaccines and returns them
+     * @return the inserted vaccines
+     */
+    public List<Vaccine> addVaccines(Supplier<List<Vaccine>> insert) {
+        List<Vaccine> vaccines = insert.get();
+        Map<String, List<VaccinationSchedule>> currentSchedules = schedules();
+        Map<Long, Map<String, LocalDate>> newDoses = new TreeMap<>();
+        for (Vaccine vaccine : vaccines) {
+            newDoses.computeIfAbsent(vaccine.getAnimal().getId(), id -> new HashMap<>())
+                    .merge(vaccine.getCatalog().getCode(), DateUtils.toLocalDate(vaccine.getProtectionStartDate()),
+                            VaccineDueEngine::later);
+        }
+        if (newDoses.isEmpty() || currentSchedules.isEmpty()) {
+            return vaccines;
+        }
+
+        Long[] ids = newDoses.keySet().toArray(new Long[0]);
+        Map<Long, Map<String, LocalDate>> lastDoses = new HashMap<>();
+        jdbcTemplate.query(STORED_LAST_DOSES_SQL, rs -> {
+            lastDoses.computeIfAbsent(rs.getLong(1), id -> new HashMap<>())
+                    .put(rs.getString(2), rs.getObject(3, LocalDate.class));
+        }, (Object) ids);
+        newDoses.forEach((animalId, doses) -> doses.forEach((code, date) ->
+                lastDoses.computeIfAbsent(animalId, id -> new HashMap<>()).merge(code, date, VaccineDueEngine::later)));
+        write(readAnimals(ids), lastDoses, currentSchedules);
+        return vaccines;
+    }
+
+    /**
+     * Reads the due vaccinations of a date range, one page at a time ordered by due date.
+     *
+     * @param startDate the first due date
+     * @param endDate the last due date
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of due vaccinations
+     */
+    public CursorPageDTO<VaccineDueDTO> getDue(LocalDate startDate, LocalDate endDate, String cursor, int size) {
+        int limit = CursorUtils.limit(size).max();
+        CursorUtils.Keyset<Date> after = CursorUtils.decode(cursor, Date.class);
+        List<DueRow> rows = jdbcTemplate.query(DUE_PAGE_SQL, (rs, rowNum) -> new DueRow(rs.getLong(1),
+                rs.getDate(8), new VaccineDueDTO(rs.getLong(2), rs.getString(3), rs.getString(4), rs.getLong(5),
+                rs.getString(6), rs.getObject(7, LocalDate.class), rs.getObject(8, LocalDate.class))),
+                startDate, endDate, after.getKey(), after.getId(), limit);
+        return CursorUtils.toPage(rows, size, DueRow::getDueDate, DueRow::getId, DueRow::getDue);
+    }
+
+    /**
+     * Stops the background recomputation. A recomputation that is running is interrupted.
+     */
+    @PreDestroy
+    public void stop() {
+        recomputeExecutor.shutdownNow();
+    }
+
+    /**
+     * Queues a full recomputation once a schedule change is committed, unless one is queued
+     * already and will read the change when it starts.
+     *
+     * @param event the change event
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onVaccinationScheduleChanged(VaccinationScheduleChangedEvent event) {
+        if (!recomputeQueued.compareAndSet(false, true)) {
+            return;
+        }
+        recomputeExecutor.execute(() -> {
+            // A change committed from here on queues the next recomputation
+            recomputeQueued.set(false);
+            try {
+                recompute();
+            } catch (RuntimeException e) {
+                log.error("Vaccines due recomputation after a schedule change failed", e);
+            }
+        });
+    }
+
+    /**
+     * Reloads the schedules and recomputes the due vaccinations of all animals in parallel
+     * ranges of animal IDs. Writes of animals outside the range being computed go on meanwhile.
+     *
+     * @return the result of the recomputation
+     */
+    public synchronized VaccineDueRecomputeDTO recompute() {
+        Date startedAt = new Date();
+        long startNanos = System.nanoTime();
+        Map<String, List<VaccinationSchedule>> currentSchedules = loadSchedules();
+        long[] range = jdbcTemplate.queryForObject(RANGE_SQL, (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        RangeResult result;
+        try {
+            result = pool.invoke(new RangeTask(range[0], range[1] + 1, currentSchedules));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        log.info("Vaccines due recomputed for {} animals in {} ranges in {} ms, {} rows", result.animalCount,
+                result.rangeCount, durationMillis, result.dueCount);
+        return new VaccineDueRecomputeDTO(startedAt, durationMillis, result.rangeCount, result.animalCount,
+                result.dueCount);
+    }
+
+    /**
+     * Gets the due date of a vaccine code: the first dose age if the animal had none yet,
+     * otherwise the booster interval after the last dose, or none if the code has no booster.
+     *
+     * @param schedule the schedule of the code
+     * @param dateOfBirth the animal's date of birth
+     * @param lastDose the start date of the animal's last vaccine of the code, or null
+     * @return the due date, or null
+     */
+    static LocalDate dueDate(VaccinationSchedule schedule, LocalDate dateOfBirth, LocalDate lastDose) {
+        if (lastDose == null) {
+            return dateOfBirth.plusDays(schedule.getFirstDoseAgeDays());
+        }
+        if (schedule.getBoosterIntervalDays() == null) {
+            return null;
+        }
+        return lastDose.plusDays(schedule.getBoosterIntervalDays());
+    }
+
+    private void refresh(Collection<Long> animalIds) {
+        if (animalIds.isEmpty()) {
+            return;
+        }
+        compute(readAnimals(animalIds.toArray(new Long[0])), schedules());
+    }
+
+    private List<AnimalRow> readAnimals(Long[] animalIds) {
+        return jdbcTemplate.query(READ_ANIMALS_SQL, (rs, rowNum) -> new AnimalRow(rs.getLong(1), rs.getString(2),
+                rs.getObject(3, LocalDate.class)), (Object) animalIds);
+    }
+
+    /**
+     * Reads the last doses of the scheduled codes of some animals and stores their due dates.
+     *
+     * @return the number of stored rows
+     */
+    private int compute(List<AnimalRow> animals, Map<String, List<VaccinationSchedule>> currentSchedules) {
+        if (animals.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Map<String, LocalDate>> lastDoses = new HashMap<>();
+        if (!currentSchedules.isEmpty()) {
+            Long[] ids = animals.stream().map(AnimalRow::getId).toArray(Long[]::new);
+            String[] codes = currentSchedules.values().stream().flatMap(List::stream)
+                    .map(VaccinationSchedule::getVaccineCode).distinct().toArray(String[]::new);
+            jdbcTemplate.query(LAST_DOSES_SQL, rs -> {
+                lastDoses.computeIfAbsent(rs.getLong(1), id -> new HashMap<>())
+                        .put(rs.getString(2), rs.getObject(3, LocalDate.class));
+            }, ids, codes);
+        }
+        return write(animals, lastDoses, currentSchedules);
+    }
+
+    /**
+     * Stores the due dates of the scheduled codes of some animals and deletes their rows of
+     * codes that are no longer scheduled.
+     *
+     * @return the number of stored rows
+     */
+    private int write(List<AnimalRow> animals, Map<Long, Map<String, LocalDate>> lastDoses,
+                      Map<String, List<VaccinationSchedule>> currentSchedules) {
+        List<Object[]> rows = new ArrayList<>();
+        for (AnimalRow animal : animals) {
+            Map<String, LocalDate> doses = lastDoses.getOrDefault(animal.id, Map.of());
+            for (VaccinationSchedule schedule : currentSchedules.getOrDefault(animal.species, List.of())) {
+                LocalDate lastDose = doses.get(schedule.getVaccineCode());
+                rows.add(new Object[]{animal.id, schedule.getVaccineCode(), lastDose,
+                        dueDate(schedule, animal.dateOfBirth, lastDose)});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        }
+        jdbcTemplate.update(DELETE_STALE_SQL,
+                animals.stream().map(AnimalRow::getId).toArray(Long[]::new),
+                rows.stream().map(row -> row[0]).toArray(Long[]::new),
+                rows.stream().map(row -> row[1]).toArray(String[]::new));
+        return rows.size();
+    }
+
+    private Map<String, List<VaccinationSchedule>> schedules() {
+        Map<String, List<VaccinationSchedule>> current = schedules;
+        if (current != null) {
+            return current;
+        }
+        synchronized (scheduleLock) {
+            if (schedules == null) {
+                schedules = readSchedules();
+            }
+            return schedules;
+        }
+    }
+
+    private Map<String, List<VaccinationSchedule>> loadSchedules() {
+        synchronized (scheduleLock) {
+            schedules = readSchedules();
+            return schedules;
+        }
+    }
+
+    private Map<String, List<VaccinationSchedule>> readSchedules() {
+        return vaccinationScheduleRepository.findAllByOrderBySpeciesAscVaccineCodeAsc().stream()
+                .collect(Collectors.groupingBy(VaccinationSchedule::getSpecies, LinkedHashMap::new, Collectors.toList()));
+    }
+
+    private static LocalDate later(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * Computes a range of animal IDs, or splits it in halves computed in parallel.
+     */
+    @AllArgsConstructor
+    private final class RangeTask extends RecursiveTask<RangeResult> {
+
+        private final long fromId;
+        private final long toId;
+        private final Map<String, List<VaccinationSchedule>> currentSchedules;
+
+        @Override
+        protected RangeResult compute() {
+            if (toId - fromId <= rangeSize) {
+                return transactionTemplate.execute(status -> {
+                    List<AnimalRow> animals = jdbcTemplate.query(LOCK_RANGE_SQL, (rs, rowNum) -> new AnimalRow(
+                            rs.getLong(1), rs.getString(2), rs.getObject(3, LocalDate.class)), fromId, toId);
+                    int dueCount = VaccineDueEngine.this.compute(animals, currentSchedules);
+                    return new RangeResult(1, animals.size(), dueCount);
+                });
+            }
+            long middleId = fromId + (toId - fromId) / 2;
+            RangeTask lower = new RangeTask(fromId, middleId, currentSchedules);
+            RangeTask upper = new RangeTask(middleId, toId, currentSchedules);
+            invokeAll(lower, upper);
+            return lower.join().plus(upper.join());
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class RangeResult {
+        private final int rangeCount;
+        private final long animalCount;
+        private final long dueCount;
+
+        private RangeResult plus(RangeResult other) {
+            return new RangeResult(rangeCount + other.rangeCount, animalCount + other.animalCount,
+                    dueCount + other.dueCount);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static final class AnimalRow {
+        private final Long id;
+        private final String species;
+        private final LocalDate dateOfBirth;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static final class DueRow {
+        private final Long id;
+        private final java.sql.Date dueDate;
+        private final VaccineDueDTO due;
+    }
+}
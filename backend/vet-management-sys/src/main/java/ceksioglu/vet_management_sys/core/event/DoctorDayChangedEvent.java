@@ -0,0 +1,30 @@
+package ceksioglu.vet_management_sys.core.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.time.LocalDate;
+
+/**
+ * Published whenever the capacity or the bookings of a doctor's day change.
+ * A null day means that every day of the doctor may have changed, e.g. after the doctor is deleted.
+ */
+@Getter
+public class DoctorDayChangedEvent extends ApplicationEvent {
+
+    private final Long doctorId;
+    private final LocalDate day;
+
+    /**
+     * Constructor for DoctorDayChangedEvent.
+     *
+     * @param source the component that made the change
+     * @param doctorId the doctor ID
+     * @param day the changed day, or null for all days of the doctor
+     */
+    public DoctorDayChangedEvent(Object source, Long doctorId, LocalDate day) {
+        super(source);
+        this.doctorId = doctorId;
+        this.day = day;
+    }
+}
@@ -0,0 +1,24 @@
+package ceksioglu.vet_management_sys.core.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published whenever a vaccination schedule is saved, changed or deleted.
+ */
+@Getter
+public class VaccinationScheduleChangedEvent extends ApplicationEvent {
+
+    private final Long scheduleId;
+
+    /**
+     * Constructor for VaccinationScheduleChangedEvent.
+     *
+     * @param source the component that made the change
+     * @param scheduleId the vaccination schedule ID
+     */
+    public VaccinationScheduleChangedEvent(Object source, Long scheduleId) {
+        super(source);
+        this.scheduleId = scheduleId;
+    }
+}
@@ -0,0 +1,7 @@
+package ceksioglu.vet_management_sys.core.exception;
+
+public class BookingTimeoutException extends RuntimeException {
+    public BookingTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ceksioglu.vet_management_sys.core.exception;
+
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ceksioglu.vet_management_sys.core.exception;
+
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ceksioglu.vet_management_sys.core.exception;
+
+public class OutOfStockException extends RuntimeException {
+    public OutOfStockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,242 @@
+package ceksioglu.vet_management_sys.core.importer;
+
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.VaccineDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the vaccines of an import one row at a time, so that a file of any size is never held
+ * in memory as a whole.
+ * <p>
+ * CSV files start with a header naming the columns {@code name}, {@code code},
+ * {@code protectionStartDate}, {@code protectionFinishDate} and {@code animalId} in any order;
+ * the finish date column is optional and dates are written as {@code yyyy-MM-dd}. JSON input is
+ * either an array of vaccines or vaccines separated by whitespace, one per line. A row that
+ * cannot be read is returned with an error instead of a vaccine and the following rows are read
+ * on, unless the JSON itself is broken, which ends the input.
+ */
+public abstract class VaccineImportReader implements Closeable {
+
+    private long rowNumber;
+
+    /**
+     * Opens a CSV input and reads its header.
+     *
+     * @param input the CSV input, UTF-8 encoded
+     * @return the reader
+     * @throws IOException if the input cannot be read
+     * @throws InvalidRequestException if the header is missing or lacks a required column
+     */
+    public static VaccineImportReader csv(InputStream input) throws IOException {
+        return new CsvReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Opens a JSON input.
+     *
+     * @param input the JSON input
+     * @param objectMapper the object mapper of the application
+     * @return the reader
+     * @throws IOException if the input cannot be read
+     */
+    public static VaccineImportReader json(InputStream input, ObjectMapper objectMapper) throws IOException {
+        return new JsonReader(objectMapper.readerFor(VaccineDTO.class).readValues(input));
+    }
+
+    /**
+     * Reads the next row.
+     *
+     * @return the row, or null at the end of the input
+     * @throws IOException if the input cannot be read
+     */
+    public abstract Row next() throws IOException;
+
+    protected Row vaccine(VaccineDTO vaccine) {
+        return new Row(++rowNumber, vaccine, null);
+    }
+
+    protected Row error(String error) {
+        return new Row(++rowNumber, null, error);
+    }
+
+    /**
+     * One row of an import: the vaccine, or the reason it could not be read.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Row {
+        private final long number;
+        private final VaccineDTO vaccine;
+        private final String error;
+    }
+
+    private static final class CsvReader extends VaccineImportReader {
+
+        private static final String[] REQUIRED_COLUMNS = {"name", "code", "protectionStartDate", "animalId"};
+
+        private final BufferedReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        private CsvReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            String header = reader.readLine();
+            if (header == null) {
+                throw new InvalidRequestException("CSV header is missing");
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            List<String> names = split(header);
+            if (names == null) {
+                throw new InvalidRequestException("CSV header has an unterminated quoted field");
+            }
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim(), i);
+            }
+            for (String column : REQUIRED_COLUMNS) {
+                if (!columns.containsKey(column)) {
+                    throw new InvalidRequestException("CSV header must contain the column " + column);
+                }
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            List<String> fields = split(line);
+            if (fields == null) {
+                return error("Unterminated quoted field");
+            }
+            try {
+                VaccineDTO vaccine = new VaccineDTO();
+                vaccine.setName(field(fields, "name"));
+                vaccine.setCode(field(fields, "code"));
+                vaccine.setProtectionStartDate(date(field(fields, "protectionStartDate")));
+                vaccine.setProtectionFinishDate(date(field(fields, "protectionFinishDate")));
+                String animalId = field(fields, "animalId");
+                vaccine.setAnimalId(animalId == null ? null : Long.valueOf(animalId));
+                return vaccine(vaccine);
+            } catch (NumberFormatException e) {
+                return error("Invalid animal ID: " + field(fields, "animalId"));
+            } catch (DateTimeParseException e) {
+                return error("Invalid date, expected yyyy-MM-dd: " + e.getParsedString());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private static Date date(String value) {
+            return value == null ? null : DateUtils.toDate(LocalDate.parse(value));
+        }
+
+        /**
+         * Splits a line at commas outside of double quotes; a doubled quote inside quotes stands
+         * for one quote.
+         *
+         * @return the fields, or null if a quote is not closed on the line
+         */
+        private static List<String> split(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    private static final class JsonReader extends VaccineImportReader {
+
+        private final MappingIterator<VaccineDTO> iterator;
+        private boolean broken;
+
+        private JsonReader(MappingIterator<VaccineDTO> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            if (broken) {
+                return null;
+            }
+            try {
+                if (!iterator.hasNextValue()) {
+                    return null;
+                }
+                return vaccine(iterator.nextValue());
+            } catch (JsonMappingException e) {
+                // The rest of the value is skipped and reading goes on with the next one
+                return error("Invalid vaccine: " + e.getOriginalMessage());
+            } catch (JsonProcessingException e) {
+                broken = true;
+                return error("Malformed JSON, the rest of the input is ignored: " + e.getOriginalMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            iterator.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ceksioglu.vet_management_sys.core.reminder;
+
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.entity.VaccineReminder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Stands in for an SMS or email gateway by appending one line per reminder to a local file.
+ */
+@Component
+public class LogFileVaccineReminderSender implements VaccineReminderSender {
+
+    private final Path file;
+
+    /**
+     * Constructor for LogFileVaccineReminderSender.
+     *
+     * @param file the file the reminders are appended to
+     */
+    @Autowired
+    public LogFileVaccineReminderSender(@Value("${vet.vaccine-reminder.log-file:logs/vaccine-reminders.log}") Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Appends the reminders to the file and forces them to disk before returning.
+     *
+     * @param reminders the reminders to send
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    @Override
+    public synchronized void send(List<VaccineReminder> reminders) {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC)) {
+                for (VaccineReminder reminder : reminders) {
+                    writer.write(String.format("reminder=%d to=%s phone=%s mail=%s animal=%s vaccine=%s expires=%s",
+                            reminder.getId(), reminder.getCustomerName(), reminder.getCustomerPhone(),
+                            reminder.getCustomerMail(), reminder.getAnimalName(), reminder.getVaccineName(),
+                            DateUtils.toLocalDate(reminder.getProtectionFinishDate())));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write vaccine reminders to " + file, e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package ceksioglu.vet_management_sys.core.reminder;
+
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.VaccineReminderRunDTO;
+import ceksioglu.vet_management_sys.entity.JobCheckpoint;
+import ceksioglu.vet_management_sys.entity.VaccineReminder;
+import ceksioglu.vet_management_sys.repository.JobCheckpointRepository;
+import ceksioglu.vet_management_sys.repository.VaccineReminderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reminds customers of vaccines whose protection ends within the next days.
+ * <p>
+ * A run first scans the vaccines finishing from today up to the configured number of days
+ * ahead, in (finish date, vaccine) order over the finish date index. Each page is joined with
+ * the animal and customer contact data and written to the reminder outbox by a single
+ * statement, which also moves the job checkpoint past the page, so memory use does not depend
+ * on the number of vaccines and a run that stopped half way continues after the last written
+ * page. The scan is done once a day; later runs of the same day only send. Then the pending
+ * reminders are handed to the {@link VaccineReminderSender} in batches, each batch locked,
+ * sent and marked as sent in one transaction.
+ */
+@Slf4j
+@Component
+public class VaccineReminderPipeline {
+
+    static final String JOB_NAME = "vaccine-reminders";
+
+    private final VaccineReminderRepository vaccineReminderRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final VaccineReminderSender vaccineReminderSender;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int daysAhead;
+    private final int batchSize;
+
+    /**
+     * Constructor for VaccineReminderPipeline.
+     *
+     * @param vaccineReminderRepository the vaccine reminder repository
+     * @param jobCheckpointRepository the job checkpoint repository
+     * @param vaccineReminderSender delivers the reminders
+     * @param transactionTemplate the transaction template
+     * @param enabled whether the scheduled runs are enabled
+     * @param daysAhead how many days before the end of protection customers are reminded
+     * @param batchSize the number of vaccines scanned and reminders sent at once
+     */
+    @Autowired
+    public VaccineReminderPipeline(VaccineReminderRepository vaccineReminderRepository,
+                                   JobCheckpointRepository jobCheckpointRepository,
+                                   VaccineReminderSender vaccineReminderSender,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${vet.vaccine-reminder.enabled:true}") boolean enabled,
+                                   @Value("${vet.vaccine-reminder.days-ahead:14}") int daysAhead,
+                                   @Value("${vet.vaccine-reminder.batch-size:500}") int batchSize) {
+        this.vaccineReminderRepository = vaccineReminderRepository;
+        this.jobCheckpointRepository = jobCheckpointRepository;
+        this.vaccineReminderSender = vaccineReminderSender;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.daysAhead = daysAhead;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Runs the reminders on the configured schedule.
+     */
+    @Scheduled(initialDelayString = "${vet.vaccine-reminder.initial-delay:PT2M}",
+            fixedDelayString = "${vet.vaccine-reminder.interval:PT1H}")
+    public void runScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            run();
+        } catch (RuntimeException e) {
+            log.error("Vaccine reminder run failed", e);
+        }
+    }
+
+    /**
+     * Queues the reminders of today's scan, continuing it from the checkpoint if it was cut
+     * short, and sends all pending reminders. A run started while another one is in progress
+     * waits for it.
+     *
+     * @return the result of the run
+     */
+    public synchronized VaccineReminderRunDTO run() {
+        Date startedAt = new Date();
+        long startNanos = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        LocalDate untilDate = today.plusDays(daysAhead);
+
+        JobCheckpoint checkpoint = startCheckpoint(today);
+        boolean resumed = !checkpoint.isFinished() && checkpoint.getAfterId() > 0;
+        LocalDate afterDate = DateUtils.toLocalDate(checkpoint.getAfterDate());
+        Long afterId = checkpoint.getAfterId();
+        boolean finished = checkpoint.isFinished();
+        long scanned = 0;
+        long queued = 0;
+        while (!finished) {
+            VaccineReminderRepository.QueuedPage page =
+                    vaccineReminderRepository.queueReminders(JOB_NAME, untilDate, afterDate, afterId, batchSize);
+            scanned += page.getScannedCount();
+            queued += page.getQueuedCount();
+            afterDate = DateUtils.toLocalDate(page.getAfterDate());
+            afterId = page.getAfterId();
+            finished = Boolean.TRUE.equals(page.getFinished());
+        }
+        long sent = sendPending();
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (scanned > 0 || sent > 0) {
+            log.info("Vaccine reminders {}: scanned {} vaccines finishing until {}, queued {}, sent {} in {} ms",
+                    resumed ? "resumed" : "ran", scanned, untilDate, queued, sent, durationMillis);
+        }
+        return new VaccineReminderRunDTO(startedAt, durationMillis, today, untilDate, resumed, scanned, queued, sent);
+    }
+
+    /**
+     * Returns today's checkpoint, or starts a new scan from the beginning of the window when the
+     * checkpoint belongs to an earlier day.
+     */
+    private JobCheckpoint startCheckpoint(LocalDate today) {
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(JOB_NAME).orElseGet(JobCheckpoint::new);
+        if (checkpoint.getRunDay() != null && today.equals(DateUtils.toLocalDate(checkpoint.getRunDay()))) {
+            return checkpoint;
+        }
+        checkpoint.setJobName(JOB_NAME);
+        checkpoint.setRunDay(DateUtils.toDate(today));
+        // Before the first key of the window, as vaccine IDs start at one; vaccines that finished
+        // yesterday sort before it and are left out
+        checkpoint.setAfterDate(DateUtils.toDate(today));
+        checkpoint.setAfterId(0L);
+        checkpoint.setFinished(false);
+        checkpoint.setUpdatedAt(new Date());
+        return jobCheckpointRepository.saveAndFlush(checkpoint);
+    }
+
+    /**
+     * Sends the pending reminders batch by batch, oldest first.
+     *
+     * @return the number of reminders sent
+     */
+    private long sendPending() {
+        long sent = 0;
+        while (true) {
+            Integer count = transactionTemplate.execute(status -> {
+                List<VaccineReminder> reminders = vaccineReminderRepository.findPendingForUpdate(batchSize);
+                if (reminders.isEmpty()) {
+                    return 0;
+                }
+                vaccineReminderSender.send(reminders);
+                vaccineReminderRepository.markSent(reminders.stream().map(VaccineReminder::getId).toList(), new Date());
+                return reminders.size();
+            });
+            sent += count;
+            if (count < batchSize) {
+                return sent;
+            }
+        }
+    }
+}
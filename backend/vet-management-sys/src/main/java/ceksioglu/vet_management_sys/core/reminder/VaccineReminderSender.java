@@ -0,0 +1,19 @@
+package ceksioglu.vet_management_sys.core.reminder;
+
+import ceksioglu.vet_management_sys.entity.VaccineReminder;
+
+import java.util.List;
+
+/**
+ * Delivers vaccine expiry reminders to the customers, e.g. by SMS or email.
+ */
+public interface VaccineReminderSender {
+
+    /**
+     * Sends a batch of reminders. The batch is only marked as sent if this returns normally;
+     * when it throws, the whole batch is sent again by a later run.
+     *
+     * @param reminders the reminders to send
+     */
+    void send(List<VaccineReminder> reminders);
+}
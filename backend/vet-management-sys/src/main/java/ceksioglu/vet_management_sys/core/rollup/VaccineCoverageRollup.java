@@ -0,0 +1,526 @@
+package ceksioglu.vet_management_sys.core.rollup;
+
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.VaccineCoverageDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCoverageRebuildDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCoverageReportDTO;
+import ceksioglu.vet_management_sys.entity.Vaccine;
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the vaccination coverage rollups: the number of animals per species, breed and owner
+ * city, and how many of them are protected by each vaccine code.
+ * <p>
+ * Writes of vaccines, animals and customers run through this class, which moves the counts in
+ * the write's transaction. The counts of the affected animals are read before and after the
+ * change and only the difference is applied, in a fixed order of the groups, so that concurrent
+ * writes cannot deadlock on the rollup rows. The affected customer and animals are locked
+ * first, customers before animals, so that two writes of the same animal never count from the
+ * same state.
+ * <p>
+ * A protection counts while it finishes after the rollups' as-of day. The rollover moves that
+ * day forward and takes out the animals whose last protection of a code ended in between.
+ * Writes share-lock the state row, so a rollover waits for running writes and new writes wait
+ * for it.
+ * <p>
+ * The rebuild recounts all animals in parallel chunks of animal IDs. The chunks read one
+ * snapshot exported by the rebuild's own transaction, which also reads the stored counts, and
+ * the difference between recount and stored counts is applied as a correction. Writes go on
+ * meanwhile and their changes are kept.
+ */
+@Slf4j
+@Component
+public class VaccineCoverageRollup {
+
+    private static final Set<String> DIMENSIONS = Set.of("species", "breed", "city");
+
+    private static final String SHARE_STATE_SQL =
+            "SELECT as_of_date FROM coverage_rollup_state WHERE rollup_id = 1 FOR SHARE";
+    private static final String LOCK_STATE_SQL =
+            "SELECT as_of_date FROM coverage_rollup_state WHERE rollup_id = 1 FOR UPDATE";
+    private static final String READ_STATE_SQL =
+            "SELECT as_of_date FROM coverage_rollup_state WHERE rollup_id = 1";
+    private static final String UPDATE_STATE_SQL =
+            "UPDATE coverage_rollup_state SET as_of_date = ?, updated_at = now() WHERE rollup_id = 1";
+    private static final String SHARE_CUSTOMER_SQL =
+            "SELECT customer_id FROM customers WHERE customer_id = ? FOR SHARE";
+    private static final String LOCK_CUSTOMER_SQL =
+            "SELECT customer_id FROM customers WHERE customer_id = ? FOR NO KEY UPDATE";
+    private static final String LOCK_CUSTOMER_ANIMALS_SQL =
+            "SELECT animal_id FROM animals WHERE customer_id = ? ORDER BY animal_id FOR NO KEY UPDATE";
+    private static final String LOCK_ANIMALS_SQL =
+            "SELECT animal_id FROM animals WHERE animal_id = ANY (?) ORDER BY animal_id FOR NO KEY UPDATE";
+
+    // Rows without a vaccine code are animal counts, the others protected animal counts
+    private static final String COUNT_SQL =
+            "SELECT NULL AS vaccine_code, a.animal_species, a.animal_breed, c.customer_city, COUNT(*) " +
+            "FROM animals a JOIN customers c ON c.customer_id = a.customer_id " +
+            "WHERE %1$s GROUP BY a.animal_species, a.animal_breed, c.customer_city " +
+            "UNION ALL " +
+            "SELECT k.vaccine_code, a.animal_species, a.animal_breed, c.customer_city, COUNT(DISTINCT a.animal_id) " +
+            "FROM animals a JOIN customers c ON c.customer_id = a.customer_id " +
+            "JOIN vaccines v ON v.animal_id = a.animal_id " +
+            "JOIN vaccine_catalog k ON k.vaccine_catalog_id = v.vaccine_catalog_id " +
+            "WHERE %1$s AND v.protection_finish_date > ? " +
+            "GROUP BY k.vaccine_code, a.animal_species, a.animal_breed, c.customer_city";
+    private static final String COUNT_ANIMALS_SQL = String.format(COUNT_SQL, "a.animal_id = ANY (?)");
+    private static final String COUNT_RANGE_SQL = String.format(COUNT_SQL, "a.animal_id >= ? AND a.animal_id < ?");
+
+    // Animals and codes of new vaccines that were not protected by an older vaccine
+    private static final String COUNT_NEWLY_PROTECTED_SQL =
+            "SELECT p.vaccine_code, a.animal_species, a.animal_breed, c.customer_city, COUNT(*) " +
+            "FROM unnest(CAST(? AS bigint[]), CAST(? AS varchar[])) AS p(animal_id, vaccine_code) " +
+            "JOIN animals a ON a.animal_id = p.animal_id JOIN customers c ON c.customer_id = a.customer_id " +
+            "WHERE NOT EXISTS (SELECT 1 FROM vaccines v " +
+            "JOIN vaccine_catalog k ON k.vaccine_catalog_id = v.vaccine_catalog_id " +
+            "WHERE v.animal_id = p.animal_id AND k.vaccine_code = p.vaccine_code " +
+            "AND v.protection_finish_date > ? AND v.vaccine_id <> ALL (CAST(? AS bigint[]))) " +
+            "GROUP BY p.vaccine_code, a.animal_species, a.animal_breed, c.customer_city";
+
+    // Animals whose last protection of a code finished after the old as-of day and up to the new one
+    private static final String COUNT_EXPIRED_SQL =
+            "SELECT e.vaccine_code, a.animal_species, a.animal_breed, c.customer_city, COUNT(*) FROM (" +
+            "SELECT v.animal_id, k.vaccine_code FROM vaccines v " +
+            "JOIN vaccine_catalog k ON k.vaccine_catalog_id = v.vaccine_catalog_id " +
+            "WHERE v.protection_finish_date > ? AND v.protection_finish_date <= ? " +
+            "GROUP BY v.animal_id, k.vaccine_code) e " +
+            "JOIN animals a ON a.animal_id = e.animal_id JOIN customers c ON c.customer_id = a.customer_id " +
+            "WHERE NOT EXISTS (SELECT 1 FROM vaccines w " +
+            "JOIN vaccine_catalog l ON l.vaccine_catalog_id = w.vaccine_catalog_id " +
+            "WHERE w.animal_id = e.animal_id AND l.vaccine_code = e.vaccine_code AND w.protection_finish_date > ?) " +
+            "GROUP BY e.vaccine_code, a.animal_species, a.animal_breed, c.customer_city";
+
+    private static final String STORED_SQL =
+            "SELECT NULL, animal_species, animal_breed, customer_city, animal_count FROM animal_population_rollup " +
+            "UNION ALL " +
+            "SELECT vaccine_code, animal_species, animal_breed, customer_city, protected_count FROM vaccine_coverage_rollup";
+    private static final String ADD_POPULATION_SQL =
+            "INSERT INTO animal_population_rollup (animal_species, animal_breed, customer_city, animal_count) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (animal_species, animal_breed, customer_city) " +
+            "DO UPDATE SET animal_count = animal_population_rollup.animal_count + EXCLUDED.animal_count";
+    private static final String ADD_COVERAGE_SQL =
+            "INSERT INTO vaccine_coverage_rollup (vaccine_code, animal_species, animal_breed, customer_city, protected_count) " +
+            "VALUES (?, ?, ?, ?, ?) ON CONFLICT (vaccine_code, animal_species, animal_breed, customer_city) " +
+            "DO UPDATE SET protected_count = vaccine_coverage_rollup.protected_count + EXCLUDED.protected_count";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final boolean rolloverEnabled;
+    private final int rebuildThreads;
+    private final int rebuildChunkSize;
+
+    /**
+     * Constructor for VaccineCoverageRollup.
+     *
+     * @param jdbcTemplate the JDBC template
+     * @param transactionTemplate the transaction template
+     * @param entityManager flushes the changes before they are counted
+     * @param rolloverEnabled whether the scheduled rollovers are enabled
+     * @param rebuildThreads the number of chunks recounted at once by a rebuild
+     * @param rebuildChunkSize the number of animal IDs recounted per chunk
+     */
+    @Autowired
+    public VaccineCoverageRollup(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 EntityManager entityManager,
+                                 @Value("${vet.coverage.rollover-enabled:true}") boolean rolloverEnabled,
+                                 @Value("${vet.coverage.rebuild-threads:4}") int rebuildThreads,
+                                 @Value("${vet.coverage.rebuild-chunk-size:5000}") int rebuildChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.rolloverEnabled = rolloverEnabled;
+        this.rebuildThreads = rebuildThreads;
+        this.rebuildChunkSize = rebuildChunkSize;
+    }
+
+    /**
+     * Runs a change of the vaccines of some animals, or the removal of animals, in one
+     * transaction with the rollups.
+     *
+     * @param animalIds the animals whose counts the change affects
+     * @param change the change
+     * @return the result of the change
+     */
+    public <T> T update(Collection<Long> animalIds, Supplier<T> change) {
+        return update(() -> lockAnimals(animalIds), change, result -> null);
+    }
+
+    /**
+     * Runs the insert of new vaccines in one transaction with the rollups. Instead of all
+     * vaccines of the animals, only the animal and code pairs of the new vaccines are counted,
+     * which keeps imports cheap.
+     *
+     * @param animalIds the animals the vaccines may be inserted for
+     * @param insert inserts the vaccines and returns them with their IDs
+     * @return the inserted vaccines
+     */
+    public List<Vaccine> addVaccines(Collection<Long> animalIds, Supplier<List<Vaccine>> insert) {
+        return transactionTemplate.execute(status -> {
+            LocalDate asOf = jdbcTemplate.queryForObject(SHARE_STATE_SQL, LocalDate.class);
+            lockAnimals(animalIds);
+            List<Vaccine> vaccines = insert.get();
+
+            Set<List<Object>> pairs = new LinkedHashSet<>();
+            List<Long> vaccineIds = new ArrayList<>(vaccines.size());
+            for (Vaccine vaccine : vaccines) {
+                vaccineIds.add(vaccine.getId());
+                if (DateUtils.toLocalDate(vaccine.getProtectionFinishDate()).isAfter(asOf)) {
+                    pairs.add(List.of(vaccine.getAnimal().getId(), vaccine.getCatalog().getCode()));
+                }
+            }
+            if (pairs.isEmpty()) {
+                return vaccines;
+            }
+            Long[] pairAnimalIds = pairs.stream().map(pair -> (Long) pair.get(0)).toArray(Long[]::new);
+            String[] pairCodes = pairs.stream().map(pair -> (String) pair.get(1)).toArray(String[]::new);
+            Map<Group, Long> deltas = new TreeMap<>();
+            count(COUNT_NEWLY_PROTECTED_SQL, 1, deltas, pairAnimalIds, pairCodes, asOf, vaccineIds.toArray(new Long[0]));
+            apply(deltas);
+            return vaccines;
+        });
+    }
+
+    /**
+     * Runs the creation of an animal in one transaction with the rollups.
+     *
+     * @param customerId the customer of the new animal
+     * @param change the change
+     * @param animalId gets the ID of the new animal from the result of the change
+     * @return the result of the change
+     */
+    public <T> T addAnimal(Long customerId, Supplier<T> change, Function<T, Long> animalId) {
+        return update(() -> {
+            jdbcTemplate.queryForList(SHARE_CUSTOMER_SQL, Long.class, customerId);
+            return List.of();
+        }, change, animalId);
+    }
+
+    /**
+     * Runs a change of an animal, possibly moving it to another customer, in one transaction
+     * with the rollups.
+     *
+     * @param animalId the animal
+     * @param customerId the customer of the animal after the change
+     * @param change the change
+     * @return the result of the change
+     */
+    public <T> T updateAnimal(Long animalId, Long customerId, Supplier<T> change) {
+        return update(() -> {
+            jdbcTemplate.queryForList(SHARE_CUSTOMER_SQL, Long.class, customerId);
+            return lockAnimals(List.of(animalId));
+        }, change, result -> null);
+    }
+
+    /**
+     * Runs a change or the removal of a customer, which affects all of its animals, in one
+     * transaction with the rollups.
+     *
+     * @param customerId the customer
+     * @param change the change
+     * @return the result of the change
+     */
+    public <T> T updateCustomer(Long customerId, Supplier<T> change) {
+        return update(() -> {
+            jdbcTemplate.queryForList(LOCK_CUSTOMER_SQL, Long.class, customerId);
+            return jdbcTemplate.queryForList(LOCK_CUSTOMER_ANIMALS_SQL, Long.class, customerId);
+        }, change, result -> null);
+    }
+
+    /**
+     * Gets the coverage of a vaccine code, summed up over the dimensions that are not grouped by.
+     *
+     * @param code the vaccine code
+     * @param species the species filter, or null for all
+     * @param breed the breed filter, or null for all
+     * @param city the city filter, or null for all
+     * @param groupBy the dimensions to group by, out of species, breed and city
+     * @return the coverage of each group with animals, ordered by group
+     * @throws InvalidRequestException if a dimension is unknown
+     */
+    public VaccineCoverageReportDTO getCoverage(String code, String species, String breed, String city,
+                                                Collection<String> groupBy) {
+        for (String dimension : groupBy) {
+            if (!DIMENSIONS.contains(dimension)) {
+                throw new InvalidRequestException("Coverage can only be grouped by species, breed and city: " + dimension);
+            }
+        }
+        boolean bySpecies = groupBy.contains("species");
+        boolean byBreed = groupBy.contains("breed");
+        boolean byCity = groupBy.contains("city");
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder filter = new StringBuilder();
+        if (species != null) {
+            filter.append(" AND animal_species = ?");
+            args.add(species);
+        }
+        if (breed != null) {
+            filter.append(" AND animal_breed = ?");
+            args.add(breed);
+        }
+        if (city != null) {
+            filter.append(" AND customer_city = ?");
+            args.add(city);
+        }
+
+        Map<Group, long[]> groups = new TreeMap<>();
+        jdbcTemplate.query("SELECT animal_species, animal_breed, customer_city, animal_count " +
+                "FROM animal_population_rollup WHERE animal_count > 0" + filter, rs -> {
+            Group group = new Group(null, bySpecies ? rs.getString(1) : null, byBreed ? rs.getString(2) : null,
+                    byCity ? rs.getString(3) : null);
+            groups.computeIfAbsent(group, g -> new long[2])[0] += rs.getLong(4);
+        }, args.toArray());
+        args.add(0, code);
+        jdbcTemplate.query("SELECT animal_species, animal_breed, customer_city, protected_count " +
+                "FROM vaccine_coverage_rollup WHERE vaccine_code = ? AND protected_count > 0" + filter, rs -> {
+            Group group = new Group(null, bySpecies ? rs.getString(1) : null, byBreed ? rs.getString(2) : null,
+                    byCity ? rs.getString(3) : null);
+            groups.computeIfAbsent(group, g -> new long[2])[1] += rs.getLong(4);
+        }, args.toArray());
+
+        List<VaccineCoverageDTO> coverage = new ArrayList<>(groups.size());
+        groups.forEach((group, counts) -> {
+            double percent = counts[0] > 0 ? Math.round(counts[1] * 10000.0 / counts[0]) / 100.0 : 0;
+            coverage.add(new VaccineCoverageDTO(group.species, group.breed, group.city, counts[0], counts[1], percent));
+        });
+        return new VaccineCoverageReportDTO(code, jdbcTemplate.queryForObject(READ_STATE_SQL, LocalDate.class), coverage);
+    }
+
+    /**
+     * Runs the rollover on the configured schedule.
+     */
+    @Scheduled(initialDelayString = "${vet.coverage.rollover-initial-delay:PT1M}",
+            fixedDelayString = "${vet.coverage.rollover-interval:PT1H}")
+    public void rolloverScheduled() {
+        if (!rolloverEnabled) {
+            return;
+        }
+        try {
+            rollover();
+        } catch (RuntimeException e) {
+            log.error("Vaccine coverage rollover failed", e);
+        }
+    }
+
+    /**
+     * Moves the as-of day of the rollups to today and takes out the protections that ended
+     * since the last rollover. Does nothing if the rollups are already counted for today.
+     *
+     * @return the as-of day after the rollover
+     */
+    public synchronized LocalDate rollover() {
+        LocalDate today = LocalDate.now();
+        long startNanos = System.nanoTime();
+        return transactionTemplate.execute(status -> {
+            LocalDate asOf = jdbcTemplate.queryForObject(LOCK_STATE_SQL, LocalDate.class);
+            if (!today.isAfter(asOf)) {
+                return asOf;
+            }
+            Map<Group, Long> deltas = new TreeMap<>();
+            count(COUNT_EXPIRED_SQL, -1, deltas, asOf, today, today);
+            apply(deltas);
+            jdbcTemplate.update(UPDATE_STATE_SQL, today);
+            log.info("Vaccine coverage rolled over from {} to {} in {} ms, {} groups changed", asOf, today,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), deltas.size());
+            return today;
+        });
+    }
+
+    /**
+     * Recounts the rollups in parallel chunks of animal IDs and corrects the stored counts that
+     * differ. Writes are not blocked while it runs.
+     *
+     * @return the result of the rebuild
+     */
+    public synchronized VaccineCoverageRebuildDTO rebuild() {
+        Date startedAt = new Date();
+        long startNanos = System.nanoTime();
+        Map<Group, Long> corrections = new TreeMap<>();
+        RebuildScope scope = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+            String snapshot = jdbcTemplate.queryForObject("SELECT pg_export_snapshot()", String.class);
+            LocalDate asOf = jdbcTemplate.queryForObject(READ_STATE_SQL, LocalDate.class);
+            count(STORED_SQL, -1, corrections);
+            long[] range = jdbcTemplate.queryForObject("SELECT COALESCE(MIN(animal_id), 0), COALESCE(MAX(animal_id), -1) " +
+                    "FROM animals", (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+
+            // The snapshot stays valid while this transaction waits for the chunks
+            List<Future<Map<Group, Long>>> chunks = new ArrayList<>();
+            ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads);
+            try {
+                for (long from = range[0]; from <= range[1]; from += rebuildChunkSize) {
+                    long fromId = from;
+                    chunks.add(executor.submit(() -> countChunk(snapshot, asOf, fromId, fromId + rebuildChunkSize)));
+                }
+                for (Future<Map<Group, Long>> chunk : chunks) {
+                    chunk.get().forEach((group, count) -> corrections.merge(group, count, Long::sum));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Vaccine coverage rebuild was interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException("Vaccine coverage rebuild failed", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+            return new RebuildScope(asOf, chunks.size());
+        });
+
+        corrections.values().removeIf(delta -> delta == 0);
+        transactionTemplate.executeWithoutResult(status -> {
+            apply(corrections);
+            jdbcTemplate.update("DELETE FROM animal_population_rollup WHERE animal_count = 0");
+            jdbcTemplate.update("DELETE FROM vaccine_coverage_rollup WHERE protected_count = 0");
+        });
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (corrections.isEmpty()) {
+            log.info("Vaccine coverage rebuilt in {} chunks in {} ms, no drift", scope.chunkCount, durationMillis);
+        } else {
+            log.warn("Vaccine coverage rebuilt in {} chunks in {} ms, {} groups corrected", scope.chunkCount,
+                    durationMillis, corrections.size());
+        }
+        return new VaccineCoverageRebuildDTO(startedAt, durationMillis, scope.asOf, scope.chunkCount,
+                (long) corrections.size());
+    }
+
+    private <T> T update(Supplier<Collection<Long>> lock, Supplier<T> change, Function<T, Long> addedAnimalId) {
+        return transactionTemplate.execute(status -> {
+            LocalDate asOf = jdbcTemplate.queryForObject(SHARE_STATE_SQL, LocalDate.class);
+            List<Long> animalIds = new ArrayList<>(lock.get());
+            Map<Group, Long> deltas = new TreeMap<>();
+            countAnimals(animalIds, asOf, -1, deltas);
+            T result = change.get();
+            entityManager.flush();
+            Long added = addedAnimalId.apply(result);
+            if (added != null) {
+                animalIds.add(added);
+            }
+            countAnimals(animalIds, asOf, 1, deltas);
+            deltas.values().removeIf(delta -> delta == 0);
+            apply(deltas);
+            return result;
+        });
+    }
+
+    private List<Long> lockAnimals(Collection<Long> animalIds) {
+        if (animalIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(LOCK_ANIMALS_SQL, Long.class, (Object) animalIds.toArray(new Long[0]));
+    }
+
+    private void countAnimals(List<Long> animalIds, LocalDate asOf, int sign, Map<Group, Long> deltas) {
+        if (animalIds.isEmpty()) {
+            return;
+        }
+        Long[] ids = animalIds.toArray(new Long[0]);
+        count(COUNT_ANIMALS_SQL, sign, deltas, ids, ids, asOf);
+    }
+
+    private Map<Group, Long> countChunk(String snapshot, LocalDate asOf, long fromId, long toId) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+            jdbcTemplate.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+            Map<Group, Long> counts = new HashMap<>();
+            count(COUNT_RANGE_SQL, 1, counts, fromId, toId, fromId, toId, asOf);
+            return counts;
+        });
+    }
+
+    /**
+     * Adds the counts of a query, whose rows are a vaccine code or null, species, breed, city
+     * and a count, to the deltas.
+     */
+    private void count(String sql, int sign, Map<Group, Long> deltas, Object... args) {
+        jdbcTemplate.query(sql, rs -> {
+            deltas.merge(new Group(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)),
+                    sign * rs.getLong(5), Long::sum);
+        }, args);
+    }
+
+    /**
+     * Applies the deltas in group order, animal counts first.
+     */
+    private void apply(Map<Group, Long> deltas) {
+        List<Object[]> population = new ArrayList<>();
+        List<Object[]> coverage = new ArrayList<>();
+        deltas.forEach((group, delta) -> {
+            if (group.code == null) {
+                population.add(new Object[]{group.species, group.breed, group.city, delta});
+            } else {
+                coverage.add(new Object[]{group.code, group.species, group.breed, group.city, delta});
+            }
+        });
+        if (!population.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_POPULATION_SQL, population);
+        }
+        if (!coverage.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_COVERAGE_SQL, coverage);
+        }
+    }
+
+    /**
+     * A group of the rollups; the vaccine code is null for the animal counts.
+     */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class Group implements Comparable<Group> {
+
+        private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+        private static final Comparator<Group> ORDER = Comparator.comparing((Group g) -> g.code, NULLS_FIRST)
+                .thenComparing(g -> g.species, NULLS_FIRST)
+                .thenComparing(g -> g.breed, NULLS_FIRST)
+                .thenComparing(g -> g.city, NULLS_FIRST);
+
+        private final String code;
+        private final String species;
+        private final String breed;
+        private final String city;
+
+        @Override
+        public int compareTo(Group other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class RebuildScope {
+        private final LocalDate asOf;
+        private final int chunkCount;
+    }
+}
@@ -0,0 +1,129 @@
+package ceksioglu.vet_management_sys.core.stock;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The remaining quantity of one stock lot in memory.
+ * <p>
+ * Takes and releases only touch an atomic counter, which a take decrements with a
+ * compare-and-set only while it is positive, so the quantity never goes below zero and takes
+ * of different lots never contend. The quantity last written to the database is kept next to
+ * it; the difference is what the next flush writes. Every change is also applied to the total of
+ * the lot's product, so that each take knows exactly what the product has left after it.
+ */
+@Getter
+public class LotCounter {
+
+    private final Long lotId;
+    private final Integer catalogId;
+    private final String lotNumber;
+    private final LocalDate expiryDate;
+    private final long receivedQuantity;
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong available;
+    @Getter(AccessLevel.NONE)
+    private volatile AtomicLong productQuantity = new AtomicLong();
+    private long flushedQuantity;
+
+    /**
+     * Constructor for LotCounter.
+     *
+     * @param lotId the lot ID
+     * @param catalogId the catalog ID of the lot's product
+     * @param lotNumber the lot number
+     * @param expiryDate the last day the lot can be used
+     * @param receivedQuantity the quantity received
+     * @param quantity the remaining quantity stored in the database
+     */
+    public LotCounter(Long lotId, Integer catalogId, String lotNumber, LocalDate expiryDate,
+                      long receivedQuantity, long quantity) {
+        this.lotId = lotId;
+        this.catalogId = catalogId;
+        this.lotNumber = lotNumber;
+        this.expiryDate = expiryDate;
+        this.receivedQuantity = receivedQuantity;
+        this.available = new AtomicLong(quantity);
+        this.flushedQuantity = quantity;
+    }
+
+    /**
+     * Takes one dose if the lot has any left.
+     *
+     * @return the quantity left in all lots of the product after the take, or -1 if the lot had
+     * none left
+     */
+    public long tryTake() {
+        long current;
+        do {
+            current = available.get();
+            if (current <= 0) {
+                return -1;
+            }
+        } while (!available.compareAndSet(current, current - 1));
+        return productQuantity.decrementAndGet();
+    }
+
+    /**
+     * Puts back a dose taken for a write that failed.
+     */
+    public void release() {
+        available.incrementAndGet();
+        productQuantity.incrementAndGet();
+    }
+
+    /**
+     * Counts the lot in the total of its product. Callers serialize the changes of the lot list.
+     *
+     * @param productQuantity the total of the product
+     */
+    void attach(AtomicLong productQuantity) {
+        this.productQuantity = productQuantity;
+        productQuantity.addAndGet(available.get());
+    }
+
+    /**
+     * Takes the lot out of the total of its product. Callers serialize the changes of the lot list.
+     */
+    void detach() {
+        productQuantity.addAndGet(-available.get());
+        productQuantity = new AtomicLong();
+    }
+
+    /**
+     * Applies a change of the stored quantity made outside of the ledger, never going below
+     * zero.
+     *
+     * @param delta the change
+     */
+    void adjust(long delta) {
+        long previous = available.getAndUpdate(current -> Math.max(current + delta, 0));
+        productQuantity.addAndGet(Math.max(previous + delta, 0) - previous);
+    }
+
+    /**
+     * Checks if the lot can still be used on a day.
+     *
+     * @param day the day
+     * @return true if the lot expires on or after the day
+     */
+    public boolean isUsableOn(LocalDate day) {
+        return !expiryDate.isBefore(day);
+    }
+
+    /**
+     * Gets the quantity left.
+     *
+     * @return the quantity left
+     */
+    public long getAvailableQuantity() {
+        return available.get();
+    }
+
+    void setFlushedQuantity(long flushedQuantity) {
+        this.flushedQuantity = flushedQuantity;
+    }
+}
@@ -0,0 +1,125 @@
+package ceksioglu.vet_management_sys.core.stock;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The stock lots of one vaccine product, ordered by expiry date so that the lot expiring first
+ * is used first.
+ * <p>
+ * The list of lots is replaced as a whole when a lot is added or removed, so takes read it
+ * without a lock and only contend on the counter of the lot they take from. The lots also keep
+ * a total of the product, which every take decrements by one, so each take sees its own
+ * quantity before and after and exactly one of them takes the product below a level.
+ */
+public class ProductStock {
+
+    private static final Comparator<LotCounter> BY_EXPIRY = Comparator
+            .comparing(LotCounter::getExpiryDate)
+            .thenComparing(LotCounter::getLotId);
+
+    private final AtomicLong quantity = new AtomicLong();
+    private volatile List<LotCounter> lots = List.of();
+
+    /**
+     * Takes one dose from the usable lot expiring first that has any left.
+     *
+     * @param day the day of the take; lots expired before it are skipped
+     * @return the lot the dose was taken from and the usable quantity left after the take, or
+     * null if no usable lot has any left
+     */
+    public Take take(LocalDate day) {
+        List<LotCounter> current = lots;
+        for (LotCounter lot : current) {
+            if (lot.isUsableOn(day)) {
+                long remaining = lot.tryTake();
+                if (remaining >= 0) {
+                    // Expired lots are not taken from, so what they hold does not change with takes
+                    for (LotCounter other : current) {
+                        if (!other.isUsableOn(day)) {
+                            remaining -= other.getAvailableQuantity();
+                        }
+                    }
+                    return new Take(lot, remaining);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sums up the quantity left in the lots usable on a day.
+     *
+     * @param day the day
+     * @return the usable quantity
+     */
+    public long getAvailableQuantity(LocalDate day) {
+        long quantity = 0;
+        for (LotCounter lot : lots) {
+            if (lot.isUsableOn(day)) {
+                quantity += lot.getAvailableQuantity();
+            }
+        }
+        return quantity;
+    }
+
+    /**
+     * Gets the lots ordered by expiry date.
+     *
+     * @return the lots
+     */
+    public List<LotCounter> getLots() {
+        return lots;
+    }
+
+    /**
+     * Adds a lot. Callers serialize the changes of the lot list.
+     *
+     * @param lot the lot
+     */
+    public void add(LotCounter lot) {
+        lot.attach(quantity);
+        List<LotCounter> changed = new ArrayList<>(lots);
+        changed.add(lot);
+        changed.sort(BY_EXPIRY);
+        lots = List.copyOf(changed);
+    }
+
+    /**
+     * Removes a lot. Callers serialize the changes of the lot list.
+     *
+     * @param lot the lot
+     */
+    public void remove(LotCounter lot) {
+        List<LotCounter> changed = new ArrayList<>(lots);
+        changed.remove(lot);
+        lots = List.copyOf(changed);
+        lot.detach();
+    }
+
+    /**
+     * A dose taken from a lot.
+     */
+    @Getter
+    public static class Take {
+
+        private final LotCounter lot;
+        private final long remaining;
+
+        /**
+         * Constructor for Take.
+         *
+         * @param lot the lot the dose was taken from
+         * @param remaining the usable quantity of the product left after the take
+         */
+        public Take(LotCounter lot, long remaining) {
+            this.lot = lot;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package ceksioglu.vet_management_sys.core.stock;
+
+import ceksioglu.vet_management_sys.core.exception.OutOfStockException;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.entity.VaccineStockLot;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the remaining quantity of every vaccine stock lot in memory.
+ * <p>
+ * Administering a vaccine takes a dose from the usable lot of its product that expires first,
+ * with a compare-and-set on that lot's counter instead of a row lock, so busy campaign days do
+ * not queue up on the stock rows. The counters are written to {@code vaccine_stock_lots} by a
+ * frequent flush that subtracts what was taken since the last one. A less frequent
+ * reconciliation reads the table back and applies changes made outside of the ledger, e.g.
+ * lots received or corrected in the database, to the counters. The counters live in one
+ * application instance, like the other in-memory caches; after a crash the decrements of the
+ * last flush interval are lost and the stock shows that many doses more.
+ */
+@Slf4j
+@Component
+public class VaccineStockLedger {
+
+    private static final String SELECT_LOTS_SQL =
+            "SELECT vaccine_stock_lot_id, vaccine_catalog_id, lot_number, expiry_date, received_quantity, quantity " +
+                    "FROM vaccine_stock_lots";
+    private static final String FLUSH_SQL =
+            "UPDATE vaccine_stock_lots SET quantity = GREATEST(quantity - ?, 0) WHERE vaccine_stock_lot_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int lowStockThreshold;
+    private final Map<Integer, ProductStock> products = new ConcurrentHashMap<>();
+    private final Map<Long, LotCounter> lots = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for VaccineStockLedger.
+     *
+     * @param jdbcTemplate the JDBC template
+     * @param lowStockThreshold the usable quantity of a product at or below which it is low on stock
+     */
+    @Autowired
+    public VaccineStockLedger(JdbcTemplate jdbcTemplate,
+                              @Value("${vet.vaccine-stock.low-stock-threshold:10}") int lowStockThreshold) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    /**
+     * Loads all lots.
+     */
+    @PostConstruct
+    public synchronized void load() {
+        List<LotCounter> stored = readLots();
+        stored.forEach(this::add);
+        log.info("Vaccine stock ledger loaded {} lots", stored.size());
+    }
+
+    /**
+     * Takes one dose of a product from its usable lot expiring first.
+     *
+     * @param catalogId the catalog ID of the product
+     * @return the lot the dose was taken from, or empty if the stock of the product is not kept
+     * @throws OutOfStockException if the product has lots but none of the usable ones has any left
+     */
+    public Optional<LotCounter> take(Integer catalogId) {
+        ProductStock stock = products.get(catalogId);
+        if (stock == null || stock.getLots().isEmpty()) {
+            return Optional.empty();
+        }
+        ProductStock.Take take = stock.take(LocalDate.now());
+        if (take == null) {
+            throw new OutOfStockException("No usable stock left for vaccine catalog id: " + catalogId);
+        }
+        // Every take has its own quantity before and after, so only the take that goes below a level warns
+        long remaining = take.getRemaining();
+        if (crosses(remaining, lowStockThreshold) || crosses(remaining, 0)) {
+            log.warn("Vaccine catalog id {} is low on stock: {} doses left", catalogId, remaining);
+        }
+        return Optional.of(take.getLot());
+    }
+
+    /**
+     * Puts back a dose taken for a vaccine that was not saved.
+     *
+     * @param lot the lot the dose was taken from
+     */
+    public void release(LotCounter lot) {
+        lot.release();
+    }
+
+    /**
+     * Adds a lot that was just received. A lot that is already kept is left as it is.
+     *
+     * @param lot the saved lot
+     */
+    public synchronized void register(VaccineStockLot lot) {
+        if (!lots.containsKey(lot.getId())) {
+            add(new LotCounter(lot.getId(), lot.getCatalog().getId(), lot.getLotNumber(),
+                    DateUtils.toLocalDate(lot.getExpiryDate()), lot.getReceivedQuantity(), lot.getQuantity()));
+        }
+    }
+
+    /**
+     * Gets the usable quantity of a product.
+     *
+     * @param catalogId the catalog ID of the product
+     * @param day the day the lots have to be usable on
+     * @return the quantity left in the usable lots
+     */
+    public long getAvailableQuantity(Integer catalogId, LocalDate day) {
+        ProductStock stock = products.get(catalogId);
+        return stock == null ? 0 : stock.getAvailableQuantity(day);
+    }
+
+    /**
+     * Lists all lots.
+     *
+     * @return the lots, ordered by catalog ID, expiry date and lot ID
+     */
+    public List<LotCounter> getLots() {
+        List<LotCounter> all = new ArrayList<>(lots.values());
+        all.sort(Comparator.comparing(LotCounter::getCatalogId)
+                .thenComparing(LotCounter::getExpiryDate)
+                .thenComparing(LotCounter::getLotId));
+        return all;
+    }
+
+    /**
+     * Lists the lots of a product.
+     *
+     * @param catalogId the catalog ID of the product
+     * @return the lots, ordered by expiry date
+     */
+    public List<LotCounter> getLots(Integer catalogId) {
+        ProductStock stock = products.get(catalogId);
+        return stock == null ? List.of() : stock.getLots();
+    }
+
+    /**
+     * Gets the catalog IDs of the products that have lots.
+     *
+     * @return the catalog IDs
+     */
+    public Set<Integer> getCatalogIds() {
+        return products.keySet();
+    }
+
+    /**
+     * Gets the usable quantity at or below which a product is low on stock.
+     *
+     * @return the low stock threshold
+     */
+    public int getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    /**
+     * Flushes the counters on the configured schedule.
+     */
+    @Scheduled(initialDelayString = "${vet.vaccine-stock.flush-interval:PT5S}",
+            fixedDelayString = "${vet.vaccine-stock.flush-interval:PT5S}")
+    public void flushScheduled() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Vaccine stock flush failed", e);
+        }
+    }
+
+    /**
+     * Reconciles the counters on the configured schedule.
+     */
+    @Scheduled(initialDelayString = "${vet.vaccine-stock.reconcile-interval:PT5M}",
+            fixedDelayString = "${vet.vaccine-stock.reconcile-interval:PT5M}")
+    public void reconcileScheduled() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.error("Vaccine stock reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Writes the doses taken and released since the last flush to the database in one batch.
+     *
+     * @return the number of lots written
+     */
+    @PreDestroy
+    public synchronized int flush() {
+        List<LotCounter> changed = new ArrayList<>();
+        List<Long> quantities = new ArrayList<>();
+        List<Object[]> args = new ArrayList<>();
+        for (LotCounter lot : lots.values()) {
+            long quantity = lot.getAvailableQuantity();
+            if (quantity != lot.getFlushedQuantity()) {
+                changed.add(lot);
+                quantities.add(quantity);
+                args.add(new Object[]{lot.getFlushedQuantity() - quantity, lot.getLotId()});
+            }
+        }
+        if (args.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(FLUSH_SQL, args);
+        for (int i = 0; i < changed.size(); i++) {
+            changed.get(i).setFlushedQuantity(quantities.get(i));
+        }
+        return changed.size();
+    }
+
+    /**
+     * Flushes the counters, then reads all lots back and applies the changes made in the
+     * database since the last flush: changed quantities move the counters by the difference,
+     * new lots are added and deleted lots dropped.
+     *
+     * @return the number of lots that were changed, added or dropped
+     */
+    public synchronized int reconcile() {
+        flush();
+        int corrected = 0;
+        Set<Long> storedIds = new HashSet<>();
+        for (LotCounter stored : readLots()) {
+            storedIds.add(stored.getLotId());
+            LotCounter lot = lots.get(stored.getLotId());
+            if (lot == null) {
+                add(stored);
+                corrected++;
+                continue;
+            }
+            long difference = stored.getFlushedQuantity() - lot.getFlushedQuantity();
+            if (difference != 0) {
+                lot.adjust(difference);
+                lot.setFlushedQuantity(stored.getFlushedQuantity());
+                corrected++;
+            }
+        }
+        for (LotCounter lot : new ArrayList<>(lots.values())) {
+            if (!storedIds.contains(lot.getLotId())) {
+                lots.remove(lot.getLotId());
+                products.get(lot.getCatalogId()).remove(lot);
+                corrected++;
+            }
+        }
+        if (corrected > 0) {
+            log.info("Vaccine stock reconciliation corrected {} lots", corrected);
+        }
+        return corrected;
+    }
+
+    private static boolean crosses(long remaining, long level) {
+        return remaining + 1 > level && remaining <= level;
+    }
+
+    private List<LotCounter> readLots() {
+        return jdbcTemplate.query(SELECT_LOTS_SQL, (rs, rowNum) -> new LotCounter(
+                rs.getLong("vaccine_stock_lot_id"),
+                rs.getInt("vaccine_catalog_id"),
+                rs.getString("lot_number"),
+                rs.getDate("expiry_date").toLocalDate(),
+                rs.getLong("received_quantity"),
+                rs.getLong("quantity")));
+    }
+
+    private void add(LotCounter lot) {
+        lots.put(lot.getLotId(), lot);
+        products.computeIfAbsent(lot.getCatalogId(), id -> new ProductStock()).add(lot);
+    }
+}
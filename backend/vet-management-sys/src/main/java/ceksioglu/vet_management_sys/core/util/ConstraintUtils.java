@@ -0,0 +1,37 @@
+package ceksioglu.vet_management_sys.core.util;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+
+/**
+ * Helpers for telling which database constraint rejected a write.
+ */
+public final class ConstraintUtils {
+
+    private ConstraintUtils() {
+    }
+
+    /**
+     * Checks whether a write failed because of the given constraint, e.g. a unique key that
+     * replaces an exists query before the insert. Writes through JDBC carry no constraint name,
+     * so the driver's message, which quotes it, is checked as well.
+     *
+     * @param e the exception thrown by the write
+     * @param constraintName the name of the constraint, as created by the migrations
+     * @return true if the constraint was violated
+     */
+    public static boolean isViolated(DataIntegrityViolationException e, String constraintName) {
+        String quotedName = "\"" + constraintName.toLowerCase() + "\"";
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return constraintName.equalsIgnoreCase(violation.getConstraintName());
+            }
+            if (cause instanceof SQLException && cause.getMessage() != null && cause.getMessage().contains(quotedName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,239 @@
+package ceksioglu.vet_management_sys.core.util;
+
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import org.springframework.data.domain.Limit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Helpers for keyset pagination.
+ * <p>
+ * Lists are ordered by a sort key and the ID, or by the ID alone. A cursor holds those values
+ * of the last item of a page, serialized with a type tag per value and Base64 encoded, so
+ * clients treat it as an opaque string. The next page is read with a
+ * {@code WHERE (key, id) > (:key, :id)} condition that seeks into the matching index instead
+ * of an OFFSET, so deep pages cost as much as the first one. The first page uses the lowest
+ * possible key and ID, which keeps one query per list.
+ */
+public final class CursorUtils {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final Long FIRST_ID = 0L;
+    private static final Timestamp FIRST_DATE = Timestamp.valueOf("0001-01-01 00:00:00");
+    private static final String FIRST_TEXT = "";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<List<List<String>>> VALUES_TYPE = new TypeReference<>() {
+    };
+
+    private CursorUtils() {
+    }
+
+    /**
+     * Position after which the next page of a list ordered by a sort key and the ID starts.
+     *
+     * @param <K> the type of the sort key
+     */
+    @Value
+    public static class Keyset<K> {
+        K key;
+        Long id;
+    }
+
+    /**
+     * Decodes the cursor of a list ordered by ID.
+     *
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @return the ID after which the page starts
+     * @throws InvalidRequestException if the cursor is malformed or belongs to a differently ordered list
+     */
+    public static Long decodeId(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST_ID;
+        }
+        List<Object> values = decodeValues(cursor, 1);
+        return cast(values.get(0), Long.class);
+    }
+
+    /**
+     * Decodes the cursor of a list ordered by a sort key and the ID.
+     *
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param keyType the type of the sort key, {@link Date} or {@link String}
+     * @param <K> the type of the sort key
+     * @return the key and ID after which the page starts
+     * @throws InvalidRequestException if the cursor is malformed or belongs to a differently ordered list
+     */
+    public static <K> Keyset<K> decode(String cursor, Class<K> keyType) {
+        if (cursor == null || cursor.isBlank()) {
+            return new Keyset<>(keyType.cast(keyType == String.class ? FIRST_TEXT : FIRST_DATE), FIRST_ID);
+        }
+        List<Object> values = decodeValues(cursor, 2);
+        return new Keyset<>(cast(values.get(0), keyType), cast(values.get(1), Long.class));
+    }
+
+    /**
+     * Checks a requested page size and turns it into a query limit. One more row than the page
+     * size is read to find out whether there is a next page.
+     *
+     * @param size the requested page size
+     * @return the limit
+     * @throws InvalidRequestException if the size is out of range
+     */
+    public static Limit limit(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new InvalidRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return Limit.of(size + 1);
+    }
+
+    /**
+     * Builds a page of a list ordered by ID.
+     *
+     * @param items the items read with {@link #limit(int)}
+     * @param size the page size
+     * @param id the ID of an item
+     * @param mapper the entity to DTO mapper
+     * @param <E> the entity type
+     * @param <D> the DTO type
+     * @return the page DTO
+     */
+    public static <E, D> CursorPageDTO<D> toPage(List<E> items, int size, Function<E, Long> id, Function<E, D> mapper) {
+        return buildPage(items, size, item -> List.of(id.apply(item)), mapper);
+    }
+
+    /**
+     * Builds a page of a list ordered by a sort key and the ID.
+     *
+     * @param items the items read with {@link #limit(int)}
+     * @param size the page size
+     * @param key the sort key of an item
+     * @param id the ID of an item
+     * @param mapper the entity to DTO mapper
+     * @param <E> the entity type
+     * @param <D> the DTO type
+     * @return the page DTO
+     */
+    public static <E, D> CursorPageDTO<D> toPage(List<E> items, int size, Function<E, ?> key,
+                                                 Function<E, Long> id, Function<E, D> mapper) {
+        return buildPage(items, size, item -> List.of(key.apply(item), id.apply(item)), mapper);
+    }
+
+    private static <E, D> CursorPageDTO<D> buildPage(List<E> items, int size, Function<E, List<Object>> values,
+                                                     Function<E, D> mapper) {
+        boolean hasNext = items.size() > size;
+        List<E> pageItems = hasNext ? items.subList(0, size) : items;
+        List<D> content = pageItems.stream()
+                .map(mapper)
+                .toList();
+        String nextCursor = hasNext ? encode(values.apply(pageItems.get(pageItems.size() - 1))) : null;
+        return new CursorPageDTO<>(content, nextCursor, hasNext);
+    }
+
+    /**
+     * Encodes the sort values of the last item of a page as a cursor.
+     *
+     * @param values the sort key, if any, and the ID
+     * @return the cursor
+     */
+    private static String encode(List<Object> values) {
+        List<List<String>> encoded = new ArrayList<>(values.size());
+        values.forEach(value -> encoded.add(encodeValue(value)));
+        try {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(OBJECT_MAPPER.writeValueAsString(encoded).getBytes(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cursor could not be encoded", e);
+        }
+    }
+
+    /**
+     * Decodes the sort values of a cursor.
+     *
+     * @param cursor the cursor
+     * @param count the expected number of values
+     * @return the values
+     * @throws InvalidRequestException if the cursor is malformed
+     */
+    private static List<Object> decodeValues(String cursor, int count) {
+        List<List<String>> encoded;
+        try {
+            encoded = OBJECT_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), VALUES_TYPE);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+        if (encoded == null || encoded.size() != count) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+        List<Object> values = new ArrayList<>(count);
+        encoded.forEach(value -> values.add(decodeValue(value)));
+        return values;
+    }
+
+    /**
+     * Encodes a sort value as a type tag and its text.
+     *
+     * @param value the value
+     * @return the tag and the text
+     */
+    private static List<String> encodeValue(Object value) {
+        if (value instanceof Long number) {
+            return List.of("long", number.toString());
+        } else if (value instanceof String text) {
+            return List.of("string", text);
+        } else if (value instanceof java.sql.Date date) {
+            return List.of("date", date.toString());
+        } else if (value instanceof Timestamp timestamp) {
+            return List.of("timestamp", timestamp.toString());
+        } else if (value instanceof Date date) {
+            return List.of("instant", Long.toString(date.getTime()));
+        }
+        throw new IllegalStateException("Unsupported sort value type: " + (value == null ? null : value.getClass()));
+    }
+
+    /**
+     * Decodes a sort value from its type tag and text.
+     *
+     * @param encoded the tag and the text
+     * @return the value
+     * @throws InvalidRequestException if the tag or the text is invalid
+     */
+    private static Object decodeValue(List<String> encoded) {
+        if (encoded == null || encoded.size() != 2 || encoded.get(0) == null || encoded.get(1) == null) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+        String text = encoded.get(1);
+        try {
+            return switch (encoded.get(0)) {
+                case "long" -> Long.valueOf(text);
+                case "string" -> text;
+                case "date" -> java.sql.Date.valueOf(text);
+                case "timestamp" -> Timestamp.valueOf(text);
+                case "instant" -> new Date(Long.parseLong(text));
+                default -> throw new InvalidRequestException("Invalid cursor");
+            };
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+    }
+
+    private static <T> T cast(Object value, Class<T> type) {
+        if (!type.isInstance(value)) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+        return type.cast(value);
+    }
+}
@@ -0,0 +1,40 @@
+package ceksioglu.vet_management_sys.core.util;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Helpers for moving between {@link Date} values used by the entities and calendar days.
+ */
+public final class DateUtils {
+
+    private DateUtils() {
+    }
+
+    /**
+     * Converts a date or timestamp to the calendar day it falls on.
+     * Works for {@link java.sql.Date} and {@link java.sql.Timestamp} values loaded by Hibernate as well.
+     *
+     * @param date the date
+     * @return the calendar day, or null if the date is null
+     */
+    public static LocalDate toLocalDate(Date date) {
+        if (date == null) {
+            return null;
+        }
+        return new java.sql.Date(date.getTime()).toLocalDate();
+    }
+
+    /**
+     * Converts a calendar day to a date at the start of that day.
+     *
+     * @param localDate the calendar day
+     * @return the date, or null if the day is null
+     */
+    public static Date toDate(LocalDate localDate) {
+        if (localDate == null) {
+            return null;
+        }
+        return java.sql.Date.valueOf(localDate);
+    }
+}
@@ -0,0 +1,27 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the result of one item of a batch appointment booking.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentBatchResultDTO {
+
+    private Integer index;
+    private Status status;
+    private AppointmentDTO appointment;
+    private String message;
+
+    public enum Status {
+        CREATED,
+        CONFLICT,
+        NOT_FOUND,
+        INVALID,
+        FAILED
+    }
+}
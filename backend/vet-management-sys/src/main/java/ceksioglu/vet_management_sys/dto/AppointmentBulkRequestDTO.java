@@ -0,0 +1,31 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for moving or cancelling every appointment of a doctor in a day range.
+ * <p>
+ * Moved appointments keep their time of day. The target doctor defaults to the same doctor and
+ * the target start date to the start date, so at least one of them has to be given for a move.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentBulkRequestDTO {
+
+    private Action action;
+    private Long doctorId;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Long targetDoctorId;
+    private LocalDate targetStartDate;
+
+    public enum Action {
+        MOVE,
+        CANCEL
+    }
+}
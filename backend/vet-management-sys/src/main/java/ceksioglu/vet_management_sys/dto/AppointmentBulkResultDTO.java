@@ -0,0 +1,21 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for the result of a bulk move or cancellation.
+ * Appointments that could not be moved stay where they were and are listed with the reason.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentBulkResultDTO {
+
+    private AppointmentBulkRequestDTO.Action action;
+    private Integer processedCount;
+    private List<SkippedAppointmentDTO> skipped;
+}
@@ -16,6 +16,7 @@ public class AppointmentDTO {
 
     private Long id;
     private Date appointmentDate;
+    private Date appointmentEndDate;
     private Long doctorId;
     private Long animalId;
     private Integer appointmentOrder;
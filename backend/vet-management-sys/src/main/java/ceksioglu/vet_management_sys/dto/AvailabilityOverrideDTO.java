@@ -0,0 +1,24 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for AvailabilityOverride entity.
+ * <p>
+ * A missing daily appointment limit closes the day, otherwise the limit replaces the one of the
+ * doctor's templates on that day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityOverrideDTO {
+
+    private Long id;
+    private Long doctorId;
+    private LocalDate date;
+    private Integer dailyAppointmentLimit;
+}
@@ -0,0 +1,29 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Data Transfer Object for AvailabilityTemplate entity.
+ * <p>
+ * The valid until date is optional. The expanded until date is set by the server and tells up to
+ * which day the template has been turned into available dates.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityTemplateDTO {
+
+    private Long id;
+    private Long doctorId;
+    private Set<DayOfWeek> daysOfWeek;
+    private Integer dailyAppointmentLimit;
+    private LocalDate validFrom;
+    private LocalDate validUntil;
+    private LocalDate expandedUntil;
+}
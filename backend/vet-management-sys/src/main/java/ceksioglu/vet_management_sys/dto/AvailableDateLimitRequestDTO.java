@@ -0,0 +1,22 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for changing the daily appointment limit of every available date in a
+ * date range. Without a doctor ID, the days of all doctors are changed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailableDateLimitRequestDTO {
+
+    private Long doctorId;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Integer dailyAppointmentLimit;
+}
@@ -0,0 +1,21 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for the result of a bulk limit change.
+ * Overbooked dates are the changed days whose appointment count is now above the new limit;
+ * their appointments are kept and new bookings are refused until enough of them are cancelled.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailableDateLimitResultDTO {
+
+    private Integer updatedCount;
+    private List<AvailableDateDTO> overbookedDates;
+}
@@ -0,0 +1,23 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for a doctor-day whose stored appointment count did not match its appointments.
+ * {@code fixed} is false when a booking changed the day while it was being checked.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CapacityDriftDTO {
+
+    private Long doctorId;
+    private LocalDate date;
+    private Integer storedCount;
+    private Long actualCount;
+    private boolean fixed;
+}
@@ -0,0 +1,31 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Data Transfer Object for the result of one run of the appointment count reconciliation.
+ * <p>
+ * Over-counted days had more bookings stored than appointments and under-counted days fewer.
+ * {@code totalDrift} sums the absolute differences and {@code drifts} lists the largest ones.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CapacityReconciliationDTO {
+
+    private Date startedAt;
+    private Long durationMillis;
+    private Long checkedCount;
+    private Long driftedCount;
+    private Long fixedCount;
+    private Long overCountedCount;
+    private Long underCountedCount;
+    private Long totalDrift;
+    private Long maxDrift;
+    private List<CapacityDriftDTO> drifts;
+}
@@ -0,0 +1,25 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for one page of a keyset paginated list.
+ * <p>
+ * The next page is requested by passing {@code nextCursor} back as the {@code cursor} parameter.
+ * {@code nextCursor} is null on the last page.
+ *
+ * @param <T> the type of the page items
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+}
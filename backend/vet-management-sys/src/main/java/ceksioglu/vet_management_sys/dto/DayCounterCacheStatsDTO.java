@@ -0,0 +1,26 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the statistics of the cache in front of the appointment count and
+ * order endpoints, counted since startup.
+ * <p>
+ * {@code invalidations} counts days dropped because a change to them was committed and
+ * {@code expirations} days read again because they were older than the configured lifetime.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DayCounterCacheStatsDTO {
+
+    private Integer size;
+    private Integer maxEntries;
+    private Long hits;
+    private Long misses;
+    private Double hitRate;
+    private Long invalidations;
+    private Long expirations;
+}
@@ -0,0 +1,18 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the occupancy of one doctor on one day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DayOccupancyDTO {
+
+    private Integer dailyAppointmentLimit;
+    private Integer bookedCount;
+    private Integer freeCount;
+}
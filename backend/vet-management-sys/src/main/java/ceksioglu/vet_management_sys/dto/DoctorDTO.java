@@ -18,4 +18,5 @@ public class DoctorDTO {
     private String mail;
     private String address;
     private String city;
+    private Integer slotMinutes;
 }
@@ -0,0 +1,20 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for one doctor's row of the occupancy calendar.
+ * The days are in the order of the calendar's days; a day is null when the doctor is not available.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DoctorOccupancyDTO {
+
+    private Long doctorId;
+    private List<DayOccupancyDTO> days;
+}
@@ -0,0 +1,23 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Data Transfer Object for the doctors × days occupancy calendar of a date range.
+ * Only doctors with at least one available date in the range are listed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OccupancyCalendarDTO {
+
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private List<LocalDate> days;
+    private List<DoctorOccupancyDTO> doctors;
+}
@@ -0,0 +1,21 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for a doctor-day that still has free appointment capacity.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OpenSlotDTO {
+
+    private Long doctorId;
+    private String doctorCity;
+    private LocalDate date;
+    private Integer freeCount;
+}
@@ -0,0 +1,25 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for a date range of a protection timeline.
+ * <p>
+ * Like the protection finish date of a vaccine, {@code finishDate} is the first day after the
+ * range, so {@code days} is the difference of the two dates. {@code vaccineCount} counts the
+ * vaccines merged into a protection, and is 0 for a gap.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProtectionIntervalDTO {
+
+    private LocalDate startDate;
+    private LocalDate finishDate;
+    private Long days;
+    private Integer vaccineCount;
+}
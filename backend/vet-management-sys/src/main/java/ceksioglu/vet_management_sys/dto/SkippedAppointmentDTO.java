@@ -0,0 +1,21 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for an appointment that a bulk move left in place.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SkippedAppointmentDTO {
+
+    private Long appointmentId;
+    private Long targetDoctorId;
+    private LocalDate targetDate;
+    private String message;
+}
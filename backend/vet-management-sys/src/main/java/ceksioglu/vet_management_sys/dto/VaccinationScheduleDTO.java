@@ -0,0 +1,24 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for VaccinationSchedule entity.
+ * <p>
+ * A vaccine code is first due when an animal of the species is {@code firstDoseAgeDays} days
+ * old, and then {@code boosterIntervalDays} days after the start of its last dose. Without a
+ * booster interval, one dose is enough.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccinationScheduleDTO {
+
+    private Long id;
+    private String species;
+    private String vaccineCode;
+    private Integer firstDoseAgeDays;
+    private Integer boosterIntervalDays;
+}
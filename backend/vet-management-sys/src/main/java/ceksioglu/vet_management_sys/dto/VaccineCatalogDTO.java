@@ -0,0 +1,20 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for a vaccine product of the catalog. {@code protectionDays} is the
+ * standard protection duration, applied to vaccines saved without a protection finish date.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineCatalogDTO {
+
+    private Integer id;
+    private String name;
+    private String code;
+    private Integer protectionDays;
+}
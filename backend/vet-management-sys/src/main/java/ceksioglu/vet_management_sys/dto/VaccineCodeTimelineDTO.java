@@ -0,0 +1,24 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for the protection of an animal by one vaccine code.
+ * <p>
+ * {@code intervals} are the continuous protections, with overlapping and adjacent vaccines
+ * merged, and {@code gaps} the unprotected ranges between them, both in date order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineCodeTimelineDTO {
+
+    private String code;
+    private Integer vaccineCount;
+    private List<ProtectionIntervalDTO> intervals;
+    private List<ProtectionIntervalDTO> gaps;
+}
@@ -0,0 +1,24 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the vaccination coverage of one group of animals.
+ * <p>
+ * Species, breed and city are null when the group spans all of them. {@code coveragePercent} is
+ * the share of the group's animals that are protected, rounded to two decimals.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineCoverageDTO {
+
+    private String species;
+    private String breed;
+    private String city;
+    private Long animalCount;
+    private Long protectedCount;
+    private Double coveragePercent;
+}
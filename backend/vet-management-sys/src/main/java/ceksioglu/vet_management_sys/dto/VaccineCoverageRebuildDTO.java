@@ -0,0 +1,26 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Data Transfer Object for the result of a rebuild of the vaccination coverage rollups.
+ * <p>
+ * {@code chunkCount} counts the animal ID ranges recounted in parallel and
+ * {@code correctedCount} the stored counts that differed from the recount and were corrected.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineCoverageRebuildDTO {
+
+    private Date startedAt;
+    private Long durationMillis;
+    private LocalDate asOfDate;
+    private Integer chunkCount;
+    private Long correctedCount;
+}
@@ -0,0 +1,23 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Data Transfer Object for the vaccination coverage of a vaccine code.
+ * <p>
+ * Protections count while they finish after {@code asOfDate}, the day of the last rollover.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineCoverageReportDTO {
+
+    private String code;
+    private LocalDate asOfDate;
+    private List<VaccineCoverageDTO> groups;
+}
@@ -0,0 +1,27 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for the next due vaccination of an animal by a vaccine code.
+ * <p>
+ * {@code lastDoseDate} is the start date of the animal's last vaccine of the code, or null if
+ * it has none yet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineDueDTO {
+
+    private Long animalId;
+    private String animalName;
+    private String species;
+    private Long customerId;
+    private String vaccineCode;
+    private LocalDate lastDoseDate;
+    private LocalDate dueDate;
+}
@@ -0,0 +1,25 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Data Transfer Object for the result of a full recomputation of the due vaccinations.
+ * <p>
+ * {@code rangeCount} counts the animal ID ranges computed in parallel, {@code animalCount} the
+ * animals and {@code dueCount} the stored animal and vaccine code rows.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineDueRecomputeDTO {
+
+    private Date startedAt;
+    private Long durationMillis;
+    private Integer rangeCount;
+    private Long animalCount;
+    private Long dueCount;
+}
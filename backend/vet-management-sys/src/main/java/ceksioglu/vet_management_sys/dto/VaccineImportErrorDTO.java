@@ -0,0 +1,27 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for a row of a vaccine import that was not saved. {@code row} counts the
+ * vaccines of the input from 1, not counting the CSV header.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineImportErrorDTO {
+
+    private Long row;
+    private Status status;
+    private String message;
+
+    public enum Status {
+        INVALID,
+        NOT_FOUND,
+        CONFLICT,
+        OUT_OF_STOCK,
+        FAILED
+    }
+}
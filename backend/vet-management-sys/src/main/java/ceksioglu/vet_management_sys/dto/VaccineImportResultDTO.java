@@ -0,0 +1,26 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for the result of a vaccine import.
+ * <p>
+ * Saved rows are only counted. Rows that were not saved are listed up to the configured
+ * maximum, after which {@code errorsTruncated} is set and they are only counted as well.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineImportResultDTO {
+
+    private Long rowCount;
+    private Long createdCount;
+    private Long failedCount;
+    private List<VaccineImportErrorDTO> errors;
+    private Boolean errorsTruncated;
+    private Long durationMillis;
+}
@@ -0,0 +1,30 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Data Transfer Object for the result of one run of the vaccine expiry reminders.
+ * <p>
+ * {@code scannedCount} counts the vaccines read in this run, {@code queuedCount} the new
+ * reminders written to the outbox and {@code sentCount} the reminders sent from it, including
+ * ones queued by earlier runs. A resumed run continued the scan of its day from the checkpoint.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineReminderRunDTO {
+
+    private Date startedAt;
+    private Long durationMillis;
+    private LocalDate runDay;
+    private LocalDate untilDate;
+    private Boolean resumed;
+    private Long scannedCount;
+    private Long queuedCount;
+    private Long sentCount;
+}
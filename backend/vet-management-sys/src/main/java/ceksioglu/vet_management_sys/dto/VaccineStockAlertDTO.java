@@ -0,0 +1,26 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for a vaccine product that is low on stock.
+ * <p>
+ * {@code quantity} counts the doses left in the lots that have not expired, which is at or
+ * below {@code threshold}; {@code nextExpiryDate} is the expiry date of the lot used next, or
+ * null if none is left.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineStockAlertDTO {
+
+    private String name;
+    private String code;
+    private Long quantity;
+    private Integer threshold;
+    private LocalDate nextExpiryDate;
+}
@@ -0,0 +1,28 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object for VaccineStockLot entity.
+ * <p>
+ * A lot is received with {@code receivedQuantity} doses of the vaccine product with the name
+ * and code; {@code quantity} is the number of doses left and can be used until
+ * {@code expiryDate}, inclusive.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineStockLotDTO {
+
+    private Long id;
+    private String name;
+    private String code;
+    private String lotNumber;
+    private LocalDate expiryDate;
+    private Long receivedQuantity;
+    private Long quantity;
+}
@@ -0,0 +1,19 @@
+package ceksioglu.vet_management_sys.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for the protection of an animal over time, per vaccine code.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineTimelineDTO {
+
+    private Long animalId;
+    private List<VaccineCodeTimelineDTO> codes;
+}
@@ -0,0 +1,24 @@
+package ceksioglu.vet_management_sys.dto;
+
+import ceksioglu.vet_management_sys.entity.WaitlistEntry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Data Transfer Object for WaitlistEntry entity.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntryDTO {
+
+    private Long id;
+    private Date appointmentDate;
+    private Long doctorId;
+    private Long animalId;
+    private WaitlistEntry.Status status;
+    private Long appointmentId;
+}
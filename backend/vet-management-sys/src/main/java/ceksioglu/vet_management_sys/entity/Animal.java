@@ -10,7 +10,10 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "animals")
+@Table(name = "animals", indexes = {
+        @Index(name = "idx_animals_customer_id", columnList = "customer_id, animal_id"),
+        @Index(name = "idx_animals_name", columnList = "animal_name, animal_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -42,7 +45,7 @@ public class Animal {
     private Date dateOfBirth;
 
     //Bir müşterinin birden fazla hayvanı olabilir.
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id", nullable = false)
     @JsonIgnore
     private Customer customer;
@@ -52,6 +55,11 @@ public class Animal {
     @JsonIgnore
     private List<Vaccine> vaccines;
 
+    //Bir hayvanın birden fazla bekleme listesi kaydı olabilir.
+    @OneToMany(mappedBy = "animal", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @JsonIgnore
+    private List<WaitlistEntry> waitlistEntries;
+
     public Animal(Long animalId) {
         this.id = animalId;
     }
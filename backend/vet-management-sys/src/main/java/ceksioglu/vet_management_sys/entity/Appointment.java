@@ -5,11 +5,17 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.util.Date;
 
 @Entity
-@Table(name = "appointments")
+@Table(name = "appointments", indexes = {
+        @Index(name = "idx_appointments_date", columnList = "appointment_date, appointment_id"),
+        @Index(name = "idx_appointments_doctor_date", columnList = "doctor_id, appointment_date, appointment_id"),
+        @Index(name = "idx_appointments_animal_date", columnList = "animal_id, appointment_date, appointment_id")
+})
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,14 +30,23 @@ public class Appointment {
     @Column(name = "appointment_date", nullable = false)
     private Date appointmentDate;
 
+    //Randevunun bittiği an, randevu alınırken doktorun randevu süresiyle hesaplanır.
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "appointment_end_date")
+    private Date appointmentEndDate;
+
+    //Randevunun doktorun o günkü sırasındaki yeri, randevu alınırken verilir.
+    @Column(name = "appointment_order")
+    private Integer appointmentOrder;
+
     //Birden fazla randevu bir doktora ait olabilir.
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "doctor_id", nullable = false)
     @JsonIgnore
     private Doctor doctor;
 
     //Birden fazla randevu bir hayvana ait olabilir.
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "animal_id", nullable = false)
     @JsonIgnore
     private Animal animal;
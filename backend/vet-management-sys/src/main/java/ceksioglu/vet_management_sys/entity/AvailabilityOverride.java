@@ -0,0 +1,38 @@
+package ceksioglu.vet_management_sys.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "availability_overrides", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_availability_overrides_doctor_date", columnNames = {"doctor_id", "override_date"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityOverride {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "availability_override_id")
+    private Long id;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "override_date", nullable = false)
+    private Date overrideDate;
+
+    //Boşsa doktor o gün çalışmaz, doluysa şablonun limiti yerine kullanılır.
+    @Column(name = "daily_appointment_limit")
+    private Integer dailyAppointmentLimit;
+
+    //Bir doktorun şablonlarına birden fazla istisna tanımlanabilir.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id", nullable = false)
+    @JsonIgnore
+    private Doctor doctor;
+}
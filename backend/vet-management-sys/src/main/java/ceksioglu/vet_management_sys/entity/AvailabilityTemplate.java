@@ -0,0 +1,51 @@
+package ceksioglu.vet_management_sys.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "availability_templates", indexes = {
+        @Index(name = "idx_availability_templates_doctor", columnList = "doctor_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityTemplate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "availability_template_id")
+    private Long id;
+
+    //Haftanın günleri bit maskesi olarak tutulur, pazartesi en düşük bittir.
+    @Column(name = "days_of_week", nullable = false)
+    private Integer daysOfWeek;
+
+    @Column(name = "daily_appointment_limit", nullable = false)
+    private Integer dailyAppointmentLimit;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "valid_from", nullable = false)
+    private Date validFrom;
+
+    //Boşsa şablon süresiz geçerlidir.
+    @Temporal(TemporalType.DATE)
+    @Column(name = "valid_until")
+    private Date validUntil;
+
+    //Şablonun müsait günlere açıldığı son gün, sonrası ilk randevuda açılır.
+    @Temporal(TemporalType.DATE)
+    @Column(name = "expanded_until")
+    private Date expandedUntil;
+
+    //Bir doktorun birden fazla haftalık şablonu olabilir.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id", nullable = false)
+    @JsonIgnore
+    private Doctor doctor;
+}
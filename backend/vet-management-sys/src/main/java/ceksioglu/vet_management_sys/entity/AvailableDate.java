@@ -5,11 +5,18 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.util.Date;
 
 @Entity
-@Table(name = "available_dates")
+@Table(name = "available_dates", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_available_dates_doctor_date", columnNames = {"doctor_id", "available_date"})
+}, indexes = {
+        @Index(name = "idx_available_dates_date", columnList = "available_date, available_date_id"),
+        @Index(name = "idx_available_dates_doctor_date", columnList = "doctor_id, available_date, available_date_id")
+})
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -25,7 +32,7 @@ public class AvailableDate {
     private Date availableDate;
 
     //Bir doktorun birden fazla müsait zamanı olabilir.
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "doctor_id", nullable = false)
     @JsonIgnore
     private Doctor doctor;
@@ -35,4 +42,8 @@ public class AvailableDate {
 
     @Column(name = "current_appointment_count")
     private Integer currentAppointmentCount = 0;
+
+    //O gün en son verilen randevu sırası.
+    @Column(name = "last_appointment_order")
+    private Integer lastAppointmentOrder = 0;
 }
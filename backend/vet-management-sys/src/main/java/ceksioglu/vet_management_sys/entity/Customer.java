@@ -9,7 +9,9 @@ import lombok.NoArgsConstructor;
 import java.util.List;
 
 @Entity
-@Table(name = "customers")
+@Table(name = "customers", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_customers_phone", columnNames = "customer_phone")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -9,7 +9,9 @@ import lombok.NoArgsConstructor;
 import java.util.List;
 
 @Entity
-@Table(name = "doctors")
+@Table(name = "doctors", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_doctors_mail", columnNames = "doctor_mail")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -35,6 +37,10 @@ public class Doctor {
     @Column(name = "doctor_city", nullable = false)
     private String city;
 
+    //Bir randevunun dakika cinsinden süresi, boşsa varsayılan süre kullanılır.
+    @Column(name = "doctor_slot_minutes")
+    private Integer slotMinutes;
+
     //Bir doktorun birden fazla boş tarihi olabilir.
     @OneToMany(mappedBy = "doctor", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonIgnore
@@ -45,6 +51,21 @@ public class Doctor {
     @JsonIgnore
     private List<Appointment> appointments;
 
+    //Bir doktorun birden fazla bekleme listesi kaydı olabilir.
+    @OneToMany(mappedBy = "doctor", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @JsonIgnore
+    private List<WaitlistEntry> waitlistEntries;
+
+    //Bir doktorun birden fazla haftalık müsaitlik şablonu olabilir.
+    @OneToMany(mappedBy = "doctor", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @JsonIgnore
+    private List<AvailabilityTemplate> availabilityTemplates;
+
+    //Bir doktorun şablonlarına birden fazla istisna günü olabilir.
+    @OneToMany(mappedBy = "doctor", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @JsonIgnore
+    private List<AvailabilityOverride> availabilityOverrides;
+
     public Doctor(Long doctorId) {
         this.id = doctorId;
     }
@@ -0,0 +1,40 @@
+package ceksioglu.vet_management_sys.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "job_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobCheckpoint {
+
+    @Id
+    @Column(name = "job_name")
+    private String jobName;
+
+    //Çalışmanın ait olduğu gün; yeni bir gün baştan başlar.
+    @Temporal(TemporalType.DATE)
+    @Column(name = "run_day", nullable = false)
+    private Date runDay;
+
+    //İşlenen son anahtar, çalışma buradan devam eder.
+    @Temporal(TemporalType.DATE)
+    @Column(name = "after_date", nullable = false)
+    private Date afterDate;
+
+    @Column(name = "after_id", nullable = false)
+    private Long afterId;
+
+    @Column(name = "finished", nullable = false)
+    private boolean finished;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "updated_at", nullable = false)
+    private Date updatedAt;
+}
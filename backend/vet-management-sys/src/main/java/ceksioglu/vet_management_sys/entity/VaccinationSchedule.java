@@ -0,0 +1,35 @@
+package ceksioglu.vet_management_sys.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "vaccination_schedules", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_vaccination_schedules_species_code", columnNames = {"animal_species", "vaccine_code"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccinationSchedule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "vaccination_schedule_id")
+    private Long id;
+
+    @Column(name = "animal_species", nullable = false)
+    private String species;
+
+    @Column(name = "vaccine_code", nullable = false)
+    private String vaccineCode;
+
+    //İlk dozun yapılacağı yaş (gün).
+    @Column(name = "first_dose_age_days", nullable = false)
+    private Integer firstDoseAgeDays;
+
+    //Son dozdan sonra tekrar aşısına kadar geçen gün; boşsa tek doz yeterlidir.
+    @Column(name = "booster_interval_days")
+    private Integer boosterIntervalDays;
+}
@@ -9,7 +9,11 @@ import lombok.NoArgsConstructor;
 import java.util.Date;
 
 @Entity
-@Table(name = "vaccines")
+@Table(name = "vaccines", indexes = {
+        @Index(name = "idx_vaccines_animal_id", columnList = "animal_id, vaccine_id"),
+        @Index(name = "idx_vaccines_finish_date", columnList = "protection_finish_date, vaccine_id"),
+        @Index(name = "idx_vaccines_animal_catalog_finish", columnList = "animal_id, vaccine_catalog_id, protection_finish_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,11 +24,11 @@ public class Vaccine {
     @Column(name = "vaccine_id")
     private Long id;
 
-    @Column(name = "vaccine_name", nullable = false)
-    private String name;
-
-    @Column(name = "vaccine_code", nullable = false)
-    private String code;
+    //Aşının adı ve kodu katalogda bir kez tutulur.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "vaccine_catalog_id", nullable = false)
+    @JsonIgnore
+    private VaccineCatalog catalog;
 
     @Temporal(TemporalType.DATE)
     @Column(name = "protection_start_date", nullable = false)
@@ -35,7 +39,7 @@ public class Vaccine {
     private Date protectionFinishDate;
 
     //Bir hayvanın birden fazla aşısı olabilir.
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "animal_id", nullable = false)
     @JsonIgnore
     private Animal animal;
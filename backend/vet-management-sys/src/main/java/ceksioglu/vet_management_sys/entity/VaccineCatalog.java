@@ -0,0 +1,31 @@
+package ceksioglu.vet_management_sys.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "vaccine_catalog", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_vaccine_catalog_name_code", columnNames = {"vaccine_name", "vaccine_code"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineCatalog {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "vaccine_catalog_id")
+    private Integer id;
+
+    @Column(name = "vaccine_name", nullable = false)
+    private String name;
+
+    @Column(name = "vaccine_code", nullable = false)
+    private String code;
+
+    //Ürünün standart koruma süresi (gün); bitiş tarihi verilmeyen aşılar için kullanılır.
+    @Column(name = "protection_days")
+    private Integer protectionDays;
+}
@@ -0,0 +1,70 @@
+package ceksioglu.vet_management_sys.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "vaccine_reminders", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_vaccine_reminders_vaccine_finish", columnNames = {"vaccine_id", "protection_finish_date"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineReminder {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "vaccine_reminder_id")
+    private Long id;
+
+    //Hatırlatılan aşı; aşı silinince hatırlatma da silinir.
+    @Column(name = "vaccine_id", nullable = false)
+    private Long vaccineId;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "protection_finish_date", nullable = false)
+    private Date protectionFinishDate;
+
+    @Column(name = "vaccine_name", nullable = false)
+    private String vaccineName;
+
+    @Column(name = "animal_id", nullable = false)
+    private Long animalId;
+
+    @Column(name = "animal_name", nullable = false)
+    private String animalName;
+
+    //Sıraya alındığı andaki müşteri iletişim bilgileri.
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId;
+
+    @Column(name = "customer_name", nullable = false)
+    private String customerName;
+
+    @Column(name = "customer_phone", nullable = false)
+    private String customerPhone;
+
+    @Column(name = "customer_mail", nullable = false)
+    private String customerMail;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reminder_status", nullable = false)
+    private Status status;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "sent_at")
+    private Date sentAt;
+
+    public enum Status {
+        PENDING,
+        SENT
+    }
+}
@@ -0,0 +1,44 @@
+package ceksioglu.vet_management_sys.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "vaccine_stock_lots", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_vaccine_stock_lots_catalog_lot", columnNames = {"vaccine_catalog_id", "lot_number"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaccineStockLot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "vaccine_stock_lot_id")
+    private Long id;
+
+    //Bir katalog ürününün birden fazla partisi olabilir.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "vaccine_catalog_id", nullable = false)
+    @JsonIgnore
+    private VaccineCatalog catalog;
+
+    @Column(name = "lot_number", nullable = false)
+    private String lotNumber;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "expiry_date", nullable = false)
+    private Date expiryDate;
+
+    @Column(name = "received_quantity", nullable = false)
+    private Integer receivedQuantity;
+
+    //Kalan miktar; bellekteki düşümler periyodik olarak yazılır.
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+}
@@ -0,0 +1,61 @@
+package ceksioglu.vet_management_sys.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "waitlist_entries", indexes = {
+        @Index(name = "idx_waitlist_entries_doctor_day", columnList = "doctor_id, waitlist_day, waitlist_status, waitlist_entry_id"),
+        @Index(name = "idx_waitlist_entries_animal", columnList = "animal_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "waitlist_entry_id")
+    private Long id;
+
+    //Terfi edildiğinde randevuya yazılacak tarih ve saat.
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "appointment_date", nullable = false)
+    private Date appointmentDate;
+
+    //Beklenen gün, sıranın tutulduğu birim.
+    @Temporal(TemporalType.DATE)
+    @Column(name = "waitlist_day", nullable = false)
+    private Date waitlistDay;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "waitlist_status", nullable = false)
+    private Status status;
+
+    //Terfi edildiğinde oluşturulan randevu.
+    @Column(name = "appointment_id")
+    private Long appointmentId;
+
+    //Bir doktorun bir gün için birden fazla bekleyeni olabilir.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id", nullable = false)
+    @JsonIgnore
+    private Doctor doctor;
+
+    //Bir hayvan birden fazla bekleme listesinde olabilir.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "animal_id", nullable = false)
+    @JsonIgnore
+    private Animal animal;
+
+    public enum Status {
+        WAITING,
+        PROMOTED,
+        EXPIRED
+    }
+}
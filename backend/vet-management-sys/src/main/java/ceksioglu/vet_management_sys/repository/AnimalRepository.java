@@ -1,9 +1,13 @@
 package ceksioglu.vet_management_sys.repository;
 
 import ceksioglu.vet_management_sys.entity.Animal;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -11,6 +15,19 @@ import java.util.List;
  */
 @Repository
 public interface AnimalRepository extends JpaRepository<Animal, Long> {
-    List<Animal> findByName(String name);
-    List<Animal> findByCustomerId(Long customerId);
+    List<Animal> findByIdGreaterThanOrderById(Long afterId, Limit limit);
+    List<Animal> findByNameAndIdGreaterThanOrderById(String name, Long afterId, Limit limit);
+    List<Animal> findByCustomerIdAndIdGreaterThanOrderById(Long customerId, Long afterId, Limit limit);
+
+    @Query("SELECT a.id FROM Animal a WHERE a.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Locks animals until the end of the transaction, in ID order so that two transactions
+     * locking the same animals cannot deadlock. NO KEY UPDATE leaves inserts that reference the
+     * animals unblocked.
+     */
+    @Query(value = "SELECT animal_id FROM animals WHERE animal_id IN (:ids) ORDER BY animal_id FOR NO KEY UPDATE",
+            nativeQuery = true)
+    List<Long> lockByIds(@Param("ids") Collection<Long> ids);
 }
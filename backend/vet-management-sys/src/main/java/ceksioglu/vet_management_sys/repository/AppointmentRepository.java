@@ -1,18 +1,219 @@
 package ceksioglu.vet_management_sys.repository;
 
 import ceksioglu.vet_management_sys.entity.Appointment;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for Appointment entity.
  */
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
-    List<Appointment> findByAppointmentDateBetweenAndAnimalId(Date startDate, Date endDate, Long animalId);
-    List<Appointment> findByAppointmentDateBetweenAndDoctorId(Date startDate, Date endDate, Long doctorId);
+    @Query("SELECT a FROM Appointment a WHERE (a.appointmentDate, a.id) > (:afterDate, :afterId) " +
+            "ORDER BY a.appointmentDate, a.id")
+    List<Appointment> findAllAfter(@Param("afterDate") Date afterDate, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT a FROM Appointment a WHERE a.animal.id = :animalId " +
+            "AND a.appointmentDate BETWEEN :startDate AND :endDate " +
+            "AND (a.appointmentDate, a.id) > (:afterDate, :afterId) ORDER BY a.appointmentDate, a.id")
+    List<Appointment> findByAppointmentDateBetweenAndAnimalIdAfter(@Param("startDate") Date startDate,
+                                                                   @Param("endDate") Date endDate,
+                                                                   @Param("animalId") Long animalId,
+                                                                   @Param("afterDate") Date afterDate,
+                                                                   @Param("afterId") Long afterId,
+                                                                   Limit limit);
+
+    @Query("SELECT a FROM Appointment a WHERE a.doctor.id = :doctorId " +
+            "AND a.appointmentDate BETWEEN :startDate AND :endDate " +
+            "AND (a.appointmentDate, a.id) > (:afterDate, :afterId) ORDER BY a.appointmentDate, a.id")
+    List<Appointment> findByAppointmentDateBetweenAndDoctorIdAfter(@Param("startDate") Date startDate,
+                                                                   @Param("endDate") Date endDate,
+                                                                   @Param("doctorId") Long doctorId,
+                                                                   @Param("afterDate") Date afterDate,
+                                                                   @Param("afterId") Long afterId,
+                                                                   Limit limit);
+
     List<Appointment> findByDoctorIdAndAppointmentDate(Long doctorId, Date appointmentDate);
-}
\ No newline at end of file
+
+    @Query("SELECT a.doctor.id FROM Appointment a WHERE a.id = :id")
+    Optional<Long> findDoctorIdById(@Param("id") Long id);
+
+    /**
+     * Moves every appointment of a doctor's day that is queued after the given position up by one.
+     *
+     * @param doctorId the doctor ID
+     * @param day the day
+     * @param nextDay the day after, as the exclusive upper bound for appointment timestamps
+     * @param appointmentOrder the position that was given back
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE appointments SET appointment_order = appointment_order - 1 " +
+            "WHERE doctor_id = :doctorId AND appointment_date >= :day AND appointment_date < :nextDay " +
+            "AND appointment_order > :appointmentOrder", nativeQuery = true)
+    int shiftAppointmentOrders(@Param("doctorId") Long doctorId,
+                               @Param("day") LocalDate day,
+                               @Param("nextDay") LocalDate nextDay,
+                               @Param("appointmentOrder") Integer appointmentOrder);
+
+    /**
+     * Numbers the appointments of a doctor's day from one without gaps, keeping their queue order.
+     * Only rows whose position changes are written.
+     *
+     * @param doctorId the doctor ID
+     * @param day the day
+     * @param nextDay the day after, as the exclusive upper bound for appointment timestamps
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE appointments a SET appointment_order = r.new_order FROM (" +
+            "SELECT appointment_id, ROW_NUMBER() OVER (ORDER BY appointment_order NULLS LAST, appointment_date, appointment_id) AS new_order " +
+            "FROM appointments WHERE doctor_id = :doctorId AND appointment_date >= :day AND appointment_date < :nextDay) r " +
+            "WHERE a.appointment_id = r.appointment_id AND a.appointment_order IS DISTINCT FROM r.new_order", nativeQuery = true)
+    int renumberAppointmentOrders(@Param("doctorId") Long doctorId,
+                                  @Param("day") LocalDate day,
+                                  @Param("nextDay") LocalDate nextDay);
+
+    /**
+     * Moves appointments to a doctor and a number of days later with one statement. Each one keeps
+     * its time of day, gets the given queue position and ends after the new doctor's slot length.
+     *
+     * @param ids the appointment IDs
+     * @param appointmentOrders the new queue positions, in the order of the IDs
+     * @param doctorId the doctor the appointments move to
+     * @param dayOffset the number of days the appointments move by, may be zero or negative
+     * @param slotMinutes the slot length of the new doctor
+     * @return the number of updated rows
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query(value = "UPDATE appointments a SET doctor_id = :doctorId, " +
+            "appointment_date = a.appointment_date + make_interval(days => :dayOffset), " +
+            "appointment_end_date = a.appointment_date + make_interval(days => :dayOffset, mins => :slotMinutes), " +
+            "appointment_order = m.appointment_order " +
+            "FROM unnest(CAST(:ids AS bigint[]), CAST(:appointmentOrders AS integer[])) AS m(appointment_id, appointment_order) " +
+            "WHERE a.appointment_id = m.appointment_id", nativeQuery = true)
+    int moveAppointments(@Param("ids") Long[] ids,
+                         @Param("appointmentOrders") Integer[] appointmentOrders,
+                         @Param("doctorId") Long doctorId,
+                         @Param("dayOffset") int dayOffset,
+                         @Param("slotMinutes") int slotMinutes);
+
+    /**
+     * Reads the appointments of a doctor that start in a day range, day by day in queue order.
+     *
+     * @param doctorId the doctor ID
+     * @param fromDay the first day of the range
+     * @param toDay the day after the range, as the exclusive upper bound for appointment timestamps
+     * @return one row per appointment
+     */
+    @Query(value = "SELECT appointment_id AS id, animal_id AS animalId, appointment_date AS appointmentDate " +
+            "FROM appointments WHERE doctor_id = :doctorId AND appointment_date >= :fromDay AND appointment_date < :toDay " +
+            "ORDER BY CAST(appointment_date AS date), appointment_order NULLS LAST, appointment_date, appointment_id",
+            nativeQuery = true)
+    List<BookedAppointment> findBookedAppointments(@Param("doctorId") Long doctorId,
+                                                   @Param("fromDay") LocalDate fromDay,
+                                                   @Param("toDay") LocalDate toDay);
+
+    /**
+     * Tells whether a time interval overlaps an appointment of the doctor or of the animal.
+     * <p>
+     * The appointments of one doctor, and of one animal, never overlap each other, which the
+     * exclusion constraints on their appointment times enforce. So only the last appointment
+     * that starts before the interval ends can overlap it, and that one is found
+     * with a backward seek on the (doctor, date) and (animal, date) indexes, however long the
+     * history is. Rows stored before appointments had an end are treated as default length.
+     *
+     * @param doctorId the doctor ID
+     * @param animalId the animal ID
+     * @param startDate the start of the interval
+     * @param endDate the exclusive end of the interval
+     * @param excludeId the ID of an appointment to ignore, e.g. the one being moved
+     * @param defaultMinutes the length of appointments stored without an end
+     * @return 1 if the doctor is busy, 2 if the animal is busy, 0 if both are free
+     */
+    @Query(value = "SELECT CASE " +
+            "WHEN EXISTS (SELECT 1 FROM (SELECT appointment_date, appointment_end_date FROM appointments " +
+            "WHERE doctor_id = :doctorId AND appointment_date < :endDate AND appointment_id <> :excludeId " +
+            "ORDER BY appointment_date DESC LIMIT 1) p " +
+            "WHERE COALESCE(p.appointment_end_date, p.appointment_date + make_interval(mins => :defaultMinutes)) > :startDate) THEN 1 " +
+            "WHEN EXISTS (SELECT 1 FROM (SELECT appointment_date, appointment_end_date FROM appointments " +
+            "WHERE animal_id = :animalId AND appointment_date < :endDate AND appointment_id <> :excludeId " +
+            "ORDER BY appointment_date DESC LIMIT 1) p " +
+            "WHERE COALESCE(p.appointment_end_date, p.appointment_date + make_interval(mins => :defaultMinutes)) > :startDate) THEN 2 " +
+            "ELSE 0 END", nativeQuery = true)
+    int findConflict(@Param("doctorId") Long doctorId,
+                     @Param("animalId") Long animalId,
+                     @Param("startDate") Timestamp startDate,
+                     @Param("endDate") Timestamp endDate,
+                     @Param("excludeId") Long excludeId,
+                     @Param("defaultMinutes") int defaultMinutes);
+
+    /**
+     * Reads the time intervals of a doctor's appointments that start in a time range.
+     *
+     * @param doctorId the doctor ID
+     * @param fromDate the start of the range
+     * @param toDate the exclusive end of the range
+     * @param defaultMinutes the length of appointments stored without an end
+     * @return one interval per appointment
+     */
+    @Query(value = "SELECT animal_id AS animalId, appointment_date AS startDate, " +
+            "COALESCE(appointment_end_date, appointment_date + make_interval(mins => :defaultMinutes)) AS endDate " +
+            "FROM appointments WHERE doctor_id = :doctorId AND appointment_date >= :fromDate AND appointment_date < :toDate",
+            nativeQuery = true)
+    List<AppointmentInterval> findDoctorIntervals(@Param("doctorId") Long doctorId,
+                                                  @Param("fromDate") Timestamp fromDate,
+                                                  @Param("toDate") Timestamp toDate,
+                                                  @Param("defaultMinutes") int defaultMinutes);
+
+    /**
+     * Reads the time intervals of several animals' appointments that start in a time range.
+     *
+     * @param animalIds the animal IDs
+     * @param fromDate the start of the range
+     * @param toDate the exclusive end of the range
+     * @param defaultMinutes the length of appointments stored without an end
+     * @return one interval per appointment
+     */
+    @Query(value = "SELECT animal_id AS animalId, appointment_date AS startDate, " +
+            "COALESCE(appointment_end_date, appointment_date + make_interval(mins => :defaultMinutes)) AS endDate " +
+            "FROM appointments WHERE animal_id IN (:animalIds) AND appointment_date >= :fromDate AND appointment_date < :toDate",
+            nativeQuery = true)
+    List<AppointmentInterval> findAnimalIntervals(@Param("animalIds") Collection<Long> animalIds,
+                                                  @Param("fromDate") Timestamp fromDate,
+                                                  @Param("toDate") Timestamp toDate,
+                                                  @Param("defaultMinutes") int defaultMinutes);
+
+    /**
+     * Appointment of a doctor's day, returned by {@link #findBookedAppointments(Long, LocalDate, LocalDate)}.
+     */
+    interface BookedAppointment {
+        Long getId();
+        Long getAnimalId();
+        Timestamp getAppointmentDate();
+    }
+
+    /**
+     * Time interval of one appointment, returned by the interval queries.
+     */
+    interface AppointmentInterval {
+        Long getAnimalId();
+        Timestamp getStartDate();
+        Timestamp getEndDate();
+    }
+}
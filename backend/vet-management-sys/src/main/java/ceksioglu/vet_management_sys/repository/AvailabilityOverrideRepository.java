@@ -0,0 +1,15 @@
+package ceksioglu.vet_management_sys.repository;
+
+import ceksioglu.vet_management_sys.entity.AvailabilityOverride;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for AvailabilityOverride entity.
+ */
+@Repository
+public interface AvailabilityOverrideRepository extends JpaRepository<AvailabilityOverride, Long> {
+    List<AvailabilityOverride> findByDoctorIdOrderByOverrideDate(Long doctorId);
+}
@@ -0,0 +1,134 @@
+package ceksioglu.vet_management_sys.repository;
+
+import ceksioglu.vet_management_sys.entity.AvailabilityTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for AvailabilityTemplate entity.
+ */
+@Repository
+public interface AvailabilityTemplateRepository extends JpaRepository<AvailabilityTemplate, Long> {
+    List<AvailabilityTemplate> findByDoctorIdOrderById(Long doctorId);
+
+    @Query("SELECT t.expandedUntil FROM AvailabilityTemplate t WHERE t.id = :id")
+    Optional<Date> findExpandedUntilById(@Param("id") Long id);
+
+    /**
+     * Turns the weekly templates into available dates up to a horizon with one statement.
+     * <p>
+     * Each template is only expanded past the last day it was expanded to, which is moved to the
+     * horizon in the same statement. Days removed by hand inside the expanded window are therefore
+     * not created again. Days closed by an override are skipped, days with a limit override get
+     * that limit, and days that already exist are left as they are.
+     *
+     * @param templateId only this template if not null, otherwise every template
+     * @param fromDay the first day that may be created, usually today
+     * @param untilDay the last day that may be created
+     * @return the number of created days per doctor
+     */
+    @Transactional
+    @Query(value = "WITH due AS (" +
+            "SELECT availability_template_id, doctor_id, days_of_week, daily_appointment_limit, " +
+            "GREATEST(valid_from, COALESCE(expanded_until + 1, valid_from), CAST(:fromDay AS date)) AS first_day, " +
+            "LEAST(COALESCE(valid_until, CAST(:untilDay AS date)), CAST(:untilDay AS date)) AS last_day " +
+            "FROM availability_templates " +
+            "WHERE (CAST(:templateId AS bigint) IS NULL OR availability_template_id = CAST(:templateId AS bigint)) " +
+            "AND valid_from <= CAST(:untilDay AS date) " +
+            "AND (expanded_until IS NULL OR expanded_until < LEAST(COALESCE(valid_until, CAST(:untilDay AS date)), CAST(:untilDay AS date))) " +
+            "FOR UPDATE), " +
+            "marked AS (" +
+            "UPDATE availability_templates t SET expanded_until = d.last_day FROM due d " +
+            "WHERE t.availability_template_id = d.availability_template_id), " +
+            "inserted AS (" +
+            "INSERT INTO available_dates (available_date, doctor_id, daily_appointment_limit, " +
+            "current_appointment_count, last_appointment_order) " +
+            "SELECT CAST(g.day AS date), d.doctor_id, COALESCE(o.daily_appointment_limit, d.daily_appointment_limit), 0, 0 " +
+            "FROM due d CROSS JOIN LATERAL generate_series(CAST(d.first_day AS timestamp), " +
+            "CAST(d.last_day AS timestamp), interval '1 day') AS g(day) " +
+            "LEFT JOIN availability_overrides o ON o.doctor_id = d.doctor_id AND o.override_date = CAST(g.day AS date) " +
+            "WHERE d.days_of_week & (1 << (CAST(EXTRACT(ISODOW FROM g.day) AS integer) - 1)) <> 0 " +
+            "AND (o.availability_override_id IS NULL OR o.daily_appointment_limit IS NOT NULL) " +
+            "ORDER BY d.doctor_id, g.day " +
+            "ON CONFLICT DO NOTHING RETURNING doctor_id) " +
+            "SELECT doctor_id AS doctorId, COUNT(*) AS dayCount FROM inserted GROUP BY doctor_id ORDER BY doctor_id",
+            nativeQuery = true)
+    List<ExpandedDays> expandTemplates(@Param("templateId") Long templateId,
+                                       @Param("fromDay") LocalDate fromDay,
+                                       @Param("untilDay") LocalDate untilDay);
+
+    /**
+     * Creates the available date of one doctor-day from the doctor's templates, for days past
+     * the window the templates were expanded to. Nothing is created if no template covers the
+     * day, an override closes it or the day already exists.
+     *
+     * @param doctorId the doctor ID
+     * @param day the day to create
+     * @return the number of created rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO available_dates (available_date, doctor_id, daily_appointment_limit, " +
+            "current_appointment_count, last_appointment_order) " +
+            "SELECT CAST(:day AS date), t.doctor_id, COALESCE(o.daily_appointment_limit, t.daily_appointment_limit), 0, 0 " +
+            "FROM availability_templates t LEFT JOIN availability_overrides o " +
+            "ON o.doctor_id = t.doctor_id AND o.override_date = CAST(:day AS date) " +
+            "WHERE t.doctor_id = :doctorId AND t.valid_from <= CAST(:day AS date) " +
+            "AND (t.valid_until IS NULL OR t.valid_until >= CAST(:day AS date)) " +
+            "AND (t.expanded_until IS NULL OR t.expanded_until < CAST(:day AS date)) " +
+            "AND t.days_of_week & (1 << (CAST(EXTRACT(ISODOW FROM CAST(:day AS date)) AS integer) - 1)) <> 0 " +
+            "AND (o.availability_override_id IS NULL OR o.daily_appointment_limit IS NOT NULL) " +
+            "ORDER BY t.availability_template_id LIMIT 1 " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int expandDay(@Param("doctorId") Long doctorId, @Param("day") LocalDate day);
+
+    /**
+     * Creates the available dates of a date range from the templates with one statement, like
+     * {@link #expandDay(Long, LocalDate)} for every day of the range. The days the templates were
+     * expanded to are left as they are, so later expansions still start where they stopped.
+     *
+     * @param doctorId only this doctor's templates if not null, otherwise every template
+     * @param startDate the first day that may be created
+     * @param endDate the last day that may be created
+     * @return the number of created days per doctor
+     */
+    @Transactional
+    @Query(value = "WITH inserted AS (" +
+            "INSERT INTO available_dates (available_date, doctor_id, daily_appointment_limit, " +
+            "current_appointment_count, last_appointment_order) " +
+            "SELECT DISTINCT ON (t.doctor_id, CAST(g.day AS date)) CAST(g.day AS date), t.doctor_id, " +
+            "COALESCE(o.daily_appointment_limit, t.daily_appointment_limit), 0, 0 " +
+            "FROM availability_templates t CROSS JOIN LATERAL generate_series(" +
+            "CAST(GREATEST(t.valid_from, COALESCE(t.expanded_until + 1, t.valid_from), CAST(:startDate AS date)) AS timestamp), " +
+            "CAST(LEAST(COALESCE(t.valid_until, CAST(:endDate AS date)), CAST(:endDate AS date)) AS timestamp), " +
+            "interval '1 day') AS g(day) " +
+            "LEFT JOIN availability_overrides o ON o.doctor_id = t.doctor_id AND o.override_date = CAST(g.day AS date) " +
+            "WHERE (CAST(:doctorId AS bigint) IS NULL OR t.doctor_id = CAST(:doctorId AS bigint)) " +
+            "AND t.days_of_week & (1 << (CAST(EXTRACT(ISODOW FROM g.day) AS integer) - 1)) <> 0 " +
+            "AND (o.availability_override_id IS NULL OR o.daily_appointment_limit IS NOT NULL) " +
+            "ORDER BY t.doctor_id, CAST(g.day AS date), t.availability_template_id " +
+            "ON CONFLICT DO NOTHING RETURNING doctor_id) " +
+            "SELECT doctor_id AS doctorId, COUNT(*) AS dayCount FROM inserted GROUP BY doctor_id ORDER BY doctor_id",
+            nativeQuery = true)
+    List<ExpandedDays> expandRange(@Param("doctorId") Long doctorId,
+                                   @Param("startDate") LocalDate startDate,
+                                   @Param("endDate") LocalDate endDate);
+
+    /**
+     * Days created for one doctor by {@link #expandTemplates(Long, LocalDate, LocalDate)} or
+     * {@link #expandRange(Long, LocalDate, LocalDate)}.
+     */
+    interface ExpandedDays {
+        Long getDoctorId();
+        Long getDayCount();
+    }
+}
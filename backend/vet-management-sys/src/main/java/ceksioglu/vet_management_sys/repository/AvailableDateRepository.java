@@ -1,23 +1,377 @@
 package ceksioglu.vet_management_sys.repository;
 
 import ceksioglu.vet_management_sys.entity.AvailableDate;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
-
 /**
  * Repository interface for AvailableDate entity.
  */
 @Repository
 public interface AvailableDateRepository extends JpaRepository<AvailableDate, Long> {
 
-    List<AvailableDate> findByDoctorId(Long doctorId);
+    @Query("SELECT a FROM AvailableDate a WHERE (a.availableDate, a.id) > (:afterDate, :afterId) " +
+            "ORDER BY a.availableDate, a.id")
+    List<AvailableDate> findAllAfter(@Param("afterDate") Date afterDate, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT a FROM AvailableDate a WHERE a.doctor.id = :doctorId " +
+            "AND (a.availableDate, a.id) > (:afterDate, :afterId) ORDER BY a.availableDate, a.id")
+    List<AvailableDate> findByDoctorIdAfter(@Param("doctorId") Long doctorId,
+                                            @Param("afterDate") Date afterDate,
+                                            @Param("afterId") Long afterId,
+                                            Limit limit);
 
     boolean existsByDoctorIdAndAvailableDate(Long doctorId, Date availableDate);
 
     Optional<AvailableDate> findByDoctorIdAndAvailableDate(Long doctorId, Date availableDate);
-}
\ No newline at end of file
+
+    /**
+     * Reads the appointment count and the last queue position handed out on a doctor's day.
+     * Rows created before positions were stored fall back to their appointment count.
+     *
+     * @param doctorId the doctor ID
+     * @param availableDate the day
+     * @return the count and position, or empty if the doctor is not available on that day
+     */
+    @Query("SELECT a.currentAppointmentCount AS currentAppointmentCount, " +
+            "COALESCE(a.lastAppointmentOrder, a.currentAppointmentCount) AS lastAppointmentOrder FROM AvailableDate a " +
+            "WHERE a.doctor.id = :doctorId AND a.availableDate = :availableDate")
+    Optional<DayCounters> findCounters(@Param("doctorId") Long doctorId, @Param("availableDate") Date availableDate);
+
+    /**
+     * Takes one appointment slot on a doctor's day if the day still has free capacity, and hands
+     * out the next queue position of the day. The capacity check and the increment happen in a
+     * single conditional UPDATE, so parallel bookings serialize on the row lock instead of
+     * overwriting each other's counts.
+     *
+     * @param doctorId the doctor ID
+     * @param date the day to book
+     * @return the queue position of the new appointment, or empty if the day is missing or full
+     */
+    @Transactional
+    @Query(value = "UPDATE available_dates SET current_appointment_count = current_appointment_count + 1, " +
+            "last_appointment_order = COALESCE(last_appointment_order, current_appointment_count) + 1 " +
+            "WHERE doctor_id = :doctorId AND available_date = :date " +
+            "AND current_appointment_count < daily_appointment_limit " +
+            "RETURNING last_appointment_order", nativeQuery = true)
+    Optional<Integer> reserveSlot(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
+
+    /**
+     * Takes up to the given number of appointment slots on a doctor's day with one statement.
+     * The row is locked before the free capacity is read, so parallel batches cannot overbook.
+     *
+     * @param doctorId the doctor ID
+     * @param date the day to book
+     * @param count the number of slots wanted
+     * @return the number of slots granted and the last queue position before them,
+     * or empty if the day is missing or full
+     */
+    @Transactional
+    @Query(value = "WITH target AS (" +
+            "SELECT available_date_id, " +
+            "LEAST(:count, daily_appointment_limit - current_appointment_count) AS granted, " +
+            "COALESCE(last_appointment_order, current_appointment_count) AS previous_order " +
+            "FROM available_dates WHERE doctor_id = :doctorId AND available_date = :date " +
+            "AND current_appointment_count < daily_appointment_limit FOR UPDATE) " +
+            "UPDATE available_dates a SET current_appointment_count = a.current_appointment_count + t.granted, " +
+            "last_appointment_order = t.previous_order + t.granted " +
+            "FROM target t WHERE a.available_date_id = t.available_date_id " +
+            "RETURNING t.granted AS granted, t.previous_order AS previousOrder", nativeQuery = true)
+    Optional<SlotGrant> reserveSlots(@Param("doctorId") Long doctorId, @Param("date") LocalDate date, @Param("count") int count);
+
+    /**
+     * Locks a doctor's day until the end of the transaction, so that bookings of the day that
+     * do not change its count are serialized with the ones that do.
+     *
+     * @param doctorId the doctor ID
+     * @param date the day to lock
+     * @return the ID of the locked row, or no row if the doctor is not available on that day
+     */
+    @Query(value = "SELECT available_date_id FROM available_dates WHERE doctor_id = :doctorId AND available_date = :date " +
+            "FOR UPDATE", nativeQuery = true)
+    List<Long> lockDay(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
+
+    /**
+     * Gives back one appointment slot on a doctor's day. The count never goes below zero.
+     *
+     * @param doctorId the doctor ID
+     * @param date the day to release
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE available_dates SET current_appointment_count = current_appointment_count - 1 " +
+            "WHERE doctor_id = :doctorId AND available_date = :date " +
+            "AND current_appointment_count > 0", nativeQuery = true)
+    int releaseSlot(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
+
+    /**
+     * Gives back one appointment slot on a doctor's day together with the last queue position,
+     * for days whose positions are kept without gaps.
+     *
+     * @param doctorId the doctor ID
+     * @param date the day to release
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE available_dates SET current_appointment_count = current_appointment_count - 1, " +
+            "last_appointment_order = GREATEST(COALESCE(last_appointment_order, current_appointment_count) - 1, 0) " +
+            "WHERE doctor_id = :doctorId AND available_date = :date " +
+            "AND current_appointment_count > 0", nativeQuery = true)
+    int releaseSlotAndOrder(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
+
+    /**
+     * Gives back several appointment slots on a doctor's day. The count never goes below zero.
+     *
+     * @param doctorId the doctor ID
+     * @param date the day to release
+     * @param count the number of slots given back
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE available_dates SET current_appointment_count = GREATEST(current_appointment_count - :count, 0) " +
+            "WHERE doctor_id = :doctorId AND available_date = :date " +
+            "AND current_appointment_count > 0", nativeQuery = true)
+    int releaseSlots(@Param("doctorId") Long doctorId, @Param("date") LocalDate date, @Param("count") int count);
+
+    /**
+     * Gives back several appointment slots on a doctor's day together with as many queue
+     * positions, for days whose positions are kept without gaps.
+     *
+     * @param doctorId the doctor ID
+     * @param date the day to release
+     * @param count the number of slots given back
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE available_dates SET current_appointment_count = GREATEST(current_appointment_count - :count, 0), " +
+            "last_appointment_order = GREATEST(COALESCE(last_appointment_order, current_appointment_count) - :count, 0) " +
+            "WHERE doctor_id = :doctorId AND available_date = :date " +
+            "AND current_appointment_count > 0", nativeQuery = true)
+    int releaseSlotsAndOrders(@Param("doctorId") Long doctorId, @Param("date") LocalDate date, @Param("count") int count);
+
+    /**
+     * Removes a doctor's day unless an appointment is booked on it.
+     *
+     * @param doctorId the doctor ID
+     * @param date the day to remove
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM available_dates WHERE doctor_id = :doctorId AND available_date = :date " +
+            "AND current_appointment_count = 0", nativeQuery = true)
+    int deleteUnbookedDay(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
+
+    /**
+     * Changes the appointment limit of a doctor's day. Appointments already booked are kept
+     * even if the new limit is lower.
+     *
+     * @param doctorId the doctor ID
+     * @param date the day to change
+     * @param limit the new appointment limit
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE available_dates SET daily_appointment_limit = :limit " +
+            "WHERE doctor_id = :doctorId AND available_date = :date", nativeQuery = true)
+    int updateLimit(@Param("doctorId") Long doctorId, @Param("date") LocalDate date, @Param("limit") int limit);
+
+    /**
+     * Changes the appointment limit of every day in a date range, for one doctor or for all
+     * doctors, with one statement. Days that already have the new limit are not written, but are
+     * returned as unchanged if they hold more appointments than the limit.
+     *
+     * @param doctorId the doctor ID, or null for all doctors
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @param limit the new appointment limit
+     * @return one row per changed doctor-day and per unchanged overbooked one
+     */
+    @Transactional
+    @Query(value = "WITH changed AS (" +
+            "UPDATE available_dates SET daily_appointment_limit = :limit " +
+            "WHERE available_date BETWEEN :startDate AND :endDate " +
+            "AND (CAST(:doctorId AS bigint) IS NULL OR doctor_id = CAST(:doctorId AS bigint)) " +
+            "AND daily_appointment_limit IS DISTINCT FROM :limit " +
+            "RETURNING available_date_id, doctor_id, available_date, current_appointment_count) " +
+            "SELECT available_date_id AS id, doctor_id AS doctorId, available_date AS day, " +
+            "current_appointment_count AS currentAppointmentCount, TRUE AS changed FROM changed " +
+            "UNION ALL " +
+            "SELECT available_date_id, doctor_id, available_date, current_appointment_count, FALSE " +
+            "FROM available_dates WHERE available_date BETWEEN :startDate AND :endDate " +
+            "AND (CAST(:doctorId AS bigint) IS NULL OR doctor_id = CAST(:doctorId AS bigint)) " +
+            "AND daily_appointment_limit = :limit AND current_appointment_count > :limit", nativeQuery = true)
+    List<ChangedLimit> updateLimits(@Param("doctorId") Long doctorId,
+                                    @Param("startDate") LocalDate startDate,
+                                    @Param("endDate") LocalDate endDate,
+                                    @Param("limit") int limit);
+
+    /**
+     * Sums the limits and bookings of every doctor-day in a date range with one grouped query,
+     * ordered by doctor and day.
+     *
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @return one row per doctor-day that has an available date
+     */
+    @Query("SELECT a.doctor.id AS doctorId, a.availableDate AS day, " +
+            "COALESCE(SUM(a.dailyAppointmentLimit), 0) AS dailyAppointmentLimit, " +
+            "COALESCE(SUM(a.currentAppointmentCount), 0) AS bookedCount " +
+            "FROM AvailableDate a WHERE a.availableDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY a.doctor.id, a.availableDate ORDER BY a.doctor.id, a.availableDate")
+    List<DayOccupancy> findOccupancy(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    /**
+     * Reads the doctor-days from a day onward that still have free capacity, ordered by doctor and day.
+     *
+     * @param fromDate the first day to read
+     * @return one row per open available date
+     */
+    @Query("SELECT a.doctor.id AS doctorId, a.doctor.city AS city, a.availableDate AS day, " +
+            "a.dailyAppointmentLimit - a.currentAppointmentCount AS freeCount FROM AvailableDate a " +
+            "WHERE a.availableDate >= :fromDate AND a.currentAppointmentCount < a.dailyAppointmentLimit " +
+            "ORDER BY a.doctor.id, a.availableDate")
+    List<DayCapacity> findOpenCapacityFrom(@Param("fromDate") Date fromDate);
+
+    /**
+     * Reads the days of one doctor from a day onward that still have free capacity, ordered by day.
+     *
+     * @param doctorId the doctor ID
+     * @param fromDate the first day to read
+     * @return one row per open available date of the doctor
+     */
+    @Query("SELECT a.doctor.id AS doctorId, a.doctor.city AS city, a.availableDate AS day, " +
+            "a.dailyAppointmentLimit - a.currentAppointmentCount AS freeCount FROM AvailableDate a " +
+            "WHERE a.doctor.id = :doctorId AND a.availableDate >= :fromDate " +
+            "AND a.currentAppointmentCount < a.dailyAppointmentLimit ORDER BY a.availableDate")
+    List<DayCapacity> findOpenCapacityByDoctorIdFrom(@Param("doctorId") Long doctorId, @Param("fromDate") Date fromDate);
+
+    /**
+     * Reads the free capacity of some days of one doctor, ordered by day.
+     *
+     * @param doctorId the doctor ID
+     * @param days the days
+     * @return one row per open available date of the days; missing and full days have no row
+     */
+    @Query("SELECT a.doctor.id AS doctorId, a.doctor.city AS city, a.availableDate AS day, " +
+            "a.dailyAppointmentLimit - a.currentAppointmentCount AS freeCount FROM AvailableDate a " +
+            "WHERE a.doctor.id = :doctorId AND a.availableDate IN :days " +
+            "AND a.currentAppointmentCount < a.dailyAppointmentLimit ORDER BY a.availableDate")
+    List<DayCapacity> findOpenCapacity(@Param("doctorId") Long doctorId, @Param("days") Collection<Date> days);
+
+    /**
+     * Recounts the appointments of the next chunk of doctor-days with one grouped aggregate and
+     * corrects the stored counts that drifted, in the same statement.
+     * <p>
+     * A count is only corrected if the row still holds the value that was read. A booking that
+     * commits in between changes the row, so the correction is skipped instead of overwriting the
+     * booking, and the next run picks the day up again. Only drifted rows are locked, and only
+     * for the duration of the statement.
+     *
+     * @param afterDoctorId the doctor ID of the last row of the previous chunk
+     * @param afterDate the day of the last row of the previous chunk
+     * @param afterId the ID of the last row of the previous chunk
+     * @param chunkSize the maximum number of rows checked
+     * @return one row per checked doctor-day, ordered by doctor, day and ID
+     */
+    @Transactional
+    @Query(value = "WITH chunk AS (" +
+            "SELECT available_date_id, doctor_id, available_date, current_appointment_count FROM available_dates " +
+            "WHERE (doctor_id, available_date, available_date_id) > (:afterDoctorId, :afterDate, :afterId) " +
+            "ORDER BY doctor_id, available_date, available_date_id LIMIT :chunkSize), " +
+            "counted AS (" +
+            "SELECT c.available_date_id, c.doctor_id, c.available_date, c.current_appointment_count AS stored_count, " +
+            "COUNT(a.appointment_id) AS actual_count FROM chunk c LEFT JOIN appointments a " +
+            "ON a.doctor_id = c.doctor_id AND a.appointment_date >= c.available_date " +
+            "AND a.appointment_date < c.available_date + 1 " +
+            "GROUP BY c.available_date_id, c.doctor_id, c.available_date, c.current_appointment_count), " +
+            "fixed AS (" +
+            "UPDATE available_dates d SET current_appointment_count = k.actual_count FROM counted k " +
+            "WHERE d.available_date_id = k.available_date_id AND k.stored_count IS DISTINCT FROM k.actual_count " +
+            "AND d.current_appointment_count IS NOT DISTINCT FROM k.stored_count " +
+            "RETURNING d.available_date_id) " +
+            "SELECT k.available_date_id AS id, k.doctor_id AS doctorId, k.available_date AS day, " +
+            "k.stored_count AS storedCount, k.actual_count AS actualCount, f.available_date_id IS NOT NULL AS fixed " +
+            "FROM counted k LEFT JOIN fixed f ON f.available_date_id = k.available_date_id " +
+            "ORDER BY k.doctor_id, k.available_date, k.available_date_id", nativeQuery = true)
+    List<CountCheck> reconcileCounts(@Param("afterDoctorId") Long afterDoctorId,
+                                     @Param("afterDate") LocalDate afterDate,
+                                     @Param("afterId") Long afterId,
+                                     @Param("chunkSize") int chunkSize);
+
+    /**
+     * Doctor-day returned by {@link #updateLimits(Long, LocalDate, LocalDate, int)}.
+     */
+    interface ChangedLimit {
+        Long getId();
+        Long getDoctorId();
+        Date getDay();
+        Integer getCurrentAppointmentCount();
+        Boolean getChanged();
+    }
+
+    /**
+     * Appointment count and last queue position of one doctor-day, returned by {@link #findCounters(Long, Date)}.
+     */
+    interface DayCounters {
+        Integer getCurrentAppointmentCount();
+        Integer getLastAppointmentOrder();
+    }
+
+    /**
+     * Slots granted by {@link #reserveSlots(Long, LocalDate, int)}.
+     */
+    interface SlotGrant {
+        Integer getGranted();
+        Integer getPreviousOrder();
+    }
+
+    /**
+     * Limit and booked count of one doctor-day, returned by {@link #findOccupancy(Date, Date)}.
+     */
+    interface DayOccupancy {
+        Long getDoctorId();
+        Date getDay();
+        Long getDailyAppointmentLimit();
+        Long getBookedCount();
+    }
+
+    /**
+     * Stored and recounted appointment count of one doctor-day, returned by
+     * {@link #reconcileCounts(Long, LocalDate, Long, int)}.
+     */
+    interface CountCheck {
+        Long getId();
+        Long getDoctorId();
+        Date getDay();
+        Integer getStoredCount();
+        Long getActualCount();
+        Boolean getFixed();
+    }
+
+    /**
+     * Free capacity of one doctor-day, returned by the open capacity queries.
+     */
+    interface DayCapacity {
+        Long getDoctorId();
+        String getCity();
+        Date getDay();
+        Integer getFreeCount();
+    }
+}
@@ -1,6 +1,7 @@
 package ceksioglu.vet_management_sys.repository;
 
 import ceksioglu.vet_management_sys.entity.Customer;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -11,6 +12,6 @@ import java.util.List;
  */
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
-    boolean existsByPhone(String phone);
-    List<Customer> findByNameContainingIgnoreCase(String name);
+    List<Customer> findByIdGreaterThanOrderById(Long afterId, Limit limit);
+    List<Customer> findByNameContainingIgnoreCaseAndIdGreaterThanOrderById(String name, Long afterId, Limit limit);
 }
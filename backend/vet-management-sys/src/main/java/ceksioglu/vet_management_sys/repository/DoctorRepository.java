@@ -1,13 +1,40 @@
 package ceksioglu.vet_management_sys.repository;
 
 import ceksioglu.vet_management_sys.entity.Doctor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Repository interface for Doctor entity.
  */
 @Repository
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
-    boolean existsByMail(String mail);
+    List<Doctor> findByIdGreaterThanOrderById(Long afterId, Limit limit);
+
+    @Query("SELECT d.slotMinutes FROM Doctor d WHERE d.id = :id")
+    Optional<Integer> findSlotMinutesById(@Param("id") Long id);
+
+    /**
+     * Reads the slot lengths of several doctors with one query.
+     *
+     * @param ids the doctor IDs
+     * @return one row per existing doctor, with a null length for doctors using the default
+     */
+    @Query("SELECT d.id AS id, d.slotMinutes AS slotMinutes FROM Doctor d WHERE d.id IN :ids")
+    List<SlotLength> findSlotMinutesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Slot length of one doctor, returned by {@link #findSlotMinutesByIds(Collection)}.
+     */
+    interface SlotLength {
+        Long getId();
+        Integer getSlotMinutes();
+    }
 }
\ No newline at end of file
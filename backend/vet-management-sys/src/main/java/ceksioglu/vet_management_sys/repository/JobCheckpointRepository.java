@@ -0,0 +1,12 @@
+package ceksioglu.vet_management_sys.repository;
+
+import ceksioglu.vet_management_sys.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for JobCheckpoint entity.
+ */
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+}
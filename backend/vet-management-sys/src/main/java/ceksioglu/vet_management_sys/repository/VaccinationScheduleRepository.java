@@ -0,0 +1,15 @@
+package ceksioglu.vet_management_sys.repository;
+
+import ceksioglu.vet_management_sys.entity.VaccinationSchedule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for VaccinationSchedule entity.
+ */
+@Repository
+public interface VaccinationScheduleRepository extends JpaRepository<VaccinationSchedule, Long> {
+    List<VaccinationSchedule> findAllByOrderBySpeciesAscVaccineCodeAsc();
+}
@@ -0,0 +1,33 @@
+package ceksioglu.vet_management_sys.repository;
+
+import ceksioglu.vet_management_sys.entity.VaccineCatalog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository interface for VaccineCatalog entity.
+ */
+@Repository
+public interface VaccineCatalogRepository extends JpaRepository<VaccineCatalog, Integer> {
+
+    /**
+     * Adds a vaccine product unless it is already in the catalog, and returns its key either way.
+     * The standard protection duration is only set on insert.
+     *
+     * @param name the vaccine name
+     * @param code the vaccine code
+     * @param protectionDays the standard protection duration in days, or null if unknown
+     * @return the catalog ID of the product
+     */
+    @Transactional
+    @Query(value = "INSERT INTO vaccine_catalog (vaccine_name, vaccine_code, protection_days) " +
+            "VALUES (:name, :code, CAST(:protectionDays AS integer)) " +
+            "ON CONFLICT (vaccine_name, vaccine_code) DO UPDATE SET vaccine_name = EXCLUDED.vaccine_name " +
+            "RETURNING vaccine_catalog_id", nativeQuery = true)
+    Integer insertIfAbsent(@Param("name") String name,
+                           @Param("code") String code,
+                           @Param("protectionDays") Integer protectionDays);
+}
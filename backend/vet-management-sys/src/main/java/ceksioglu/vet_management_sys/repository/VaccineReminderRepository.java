@@ -0,0 +1,107 @@
+package ceksioglu.vet_management_sys.repository;
+
+import ceksioglu.vet_management_sys.entity.VaccineReminder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Repository interface for VaccineReminder entity.
+ */
+@Repository
+public interface VaccineReminderRepository extends JpaRepository<VaccineReminder, Long> {
+
+    /**
+     * Queues the reminders of the next page of vaccines whose protection ends up to a day, and
+     * moves the job's checkpoint past the page in the same statement.
+     * <p>
+     * The page is read in (finish date, vaccine ID) order after the checkpoint, with the vaccine
+     * name, the animal and the customer contact data joined in, and written to the outbox
+     * without coming back to the application. Vaccines that already have a reminder for their
+     * finish date are skipped, so a page that is scanned again queues nothing twice. The job is
+     * finished once a page comes back short.
+     *
+     * @param jobName the name of the job whose checkpoint is moved
+     * @param untilDate the last protection finish date to remind of
+     * @param afterDate the finish date of the checkpoint
+     * @param afterId the vaccine ID of the checkpoint
+     * @param batchSize the maximum number of vaccines scanned
+     * @return the page summary and the new checkpoint
+     */
+    @Transactional
+    @Query(value = "WITH page AS (" +
+            "SELECT v.vaccine_id, v.protection_finish_date, k.vaccine_name, a.animal_id, a.animal_name, " +
+            "c.customer_id, c.customer_name, c.customer_phone, c.customer_mail " +
+            "FROM vaccines v JOIN vaccine_catalog k ON k.vaccine_catalog_id = v.vaccine_catalog_id " +
+            "JOIN animals a ON a.animal_id = v.animal_id " +
+            "JOIN customers c ON c.customer_id = a.customer_id " +
+            "WHERE v.protection_finish_date <= :untilDate " +
+            "AND (v.protection_finish_date, v.vaccine_id) > (:afterDate, :afterId) " +
+            "ORDER BY v.protection_finish_date, v.vaccine_id LIMIT :batchSize), " +
+            "queued AS (" +
+            "INSERT INTO vaccine_reminders (vaccine_id, protection_finish_date, vaccine_name, animal_id, animal_name, " +
+            "customer_id, customer_name, customer_phone, customer_mail, reminder_status, created_at) " +
+            "SELECT vaccine_id, protection_finish_date, vaccine_name, animal_id, animal_name, " +
+            "customer_id, customer_name, customer_phone, customer_mail, 'PENDING', now() FROM page " +
+            "ORDER BY protection_finish_date, vaccine_id " +
+            "ON CONFLICT (vaccine_id, protection_finish_date) DO NOTHING RETURNING vaccine_id), " +
+            "last AS (" +
+            "SELECT protection_finish_date, vaccine_id, (SELECT COUNT(*) FROM page) AS scanned FROM page " +
+            "ORDER BY protection_finish_date DESC, vaccine_id DESC LIMIT 1), " +
+            "saved AS (" +
+            "UPDATE job_checkpoints j SET after_date = COALESCE(l.protection_finish_date, j.after_date), " +
+            "after_id = COALESCE(l.vaccine_id, j.after_id), finished = COALESCE(l.scanned, 0) < :batchSize, " +
+            "updated_at = now() FROM (SELECT 1) AS one LEFT JOIN last l ON true " +
+            "WHERE j.job_name = :jobName RETURNING j.after_date, j.after_id, j.finished) " +
+            "SELECT (SELECT COUNT(*) FROM page) AS scannedCount, (SELECT COUNT(*) FROM queued) AS queuedCount, " +
+            "s.after_date AS afterDate, s.after_id AS afterId, s.finished AS finished FROM saved s",
+            nativeQuery = true)
+    QueuedPage queueReminders(@Param("jobName") String jobName,
+                              @Param("untilDate") LocalDate untilDate,
+                              @Param("afterDate") LocalDate afterDate,
+                              @Param("afterId") Long afterId,
+                              @Param("batchSize") int batchSize);
+
+    /**
+     * Takes the oldest pending reminders and locks them until the end of the transaction.
+     * Reminders locked by another sender are skipped.
+     *
+     * @param limit the maximum number of reminders
+     * @return the pending reminders, oldest first
+     */
+    @Query(value = "SELECT * FROM vaccine_reminders WHERE reminder_status = 'PENDING' " +
+            "ORDER BY vaccine_reminder_id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<VaccineReminder> findPendingForUpdate(@Param("limit") int limit);
+
+    /**
+     * Marks reminders as sent. Clears the persistence context, so that a long run of batches does
+     * not keep the sent reminders in memory.
+     *
+     * @param ids the reminder IDs
+     * @param sentAt when they were sent
+     * @return the number of updated rows
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE VaccineReminder r SET r.status = ceksioglu.vet_management_sys.entity.VaccineReminder.Status.SENT, " +
+            "r.sentAt = :sentAt WHERE r.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") Date sentAt);
+
+    /**
+     * Summary of one page queued by {@link #queueReminders(String, LocalDate, LocalDate, Long, int)}.
+     */
+    interface QueuedPage {
+        Long getScannedCount();
+        Long getQueuedCount();
+        Date getAfterDate();
+        Long getAfterId();
+        Boolean getFinished();
+    }
+}
@@ -1,9 +1,13 @@
 package ceksioglu.vet_management_sys.repository;
 
 import ceksioglu.vet_management_sys.entity.Vaccine;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
 
@@ -12,7 +16,67 @@ import java.util.List;
  */
 @Repository
 public interface VaccineRepository extends JpaRepository<Vaccine, Long> {
-    List<Vaccine> findByProtectionFinishDateBetween(Date startDate, Date endDate);
-    List<Vaccine> findByAnimalId(Long animalId);
-    boolean existsByAnimalIdAndNameAndCodeAndProtectionFinishDateAfter(Long animalId, String name, String code, Date date);
-}
\ No newline at end of file
+    List<Vaccine> findByIdGreaterThanOrderById(Long afterId, Limit limit);
+    List<Vaccine> findByAnimalIdAndIdGreaterThanOrderById(Long animalId, Long afterId, Limit limit);
+
+    @Query("SELECT v FROM Vaccine v WHERE v.protectionFinishDate BETWEEN :startDate AND :endDate " +
+            "AND (v.protectionFinishDate, v.id) > (:afterDate, :afterId) ORDER BY v.protectionFinishDate, v.id")
+    List<Vaccine> findByProtectionFinishDateBetweenAfter(@Param("startDate") Date startDate,
+                                                         @Param("endDate") Date endDate,
+                                                         @Param("afterDate") Date afterDate,
+                                                         @Param("afterId") Long afterId,
+                                                         Limit limit);
+    boolean existsByAnimalIdAndCatalogIdAndProtectionFinishDateAfter(Long animalId, Integer catalogId, Date date);
+
+    /**
+     * Reads the next page of vaccines whose protection lasts beyond a day, in protection end date
+     * and ID order along the end date index. The rows are returned as plain arrays of vaccine ID,
+     * animal ID, catalog ID and protection end date, since projecting every row of a full load
+     * costs more than reading it.
+     *
+     * @param date the day the protection has to last beyond
+     * @param afterDate the protection end date of the last vaccine of the previous page
+     * @param afterId the ID of the last vaccine of the previous page
+     * @param batchSize the page size
+     * @return the active protections of the page
+     */
+    @Query(value = "SELECT v.vaccine_id, v.animal_id, v.vaccine_catalog_id, v.protection_finish_date " +
+            "FROM vaccines v WHERE v.protection_finish_date > :date " +
+            "AND (v.protection_finish_date, v.vaccine_id) > (:afterDate, :afterId) " +
+            "ORDER BY v.protection_finish_date, v.vaccine_id LIMIT :batchSize", nativeQuery = true)
+    List<Object[]> findActiveAfter(@Param("date") LocalDate date,
+                                   @Param("afterDate") LocalDate afterDate,
+                                   @Param("afterId") Long afterId,
+                                   @Param("batchSize") int batchSize);
+
+    /**
+     * Finds which of the given (animal, vaccine product) pairs have a protection lasting beyond a
+     * day, with one statement for all pairs. The pairs are passed as two arrays of equal length.
+     *
+     * @param animalIds the animal IDs of the pairs
+     * @param catalogIds the catalog IDs of the pairs
+     * @param date the day the protection has to last beyond
+     * @return the active pairs as arrays of animal ID and catalog ID
+     */
+    @Query(value = "SELECT DISTINCT v.animal_id, v.vaccine_catalog_id FROM vaccines v " +
+            "JOIN unnest(CAST(:animalIds AS bigint[]), CAST(:catalogIds AS integer[])) AS p(animal_id, vaccine_catalog_id) " +
+            "ON v.animal_id = p.animal_id AND v.vaccine_catalog_id = p.vaccine_catalog_id " +
+            "WHERE v.protection_finish_date > :date", nativeQuery = true)
+    List<Object[]> findActivePairs(@Param("animalIds") Long[] animalIds,
+                                   @Param("catalogIds") Integer[] catalogIds,
+                                   @Param("date") LocalDate date);
+
+    /**
+     * Reads the protection ranges of all vaccines of an animal, ordered by vaccine code and start
+     * date for a single sweep over them. The rows are returned as plain arrays of vaccine code,
+     * protection start date and protection end date.
+     *
+     * @param animalId the animal ID
+     * @return the protection ranges of the animal's vaccines
+     */
+    @Query(value = "SELECT k.vaccine_code, v.protection_start_date, v.protection_finish_date FROM vaccines v " +
+            "JOIN vaccine_catalog k ON k.vaccine_catalog_id = v.vaccine_catalog_id " +
+            "WHERE v.animal_id = :animalId " +
+            "ORDER BY k.vaccine_code, v.protection_start_date", nativeQuery = true)
+    List<Object[]> findProtectionRanges(@Param("animalId") Long animalId);
+}
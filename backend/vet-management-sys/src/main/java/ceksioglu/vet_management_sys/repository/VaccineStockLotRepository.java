@@ -0,0 +1,12 @@
+package ceksioglu.vet_management_sys.repository;
+
+import ceksioglu.vet_management_sys.entity.VaccineStockLot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for VaccineStockLot entity.
+ */
+@Repository
+public interface VaccineStockLotRepository extends JpaRepository<VaccineStockLot, Long> {
+}
@@ -0,0 +1,52 @@
+package ceksioglu.vet_management_sys.repository;
+
+import ceksioglu.vet_management_sys.entity.WaitlistEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Repository interface for WaitlistEntry entity.
+ */
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+    List<WaitlistEntry> findByDoctorIdAndWaitlistDayAndStatusAndIdGreaterThanOrderById(Long doctorId, Date waitlistDay,
+                                                                                      WaitlistEntry.Status status,
+                                                                                      Long afterId, Limit limit);
+
+    /**
+     * Expires the waiting entries of the days before a day.
+     *
+     * @param day the first day whose entries keep waiting
+     * @return the number of expired entries
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WaitlistEntry w SET w.status = ceksioglu.vet_management_sys.entity.WaitlistEntry.Status.EXPIRED " +
+            "WHERE w.status = ceksioglu.vet_management_sys.entity.WaitlistEntry.Status.WAITING AND w.waitlistDay < :day")
+    int expireBefore(@Param("day") Date day);
+
+    /**
+     * Reads every doctor-day that has entries in the given status.
+     *
+     * @param status the entry status
+     * @return one row per doctor-day
+     */
+    @Query("SELECT DISTINCT w.doctor.id AS doctorId, w.waitlistDay AS day FROM WaitlistEntry w WHERE w.status = :status")
+    List<WaitlistDay> findDays(@Param("status") WaitlistEntry.Status status);
+
+    /**
+     * A doctor-day returned by {@link #findDays(WaitlistEntry.Status)}.
+     */
+    interface WaitlistDay {
+        Long getDoctorId();
+        Date getDay();
+    }
+}
@@ -1,14 +1,14 @@
 package ceksioglu.vet_management_sys.service.abstracts;
 
 import ceksioglu.vet_management_sys.dto.AnimalDTO;
-import java.util.List;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 
 public interface AnimalService {
     AnimalDTO saveAnimal(AnimalDTO animalDTO);
     AnimalDTO updateAnimal(Long id, AnimalDTO animalDTO);
     void deleteAnimal(Long id);
     AnimalDTO getAnimalById(Long id);
-    List<AnimalDTO> getAllAnimals();
-    List<AnimalDTO> getAnimalsByName(String name);
-    List<AnimalDTO> getAnimalsByCustomerId(Long customerId);
+    CursorPageDTO<AnimalDTO> getAllAnimals(String cursor, int size);
+    CursorPageDTO<AnimalDTO> getAnimalsByName(String name, String cursor, int size);
+    CursorPageDTO<AnimalDTO> getAnimalsByCustomerId(Long customerId, String cursor, int size);
 }
\ No newline at end of file
@@ -1,16 +1,22 @@
 package ceksioglu.vet_management_sys.service.abstracts;
 
+import ceksioglu.vet_management_sys.dto.AppointmentBatchResultDTO;
+import ceksioglu.vet_management_sys.dto.AppointmentBulkRequestDTO;
+import ceksioglu.vet_management_sys.dto.AppointmentBulkResultDTO;
 import ceksioglu.vet_management_sys.dto.AppointmentDTO;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import java.util.Date;
 import java.util.List;
 
 public interface AppointmentService {
     AppointmentDTO saveAppointment(AppointmentDTO appointmentDTO);
+    List<AppointmentBatchResultDTO> saveAppointments(List<AppointmentDTO> appointmentDTOs);
     AppointmentDTO updateAppointment(Long id, AppointmentDTO appointmentDTO);
     void deleteAppointment(Long id);
+    AppointmentBulkResultDTO rescheduleDoctorDays(AppointmentBulkRequestDTO request);
     AppointmentDTO getAppointmentById(Long id);
-    List<AppointmentDTO> getAllAppointments();
-    List<AppointmentDTO> getAppointmentsByDateRangeAndAnimal(Date startDate, Date endDate, Long animalId);
-    List<AppointmentDTO> getAppointmentsByDateRangeAndDoctor(Date startDate, Date endDate, Long doctorId);
+    CursorPageDTO<AppointmentDTO> getAllAppointments(String cursor, int size);
+    CursorPageDTO<AppointmentDTO> getAppointmentsByDateRangeAndAnimal(Date startDate, Date endDate, Long animalId, String cursor, int size);
+    CursorPageDTO<AppointmentDTO> getAppointmentsByDateRangeAndDoctor(Date startDate, Date endDate, Long doctorId, String cursor, int size);
     Integer getAppointmentOrder(Date appointmentDate, Long doctorId);
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package ceksioglu.vet_management_sys.service.abstracts;
+
+import ceksioglu.vet_management_sys.dto.AvailabilityOverrideDTO;
+import ceksioglu.vet_management_sys.dto.AvailabilityTemplateDTO;
+
+import java.util.List;
+
+public interface AvailabilityTemplateService {
+    AvailabilityTemplateDTO saveAvailabilityTemplate(AvailabilityTemplateDTO availabilityTemplateDTO);
+    AvailabilityTemplateDTO getAvailabilityTemplateById(Long id);
+    List<AvailabilityTemplateDTO> getAvailabilityTemplatesByDoctorId(Long doctorId);
+    void deleteAvailabilityTemplate(Long id);
+    AvailabilityOverrideDTO saveAvailabilityOverride(AvailabilityOverrideDTO availabilityOverrideDTO);
+    List<AvailabilityOverrideDTO> getAvailabilityOverridesByDoctorId(Long doctorId);
+    void deleteAvailabilityOverride(Long id);
+}
@@ -1,7 +1,15 @@
 package ceksioglu.vet_management_sys.service.abstracts;
 
 import ceksioglu.vet_management_sys.dto.AvailableDateDTO;
+import ceksioglu.vet_management_sys.dto.AvailableDateLimitRequestDTO;
+import ceksioglu.vet_management_sys.dto.AvailableDateLimitResultDTO;
+import ceksioglu.vet_management_sys.dto.CapacityReconciliationDTO;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
+import ceksioglu.vet_management_sys.dto.DayCounterCacheStatsDTO;
+import ceksioglu.vet_management_sys.dto.OccupancyCalendarDTO;
+import ceksioglu.vet_management_sys.dto.OpenSlotDTO;
 
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
 
@@ -9,8 +17,14 @@ public interface AvailableDateService {
     AvailableDateDTO saveAvailableDate(AvailableDateDTO availableDateDTO);
     AvailableDateDTO updateAvailableDate(Long id, AvailableDateDTO availableDateDTO);
     void deleteAvailableDate(Long id);
+    AvailableDateLimitResultDTO updateDailyAppointmentLimits(AvailableDateLimitRequestDTO request);
     AvailableDateDTO getAvailableDateById(Long id);
-    List<AvailableDateDTO> getAllAvailableDates();
-    List<AvailableDateDTO> getAvailableDatesByDoctorId(Long doctorId);
+    CursorPageDTO<AvailableDateDTO> getAllAvailableDates(String cursor, int size);
+    CursorPageDTO<AvailableDateDTO> getAvailableDatesByDoctorId(Long doctorId, String cursor, int size);
     Integer getCurrentAppointmentCount(Date date, Long doctorId);
+    DayCounterCacheStatsDTO getDayCounterCacheStats();
+    OccupancyCalendarDTO getOccupancyCalendar(LocalDate startDate, LocalDate endDate);
+    List<OpenSlotDTO> findOpenSlots(LocalDate startDate, LocalDate endDate, int limit, Long doctorId, String city);
+    CapacityReconciliationDTO reconcileAppointmentCounts();
+    CapacityReconciliationDTO getLastReconciliation();
 }
\ No newline at end of file
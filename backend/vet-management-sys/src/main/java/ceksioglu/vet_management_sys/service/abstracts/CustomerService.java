@@ -1,13 +1,13 @@
 package ceksioglu.vet_management_sys.service.abstracts;
 
 import ceksioglu.vet_management_sys.dto.CustomerDTO;
-import java.util.List;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 
 public interface CustomerService {
     CustomerDTO saveCustomer(CustomerDTO customerDTO);
     CustomerDTO updateCustomer(Long id, CustomerDTO customerDTO);
     void deleteCustomer(Long id);
     CustomerDTO getCustomerById(Long id);
-    List<CustomerDTO> getAllCustomers();
-    List<CustomerDTO> getCustomersByName(String name);
+    CursorPageDTO<CustomerDTO> getAllCustomers(String cursor, int size);
+    CursorPageDTO<CustomerDTO> getCustomersByName(String name, String cursor, int size);
 }
\ No newline at end of file
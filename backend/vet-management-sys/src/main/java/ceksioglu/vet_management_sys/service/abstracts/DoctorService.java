@@ -1,12 +1,12 @@
 package ceksioglu.vet_management_sys.service.abstracts;
 
 import ceksioglu.vet_management_sys.dto.DoctorDTO;
-import java.util.List;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 
 public interface DoctorService {
     DoctorDTO saveDoctor(DoctorDTO doctorDTO);
     DoctorDTO updateDoctor(Long id, DoctorDTO doctorDTO);
     void deleteDoctor(Long id);
     DoctorDTO getDoctorById(Long id);
-    List<DoctorDTO> getAllDoctors();
+    CursorPageDTO<DoctorDTO> getAllDoctors(String cursor, int size);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package ceksioglu.vet_management_sys.service.abstracts;
+
+import ceksioglu.vet_management_sys.dto.VaccinationScheduleDTO;
+
+import java.util.List;
+
+public interface VaccinationScheduleService {
+    VaccinationScheduleDTO saveVaccinationSchedule(VaccinationScheduleDTO vaccinationScheduleDTO);
+    VaccinationScheduleDTO updateVaccinationSchedule(Long id, VaccinationScheduleDTO vaccinationScheduleDTO);
+    void deleteVaccinationSchedule(Long id);
+    VaccinationScheduleDTO getVaccinationScheduleById(Long id);
+    List<VaccinationScheduleDTO> getAllVaccinationSchedules();
+}
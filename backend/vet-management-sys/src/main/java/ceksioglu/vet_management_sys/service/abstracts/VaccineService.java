@@ -1,6 +1,18 @@
 package ceksioglu.vet_management_sys.service.abstracts;
 
+import ceksioglu.vet_management_sys.dto.VaccineCatalogDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCoverageRebuildDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCoverageReportDTO;
 import ceksioglu.vet_management_sys.dto.VaccineDTO;
+import ceksioglu.vet_management_sys.dto.VaccineDueDTO;
+import ceksioglu.vet_management_sys.dto.VaccineDueRecomputeDTO;
+import ceksioglu.vet_management_sys.dto.VaccineImportResultDTO;
+import ceksioglu.vet_management_sys.dto.VaccineReminderRunDTO;
+import ceksioglu.vet_management_sys.dto.VaccineTimelineDTO;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
 
@@ -9,7 +21,15 @@ public interface VaccineService {
     VaccineDTO updateVaccine(Long id, VaccineDTO vaccineDTO);
     void deleteVaccine(Long id);
     VaccineDTO getVaccineById(Long id);
-    List<VaccineDTO> getAllVaccines();
-    List<VaccineDTO> getVaccinesByAnimalId(Long animalId);
-    List<VaccineDTO> getVaccinesByProtectionEndDateRange(Date startDate, Date endDate);
+    CursorPageDTO<VaccineDTO> getAllVaccines(String cursor, int size);
+    CursorPageDTO<VaccineDTO> getVaccinesByAnimalId(Long animalId, String cursor, int size);
+    CursorPageDTO<VaccineDTO> getVaccinesByProtectionEndDateRange(Date startDate, Date endDate, String cursor, int size);
+    VaccineTimelineDTO getVaccineTimeline(Long animalId);
+    CursorPageDTO<VaccineDueDTO> getVaccinesDue(LocalDate startDate, LocalDate endDate, String cursor, int size);
+    VaccineDueRecomputeDTO recomputeVaccinesDue();
+    VaccineReminderRunDTO runVaccineReminders();
+    List<VaccineCatalogDTO> getVaccineCatalog();
+    VaccineImportResultDTO importVaccines(InputStream input, String contentType) throws IOException;
+    VaccineCoverageReportDTO getVaccineCoverage(String code, String species, String breed, String city, List<String> groupBy);
+    VaccineCoverageRebuildDTO rebuildVaccineCoverage();
 }
\ No newline at end of file
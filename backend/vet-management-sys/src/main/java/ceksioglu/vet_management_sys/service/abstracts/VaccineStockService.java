@@ -0,0 +1,12 @@
+package ceksioglu.vet_management_sys.service.abstracts;
+
+import ceksioglu.vet_management_sys.dto.VaccineStockAlertDTO;
+import ceksioglu.vet_management_sys.dto.VaccineStockLotDTO;
+
+import java.util.List;
+
+public interface VaccineStockService {
+    VaccineStockLotDTO receiveLot(VaccineStockLotDTO vaccineStockLotDTO);
+    List<VaccineStockLotDTO> getLots(String code);
+    List<VaccineStockAlertDTO> getLowStockAlerts();
+}
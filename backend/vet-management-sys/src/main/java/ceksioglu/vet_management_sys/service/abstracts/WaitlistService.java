@@ -0,0 +1,9 @@
+package ceksioglu.vet_management_sys.service.abstracts;
+
+import ceksioglu.vet_management_sys.dto.WaitlistEntryDTO;
+
+public interface WaitlistService {
+    WaitlistEntryDTO joinWaitlist(WaitlistEntryDTO waitlistEntryDTO);
+    WaitlistEntryDTO getWaitlistEntryById(Long id);
+    void deleteWaitlistEntry(Long id);
+}
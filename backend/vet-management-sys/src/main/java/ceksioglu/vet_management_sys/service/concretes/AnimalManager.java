@@ -1,5 +1,7 @@
 package ceksioglu.vet_management_sys.service.concretes;
 
+import ceksioglu.vet_management_sys.core.due.VaccineDueEngine;
+import ceksioglu.vet_management_sys.core.rollup.VaccineCoverageRollup;
 import ceksioglu.vet_management_sys.dto.AnimalDTO;
 import ceksioglu.vet_management_sys.entity.Animal;
 import ceksioglu.vet_management_sys.entity.Customer;
@@ -7,11 +9,13 @@ import ceksioglu.vet_management_sys.repository.AnimalRepository;
 import ceksioglu.vet_management_sys.repository.CustomerRepository;
 import ceksioglu.vet_management_sys.service.abstracts.AnimalService;
 import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.util.CursorUtils;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Service implementation for managing animals.
@@ -21,17 +25,24 @@ public class AnimalManager implements AnimalService {
 
     private final AnimalRepository animalRepository;
     private final CustomerRepository customerRepository;
+    private final VaccineCoverageRollup vaccineCoverageRollup;
+    private final VaccineDueEngine vaccineDueEngine;
 
     /**
      * Constructor for AnimalManager.
      *
      * @param animalRepository the animal repository
      * @param customerRepository the customer repository
+     * @param vaccineCoverageRollup moves the vaccination coverage counts with the animal writes
+     * @param vaccineDueEngine recomputes the due vaccinations with the animal writes
      */
     @Autowired
-    public AnimalManager(AnimalRepository animalRepository, CustomerRepository customerRepository) {
+    public AnimalManager(AnimalRepository animalRepository, CustomerRepository customerRepository,
+                         VaccineCoverageRollup vaccineCoverageRollup, VaccineDueEngine vaccineDueEngine) {
         this.animalRepository = animalRepository;
         this.customerRepository = customerRepository;
+        this.vaccineCoverageRollup = vaccineCoverageRollup;
+        this.vaccineDueEngine = vaccineDueEngine;
     }
 
     /**
@@ -55,7 +66,8 @@ public class AnimalManager implements AnimalService {
         animal.setDateOfBirth(animalDTO.getDateOfBirth());
         animal.setCustomer(customer);
 
-        Animal savedAnimal = animalRepository.save(animal);
+        Animal savedAnimal = vaccineCoverageRollup.addAnimal(customer.getId(),
+                () -> vaccineDueEngine.addAnimal(() -> animalRepository.save(animal), Animal::getId), Animal::getId);
         return convertToDTO(savedAnimal);
     }
 
@@ -83,7 +95,8 @@ public class AnimalManager implements AnimalService {
         animal.setDateOfBirth(animalDTO.getDateOfBirth());
         animal.setCustomer(customer);
 
-        Animal updatedAnimal = animalRepository.save(animal);
+        Animal updatedAnimal = vaccineCoverageRollup.updateAnimal(id, customer.getId(),
+                () -> vaccineDueEngine.update(List.of(id), () -> animalRepository.save(animal)));
         return convertToDTO(updatedAnimal);
     }
 
@@ -98,7 +111,10 @@ public class AnimalManager implements AnimalService {
         if (!animalRepository.existsById(id)) {
             throw new ResourceNotFoundException("Animal not found with id: " + id);
         }
-        animalRepository.deleteById(id);
+        vaccineCoverageRollup.update(List.of(id), () -> {
+            animalRepository.deleteById(id);
+            return null;
+        });
     }
 
     /**
@@ -118,39 +134,50 @@ public class AnimalManager implements AnimalService {
     /**
      * Gets all animals.
      *
-     * @return the list of animal DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of animal DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<AnimalDTO> getAllAnimals() {
-        return animalRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<AnimalDTO> getAllAnimals(String cursor, int size) {
+        Long afterId = CursorUtils.decodeId(cursor);
+        List<Animal> animals = animalRepository.findByIdGreaterThanOrderById(afterId, CursorUtils.limit(size));
+        return CursorUtils.toPage(animals, size, Animal::getId, this::convertToDTO);
     }
 
     /**
      * Gets animals by name.
      *
      * @param name the animal name
-     * @return the list of animal DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of animal DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<AnimalDTO> getAnimalsByName(String name) {
-        return animalRepository.findByName(name).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<AnimalDTO> getAnimalsByName(String name, String cursor, int size) {
+        Long afterId = CursorUtils.decodeId(cursor);
+        List<Animal> animals = animalRepository.findByNameAndIdGreaterThanOrderById(name, afterId,
+                CursorUtils.limit(size));
+        return CursorUtils.toPage(animals, size, Animal::getId, this::convertToDTO);
     }
 
     /**
      * Gets animals by customer ID.
      *
      * @param customerId the customer ID
-     * @return the list of animal DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of animal DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<AnimalDTO> getAnimalsByCustomerId(Long customerId) {
-        return animalRepository.findByCustomerId(customerId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<AnimalDTO> getAnimalsByCustomerId(Long customerId, String cursor, int size) {
+        Long afterId = CursorUtils.decodeId(cursor);
+        List<Animal> animals = animalRepository.findByCustomerIdAndIdGreaterThanOrderById(customerId, afterId,
+                CursorUtils.limit(size));
+        return CursorUtils.toPage(animals, size, Animal::getId, this::convertToDTO);
     }
 
     /**
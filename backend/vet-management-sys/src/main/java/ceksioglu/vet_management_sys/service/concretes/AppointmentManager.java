@@ -1,10 +1,19 @@
 package ceksioglu.vet_management_sys.service.concretes;
 
+import ceksioglu.vet_management_sys.core.booking.AppointmentSchedule;
+import ceksioglu.vet_management_sys.core.booking.BookingEngine;
+import ceksioglu.vet_management_sys.core.booking.DatabaseSlotLedger;
+import ceksioglu.vet_management_sys.core.booking.DoctorDay;
+import ceksioglu.vet_management_sys.core.booking.SlotLedger;
+import ceksioglu.vet_management_sys.core.booking.SlotScheduler;
+import ceksioglu.vet_management_sys.core.cache.DayCounterCache;
+import ceksioglu.vet_management_sys.dto.AppointmentBatchResultDTO;
+import ceksioglu.vet_management_sys.dto.AppointmentBulkRequestDTO;
+import ceksioglu.vet_management_sys.dto.AppointmentBulkResultDTO;
 import ceksioglu.vet_management_sys.dto.AppointmentDTO;
-import ceksioglu.vet_management_sys.entity.Appointment;
 import ceksioglu.vet_management_sys.entity.Animal;
+import ceksioglu.vet_management_sys.entity.Appointment;
 import ceksioglu.vet_management_sys.entity.Doctor;
-import ceksioglu.vet_management_sys.entity.AvailableDate;
 import ceksioglu.vet_management_sys.repository.AppointmentRepository;
 import ceksioglu.vet_management_sys.repository.AnimalRepository;
 import ceksioglu.vet_management_sys.repository.DoctorRepository;
@@ -12,12 +21,40 @@ import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
 import ceksioglu.vet_management_sys.service.abstracts.AppointmentService;
 import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
 import ceksioglu.vet_management_sys.core.exception.AppointmentConflictException;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.core.util.ConstraintUtils;
+import ceksioglu.vet_management_sys.core.util.CursorUtils;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
+import ceksioglu.vet_management_sys.dto.SkippedAppointmentDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Service implementation for managing appointments.
@@ -25,10 +62,27 @@ import java.util.stream.Collectors;
 @Service
 public class AppointmentManager implements AppointmentService {
 
+    // How often an update or delete is routed again when the appointment changed doctor meanwhile
+    private static final int ROUTING_ATTEMPTS = 3;
+
+    private static final String DOCTOR_ID_SQL = "SELECT doctor_id FROM appointments WHERE appointment_id = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO appointments (appointment_date, appointment_end_date, doctor_id, animal_id, appointment_order) " +
+                    "VALUES (?, ?, ?, ?, ?)";
+
     private final AppointmentRepository appointmentRepository;
     private final AnimalRepository animalRepository;
     private final DoctorRepository doctorRepository;
     private final AvailableDateRepository availableDateRepository;
+    private final DatabaseSlotLedger databaseSlotLedger;
+    private final BookingEngine bookingEngine;
+    private final SlotScheduler slotScheduler;
+    private final DayCounterCache dayCounterCache;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchMaxSize;
+    private final int bulkMaxDays;
 
     /**
      * Constructor for AppointmentManager.
@@ -37,20 +91,49 @@ public class AppointmentManager implements AppointmentService {
      * @param animalRepository the animal repository
      * @param doctorRepository the doctor repository
      * @param availableDateRepository the available date repository
+     * @param databaseSlotLedger the slot ledger used when the booking engine is disabled
+     * @param bookingEngine the sharded booking engine
+     * @param slotScheduler computes appointment ends and checks them for overlaps
+     * @param dayCounterCache the cache of appointment counts and queue positions per doctor-day
+     * @param transactionTemplate the transaction template
+     * @param jdbcTemplate the JDBC template used for batch inserts
+     * @param batchMaxSize the maximum number of appointments in one batch booking
+     * @param bulkMaxDays the maximum number of days one bulk move or cancellation can cover
      */
     @Autowired
     public AppointmentManager(AppointmentRepository appointmentRepository,
                               AnimalRepository animalRepository,
                               DoctorRepository doctorRepository,
-                              AvailableDateRepository availableDateRepository) {
+                              AvailableDateRepository availableDateRepository,
+                              DatabaseSlotLedger databaseSlotLedger,
+                              BookingEngine bookingEngine,
+                              SlotScheduler slotScheduler,
+                              DayCounterCache dayCounterCache,
+                              TransactionTemplate transactionTemplate,
+                              JdbcTemplate jdbcTemplate,
+                              @Value("${vet.appointment.batch-max-size:1000}") int batchMaxSize,
+                              @Value("${vet.appointment.bulk-max-days:31}") int bulkMaxDays) {
         this.appointmentRepository = appointmentRepository;
         this.animalRepository = animalRepository;
         this.doctorRepository = doctorRepository;
         this.availableDateRepository = availableDateRepository;
+        this.databaseSlotLedger = databaseSlotLedger;
+        this.bookingEngine = bookingEngine;
+        this.slotScheduler = slotScheduler;
+        this.dayCounterCache = dayCounterCache;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchMaxSize = batchMaxSize;
+        this.bulkMaxDays = bulkMaxDays;
     }
 
     /**
      * Saves an appointment.
+     * <p>
+     * When the booking engine is enabled the booking runs on the shard of the doctor, otherwise
+     * it runs in its own transaction against the database. The write methods use a transaction
+     * template instead of {@code @Transactional} so that a caller waiting on a shard does not
+     * hold a connection.
      *
      * @param appointmentDTO the appointment DTO
      * @return the saved appointment DTO
@@ -59,35 +142,116 @@ public class AppointmentManager implements AppointmentService {
      */
     @Override
     public AppointmentDTO saveAppointment(AppointmentDTO appointmentDTO) {
-        Doctor doctor = doctorRepository.findById(appointmentDTO.getDoctorId())
-                .orElseThrow(() -> new ResourceNotFoundException("Doctor not found with id: " + appointmentDTO.getDoctorId()));
-
-        Animal animal = animalRepository.findById(appointmentDTO.getAnimalId())
-                .orElseThrow(() -> new ResourceNotFoundException("Animal not found with id: " + appointmentDTO.getAnimalId()));
-
-        AvailableDate availableDate = availableDateRepository.findByDoctorIdAndAvailableDate(
-                        doctor.getId(), appointmentDTO.getAppointmentDate())
-                .orElseThrow(() -> new ResourceNotFoundException("Doctor is not available on this date"));
-
-        if (availableDate.getCurrentAppointmentCount() >= availableDate.getDailyAppointmentLimit()) {
-            throw new AppointmentConflictException("Doctor has reached the daily appointment limit for this date");
+        try {
+            if (bookingEngine.isEnabled()) {
+                return bookingEngine.execute(appointmentDTO.getDoctorId(), ledger -> bookAppointment(appointmentDTO, ledger));
+            }
+            return transactionTemplate.execute(status -> bookAppointment(appointmentDTO, databaseSlotLedger));
+        } catch (DataIntegrityViolationException e) {
+            throw translateOverlap(e);
         }
+    }
 
-        Appointment appointment = new Appointment();
-        appointment.setAppointmentDate(appointmentDTO.getAppointmentDate());
-        appointment.setDoctor(doctor);
-        appointment.setAnimal(animal);
-
-        Appointment savedAppointment = appointmentRepository.save(appointment);
-
-        // Increase the appointment count
-        availableDate.setCurrentAppointmentCount(availableDate.getCurrentAppointmentCount() + 1);
-        availableDateRepository.save(availableDate);
+    /**
+     * Saves a batch of appointments and reports the outcome of each item.
+     * <p>
+     * The items are grouped by doctor-day. All animals and slot lengths are read with one query
+     * each, and items that overlap an earlier item of the batch for the same doctor or animal are
+     * rejected in memory. Per group, the appointments around the day are read into an interval
+     * index with two queries, capacity is taken once for all items that do not overlap them, and
+     * the granted appointments are inserted with JDBC batches. Items that do not fit into their
+     * day are reported as conflicts without failing the rest of the batch. Groups are processed
+     * in (doctor, day) order.
+     * <p>
+     * Every group is committed in its own transaction, on the shard of its doctor when the booking
+     * engine is enabled, so a transaction locks a single day like a single booking does. If a
+     * group fails, only its items are reported as conflicts or failures and the groups that were
+     * saved keep their results.
+     *
+     * @param appointmentDTOs the appointment DTOs
+     * @return one result per item, in request order
+     * @throws InvalidRequestException if the batch is larger than the configured maximum
+     */
+    @Override
+    public List<AppointmentBatchResultDTO> saveAppointments(List<AppointmentDTO> appointmentDTOs) {
+        if (appointmentDTOs.size() > batchMaxSize) {
+            throw new InvalidRequestException("A batch can contain at most " + batchMaxSize + " appointments");
+        }
 
-        AppointmentDTO savedAppointmentDTO = convertToDTO(savedAppointment);
-        savedAppointmentDTO.setAppointmentOrder(availableDate.getCurrentAppointmentCount());
+        AppointmentBatchResultDTO[] results = new AppointmentBatchResultDTO[appointmentDTOs.size()];
+        Map<DoctorDay, List<Integer>> groups = new TreeMap<>();
+        Set<Long> animalIds = new HashSet<>();
+        for (int i = 0; i < appointmentDTOs.size(); i++) {
+            AppointmentDTO dto = appointmentDTOs.get(i);
+            if (dto == null || dto.getAppointmentDate() == null || dto.getDoctorId() == null || dto.getAnimalId() == null) {
+                results[i] = new AppointmentBatchResultDTO(i, AppointmentBatchResultDTO.Status.INVALID, null,
+                        "Appointment date, doctor and animal are required");
+                continue;
+            }
+            groups.computeIfAbsent(new DoctorDay(dto.getDoctorId(), DateUtils.toLocalDate(dto.getAppointmentDate())),
+                    key -> new ArrayList<>()).add(i);
+            animalIds.add(dto.getAnimalId());
+        }
+        if (groups.isEmpty()) {
+            return Arrays.asList(results);
+        }
 
-        return savedAppointmentDTO;
+        Set<Long> existingAnimalIds = new HashSet<>(animalRepository.findExistingIds(animalIds));
+        Map<Long, Integer> slotMinutes = slotScheduler.slotMinutes(
+                groups.keySet().stream().map(DoctorDay::getDoctorId).distinct().toList());
+        Date[] endDates = new Date[appointmentDTOs.size()];
+        AppointmentSchedule batchSchedule = new AppointmentSchedule();
+        for (int i = 0; i < appointmentDTOs.size(); i++) {
+            AppointmentDTO dto = appointmentDTOs.get(i);
+            if (results[i] != null) {
+                continue;
+            }
+            if (!existingAnimalIds.contains(dto.getAnimalId())) {
+                results[i] = new AppointmentBatchResultDTO(i, AppointmentBatchResultDTO.Status.NOT_FOUND, null,
+                        "Animal not found with id: " + dto.getAnimalId());
+                continue;
+            }
+            Integer minutes = slotMinutes.get(dto.getDoctorId());
+            if (minutes == null) {
+                // Unknown doctor, reported when its group is reserved
+                continue;
+            }
+            endDates[i] = slotScheduler.slotEnd(dto.getAppointmentDate(), minutes);
+            AppointmentSchedule.Conflict conflict = batchSchedule.book(dto.getDoctorId(), dto.getAnimalId(),
+                    dto.getAppointmentDate(), endDates[i]);
+            if (conflict != AppointmentSchedule.Conflict.NONE) {
+                results[i] = new AppointmentBatchResultDTO(i, AppointmentBatchResultDTO.Status.CONFLICT, null,
+                        slotScheduler.conflictMessage(conflict) + " in this batch");
+            }
+        }
+        for (List<Integer> indexes : groups.values()) {
+            indexes.removeIf(i -> results[i] != null);
+        }
+        groups.values().removeIf(List::isEmpty);
+
+        // Each group commits on its own, so the results of a group are only taken once it has committed
+        if (bookingEngine.isEnabled()) {
+            Map<DoctorDay, CompletableFuture<Map<Integer, AppointmentBatchResultDTO>>> futures = new TreeMap<>();
+            groups.forEach((doctorDay, indexes) -> futures.put(doctorDay, bookingEngine.submit(doctorDay.getDoctorId(),
+                    ledger -> saveGroup(doctorDay, indexes, appointmentDTOs, endDates, ledger))));
+            futures.forEach((doctorDay, future) -> {
+                try {
+                    bookingEngine.await(future).forEach((index, result) -> results[index] = result);
+                } catch (RuntimeException e) {
+                    failGroup(groups.get(doctorDay), e, results);
+                }
+            });
+        } else {
+            groups.forEach((doctorDay, indexes) -> {
+                try {
+                    transactionTemplate.execute(status -> saveGroup(doctorDay, indexes, appointmentDTOs, endDates, databaseSlotLedger))
+                            .forEach((index, result) -> results[index] = result);
+                } catch (RuntimeException e) {
+                    failGroup(indexes, e, results);
+                }
+            });
+        }
+        return Arrays.asList(results);
     }
 
     /**
@@ -101,69 +265,397 @@ public class AppointmentManager implements AppointmentService {
      */
     @Override
     public AppointmentDTO updateAppointment(Long id, AppointmentDTO appointmentDTO) {
-        Appointment appointment = appointmentRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Appointment not found with id: " + id));
+        try {
+            if (bookingEngine.isEnabled()) {
+                // The old day is released and the new one taken in one command, holding both doctors' shards
+                return executeForAppointment(id, appointmentDTO.getDoctorId(), ledger -> rescheduleAppointment(id, appointmentDTO, ledger));
+            }
+            return transactionTemplate.execute(status -> rescheduleAppointment(id, appointmentDTO, databaseSlotLedger));
+        } catch (DataIntegrityViolationException e) {
+            throw translateOverlap(e);
+        }
+    }
 
-        Doctor doctor = doctorRepository.findById(appointmentDTO.getDoctorId())
-                .orElseThrow(() -> new ResourceNotFoundException("Doctor not found with id: " + appointmentDTO.getDoctorId()));
+    /**
+     * Deletes an appointment by ID.
+     *
+     * @param id the appointment ID
+     * @throws ResourceNotFoundException if the appointment is not found
+     */
+    @Override
+    public void deleteAppointment(Long id) {
+        if (bookingEngine.isEnabled()) {
+            executeForAppointment(id, null, ledger -> {
+                cancelAppointment(id, ledger);
+                return null;
+            });
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> cancelAppointment(id, databaseSlotLedger));
+    }
 
-        Animal animal = animalRepository.findById(appointmentDTO.getAnimalId())
-                .orElseThrow(() -> new ResourceNotFoundException("Animal not found with id: " + appointmentDTO.getAnimalId()));
+    /**
+     * Turns a violation of the doctor or animal overlap constraint into a conflict, other
+     * failures are passed on. The overlap checks run under locks on the day and the animal, so
+     * this only happens when a write got past them, e.g. with an appointment running into the
+     * next day.
+     *
+     * @param e the exception thrown by the write
+     * @return the exception to throw
+     */
+    private RuntimeException translateOverlap(DataIntegrityViolationException e) {
+        if (ConstraintUtils.isViolated(e, "ex_appointments_doctor_time")) {
+            return new AppointmentConflictException(slotScheduler.conflictMessage(AppointmentSchedule.Conflict.DOCTOR));
+        }
+        if (ConstraintUtils.isViolated(e, "ex_appointments_animal_time")) {
+            return new AppointmentConflictException(slotScheduler.conflictMessage(AppointmentSchedule.Conflict.ANIMAL));
+        }
+        return e;
+    }
 
-        AvailableDate availableDate = availableDateRepository.findByDoctorIdAndAvailableDate(
-                        doctor.getId(), appointmentDTO.getAppointmentDate())
-                .orElseThrow(() -> new ResourceNotFoundException("Doctor is not available on this date"));
+    /**
+     * Runs a command for an existing appointment on the shard of the appointment's current doctor,
+     * together with the shard of the target doctor if there is one. The doctor is read before the
+     * command is queued, so the command checks it again and is routed anew if the appointment was
+     * moved to another doctor in the meantime.
+     *
+     * @param id the appointment ID
+     * @param targetDoctorId the doctor the appointment moves to, or null
+     * @param command the command to run
+     * @return the command result
+     * @throws ResourceNotFoundException if the appointment is not found
+     * @throws AppointmentConflictException if the appointment keeps changing doctor
+     */
+    private <T> T executeForAppointment(Long id, Long targetDoctorId, Function<SlotLedger, T> command) {
+        for (int attempt = 0; attempt < ROUTING_ATTEMPTS; attempt++) {
+            // Read through JDBC, so that the request's persistence context does not hold on to a
+            // connection while the shards wait for one
+            Long doctorId = jdbcTemplate.queryForList(DOCTOR_ID_SQL, Long.class, id).stream().findFirst()
+                    .orElseThrow(() -> new ResourceNotFoundException("Appointment not found with id: " + id));
+            try {
+                return bookingEngine.execute(doctorId, targetDoctorId != null ? targetDoctorId : doctorId, ledger -> {
+                    Long currentDoctorId = appointmentRepository.findDoctorIdById(id)
+                            .orElseThrow(() -> new ResourceNotFoundException("Appointment not found with id: " + id));
+                    if (!currentDoctorId.equals(doctorId)) {
+                        throw new DoctorChangedException();
+                    }
+                    return command.apply(ledger);
+                });
+            } catch (DoctorChangedException e) {
+                // Moved to another doctor while the command was queued, route it again
+            }
+        }
+        throw new AppointmentConflictException("Appointment was changed concurrently, please try again");
+    }
 
-        if (!appointment.getDoctor().getId().equals(doctor.getId()) ||
-                !appointment.getAppointmentDate().equals(appointmentDTO.getAppointmentDate())) {
+    /**
+     * Moves or cancels every appointment of a doctor in a day range in one transaction.
+     * <p>
+     * The source and target days are locked in (doctor, day) order and the appointments are read
+     * with one query. Moves are checked against an in-memory schedule of the target range, each
+     * target day takes its slots with one reservation, all moved appointments are rewritten by a
+     * single UPDATE and each source day gives its slots back in one step. Cancellations are one
+     * DELETE and one release per day. Appointments that would overlap another appointment or do
+     * not fit into the target day's limit stay where they were and are reported. With the
+     * booking engine a cancellation runs on the shard of the doctor, and a move on the shards of
+     * both doctors, so that no other command changes the source or the target days meanwhile.
+     *
+     * @param request the bulk request
+     * @return the number of moved or cancelled appointments and the appointments left in place
+     * @throws InvalidRequestException if the request is incomplete, covers too many days, or moves
+     * appointments onto days of the same doctor that are moved themselves
+     * @throws ResourceNotFoundException if a doctor is not found
+     */
+    @Override
+    public AppointmentBulkResultDTO rescheduleDoctorDays(AppointmentBulkRequestDTO request) {
+        if (request.getAction() == null || request.getDoctorId() == null || request.getStartDate() == null) {
+            throw new InvalidRequestException("Action, doctor and start date are required");
+        }
+        Long doctorId = request.getDoctorId();
+        LocalDate startDate = request.getStartDate();
+        LocalDate endDate = request.getEndDate() != null ? request.getEndDate() : startDate;
+        if (endDate.isBefore(startDate)) {
+            throw new InvalidRequestException("End date must not be before start date");
+        }
+        long dayCount = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (dayCount > bulkMaxDays) {
+            throw new InvalidRequestException("A bulk operation can cover at most " + bulkMaxDays + " days");
+        }
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new ResourceNotFoundException("Doctor not found with id: " + doctorId);
+        }
 
-            // Decrease the count for the old appointment date
-            AvailableDate oldAvailableDate = availableDateRepository.findByDoctorIdAndAvailableDate(
-                            appointment.getDoctor().getId(), appointment.getAppointmentDate())
-                    .orElseThrow(() -> new ResourceNotFoundException("Old available date not found"));
-            oldAvailableDate.setCurrentAppointmentCount(oldAvailableDate.getCurrentAppointmentCount() - 1);
-            availableDateRepository.save(oldAvailableDate);
+        Long otherDoctorId;
+        Function<SlotLedger, AppointmentBulkResultDTO> command;
+        if (request.getAction() == AppointmentBulkRequestDTO.Action.CANCEL) {
+            otherDoctorId = doctorId;
+            command = ledger -> cancelDoctorDays(doctorId, startDate, endDate, ledger);
+        } else {
+            Long targetDoctorId = request.getTargetDoctorId() != null ? request.getTargetDoctorId() : doctorId;
+            int dayOffset = request.getTargetStartDate() != null
+                    ? Math.toIntExact(ChronoUnit.DAYS.between(startDate, request.getTargetStartDate()))
+                    : 0;
+            if (targetDoctorId.equals(doctorId) && Math.abs(dayOffset) < dayCount) {
+                throw new InvalidRequestException("Target days must not overlap the source days of the same doctor");
+            }
+            Integer slotMinutes = slotScheduler.slotMinutes(List.of(targetDoctorId)).get(targetDoctorId);
+            if (slotMinutes == null) {
+                throw new ResourceNotFoundException("Doctor not found with id: " + targetDoctorId);
+            }
+            otherDoctorId = targetDoctorId;
+            command = ledger -> moveDoctorDays(doctorId, startDate, endDate, targetDoctorId, dayOffset, slotMinutes, ledger);
+        }
 
-            // Check for the new date
-            if (availableDate.getCurrentAppointmentCount() >= availableDate.getDailyAppointmentLimit()) {
-                throw new AppointmentConflictException("Doctor has reached the daily appointment limit for the new date");
+        try {
+            if (bookingEngine.isEnabled()) {
+                return bookingEngine.execute(doctorId, otherDoctorId, command);
             }
+            return transactionTemplate.execute(status -> command.apply(databaseSlotLedger));
+        } catch (DataIntegrityViolationException e) {
+            throw translateOverlap(e);
+        }
+    }
 
-            // Increase the count for the new appointment date
-            availableDate.setCurrentAppointmentCount(availableDate.getCurrentAppointmentCount() + 1);
-            availableDateRepository.save(availableDate);
+    /**
+     * Books an appointment, taking the slot from the given ledger.
+     * <p>
+     * Against the database a successful booking issues six statements: the animal existence
+     * check, the conditional capacity UPDATE that also returns the queue position and locks the
+     * day, the slot length read, the lock of the animal, the overlap check of the doctor and the
+     * animal, and the appointment INSERT. A rejected booking issues at most two more reads to tell a missing
+     * doctor or day apart from a full one. Must run inside a transaction, so a failed check or
+     * insert also gives the reserved slot back.
+     *
+     * @param appointmentDTO the appointment DTO
+     * @param ledger the slot ledger
+     * @return the saved appointment DTO
+     */
+    private AppointmentDTO bookAppointment(AppointmentDTO appointmentDTO, SlotLedger ledger) {
+        if (!animalRepository.existsById(appointmentDTO.getAnimalId())) {
+            throw new ResourceNotFoundException("Animal not found with id: " + appointmentDTO.getAnimalId());
         }
 
+        DoctorDay doctorDay = new DoctorDay(appointmentDTO.getDoctorId(), DateUtils.toLocalDate(appointmentDTO.getAppointmentDate()));
+        Integer appointmentOrder = ledger.reserve(doctorDay)
+                .orElseThrow(() -> rejectReservation(doctorDay,
+                        "Doctor has reached the daily appointment limit for this date"));
+
+        Date endDate = slotScheduler.slotEnd(doctorDay.getDoctorId(), appointmentDTO.getAppointmentDate());
+        slotScheduler.checkFree(doctorDay.getDoctorId(), appointmentDTO.getAnimalId(),
+                appointmentDTO.getAppointmentDate(), endDate, null, ledger);
+
+        Appointment appointment = new Appointment();
         appointment.setAppointmentDate(appointmentDTO.getAppointmentDate());
-        appointment.setDoctor(doctor);
-        appointment.setAnimal(animal);
+        appointment.setAppointmentEndDate(endDate);
+        appointment.setDoctor(doctorRepository.getReferenceById(doctorDay.getDoctorId()));
+        appointment.setAnimal(animalRepository.getReferenceById(appointmentDTO.getAnimalId()));
+        appointment.setAppointmentOrder(appointmentOrder);
 
-        Appointment updatedAppointment = appointmentRepository.save(appointment);
-        AppointmentDTO updatedAppointmentDTO = convertToDTO(updatedAppointment);
-        updatedAppointmentDTO.setAppointmentOrder(availableDate.getCurrentAppointmentCount());
+        Appointment savedAppointment = appointmentRepository.save(appointment);
+        return convertToDTO(savedAppointment);
+    }
+
+    /**
+     * Moves an appointment, taking and releasing slots through the given ledger.
+     * <p>
+     * When the appointment moves to another doctor or day, the slot on the new day is taken
+     * and the old slot is released in the same transaction, and the appointment gets a new queue
+     * position at the end of the new day. Moves within the same day keep their position. The
+     * days are locked in (doctor, day) order before the new time is checked for overlaps.
+     *
+     * @param id the appointment ID
+     * @param appointmentDTO the appointment DTO
+     * @param ledger the slot ledger
+     * @return the updated appointment DTO
+     */
+    private AppointmentDTO rescheduleAppointment(Long id, AppointmentDTO appointmentDTO, SlotLedger ledger) {
+        Appointment appointment = appointmentRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Appointment not found with id: " + id));
+
+        if (!appointment.getAnimal().getId().equals(appointmentDTO.getAnimalId()) &&
+                !animalRepository.existsById(appointmentDTO.getAnimalId())) {
+            throw new ResourceNotFoundException("Animal not found with id: " + appointmentDTO.getAnimalId());
+        }
+
+        DoctorDay oldDoctorDay = new DoctorDay(appointment.getDoctor().getId(), DateUtils.toLocalDate(appointment.getAppointmentDate()));
+        DoctorDay newDoctorDay = new DoctorDay(appointmentDTO.getDoctorId(), DateUtils.toLocalDate(appointmentDTO.getAppointmentDate()));
 
-        return updatedAppointmentDTO;
+        Date endDate = appointment.getAppointmentEndDate();
+        if (!oldDoctorDay.getDoctorId().equals(newDoctorDay.getDoctorId()) ||
+                !appointment.getAppointmentDate().equals(appointmentDTO.getAppointmentDate()) ||
+                !appointment.getAnimal().getId().equals(appointmentDTO.getAnimalId())) {
+            if (oldDoctorDay.compareTo(newDoctorDay) < 0) {
+                ledger.lock(oldDoctorDay);
+            }
+            ledger.lock(newDoctorDay);
+            endDate = slotScheduler.slotEnd(newDoctorDay.getDoctorId(), appointmentDTO.getAppointmentDate());
+            slotScheduler.checkFree(newDoctorDay.getDoctorId(), appointmentDTO.getAnimalId(),
+                    appointmentDTO.getAppointmentDate(), endDate, id, ledger);
+        }
+
+        if (!oldDoctorDay.equals(newDoctorDay)) {
+            Integer appointmentOrder = ledger.move(oldDoctorDay, appointment.getAppointmentOrder(), newDoctorDay)
+                    .orElseThrow(() -> rejectReservation(newDoctorDay,
+                            "Doctor has reached the daily appointment limit for the new date"));
+            appointment.setAppointmentOrder(appointmentOrder);
+        }
+
+        appointment.setAppointmentDate(appointmentDTO.getAppointmentDate());
+        appointment.setAppointmentEndDate(endDate);
+        appointment.setDoctor(doctorRepository.getReferenceById(newDoctorDay.getDoctorId()));
+        appointment.setAnimal(animalRepository.getReferenceById(appointmentDTO.getAnimalId()));
+
+        Appointment updatedAppointment = appointmentRepository.save(appointment);
+        return convertToDTO(updatedAppointment);
     }
 
     /**
-     * Deletes an appointment by ID.
+     * Deletes an appointment and releases its slot through the given ledger.
      *
      * @param id the appointment ID
-     * @throws ResourceNotFoundException if the appointment is not found
+     * @param ledger the slot ledger
      */
-    @Override
-    public void deleteAppointment(Long id) {
+    private void cancelAppointment(Long id, SlotLedger ledger) {
         Appointment appointment = appointmentRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Appointment not found with id: " + id));
 
+        appointmentRepository.delete(appointment);
+
         // Decrease the appointment count
-        AvailableDate availableDate = availableDateRepository.findByDoctorIdAndAvailableDate(
-                        appointment.getDoctor().getId(), appointment.getAppointmentDate())
-                .orElseThrow(() -> new ResourceNotFoundException("Available date not found"));
-        availableDate.setCurrentAppointmentCount(availableDate.getCurrentAppointmentCount() - 1);
-        availableDateRepository.save(availableDate);
+        ledger.release(new DoctorDay(appointment.getDoctor().getId(), DateUtils.toLocalDate(appointment.getAppointmentDate())),
+                appointment.getAppointmentOrder());
+    }
+
+    /**
+     * Moves the appointments of a doctor's day range to another doctor or other days, taking and
+     * releasing slots through the given ledger. Days are handled in order, and within a day the
+     * appointments are moved in queue order, so the earliest bookings win when a target day fills up.
+     *
+     * @param doctorId the doctor whose appointments move
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @param targetDoctorId the doctor the appointments move to
+     * @param dayOffset the number of days the appointments move by
+     * @param slotMinutes the slot length of the target doctor
+     * @param ledger the slot ledger
+     * @return the number of moved appointments and the ones left in place
+     */
+    private AppointmentBulkResultDTO moveDoctorDays(Long doctorId, LocalDate startDate, LocalDate endDate,
+                                                   Long targetDoctorId, int dayOffset, int slotMinutes,
+                                                   SlotLedger ledger) {
+        Set<DoctorDay> lockedDays = new TreeSet<>();
+        for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+            lockedDays.add(new DoctorDay(doctorId, day));
+            lockedDays.add(new DoctorDay(targetDoctorId, day.plusDays(dayOffset)));
+        }
+        lockedDays.forEach(ledger::lock);
+
+        Map<LocalDate, List<AppointmentRepository.BookedAppointment>> days = readBookedAppointments(doctorId, startDate, endDate);
+        List<SkippedAppointmentDTO> skipped = new ArrayList<>();
+        if (days.isEmpty()) {
+            return new AppointmentBulkResultDTO(AppointmentBulkRequestDTO.Action.MOVE, 0, skipped);
+        }
+        AppointmentSchedule schedule = slotScheduler.loadDays(targetDoctorId,
+                startDate.plusDays(dayOffset), endDate.plusDays(dayOffset),
+                days.values().stream().flatMap(List::stream)
+                        .map(AppointmentRepository.BookedAppointment::getAnimalId).distinct().toList(), ledger);
+
+        List<Long> movedIds = new ArrayList<>();
+        List<Integer> movedOrders = new ArrayList<>();
+        Map<LocalDate, Integer> movedCounts = new TreeMap<>();
+        days.forEach((day, appointments) -> {
+            DoctorDay targetDay = new DoctorDay(targetDoctorId, day.plusDays(dayOffset));
+            List<BulkMove> moves = new ArrayList<>(appointments.size());
+            for (AppointmentRepository.BookedAppointment appointment : appointments) {
+                Date newStartDate = Timestamp.valueOf(appointment.getAppointmentDate().toLocalDateTime().plusDays(dayOffset));
+                BulkMove move = new BulkMove(appointment, newStartDate, slotScheduler.slotEnd(newStartDate, slotMinutes));
+                // The appointment leaves its old time, so it must not block its own new one
+                move.oldEndDate = schedule.remove(doctorId, appointment.getAnimalId(), appointment.getAppointmentDate());
+                AppointmentSchedule.Conflict conflict = schedule.book(targetDoctorId, appointment.getAnimalId(),
+                        move.startDate, move.endDate);
+                if (conflict == AppointmentSchedule.Conflict.NONE) {
+                    moves.add(move);
+                } else {
+                    move.restore(schedule, doctorId);
+                    skipped.add(new SkippedAppointmentDTO(appointment.getId(), targetDoctorId, targetDay.getDay(),
+                            slotScheduler.conflictMessage(conflict)));
+                }
+            }
+            if (moves.isEmpty()) {
+                return;
+            }
+
+            List<Integer> appointmentOrders = ledger.reserve(targetDay, moves.size());
+            for (int j = 0; j < appointmentOrders.size(); j++) {
+                movedIds.add(moves.get(j).appointment.getId());
+                movedOrders.add(appointmentOrders.get(j));
+            }
+            if (!appointmentOrders.isEmpty()) {
+                movedCounts.put(day, appointmentOrders.size());
+            }
+            if (appointmentOrders.size() < moves.size()) {
+                String message = rejectReservation(targetDay,
+                        "Doctor has reached the daily appointment limit for the new date").getMessage();
+                for (int j = appointmentOrders.size(); j < moves.size(); j++) {
+                    BulkMove move = moves.get(j);
+                    schedule.remove(targetDoctorId, move.appointment.getAnimalId(), move.startDate);
+                    move.restore(schedule, doctorId);
+                    skipped.add(new SkippedAppointmentDTO(move.appointment.getId(), targetDoctorId, targetDay.getDay(), message));
+                }
+            }
+        });
+
+        if (!movedIds.isEmpty()) {
+            appointmentRepository.moveAppointments(movedIds.toArray(new Long[0]), movedOrders.toArray(new Integer[0]),
+                    targetDoctorId, dayOffset, slotMinutes);
+        }
+        // Released after the UPDATE, so that compacting the old days only renumbers what stayed
+        movedCounts.forEach((day, count) -> ledger.releaseSlots(new DoctorDay(doctorId, day), count));
+        return new AppointmentBulkResultDTO(AppointmentBulkRequestDTO.Action.MOVE, movedIds.size(), skipped);
+    }
+
+    /**
+     * Deletes the appointments of a doctor's day range and releases their slots, one release per day.
+     *
+     * @param doctorId the doctor ID
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @param ledger the slot ledger
+     * @return the number of cancelled appointments
+     */
+    private AppointmentBulkResultDTO cancelDoctorDays(Long doctorId, LocalDate startDate, LocalDate endDate,
+                                                     SlotLedger ledger) {
+        for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+            ledger.lock(new DoctorDay(doctorId, day));
+        }
+        Map<LocalDate, List<AppointmentRepository.BookedAppointment>> days = readBookedAppointments(doctorId, startDate, endDate);
+        List<Long> ids = days.values().stream()
+                .flatMap(List::stream)
+                .map(AppointmentRepository.BookedAppointment::getId)
+                .toList();
+        if (!ids.isEmpty()) {
+            appointmentRepository.deleteAllByIdInBatch(ids);
+        }
+        days.forEach((day, appointments) -> ledger.releaseSlots(new DoctorDay(doctorId, day), appointments.size()));
+        return new AppointmentBulkResultDTO(AppointmentBulkRequestDTO.Action.CANCEL, ids.size(), new ArrayList<>());
+    }
 
-        appointmentRepository.deleteById(id);
+    /**
+     * Reads the appointments of a doctor's day range with one query, grouped by day.
+     *
+     * @param doctorId the doctor ID
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @return the appointments of each day that has any, in queue order
+     */
+    private Map<LocalDate, List<AppointmentRepository.BookedAppointment>> readBookedAppointments(Long doctorId,
+                                                                                              LocalDate startDate,
+                                                                                              LocalDate endDate) {
+        Map<LocalDate, List<AppointmentRepository.BookedAppointment>> days = new TreeMap<>();
+        appointmentRepository.findBookedAppointments(doctorId, startDate, endDate.plusDays(1)).forEach(appointment ->
+                days.computeIfAbsent(DateUtils.toLocalDate(appointment.getAppointmentDate()), day -> new ArrayList<>())
+                        .add(appointment));
+        return days;
     }
 
     /**
@@ -183,13 +675,18 @@ public class AppointmentManager implements AppointmentService {
     /**
      * Gets all appointments.
      *
-     * @return the list of appointment DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of appointment DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<AppointmentDTO> getAllAppointments() {
-        return appointmentRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<AppointmentDTO> getAllAppointments(String cursor, int size) {
+        CursorUtils.Keyset<Date> after = CursorUtils.decode(cursor, Date.class);
+        List<Appointment> appointments = appointmentRepository.findAllAfter(after.getKey(), after.getId(),
+                CursorUtils.limit(size));
+        return CursorUtils.toPage(appointments, size,
+                Appointment::getAppointmentDate, Appointment::getId, this::convertToDTO);
     }
 
     /**
@@ -198,13 +695,19 @@ public class AppointmentManager implements AppointmentService {
      * @param startDate the start date
      * @param endDate the end date
      * @param animalId the animal ID
-     * @return the list of appointment DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of appointment DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<AppointmentDTO> getAppointmentsByDateRangeAndAnimal(Date startDate, Date endDate, Long animalId) {
-        return appointmentRepository.findByAppointmentDateBetweenAndAnimalId(startDate, endDate, animalId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<AppointmentDTO> getAppointmentsByDateRangeAndAnimal(Date startDate, Date endDate, Long animalId,
+                                                                             String cursor, int size) {
+        CursorUtils.Keyset<Date> after = CursorUtils.decode(cursor, Date.class);
+        List<Appointment> appointments = appointmentRepository.findByAppointmentDateBetweenAndAnimalIdAfter(startDate, endDate, animalId, after.getKey(), after.getId(),
+                CursorUtils.limit(size));
+        return CursorUtils.toPage(appointments, size,
+                Appointment::getAppointmentDate, Appointment::getId, this::convertToDTO);
     }
 
     /**
@@ -213,17 +716,25 @@ public class AppointmentManager implements AppointmentService {
      * @param startDate the start date
      * @param endDate the end date
      * @param doctorId the doctor ID
-     * @return the list of appointment DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of appointment DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<AppointmentDTO> getAppointmentsByDateRangeAndDoctor(Date startDate, Date endDate, Long doctorId) {
-        return appointmentRepository.findByAppointmentDateBetweenAndDoctorId(startDate, endDate, doctorId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<AppointmentDTO> getAppointmentsByDateRangeAndDoctor(Date startDate, Date endDate, Long doctorId,
+                                                                             String cursor, int size) {
+        CursorUtils.Keyset<Date> after = CursorUtils.decode(cursor, Date.class);
+        List<Appointment> appointments = appointmentRepository.findByAppointmentDateBetweenAndDoctorIdAfter(startDate, endDate, doctorId, after.getKey(), after.getId(),
+                CursorUtils.limit(size));
+        return CursorUtils.toPage(appointments, size,
+                Appointment::getAppointmentDate, Appointment::getId, this::convertToDTO);
     }
 
     /**
-     * Gets the appointment order for a given date and doctor.
+     * Gets the appointment order for a given date and doctor, i.e. the last queue position
+     * handed out on that day. Served from the day counter cache, which drops the day as soon as
+     * a booking, rescheduling or cancellation of it is committed.
      *
      * @param appointmentDate the appointment date
      * @param doctorId the doctor ID
@@ -232,9 +743,202 @@ public class AppointmentManager implements AppointmentService {
      */
     @Override
     public Integer getAppointmentOrder(Date appointmentDate, Long doctorId) {
-        AvailableDate availableDate = availableDateRepository.findByDoctorIdAndAvailableDate(doctorId, appointmentDate)
-                .orElseThrow(() -> new ResourceNotFoundException("Available date not found for doctor on this date"));
-        return availableDate.getCurrentAppointmentCount();
+        return dayCounterCache.get(new DoctorDay(doctorId, DateUtils.toLocalDate(appointmentDate)))
+                .orElseThrow(() -> new ResourceNotFoundException("Available date not found for doctor on this date"))
+                .getLastAppointmentOrder();
+    }
+
+    /**
+     * Reserves capacity for the items of one group and inserts the granted appointments.
+     *
+     * @param doctorDay the doctor and day of the group
+     * @param indexes the request indexes of the group's items
+     * @param appointmentDTOs the appointment DTOs of the batch
+     * @param endDates the end dates of the batch items
+     * @param ledger the ledger to take capacity from
+     * @return the results of the group's items
+     */
+    private Map<Integer, AppointmentBatchResultDTO> saveGroup(DoctorDay doctorDay, List<Integer> indexes,
+                                                              List<AppointmentDTO> appointmentDTOs, Date[] endDates,
+                                                              SlotLedger ledger) {
+        Map<Integer, AppointmentBatchResultDTO> groupResults = new HashMap<>();
+        insertAppointments(reserveGroup(doctorDay, indexes, appointmentDTOs, endDates, groupResults, ledger), groupResults);
+        return groupResults;
+    }
+
+    /**
+     * Reports every item of a group that could not be committed. Overlaps that got past the checks
+     * are reported as conflicts, database errors with a generic message.
+     *
+     * @param indexes the request indexes of the group's items
+     * @param e the exception the group failed with
+     * @param results the results of the batch
+     */
+    private void failGroup(List<Integer> indexes, RuntimeException e, AppointmentBatchResultDTO[] results) {
+        RuntimeException failure = e instanceof DataIntegrityViolationException violation ? translateOverlap(violation) : e;
+        AppointmentBatchResultDTO.Status status = failure instanceof AppointmentConflictException
+                ? AppointmentBatchResultDTO.Status.CONFLICT : AppointmentBatchResultDTO.Status.FAILED;
+        String message = failure instanceof DataAccessException
+                ? "Appointments of this doctor and day could not be saved, try again"
+                : failure.getMessage();
+        indexes.forEach(index -> results[index] = new AppointmentBatchResultDTO(index, status, null, message));
+    }
+
+    /**
+     * Takes the slots of one doctor-day group of a batch booking and builds the appointments
+     * that got a slot. Items that overlap an existing appointment of the doctor or the animal
+     * and items that did not get a slot are reported in the results.
+     *
+     * @param doctorDay the doctor and day of the group
+     * @param indexes the request indexes of the group's items
+     * @param appointmentDTOs the appointment DTOs of the batch
+     * @param endDates the appointment ends of the batch
+     * @param results the results of the group's items, by request index
+     * @param ledger the slot ledger
+     * @return the appointments to insert, with their request index as ID until they are inserted
+     */
+    private List<Appointment> reserveGroup(DoctorDay doctorDay,
+                                           List<Integer> indexes,
+                                           List<AppointmentDTO> appointmentDTOs,
+                                           Date[] endDates,
+                                           Map<Integer, AppointmentBatchResultDTO> results,
+                                           SlotLedger ledger) {
+        ledger.lock(doctorDay);
+        AppointmentSchedule schedule = slotScheduler.loadDay(doctorDay,
+                indexes.stream().map(i -> appointmentDTOs.get(i).getAnimalId()).distinct().toList(), ledger);
+        List<Integer> freeIndexes = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            AppointmentDTO dto = appointmentDTOs.get(index);
+            AppointmentSchedule.Conflict conflict = endDates[index] == null
+                    ? AppointmentSchedule.Conflict.NONE
+                    : schedule.book(dto.getDoctorId(), dto.getAnimalId(), dto.getAppointmentDate(), endDates[index]);
+            if (conflict == AppointmentSchedule.Conflict.NONE) {
+                freeIndexes.add(index);
+            } else {
+                results.put(index, new AppointmentBatchResultDTO(index, AppointmentBatchResultDTO.Status.CONFLICT, null,
+                        slotScheduler.conflictMessage(conflict)));
+            }
+        }
+        if (freeIndexes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Integer> appointmentOrders = ledger.reserve(doctorDay, freeIndexes.size());
+
+        List<Appointment> appointments = new ArrayList<>(appointmentOrders.size());
+        for (int j = 0; j < appointmentOrders.size(); j++) {
+            int index = freeIndexes.get(j);
+            AppointmentDTO dto = appointmentDTOs.get(index);
+            appointments.add(new Appointment((long) index, dto.getAppointmentDate(), endDates[index],
+                    appointmentOrders.get(j), new Doctor(dto.getDoctorId()), new Animal(dto.getAnimalId())));
+        }
+
+        if (appointmentOrders.size() < freeIndexes.size()) {
+            RuntimeException rejection = rejectReservation(doctorDay,
+                    "Doctor has reached the daily appointment limit for this date");
+            AppointmentBatchResultDTO.Status status = rejection instanceof ResourceNotFoundException
+                    ? AppointmentBatchResultDTO.Status.NOT_FOUND
+                    : AppointmentBatchResultDTO.Status.CONFLICT;
+            for (int j = appointmentOrders.size(); j < freeIndexes.size(); j++) {
+                int index = freeIndexes.get(j);
+                results.put(index, new AppointmentBatchResultDTO(index, status, null, rejection.getMessage()));
+            }
+        }
+        return appointments;
+    }
+
+    /**
+     * Inserts appointments with one JDBC batch and reports them as created.
+     *
+     * @param appointments the appointments, with their request index as ID
+     * @param results the results of the items, by request index
+     */
+    private void insertAppointments(List<Appointment> appointments, Map<Integer, AppointmentBatchResultDTO> results) {
+        if (appointments.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[]{"appointment_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Appointment appointment = appointments.get(i);
+                        ps.setTimestamp(1, new Timestamp(appointment.getAppointmentDate().getTime()));
+                        ps.setTimestamp(2, new Timestamp(appointment.getAppointmentEndDate().getTime()));
+                        ps.setLong(3, appointment.getDoctor().getId());
+                        ps.setLong(4, appointment.getAnimal().getId());
+                        ps.setInt(5, appointment.getAppointmentOrder());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return appointments.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < appointments.size(); i++) {
+            Appointment appointment = appointments.get(i);
+            int index = appointment.getId().intValue();
+            appointment.setId(((Number) keys.get(i).get("appointment_id")).longValue());
+            results.put(index, new AppointmentBatchResultDTO(index, AppointmentBatchResultDTO.Status.CREATED,
+                    convertToDTO(appointment), null));
+        }
+    }
+
+    /**
+     * Explains why a slot could not be reserved. Only runs on the rejected path.
+     *
+     * @param doctorDay the requested doctor and day
+     * @param limitMessage the message to use when the day is full
+     * @return the exception to throw
+     */
+    private RuntimeException rejectReservation(DoctorDay doctorDay, String limitMessage) {
+        if (!doctorRepository.existsById(doctorDay.getDoctorId())) {
+            return new ResourceNotFoundException("Doctor not found with id: " + doctorDay.getDoctorId());
+        }
+        if (!availableDateRepository.existsByDoctorIdAndAvailableDate(doctorDay.getDoctorId(), DateUtils.toDate(doctorDay.getDay()))) {
+            return new ResourceNotFoundException("Doctor is not available on this date");
+        }
+        return new AppointmentConflictException(limitMessage);
+    }
+
+    /**
+     * Thrown inside a shard command when the appointment no longer belongs to the doctor it was
+     * routed by.
+     */
+    private static final class DoctorChangedException extends RuntimeException {
+        private DoctorChangedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * One appointment of a bulk move with its new time and the end it had in the schedule.
+     */
+    private static final class BulkMove {
+        private final AppointmentRepository.BookedAppointment appointment;
+        private final Date startDate;
+        private final Date endDate;
+        private Date oldEndDate;
+
+        private BulkMove(AppointmentRepository.BookedAppointment appointment, Date startDate, Date endDate) {
+            this.appointment = appointment;
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        /**
+         * Puts the appointment back at its old time after it turned out not to move.
+         */
+        private void restore(AppointmentSchedule schedule, Long doctorId) {
+            if (oldEndDate != null) {
+                schedule.addDoctorInterval(doctorId, appointment.getAppointmentDate(), oldEndDate);
+                schedule.addAnimalInterval(appointment.getAnimalId(), appointment.getAppointmentDate(), oldEndDate);
+            }
+        }
     }
 
     /**
@@ -242,21 +946,15 @@ public class AppointmentManager implements AppointmentService {
      *
      * @param appointment the appointment entity
      * @return the appointment DTO
-     * @throws ResourceNotFoundException if the available date is not found
      */
     private AppointmentDTO convertToDTO(Appointment appointment) {
         AppointmentDTO dto = new AppointmentDTO();
         dto.setId(appointment.getId());
         dto.setAppointmentDate(appointment.getAppointmentDate());
+        dto.setAppointmentEndDate(appointment.getAppointmentEndDate());
         dto.setDoctorId(appointment.getDoctor().getId());
         dto.setAnimalId(appointment.getAnimal().getId());
-
-        // To find the appointment order
-        AvailableDate availableDate = availableDateRepository.findByDoctorIdAndAvailableDate(
-                        appointment.getDoctor().getId(), appointment.getAppointmentDate())
-                .orElseThrow(() -> new ResourceNotFoundException("Available date not found"));
-        dto.setAppointmentOrder(availableDate.getCurrentAppointmentCount());
-
+        dto.setAppointmentOrder(appointment.getAppointmentOrder());
         return dto;
     }
 }
@@ -0,0 +1,320 @@
+package ceksioglu.vet_management_sys.service.concretes;
+
+import ceksioglu.vet_management_sys.core.booking.AvailabilityExpander;
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.core.exception.AppointmentConflictException;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.exception.ResourceAlreadyExistsException;
+import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
+import ceksioglu.vet_management_sys.core.util.ConstraintUtils;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.AvailabilityOverrideDTO;
+import ceksioglu.vet_management_sys.dto.AvailabilityTemplateDTO;
+import ceksioglu.vet_management_sys.entity.AvailabilityOverride;
+import ceksioglu.vet_management_sys.entity.AvailabilityTemplate;
+import ceksioglu.vet_management_sys.repository.AvailabilityOverrideRepository;
+import ceksioglu.vet_management_sys.repository.AvailabilityTemplateRepository;
+import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
+import ceksioglu.vet_management_sys.repository.DoctorRepository;
+import ceksioglu.vet_management_sys.service.abstracts.AvailabilityTemplateService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service implementation for managing weekly availability templates and their overrides.
+ */
+@Service
+public class AvailabilityTemplateManager implements AvailabilityTemplateService {
+
+    private final AvailabilityTemplateRepository availabilityTemplateRepository;
+    private final AvailabilityOverrideRepository availabilityOverrideRepository;
+    private final AvailableDateRepository availableDateRepository;
+    private final DoctorRepository doctorRepository;
+    private final AvailabilityExpander availabilityExpander;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Constructor for AvailabilityTemplateManager.
+     *
+     * @param availabilityTemplateRepository the availability template repository
+     * @param availabilityOverrideRepository the availability override repository
+     * @param availableDateRepository the available date repository
+     * @param doctorRepository the doctor repository
+     * @param availabilityExpander turns templates into available dates
+     * @param eventPublisher the event publisher
+     */
+    @Autowired
+    public AvailabilityTemplateManager(AvailabilityTemplateRepository availabilityTemplateRepository,
+                                       AvailabilityOverrideRepository availabilityOverrideRepository,
+                                       AvailableDateRepository availableDateRepository,
+                                       DoctorRepository doctorRepository,
+                                       AvailabilityExpander availabilityExpander,
+                                       ApplicationEventPublisher eventPublisher) {
+        this.availabilityTemplateRepository = availabilityTemplateRepository;
+        this.availabilityOverrideRepository = availabilityOverrideRepository;
+        this.availableDateRepository = availableDateRepository;
+        this.doctorRepository = doctorRepository;
+        this.availabilityExpander = availabilityExpander;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Saves a weekly availability template and turns it into available dates up to the
+     * configured horizon with one batched insert. Later days are created as the horizon moves
+     * on, or on their first booking.
+     *
+     * @param availabilityTemplateDTO the availability template DTO
+     * @return the saved availability template DTO
+     * @throws InvalidRequestException if a required field is missing or the period is reversed
+     * @throws ResourceNotFoundException if the doctor is not found
+     * @throws ResourceAlreadyExistsException if another template of the doctor covers one of the weekdays in the period
+     */
+    @Override
+    public AvailabilityTemplateDTO saveAvailabilityTemplate(AvailabilityTemplateDTO availabilityTemplateDTO) {
+        if (availabilityTemplateDTO.getDoctorId() == null || availabilityTemplateDTO.getValidFrom() == null ||
+                availabilityTemplateDTO.getDaysOfWeek() == null || availabilityTemplateDTO.getDaysOfWeek().isEmpty()) {
+            throw new InvalidRequestException("Doctor, days of week and valid from date are required");
+        }
+        if (availabilityTemplateDTO.getDailyAppointmentLimit() == null || availabilityTemplateDTO.getDailyAppointmentLimit() < 1) {
+            throw new InvalidRequestException("Daily appointment limit must be at least 1");
+        }
+        if (availabilityTemplateDTO.getValidUntil() != null &&
+                availabilityTemplateDTO.getValidUntil().isBefore(availabilityTemplateDTO.getValidFrom())) {
+            throw new InvalidRequestException("Valid until date must not be before valid from date");
+        }
+        if (!doctorRepository.existsById(availabilityTemplateDTO.getDoctorId())) {
+            throw new ResourceNotFoundException("Doctor not found with id: " + availabilityTemplateDTO.getDoctorId());
+        }
+
+        int daysOfWeek = toMask(availabilityTemplateDTO.getDaysOfWeek());
+        for (AvailabilityTemplate existing : availabilityTemplateRepository.findByDoctorIdOrderById(availabilityTemplateDTO.getDoctorId())) {
+            if ((existing.getDaysOfWeek() & daysOfWeek) != 0 && overlaps(existing, availabilityTemplateDTO)) {
+                throw new ResourceAlreadyExistsException("Doctor already has a template for these days of week in this period");
+            }
+        }
+
+        AvailabilityTemplate availabilityTemplate = new AvailabilityTemplate();
+        availabilityTemplate.setDoctor(doctorRepository.getReferenceById(availabilityTemplateDTO.getDoctorId()));
+        availabilityTemplate.setDaysOfWeek(daysOfWeek);
+        availabilityTemplate.setDailyAppointmentLimit(availabilityTemplateDTO.getDailyAppointmentLimit());
+        availabilityTemplate.setValidFrom(DateUtils.toDate(availabilityTemplateDTO.getValidFrom()));
+        availabilityTemplate.setValidUntil(DateUtils.toDate(availabilityTemplateDTO.getValidUntil()));
+
+        AvailabilityTemplate savedAvailabilityTemplate = availabilityTemplateRepository.save(availabilityTemplate);
+        availabilityExpander.expand(savedAvailabilityTemplate.getId());
+        // The expansion moved the window in the database, past the entity loaded in this request
+        savedAvailabilityTemplate.setExpandedUntil(availabilityTemplateRepository
+                .findExpandedUntilById(savedAvailabilityTemplate.getId()).orElse(null));
+        return convertToDTO(savedAvailabilityTemplate);
+    }
+
+    /**
+     * Gets an availability template by ID.
+     *
+     * @param id the availability template ID
+     * @return the availability template DTO
+     * @throws ResourceNotFoundException if the availability template is not found
+     */
+    @Override
+    public AvailabilityTemplateDTO getAvailabilityTemplateById(Long id) {
+        AvailabilityTemplate availabilityTemplate = availabilityTemplateRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Availability template not found with id: " + id));
+        return convertToDTO(availabilityTemplate);
+    }
+
+    /**
+     * Gets the availability templates of a doctor.
+     *
+     * @param doctorId the doctor ID
+     * @return the list of availability template DTOs
+     */
+    @Override
+    public List<AvailabilityTemplateDTO> getAvailabilityTemplatesByDoctorId(Long doctorId) {
+        return availabilityTemplateRepository.findByDoctorIdOrderById(doctorId).stream()
+                .map(this::convertToDTO)
+                .toList();
+    }
+
+    /**
+     * Deletes an availability template. Available dates already created from it are kept
+     * together with their appointments.
+     *
+     * @param id the availability template ID
+     * @throws ResourceNotFoundException if the availability template is not found
+     */
+    @Override
+    public void deleteAvailabilityTemplate(Long id) {
+        AvailabilityTemplate availabilityTemplate = availabilityTemplateRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Availability template not found with id: " + id));
+        availabilityTemplateRepository.delete(availabilityTemplate);
+    }
+
+    /**
+     * Saves an override of the doctor's templates for one day. If the day was already created,
+     * it is removed when the override closes it, or gets the new limit.
+     *
+     * @param availabilityOverrideDTO the availability override DTO
+     * @return the saved availability override DTO
+     * @throws InvalidRequestException if the doctor or date is missing or the limit is below 1
+     * @throws ResourceNotFoundException if the doctor is not found
+     * @throws ResourceAlreadyExistsException if the doctor already has an override on the date
+     * @throws AppointmentConflictException if the override closes a day that has appointments
+     */
+    @Override
+    @Transactional
+    public AvailabilityOverrideDTO saveAvailabilityOverride(AvailabilityOverrideDTO availabilityOverrideDTO) {
+        if (availabilityOverrideDTO.getDoctorId() == null || availabilityOverrideDTO.getDate() == null) {
+            throw new InvalidRequestException("Doctor and date are required");
+        }
+        if (availabilityOverrideDTO.getDailyAppointmentLimit() != null && availabilityOverrideDTO.getDailyAppointmentLimit() < 1) {
+            throw new InvalidRequestException("Daily appointment limit must be at least 1, or empty to close the day");
+        }
+        Long doctorId = availabilityOverrideDTO.getDoctorId();
+        LocalDate day = availabilityOverrideDTO.getDate();
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new ResourceNotFoundException("Doctor not found with id: " + doctorId);
+        }
+
+        // The unique key decides between concurrent overrides of the day before the day is touched
+        AvailabilityOverride availabilityOverride = new AvailabilityOverride();
+        availabilityOverride.setDoctor(doctorRepository.getReferenceById(doctorId));
+        availabilityOverride.setOverrideDate(DateUtils.toDate(day));
+        availabilityOverride.setDailyAppointmentLimit(availabilityOverrideDTO.getDailyAppointmentLimit());
+        AvailabilityOverride savedAvailabilityOverride;
+        try {
+            savedAvailabilityOverride = availabilityOverrideRepository.saveAndFlush(availabilityOverride);
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintUtils.isViolated(e, "uk_availability_overrides_doctor_date")) {
+                throw new ResourceAlreadyExistsException("Doctor already has an override on this date");
+            }
+            throw e;
+        }
+
+        int changed;
+        if (availabilityOverrideDTO.getDailyAppointmentLimit() == null) {
+            changed = availableDateRepository.deleteUnbookedDay(doctorId, day);
+            if (changed == 0 && availableDateRepository.existsByDoctorIdAndAvailableDate(doctorId, DateUtils.toDate(day))) {
+                throw new AppointmentConflictException("Doctor has appointments on this date");
+            }
+        } else {
+            changed = availableDateRepository.updateLimit(doctorId, day, availabilityOverrideDTO.getDailyAppointmentLimit());
+        }
+        if (changed > 0) {
+            eventPublisher.publishEvent(new DoctorDayChangedEvent(this, doctorId, day));
+        }
+        return convertToDTO(savedAvailabilityOverride);
+    }
+
+    /**
+     * Gets the availability overrides of a doctor, ordered by date.
+     *
+     * @param doctorId the doctor ID
+     * @return the list of availability override DTOs
+     */
+    @Override
+    public List<AvailabilityOverrideDTO> getAvailabilityOverridesByDoctorId(Long doctorId) {
+        return availabilityOverrideRepository.findByDoctorIdOrderByOverrideDate(doctorId).stream()
+                .map(this::convertToDTO)
+                .toList();
+    }
+
+    /**
+     * Deletes an availability override. A day it already closed or changed is not restored;
+     * it can be edited through the available dates.
+     *
+     * @param id the availability override ID
+     * @throws ResourceNotFoundException if the availability override is not found
+     */
+    @Override
+    public void deleteAvailabilityOverride(Long id) {
+        AvailabilityOverride availabilityOverride = availabilityOverrideRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Availability override not found with id: " + id));
+        availabilityOverrideRepository.delete(availabilityOverride);
+    }
+
+    /**
+     * Tells whether the period of an existing template overlaps the period of a new one.
+     *
+     * @param existing the existing template
+     * @param dto the new template
+     * @return true if at least one day lies in both periods
+     */
+    private static boolean overlaps(AvailabilityTemplate existing, AvailabilityTemplateDTO dto) {
+        LocalDate existingFrom = DateUtils.toLocalDate(existing.getValidFrom());
+        LocalDate existingUntil = DateUtils.toLocalDate(existing.getValidUntil());
+        return (existingUntil == null || !existingUntil.isBefore(dto.getValidFrom())) &&
+                (dto.getValidUntil() == null || !dto.getValidUntil().isBefore(existingFrom));
+    }
+
+    /**
+     * Packs days of week into a bit mask, Monday being the lowest bit.
+     *
+     * @param daysOfWeek the days of week
+     * @return the bit mask
+     */
+    private static int toMask(Set<DayOfWeek> daysOfWeek) {
+        int mask = 0;
+        for (DayOfWeek dayOfWeek : daysOfWeek) {
+            mask |= 1 << (dayOfWeek.getValue() - 1);
+        }
+        return mask;
+    }
+
+    /**
+     * Unpacks a bit mask made by {@link #toMask(Set)}.
+     *
+     * @param mask the bit mask
+     * @return the days of week
+     */
+    private static Set<DayOfWeek> toDaysOfWeek(int mask) {
+        Set<DayOfWeek> daysOfWeek = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            if ((mask & (1 << (dayOfWeek.getValue() - 1))) != 0) {
+                daysOfWeek.add(dayOfWeek);
+            }
+        }
+        return daysOfWeek;
+    }
+
+    /**
+     * Converts an availability template entity to a DTO.
+     *
+     * @param availabilityTemplate the availability template entity
+     * @return the availability template DTO
+     */
+    private AvailabilityTemplateDTO convertToDTO(AvailabilityTemplate availabilityTemplate) {
+        AvailabilityTemplateDTO dto = new AvailabilityTemplateDTO();
+        dto.setId(availabilityTemplate.getId());
+        dto.setDoctorId(availabilityTemplate.getDoctor().getId());
+        dto.setDaysOfWeek(toDaysOfWeek(availabilityTemplate.getDaysOfWeek()));
+        dto.setDailyAppointmentLimit(availabilityTemplate.getDailyAppointmentLimit());
+        dto.setValidFrom(DateUtils.toLocalDate(availabilityTemplate.getValidFrom()));
+        dto.setValidUntil(DateUtils.toLocalDate(availabilityTemplate.getValidUntil()));
+        dto.setExpandedUntil(DateUtils.toLocalDate(availabilityTemplate.getExpandedUntil()));
+        return dto;
+    }
+
+    /**
+     * Converts an availability override entity to a DTO.
+     *
+     * @param availabilityOverride the availability override entity
+     * @return the availability override DTO
+     */
+    private AvailabilityOverrideDTO convertToDTO(AvailabilityOverride availabilityOverride) {
+        AvailabilityOverrideDTO dto = new AvailabilityOverrideDTO();
+        dto.setId(availabilityOverride.getId());
+        dto.setDoctorId(availabilityOverride.getDoctor().getId());
+        dto.setDate(DateUtils.toLocalDate(availabilityOverride.getOverrideDate()));
+        dto.setDailyAppointmentLimit(availabilityOverride.getDailyAppointmentLimit());
+        return dto;
+    }
+}
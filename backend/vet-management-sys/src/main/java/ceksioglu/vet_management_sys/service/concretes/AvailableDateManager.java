@@ -1,6 +1,23 @@
 package ceksioglu.vet_management_sys.service.concretes;
 
+import ceksioglu.vet_management_sys.core.booking.AvailabilityExpander;
+import ceksioglu.vet_management_sys.core.booking.CapacityReconciler;
+import ceksioglu.vet_management_sys.core.booking.DoctorDay;
+import ceksioglu.vet_management_sys.core.cache.DayCounterCache;
+import ceksioglu.vet_management_sys.core.cache.OccupancyCalendarCache;
+import ceksioglu.vet_management_sys.core.cache.OpenSlotIndex;
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
+import ceksioglu.vet_management_sys.core.util.ConstraintUtils;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
 import ceksioglu.vet_management_sys.dto.AvailableDateDTO;
+import ceksioglu.vet_management_sys.dto.AvailableDateLimitRequestDTO;
+import ceksioglu.vet_management_sys.dto.AvailableDateLimitResultDTO;
+import ceksioglu.vet_management_sys.dto.CapacityReconciliationDTO;
+import ceksioglu.vet_management_sys.dto.DayCounterCacheStatsDTO;
+import ceksioglu.vet_management_sys.dto.DayOccupancyDTO;
+import ceksioglu.vet_management_sys.dto.DoctorOccupancyDTO;
+import ceksioglu.vet_management_sys.dto.OccupancyCalendarDTO;
+import ceksioglu.vet_management_sys.dto.OpenSlotDTO;
 import ceksioglu.vet_management_sys.entity.AvailableDate;
 import ceksioglu.vet_management_sys.entity.Doctor;
 import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
@@ -8,12 +25,27 @@ import ceksioglu.vet_management_sys.repository.DoctorRepository;
 import ceksioglu.vet_management_sys.service.abstracts.AvailableDateService;
 import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
 import ceksioglu.vet_management_sys.core.exception.ResourceAlreadyExistsException;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.util.CursorUtils;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service implementation for managing available dates.
@@ -23,17 +55,54 @@ public class AvailableDateManager implements AvailableDateService {
 
     private final AvailableDateRepository availableDateRepository;
     private final DoctorRepository doctorRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OccupancyCalendarCache occupancyCalendarCache;
+    private final OpenSlotIndex openSlotIndex;
+    private final DayCounterCache dayCounterCache;
+    private final CapacityReconciler capacityReconciler;
+    private final AvailabilityExpander availabilityExpander;
+    private final int calendarMaxDays;
+    private final int bulkMaxDays;
+    private final int openSlotMaxResults;
 
     /**
      * Constructor for AvailableDateManager.
      *
      * @param availableDateRepository the available date repository
      * @param doctorRepository the doctor repository
+     * @param eventPublisher the event publisher
+     * @param occupancyCalendarCache the occupancy calendar cache
+     * @param openSlotIndex the index of doctor-days with free capacity
+     * @param dayCounterCache the cache of appointment counts and queue positions per doctor-day
+     * @param capacityReconciler corrects drifted appointment counts
+     * @param availabilityExpander turns the weekly templates into available dates
+     * @param calendarMaxDays the maximum number of days of an occupancy calendar
+     * @param bulkMaxDays the maximum number of days of a bulk limit change
+     * @param openSlotMaxResults the maximum number of doctor-days returned by an open slot search
      */
     @Autowired
-    public AvailableDateManager(AvailableDateRepository availableDateRepository, DoctorRepository doctorRepository) {
+    public AvailableDateManager(AvailableDateRepository availableDateRepository,
+                                DoctorRepository doctorRepository,
+                                ApplicationEventPublisher eventPublisher,
+                                OccupancyCalendarCache occupancyCalendarCache,
+                                OpenSlotIndex openSlotIndex,
+                                DayCounterCache dayCounterCache,
+                                CapacityReconciler capacityReconciler,
+                                AvailabilityExpander availabilityExpander,
+                                @Value("${vet.calendar.max-days:62}") int calendarMaxDays,
+                                @Value("${vet.available-date.bulk-max-days:366}") int bulkMaxDays,
+                                @Value("${vet.open-slots.max-results:100}") int openSlotMaxResults) {
         this.availableDateRepository = availableDateRepository;
         this.doctorRepository = doctorRepository;
+        this.eventPublisher = eventPublisher;
+        this.occupancyCalendarCache = occupancyCalendarCache;
+        this.openSlotIndex = openSlotIndex;
+        this.dayCounterCache = dayCounterCache;
+        this.capacityReconciler = capacityReconciler;
+        this.availabilityExpander = availabilityExpander;
+        this.calendarMaxDays = calendarMaxDays;
+        this.bulkMaxDays = bulkMaxDays;
+        this.openSlotMaxResults = openSlotMaxResults;
     }
 
     /**
@@ -49,17 +118,19 @@ public class AvailableDateManager implements AvailableDateService {
         Doctor doctor = doctorRepository.findById(availableDateDTO.getDoctorId())
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor not found with id: " + availableDateDTO.getDoctorId()));
 
-        if (availableDateRepository.existsByDoctorIdAndAvailableDate(doctor.getId(), availableDateDTO.getAvailableDate())) {
-            throw new ResourceAlreadyExistsException("This date is already available for the doctor");
-        }
-
         AvailableDate availableDate = new AvailableDate();
         availableDate.setAvailableDate(availableDateDTO.getAvailableDate());
         availableDate.setDoctor(doctor);
         availableDate.setDailyAppointmentLimit(availableDateDTO.getDailyAppointmentLimit());
         availableDate.setCurrentAppointmentCount(0);
 
-        AvailableDate savedAvailableDate = availableDateRepository.save(availableDate);
+        AvailableDate savedAvailableDate;
+        try {
+            savedAvailableDate = availableDateRepository.saveAndFlush(availableDate);
+        } catch (DataIntegrityViolationException e) {
+            throw translateDayConflict(e);
+        }
+        publishChange(savedAvailableDate);
         return convertToDTO(savedAvailableDate);
     }
 
@@ -80,18 +151,20 @@ public class AvailableDateManager implements AvailableDateService {
         Doctor doctor = doctorRepository.findById(availableDateDTO.getDoctorId())
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor not found with id: " + availableDateDTO.getDoctorId()));
 
-        if (!availableDate.getDoctor().getId().equals(doctor.getId()) &&
-                availableDateRepository.existsByDoctorIdAndAvailableDate(doctor.getId(), availableDateDTO.getAvailableDate())) {
-            throw new ResourceAlreadyExistsException("This date is already available for the doctor");
-        }
-
+        publishChange(availableDate);
         availableDate.setAvailableDate(availableDateDTO.getAvailableDate());
         availableDate.setDoctor(doctor);
         availableDate.setDailyAppointmentLimit(availableDateDTO.getDailyAppointmentLimit());
         // Preserve the current appointment count
         // availableDate.setCurrentAppointmentCount(availableDateDTO.getCurrentAppointmentCount());
 
-        AvailableDate updatedAvailableDate = availableDateRepository.save(availableDate);
+        AvailableDate updatedAvailableDate;
+        try {
+            updatedAvailableDate = availableDateRepository.saveAndFlush(availableDate);
+        } catch (DataIntegrityViolationException e) {
+            throw translateDayConflict(e);
+        }
+        publishChange(updatedAvailableDate);
         return convertToDTO(updatedAvailableDate);
     }
 
@@ -103,10 +176,65 @@ public class AvailableDateManager implements AvailableDateService {
      */
     @Override
     public void deleteAvailableDate(Long id) {
-        if (!availableDateRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Available date not found with id: " + id);
+        AvailableDate availableDate = availableDateRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Available date not found with id: " + id));
+        availableDateRepository.delete(availableDate);
+        publishChange(availableDate);
+    }
+
+    /**
+     * Changes the daily appointment limit of every available date in a date range, for one doctor
+     * or for all doctors, with one set-based UPDATE. Days of the range that the weekly templates
+     * would create but that were not created yet are created first in the same transaction, so
+     * that the change reaches them too. Appointments already booked are kept; the days where
+     * they exceed the limit are returned, including days that had the limit already.
+     *
+     * @param request the doctor, date range and new limit
+     * @return the number of changed days and the overbooked ones
+     * @throws InvalidRequestException if a field is missing, the range is reversed or too long, or the limit is negative
+     * @throws ResourceNotFoundException if the doctor is not found
+     */
+    @Override
+    @Transactional
+    public AvailableDateLimitResultDTO updateDailyAppointmentLimits(AvailableDateLimitRequestDTO request) {
+        if (request.getStartDate() == null || request.getEndDate() == null || request.getDailyAppointmentLimit() == null) {
+            throw new InvalidRequestException("Start date, end date and daily appointment limit are required");
+        }
+        if (request.getEndDate().isBefore(request.getStartDate())) {
+            throw new InvalidRequestException("End date must not be before start date");
+        }
+        if (ChronoUnit.DAYS.between(request.getStartDate(), request.getEndDate()) >= bulkMaxDays) {
+            throw new InvalidRequestException("A limit change can span at most " + bulkMaxDays + " days");
+        }
+        if (request.getDailyAppointmentLimit() < 0) {
+            throw new InvalidRequestException("Daily appointment limit must not be negative");
+        }
+        if (request.getDoctorId() != null && !doctorRepository.existsById(request.getDoctorId())) {
+            throw new ResourceNotFoundException("Doctor not found with id: " + request.getDoctorId());
         }
-        availableDateRepository.deleteById(id);
+
+        availabilityExpander.expandRange(request.getDoctorId(), request.getStartDate(), request.getEndDate());
+        int limit = request.getDailyAppointmentLimit();
+        List<AvailableDateRepository.ChangedLimit> rows = availableDateRepository.updateLimits(request.getDoctorId(),
+                request.getStartDate(), request.getEndDate(), limit);
+
+        int changedCount = 0;
+        List<AvailableDateDTO> overbookedDates = new ArrayList<>();
+        Set<Long> doctorIds = new LinkedHashSet<>();
+        for (AvailableDateRepository.ChangedLimit row : rows) {
+            if (Boolean.TRUE.equals(row.getChanged())) {
+                changedCount++;
+                doctorIds.add(row.getDoctorId());
+            }
+            if (row.getCurrentAppointmentCount() != null && row.getCurrentAppointmentCount() > limit) {
+                overbookedDates.add(new AvailableDateDTO(row.getId(), row.getDay(), row.getDoctorId(), limit,
+                        row.getCurrentAppointmentCount()));
+            }
+        }
+        overbookedDates.sort(Comparator.comparing(AvailableDateDTO::getDoctorId).thenComparing(AvailableDateDTO::getAvailableDate));
+        // One event per doctor instead of one per day
+        doctorIds.forEach(doctorId -> eventPublisher.publishEvent(new DoctorDayChangedEvent(this, doctorId, null)));
+        return new AvailableDateLimitResultDTO(changedCount, overbookedDates);
     }
 
     /**
@@ -126,30 +254,41 @@ public class AvailableDateManager implements AvailableDateService {
     /**
      * Gets all available dates.
      *
-     * @return the list of available date DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of available date DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<AvailableDateDTO> getAllAvailableDates() {
-        return availableDateRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<AvailableDateDTO> getAllAvailableDates(String cursor, int size) {
+        CursorUtils.Keyset<Date> after = CursorUtils.decode(cursor, Date.class);
+        List<AvailableDate> availableDates = availableDateRepository.findAllAfter(after.getKey(), after.getId(),
+                CursorUtils.limit(size));
+        return CursorUtils.toPage(availableDates, size, AvailableDate::getAvailableDate, AvailableDate::getId,
+                this::convertToDTO);
     }
 
     /**
      * Gets available dates by doctor ID.
      *
      * @param doctorId the doctor ID
-     * @return the list of available date DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of available date DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<AvailableDateDTO> getAvailableDatesByDoctorId(Long doctorId) {
-        return availableDateRepository.findByDoctorId(doctorId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<AvailableDateDTO> getAvailableDatesByDoctorId(Long doctorId, String cursor, int size) {
+        CursorUtils.Keyset<Date> after = CursorUtils.decode(cursor, Date.class);
+        List<AvailableDate> availableDates = availableDateRepository.findByDoctorIdAfter(doctorId, after.getKey(),
+                after.getId(), CursorUtils.limit(size));
+        return CursorUtils.toPage(availableDates, size, AvailableDate::getAvailableDate, AvailableDate::getId,
+                this::convertToDTO);
     }
 
     /**
-     * Gets the current appointment count for a given date and doctor.
+     * Gets the current appointment count for a given date and doctor. Served from the day counter
+     * cache, which drops the day as soon as a change to its bookings or capacity is committed.
      *
      * @param date the date
      * @param doctorId the doctor ID
@@ -158,9 +297,134 @@ public class AvailableDateManager implements AvailableDateService {
      */
     @Override
     public Integer getCurrentAppointmentCount(Date date, Long doctorId) {
-        AvailableDate availableDate = availableDateRepository.findByDoctorIdAndAvailableDate(doctorId, date)
-                .orElseThrow(() -> new ResourceNotFoundException("Available date not found for doctor on this date"));
-        return availableDate.getCurrentAppointmentCount();
+        return dayCounterCache.get(new DoctorDay(doctorId, DateUtils.toLocalDate(date)))
+                .orElseThrow(() -> new ResourceNotFoundException("Available date not found for doctor on this date"))
+                .getCurrentAppointmentCount();
+    }
+
+    /**
+     * Gets the hit and miss counts of the day counter cache since startup.
+     *
+     * @return the cache statistics
+     */
+    @Override
+    public DayCounterCacheStatsDTO getDayCounterCacheStats() {
+        return dayCounterCache.getStats();
+    }
+
+    /**
+     * Gets the doctors × days occupancy calendar of a date range. The calendar is built from one
+     * grouped query over the available dates and cached until a booking or capacity change
+     * touches one of its days.
+     *
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @return the occupancy calendar
+     * @throws InvalidRequestException if the range is reversed or longer than the configured maximum
+     */
+    @Override
+    public OccupancyCalendarDTO getOccupancyCalendar(LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new InvalidRequestException("End date must not be before start date");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= calendarMaxDays) {
+            throw new InvalidRequestException("A calendar can span at most " + calendarMaxDays + " days");
+        }
+        return occupancyCalendarCache.get(startDate, endDate, () -> loadOccupancyCalendar(startDate, endDate));
+    }
+
+    /**
+     * Finds the earliest doctor-days with free capacity in a date range, ordered by day and
+     * doctor ID. The search runs on the in-memory open slot index and does not touch the database.
+     *
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @param limit the maximum number of doctor-days returned
+     * @param doctorId only this doctor's days if not null
+     * @param city only days of doctors in this city if not null
+     * @return the open doctor-days
+     * @throws InvalidRequestException if the range is reversed or the limit is out of range
+     */
+    @Override
+    public List<OpenSlotDTO> findOpenSlots(LocalDate startDate, LocalDate endDate, int limit, Long doctorId, String city) {
+        if (endDate.isBefore(startDate)) {
+            throw new InvalidRequestException("End date must not be before start date");
+        }
+        if (limit < 1 || limit > openSlotMaxResults) {
+            throw new InvalidRequestException("Limit must be between 1 and " + openSlotMaxResults);
+        }
+        return openSlotIndex.findFirst(startDate, endDate, limit, doctorId, city == null || city.isBlank() ? null : city.trim());
+    }
+
+    /**
+     * Recounts the appointments of every doctor-day now and corrects the counts that drifted.
+     *
+     * @return the drift report of the run
+     */
+    @Override
+    public CapacityReconciliationDTO reconcileAppointmentCounts() {
+        return capacityReconciler.reconcile();
+    }
+
+    /**
+     * Gets the drift report of the last appointment count reconciliation.
+     *
+     * @return the drift report
+     * @throws ResourceNotFoundException if no reconciliation has finished yet
+     */
+    @Override
+    public CapacityReconciliationDTO getLastReconciliation() {
+        CapacityReconciliationDTO report = capacityReconciler.getLastReport();
+        if (report == null) {
+            throw new ResourceNotFoundException("No appointment count reconciliation has finished yet");
+        }
+        return report;
+    }
+
+    /**
+     * Builds an occupancy calendar from the grouped doctor-day rows of its range.
+     *
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range
+     * @return the occupancy calendar
+     */
+    private OccupancyCalendarDTO loadOccupancyCalendar(LocalDate startDate, LocalDate endDate) {
+        List<LocalDate> days = startDate.datesUntil(endDate.plusDays(1)).toList();
+
+        Map<Long, DoctorOccupancyDTO> doctors = new LinkedHashMap<>();
+        for (AvailableDateRepository.DayOccupancy row : availableDateRepository.findOccupancy(
+                DateUtils.toDate(startDate), DateUtils.toDate(endDate))) {
+            DoctorOccupancyDTO doctor = doctors.computeIfAbsent(row.getDoctorId(),
+                    doctorId -> new DoctorOccupancyDTO(doctorId, new ArrayList<>(Collections.nCopies(days.size(), null))));
+            int limit = row.getDailyAppointmentLimit().intValue();
+            int booked = row.getBookedCount().intValue();
+            int dayIndex = (int) ChronoUnit.DAYS.between(startDate, DateUtils.toLocalDate(row.getDay()));
+            doctor.getDays().set(dayIndex, new DayOccupancyDTO(limit, booked, Math.max(limit - booked, 0)));
+        }
+        return new OccupancyCalendarDTO(startDate, endDate, days, new ArrayList<>(doctors.values()));
+    }
+
+    /**
+     * Announces that the capacity of an available date's doctor-day has changed.
+     *
+     * @param availableDate the available date entity
+     */
+    private void publishChange(AvailableDate availableDate) {
+        eventPublisher.publishEvent(new DoctorDayChangedEvent(this, availableDate.getDoctor().getId(),
+                DateUtils.toLocalDate(availableDate.getAvailableDate())));
+    }
+
+    /**
+     * Turns a violation of the unique doctor-day key into a conflict, other failures are passed on.
+     *
+     * @param e the exception thrown by the write
+     * @return the exception to throw
+     */
+    private RuntimeException translateDayConflict(DataIntegrityViolationException e) {
+        if (ConstraintUtils.isViolated(e, "uk_available_dates_doctor_date")) {
+            return new ResourceAlreadyExistsException("This date is already available for the doctor");
+        }
+        return e;
     }
 
     /**
@@ -1,16 +1,21 @@
 package ceksioglu.vet_management_sys.service.concretes;
 
+import ceksioglu.vet_management_sys.core.rollup.VaccineCoverageRollup;
 import ceksioglu.vet_management_sys.dto.CustomerDTO;
 import ceksioglu.vet_management_sys.entity.Customer;
 import ceksioglu.vet_management_sys.repository.CustomerRepository;
 import ceksioglu.vet_management_sys.service.abstracts.CustomerService;
 import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
 import ceksioglu.vet_management_sys.core.exception.ResourceAlreadyExistsException;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.util.ConstraintUtils;
+import ceksioglu.vet_management_sys.core.util.CursorUtils;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Service implementation for managing customers.
@@ -19,15 +24,18 @@ import java.util.stream.Collectors;
 public class CustomerManager implements CustomerService {
 
     private final CustomerRepository customerRepository;
+    private final VaccineCoverageRollup vaccineCoverageRollup;
 
     /**
      * Constructor for CustomerManager.
      *
      * @param customerRepository the customer repository
+     * @param vaccineCoverageRollup moves the vaccination coverage counts when a customer's city changes
      */
     @Autowired
-    public CustomerManager(CustomerRepository customerRepository) {
+    public CustomerManager(CustomerRepository customerRepository, VaccineCoverageRollup vaccineCoverageRollup) {
         this.customerRepository = customerRepository;
+        this.vaccineCoverageRollup = vaccineCoverageRollup;
     }
 
     /**
@@ -39,12 +47,13 @@ public class CustomerManager implements CustomerService {
      */
     @Override
     public CustomerDTO saveCustomer(CustomerDTO customerDTO) {
-        if (customerRepository.existsByPhone(customerDTO.getPhone())) {
-            throw new ResourceAlreadyExistsException("Customer with this phone number already exists");
-        }
         Customer customer = convertToEntity(customerDTO);
-        Customer savedCustomer = customerRepository.save(customer);
-        return convertToDTO(savedCustomer);
+        try {
+            Customer savedCustomer = customerRepository.saveAndFlush(customer);
+            return convertToDTO(savedCustomer);
+        } catch (DataIntegrityViolationException e) {
+            throw translatePhoneConflict(e);
+        }
     }
 
     /**
@@ -60,11 +69,7 @@ public class CustomerManager implements CustomerService {
     public CustomerDTO updateCustomer(Long id, CustomerDTO customerDTO) {
         Customer existingCustomer = customerRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
-
-        if (!existingCustomer.getPhone().equals(customerDTO.getPhone()) &&
-                customerRepository.existsByPhone(customerDTO.getPhone())) {
-            throw new ResourceAlreadyExistsException("Customer with this phone number already exists");
-        }
+        boolean cityChanged = !existingCustomer.getCity().equals(customerDTO.getCity());
 
         existingCustomer.setName(customerDTO.getName());
         existingCustomer.setPhone(customerDTO.getPhone());
@@ -72,8 +77,15 @@ public class CustomerManager implements CustomerService {
         existingCustomer.setAddress(customerDTO.getAddress());
         existingCustomer.setCity(customerDTO.getCity());
 
-        Customer updatedCustomer = customerRepository.save(existingCustomer);
-        return convertToDTO(updatedCustomer);
+        try {
+            // The animals of the customer move to another city in the coverage
+            Customer updatedCustomer = cityChanged
+                    ? vaccineCoverageRollup.updateCustomer(id, () -> customerRepository.saveAndFlush(existingCustomer))
+                    : customerRepository.saveAndFlush(existingCustomer);
+            return convertToDTO(updatedCustomer);
+        } catch (DataIntegrityViolationException e) {
+            throw translatePhoneConflict(e);
+        }
     }
 
     /**
@@ -87,7 +99,10 @@ public class CustomerManager implements CustomerService {
         if (!customerRepository.existsById(id)) {
             throw new ResourceNotFoundException("Customer not found with id: " + id);
         }
-        customerRepository.deleteById(id);
+        vaccineCoverageRollup.updateCustomer(id, () -> {
+            customerRepository.deleteById(id);
+            return null;
+        });
     }
 
     /**
@@ -107,26 +122,46 @@ public class CustomerManager implements CustomerService {
     /**
      * Gets all customers.
      *
-     * @return the list of customer DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of customer DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<CustomerDTO> getAllCustomers() {
-        return customerRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<CustomerDTO> getAllCustomers(String cursor, int size) {
+        Long afterId = CursorUtils.decodeId(cursor);
+        List<Customer> customers = customerRepository.findByIdGreaterThanOrderById(afterId, CursorUtils.limit(size));
+        return CursorUtils.toPage(customers, size, Customer::getId, this::convertToDTO);
     }
 
     /**
      * Gets customers by name.
      *
      * @param name the customer name
-     * @return the list of customer DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of customer DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<CustomerDTO> getCustomersByName(String name) {
-        return customerRepository.findByNameContainingIgnoreCase(name).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<CustomerDTO> getCustomersByName(String name, String cursor, int size) {
+        Long afterId = CursorUtils.decodeId(cursor);
+        List<Customer> customers = customerRepository.findByNameContainingIgnoreCaseAndIdGreaterThanOrderById(name, afterId,
+                CursorUtils.limit(size));
+        return CursorUtils.toPage(customers, size, Customer::getId, this::convertToDTO);
+    }
+
+    /**
+     * Turns a violation of the unique phone number key into a conflict, other failures are passed on.
+     *
+     * @param e the exception thrown by the write
+     * @return the exception to throw
+     */
+    private RuntimeException translatePhoneConflict(DataIntegrityViolationException e) {
+        if (ConstraintUtils.isViolated(e, "uk_customers_phone")) {
+            return new ResourceAlreadyExistsException("Customer with this phone number already exists");
+        }
+        return e;
     }
 
     /**
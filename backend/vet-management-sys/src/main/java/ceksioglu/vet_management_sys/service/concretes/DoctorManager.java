@@ -1,16 +1,23 @@
 package ceksioglu.vet_management_sys.service.concretes;
 
+import ceksioglu.vet_management_sys.core.event.DoctorDayChangedEvent;
 import ceksioglu.vet_management_sys.dto.DoctorDTO;
 import ceksioglu.vet_management_sys.entity.Doctor;
 import ceksioglu.vet_management_sys.repository.DoctorRepository;
 import ceksioglu.vet_management_sys.service.abstracts.DoctorService;
 import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
 import ceksioglu.vet_management_sys.core.exception.ResourceAlreadyExistsException;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.util.ConstraintUtils;
+import ceksioglu.vet_management_sys.core.util.CursorUtils;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 /**
  * Service implementation for managing doctors.
@@ -18,16 +25,21 @@ import java.util.stream.Collectors;
 @Service
 public class DoctorManager implements DoctorService {
 
+    private static final int MAX_SLOT_MINUTES = 24 * 60;
+
     private final DoctorRepository doctorRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Constructor for DoctorManager.
      *
      * @param doctorRepository the doctor repository
+     * @param eventPublisher the event publisher
      */
     @Autowired
-    public DoctorManager(DoctorRepository doctorRepository) {
+    public DoctorManager(DoctorRepository doctorRepository, ApplicationEventPublisher eventPublisher) {
         this.doctorRepository = doctorRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -36,15 +48,18 @@ public class DoctorManager implements DoctorService {
      * @param doctorDTO the doctor DTO
      * @return the saved doctor DTO
      * @throws ResourceAlreadyExistsException if a doctor with the same email already exists
+     * @throws InvalidRequestException if the slot length is out of range
      */
     @Override
     public DoctorDTO saveDoctor(DoctorDTO doctorDTO) {
-        if (doctorRepository.existsByMail(doctorDTO.getMail())) {
-            throw new ResourceAlreadyExistsException("Doctor with this email already exists");
-        }
+        validateSlotMinutes(doctorDTO.getSlotMinutes());
         Doctor doctor = convertToEntity(doctorDTO);
-        Doctor savedDoctor = doctorRepository.save(doctor);
-        return convertToDTO(savedDoctor);
+        try {
+            Doctor savedDoctor = doctorRepository.saveAndFlush(doctor);
+            return convertToDTO(savedDoctor);
+        } catch (DataIntegrityViolationException e) {
+            throw translateMailConflict(e);
+        }
     }
 
     /**
@@ -55,24 +70,32 @@ public class DoctorManager implements DoctorService {
      * @return the updated doctor DTO
      * @throws ResourceNotFoundException if the doctor is not found
      * @throws ResourceAlreadyExistsException if a doctor with the same email already exists
+     * @throws InvalidRequestException if the slot length is out of range
      */
     @Override
     public DoctorDTO updateDoctor(Long id, DoctorDTO doctorDTO) {
+        validateSlotMinutes(doctorDTO.getSlotMinutes());
         Doctor existingDoctor = doctorRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor not found with id: " + id));
 
-        if (!existingDoctor.getMail().equals(doctorDTO.getMail()) &&
-                doctorRepository.existsByMail(doctorDTO.getMail())) {
-            throw new ResourceAlreadyExistsException("Doctor with this email already exists");
-        }
-
+        boolean cityChanged = !Objects.equals(existingDoctor.getCity(), doctorDTO.getCity());
         existingDoctor.setName(doctorDTO.getName());
         existingDoctor.setPhone(doctorDTO.getPhone());
         existingDoctor.setMail(doctorDTO.getMail());
         existingDoctor.setAddress(doctorDTO.getAddress());
         existingDoctor.setCity(doctorDTO.getCity());
+        existingDoctor.setSlotMinutes(doctorDTO.getSlotMinutes());
 
-        Doctor updatedDoctor = doctorRepository.save(existingDoctor);
+        Doctor updatedDoctor;
+        try {
+            updatedDoctor = doctorRepository.saveAndFlush(existingDoctor);
+        } catch (DataIntegrityViolationException e) {
+            throw translateMailConflict(e);
+        }
+        if (cityChanged) {
+            // Open slot searches filter by city
+            eventPublisher.publishEvent(new DoctorDayChangedEvent(this, id, null));
+        }
         return convertToDTO(updatedDoctor);
     }
 
@@ -88,6 +111,8 @@ public class DoctorManager implements DoctorService {
             throw new ResourceNotFoundException("Doctor not found with id: " + id);
         }
         doctorRepository.deleteById(id);
+        // Available dates and appointments of the doctor are deleted with it
+        eventPublisher.publishEvent(new DoctorDayChangedEvent(this, id, null));
     }
 
     /**
@@ -107,13 +132,41 @@ public class DoctorManager implements DoctorService {
     /**
      * Gets all doctors.
      *
-     * @return the list of doctor DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of doctor DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<DoctorDTO> getAllDoctors() {
-        return doctorRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<DoctorDTO> getAllDoctors(String cursor, int size) {
+        Long afterId = CursorUtils.decodeId(cursor);
+        List<Doctor> doctors = doctorRepository.findByIdGreaterThanOrderById(afterId, CursorUtils.limit(size));
+        return CursorUtils.toPage(doctors, size, Doctor::getId, this::convertToDTO);
+    }
+
+    /**
+     * Checks the slot length of a doctor. Null means the default length.
+     *
+     * @param slotMinutes the slot length in minutes
+     * @throws InvalidRequestException if the slot length is out of range
+     */
+    private void validateSlotMinutes(Integer slotMinutes) {
+        if (slotMinutes != null && (slotMinutes < 1 || slotMinutes > MAX_SLOT_MINUTES)) {
+            throw new InvalidRequestException("Slot length must be between 1 and " + MAX_SLOT_MINUTES + " minutes");
+        }
+    }
+
+    /**
+     * Turns a violation of the unique email key into a conflict, other failures are passed on.
+     *
+     * @param e the exception thrown by the write
+     * @return the exception to throw
+     */
+    private RuntimeException translateMailConflict(DataIntegrityViolationException e) {
+        if (ConstraintUtils.isViolated(e, "uk_doctors_mail")) {
+            return new ResourceAlreadyExistsException("Doctor with this email already exists");
+        }
+        return e;
     }
 
     /**
@@ -130,6 +183,7 @@ public class DoctorManager implements DoctorService {
         dto.setMail(doctor.getMail());
         dto.setAddress(doctor.getAddress());
         dto.setCity(doctor.getCity());
+        dto.setSlotMinutes(doctor.getSlotMinutes());
         return dto;
     }
 
@@ -146,6 +200,7 @@ public class DoctorManager implements DoctorService {
         doctor.setMail(dto.getMail());
         doctor.setAddress(dto.getAddress());
         doctor.setCity(dto.getCity());
+        doctor.setSlotMinutes(dto.getSlotMinutes());
         return doctor;
     }
 }
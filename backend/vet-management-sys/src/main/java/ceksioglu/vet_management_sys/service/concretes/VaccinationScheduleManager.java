@@ -0,0 +1,172 @@
+package ceksioglu.vet_management_sys.service.concretes;
+
+import ceksioglu.vet_management_sys.core.event.VaccinationScheduleChangedEvent;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.exception.ResourceAlreadyExistsException;
+import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
+import ceksioglu.vet_management_sys.core.util.ConstraintUtils;
+import ceksioglu.vet_management_sys.dto.VaccinationScheduleDTO;
+import ceksioglu.vet_management_sys.entity.VaccinationSchedule;
+import ceksioglu.vet_management_sys.repository.VaccinationScheduleRepository;
+import ceksioglu.vet_management_sys.service.abstracts.VaccinationScheduleService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Service implementation for managing vaccination schedules. Every change publishes a
+ * {@link VaccinationScheduleChangedEvent}, after which the due vaccinations of all animals are
+ * recomputed in the background.
+ */
+@Service
+public class VaccinationScheduleManager implements VaccinationScheduleService {
+
+    private final VaccinationScheduleRepository vaccinationScheduleRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Constructor for VaccinationScheduleManager.
+     *
+     * @param vaccinationScheduleRepository the vaccination schedule repository
+     * @param eventPublisher the event publisher
+     */
+    @Autowired
+    public VaccinationScheduleManager(VaccinationScheduleRepository vaccinationScheduleRepository,
+                                      ApplicationEventPublisher eventPublisher) {
+        this.vaccinationScheduleRepository = vaccinationScheduleRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Saves a vaccination schedule.
+     *
+     * @param vaccinationScheduleDTO the vaccination schedule DTO
+     * @return the saved vaccination schedule DTO
+     * @throws InvalidRequestException if a required field is missing or a duration is out of range
+     * @throws ResourceAlreadyExistsException if the species already has a schedule for the vaccine code
+     */
+    @Override
+    public VaccinationScheduleDTO saveVaccinationSchedule(VaccinationScheduleDTO vaccinationScheduleDTO) {
+        VaccinationSchedule schedule = new VaccinationSchedule();
+        apply(schedule, vaccinationScheduleDTO);
+        return convertToDTO(saveAndRecompute(schedule));
+    }
+
+    /**
+     * Updates a vaccination schedule.
+     *
+     * @param id the vaccination schedule ID
+     * @param vaccinationScheduleDTO the vaccination schedule DTO
+     * @return the updated vaccination schedule DTO
+     * @throws ResourceNotFoundException if the vaccination schedule is not found
+     * @throws InvalidRequestException if a required field is missing or a duration is out of range
+     * @throws ResourceAlreadyExistsException if the species already has a schedule for the vaccine code
+     */
+    @Override
+    public VaccinationScheduleDTO updateVaccinationSchedule(Long id, VaccinationScheduleDTO vaccinationScheduleDTO) {
+        VaccinationSchedule schedule = vaccinationScheduleRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Vaccination schedule not found with id: " + id));
+        apply(schedule, vaccinationScheduleDTO);
+        return convertToDTO(saveAndRecompute(schedule));
+    }
+
+    /**
+     * Deletes a vaccination schedule by ID.
+     *
+     * @param id the vaccination schedule ID
+     * @throws ResourceNotFoundException if the vaccination schedule is not found
+     */
+    @Override
+    public void deleteVaccinationSchedule(Long id) {
+        if (!vaccinationScheduleRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Vaccination schedule not found with id: " + id);
+        }
+        vaccinationScheduleRepository.deleteById(id);
+        eventPublisher.publishEvent(new VaccinationScheduleChangedEvent(this, id));
+    }
+
+    /**
+     * Gets a vaccination schedule by ID.
+     *
+     * @param id the vaccination schedule ID
+     * @return the vaccination schedule DTO
+     * @throws ResourceNotFoundException if the vaccination schedule is not found
+     */
+    @Override
+    public VaccinationScheduleDTO getVaccinationScheduleById(Long id) {
+        VaccinationSchedule schedule = vaccinationScheduleRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Vaccination schedule not found with id: " + id));
+        return convertToDTO(schedule);
+    }
+
+    /**
+     * Gets all vaccination schedules.
+     *
+     * @return the vaccination schedule DTOs ordered by species and vaccine code
+     */
+    @Override
+    public List<VaccinationScheduleDTO> getAllVaccinationSchedules() {
+        return vaccinationScheduleRepository.findAllByOrderBySpeciesAscVaccineCodeAsc().stream()
+                .map(this::convertToDTO)
+                .toList();
+    }
+
+    /**
+     * Saves a vaccination schedule and announces the change, so that the due vaccinations are
+     * recomputed once it is committed.
+     *
+     * @param schedule the vaccination schedule
+     * @return the saved vaccination schedule
+     * @throws ResourceAlreadyExistsException if the species already has a schedule for the vaccine code
+     */
+    private VaccinationSchedule saveAndRecompute(VaccinationSchedule schedule) {
+        VaccinationSchedule savedSchedule;
+        try {
+            savedSchedule = vaccinationScheduleRepository.saveAndFlush(schedule);
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintUtils.isViolated(e, "uk_vaccination_schedules_species_code")) {
+                throw new ResourceAlreadyExistsException("Species already has a schedule for this vaccine code");
+            }
+            throw e;
+        }
+        eventPublisher.publishEvent(new VaccinationScheduleChangedEvent(this, savedSchedule.getId()));
+        return savedSchedule;
+    }
+
+    /**
+     * Checks a vaccination schedule DTO and copies it to the entity.
+     *
+     * @param schedule the vaccination schedule entity
+     * @param dto the vaccination schedule DTO
+     * @throws InvalidRequestException if a required field is missing or a duration is out of range
+     */
+    private void apply(VaccinationSchedule schedule, VaccinationScheduleDTO dto) {
+        if (dto.getSpecies() == null || dto.getVaccineCode() == null || dto.getFirstDoseAgeDays() == null) {
+            throw new InvalidRequestException("Species, vaccine code and first dose age are required");
+        }
+        if (dto.getFirstDoseAgeDays() < 0) {
+            throw new InvalidRequestException("First dose age cannot be negative");
+        }
+        if (dto.getBoosterIntervalDays() != null && dto.getBoosterIntervalDays() < 1) {
+            throw new InvalidRequestException("Booster interval must be at least one day");
+        }
+        schedule.setSpecies(dto.getSpecies());
+        schedule.setVaccineCode(dto.getVaccineCode());
+        schedule.setFirstDoseAgeDays(dto.getFirstDoseAgeDays());
+        schedule.setBoosterIntervalDays(dto.getBoosterIntervalDays());
+    }
+
+    /**
+     * Converts a vaccination schedule entity to a DTO.
+     *
+     * @param schedule the vaccination schedule entity
+     * @return the vaccination schedule DTO
+     */
+    private VaccinationScheduleDTO convertToDTO(VaccinationSchedule schedule) {
+        return new VaccinationScheduleDTO(schedule.getId(), schedule.getSpecies(), schedule.getVaccineCode(),
+                schedule.getFirstDoseAgeDays(), schedule.getBoosterIntervalDays());
+    }
+}
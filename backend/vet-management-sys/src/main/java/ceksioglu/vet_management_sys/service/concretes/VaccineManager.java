@@ -1,70 +1,173 @@
 package ceksioglu.vet_management_sys.service.concretes;
 
+import ceksioglu.vet_management_sys.core.cache.ActiveVaccineIndex;
+import ceksioglu.vet_management_sys.core.cache.VaccineCatalogCache;
+import ceksioglu.vet_management_sys.core.cache.VaccineTimelineCache;
+import ceksioglu.vet_management_sys.core.due.VaccineDueEngine;
+import ceksioglu.vet_management_sys.core.importer.VaccineImportReader;
+import ceksioglu.vet_management_sys.core.reminder.VaccineReminderPipeline;
+import ceksioglu.vet_management_sys.core.rollup.VaccineCoverageRollup;
+import ceksioglu.vet_management_sys.core.stock.LotCounter;
+import ceksioglu.vet_management_sys.core.stock.VaccineStockLedger;
+import ceksioglu.vet_management_sys.dto.ProtectionIntervalDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCatalogDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCodeTimelineDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCoverageRebuildDTO;
+import ceksioglu.vet_management_sys.dto.VaccineCoverageReportDTO;
 import ceksioglu.vet_management_sys.dto.VaccineDTO;
+import ceksioglu.vet_management_sys.dto.VaccineDueDTO;
+import ceksioglu.vet_management_sys.dto.VaccineDueRecomputeDTO;
+import ceksioglu.vet_management_sys.dto.VaccineImportErrorDTO;
+import ceksioglu.vet_management_sys.dto.VaccineImportResultDTO;
+import ceksioglu.vet_management_sys.dto.VaccineReminderRunDTO;
+import ceksioglu.vet_management_sys.dto.VaccineTimelineDTO;
 import ceksioglu.vet_management_sys.entity.Vaccine;
+import ceksioglu.vet_management_sys.entity.VaccineCatalog;
 import ceksioglu.vet_management_sys.entity.Animal;
 import ceksioglu.vet_management_sys.repository.VaccineRepository;
 import ceksioglu.vet_management_sys.repository.AnimalRepository;
 import ceksioglu.vet_management_sys.service.abstracts.VaccineService;
 import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
 import ceksioglu.vet_management_sys.core.exception.ResourceAlreadyExistsException;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.exception.OutOfStockException;
+import ceksioglu.vet_management_sys.core.util.CursorUtils;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.CursorPageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 
-import java.util.Date;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service implementation for managing vaccines.
  */
+@Slf4j
 @Service
 public class VaccineManager implements VaccineService {
 
+    private static final String INSERT_SQL =
+            "INSERT INTO vaccines (vaccine_catalog_id, protection_start_date, protection_finish_date, animal_id) " +
+                    "VALUES (?, ?, ?, ?)";
+    private static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+
     private final VaccineRepository vaccineRepository;
     private final AnimalRepository animalRepository;
+    private final VaccineReminderPipeline vaccineReminderPipeline;
+    private final ActiveVaccineIndex activeVaccineIndex;
+    private final VaccineCatalogCache vaccineCatalogCache;
+    private final VaccineCoverageRollup vaccineCoverageRollup;
+    private final VaccineTimelineCache vaccineTimelineCache;
+    private final VaccineDueEngine vaccineDueEngine;
+    private final VaccineStockLedger vaccineStockLedger;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int importChunkSize;
+    private final int importMaxErrors;
 
     /**
      * Constructor for VaccineManager.
      *
      * @param vaccineRepository the vaccine repository
      * @param animalRepository the animal repository
+     * @param vaccineReminderPipeline queues and sends the vaccine expiry reminders
+     * @param activeVaccineIndex the in-memory index of active protections
+     * @param vaccineCatalogCache the in-memory vaccine catalog
+     * @param vaccineCoverageRollup moves the vaccination coverage counts with the vaccine writes
+     * @param vaccineTimelineCache the cached protection timelines of animals
+     * @param vaccineDueEngine recomputes the due vaccinations with the vaccine writes
+     * @param vaccineStockLedger takes the doses of saved vaccines from stock
+     * @param jdbcTemplate the JDBC template used for batch inserts
+     * @param objectMapper reads JSON imports
+     * @param importChunkSize the number of imported vaccines checked and inserted at once
+     * @param importMaxErrors the maximum number of failed rows listed in an import result
      */
     @Autowired
-    public VaccineManager(VaccineRepository vaccineRepository, AnimalRepository animalRepository) {
+    public VaccineManager(VaccineRepository vaccineRepository, AnimalRepository animalRepository,
+                          VaccineReminderPipeline vaccineReminderPipeline, ActiveVaccineIndex activeVaccineIndex,
+                          VaccineCatalogCache vaccineCatalogCache,
+                          VaccineCoverageRollup vaccineCoverageRollup,
+                          VaccineTimelineCache vaccineTimelineCache,
+                          VaccineDueEngine vaccineDueEngine,
+                          VaccineStockLedger vaccineStockLedger,
+                          JdbcTemplate jdbcTemplate,
+                          ObjectMapper objectMapper,
+                          @Value("${vet.vaccine-import.chunk-size:1000}") int importChunkSize,
+                          @Value("${vet.vaccine-import.max-errors:1000}") int importMaxErrors) {
         this.vaccineRepository = vaccineRepository;
         this.animalRepository = animalRepository;
+        this.vaccineReminderPipeline = vaccineReminderPipeline;
+        this.activeVaccineIndex = activeVaccineIndex;
+        this.vaccineCatalogCache = vaccineCatalogCache;
+        this.vaccineCoverageRollup = vaccineCoverageRollup;
+        this.vaccineTimelineCache = vaccineTimelineCache;
+        this.vaccineDueEngine = vaccineDueEngine;
+        this.vaccineStockLedger = vaccineStockLedger;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.importChunkSize = importChunkSize;
+        this.importMaxErrors = importMaxErrors;
     }
 
     /**
-     * Saves a vaccine.
+     * Saves a vaccine. Without a protection finish date, the standard protection duration of the
+     * vaccine product is applied. A vaccine whose protection has not ended takes a dose of its
+     * product from stock, if the stock of the product is kept.
      *
      * @param vaccineDTO the vaccine DTO
      * @return the saved vaccine DTO
      * @throws ResourceNotFoundException if the animal is not found
      * @throws ResourceAlreadyExistsException if the vaccine is already active for the animal
+     * @throws InvalidRequestException if a required field is missing
+     * @throws OutOfStockException if the stock of the product is kept and no usable dose is left
      */
     @Override
     public VaccineDTO saveVaccine(VaccineDTO vaccineDTO) {
         Animal animal = animalRepository.findById(vaccineDTO.getAnimalId())
                 .orElseThrow(() -> new ResourceNotFoundException("Animal not found with id: " + vaccineDTO.getAnimalId()));
+        VaccineCatalog catalog = resolveCatalog(vaccineDTO);
+        Vaccine vaccine = convertToEntity(vaccineDTO, catalog);
+        vaccine.setAnimal(animal);
 
         Date currentDate = new Date();
-        if (vaccineDTO.getProtectionFinishDate().before(currentDate)) {
+        if (vaccine.getProtectionFinishDate().before(currentDate)) {
             // Protection period has ended, save directly
-            Vaccine vaccine = convertToEntity(vaccineDTO);
-            vaccine.setAnimal(animal);
-            Vaccine savedVaccine = vaccineRepository.save(vaccine);
-            return convertToDTO(savedVaccine);
+            return convertToDTO(save(vaccine));
         } else {
             // Protection period has not ended, check for active vaccine
-            if (isVaccineActive(animal.getId(), vaccineDTO.getName(), vaccineDTO.getCode())) {
+            if (isVaccineActive(animal.getId(), catalog.getId())) {
                 throw new ResourceAlreadyExistsException("This vaccine is already active for the animal");
             }
-            Vaccine vaccine = convertToEntity(vaccineDTO);
-            vaccine.setAnimal(animal);
-            Vaccine savedVaccine = vaccineRepository.save(vaccine);
-            return convertToDTO(savedVaccine);
+            // Take the dose from stock, and put it back if the vaccine is not saved
+            Optional<LotCounter> lot = vaccineStockLedger.take(catalog.getId());
+            try {
+                return convertToDTO(save(vaccine));
+            } catch (RuntimeException e) {
+                lot.ifPresent(vaccineStockLedger::release);
+                throw e;
+            }
         }
     }
 
@@ -76,6 +179,7 @@ public class VaccineManager implements VaccineService {
      * @return the updated vaccine DTO
      * @throws ResourceNotFoundException if the vaccine or animal is not found
      * @throws ResourceAlreadyExistsException if the vaccine is already active for the animal
+     * @throws InvalidRequestException if a required field is missing
      */
     @Override
     public VaccineDTO updateVaccine(Long id, VaccineDTO vaccineDTO) {
@@ -85,18 +189,22 @@ public class VaccineManager implements VaccineService {
         Animal animal = animalRepository.findById(vaccineDTO.getAnimalId())
                 .orElseThrow(() -> new ResourceNotFoundException("Animal not found with id: " + vaccineDTO.getAnimalId()));
 
+        VaccineCatalog catalog = resolveCatalog(vaccineDTO);
         if (!existingVaccine.getAnimal().getId().equals(animal.getId()) &&
-                isVaccineActive(animal.getId(), vaccineDTO.getName(), vaccineDTO.getCode())) {
+                isVaccineActive(animal.getId(), catalog.getId())) {
             throw new ResourceAlreadyExistsException("This vaccine is already active for the animal");
         }
 
-        existingVaccine.setName(vaccineDTO.getName());
-        existingVaccine.setCode(vaccineDTO.getCode());
+        Set<Long> animalIds = new HashSet<>(List.of(existingVaccine.getAnimal().getId(), animal.getId()));
+        existingVaccine.setCatalog(catalog);
         existingVaccine.setProtectionStartDate(vaccineDTO.getProtectionStartDate());
-        existingVaccine.setProtectionFinishDate(vaccineDTO.getProtectionFinishDate());
+        existingVaccine.setProtectionFinishDate(protectionFinishDate(vaccineDTO, catalog));
         existingVaccine.setAnimal(animal);
 
-        Vaccine updatedVaccine = vaccineRepository.save(existingVaccine);
+        Vaccine updatedVaccine = vaccineCoverageRollup.update(animalIds,
+                () -> vaccineDueEngine.update(animalIds, () -> vaccineRepository.save(existingVaccine)));
+        activeVaccineIndex.put(updatedVaccine);
+        vaccineTimelineCache.invalidate(animalIds);
         return convertToDTO(updatedVaccine);
     }
 
@@ -108,10 +216,15 @@ public class VaccineManager implements VaccineService {
      */
     @Override
     public void deleteVaccine(Long id) {
-        if (!vaccineRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Vaccine not found with id: " + id);
-        }
-        vaccineRepository.deleteById(id);
+        Vaccine vaccine = vaccineRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Vaccine not found with id: " + id));
+        vaccineCoverageRollup.update(List.of(vaccine.getAnimal().getId()),
+                () -> vaccineDueEngine.update(List.of(vaccine.getAnimal().getId()), () -> {
+                    vaccineRepository.deleteById(id);
+                    return null;
+                }));
+        activeVaccineIndex.remove(id);
+        vaccineTimelineCache.invalidate(List.of(vaccine.getAnimal().getId()));
     }
 
     /**
@@ -131,26 +244,33 @@ public class VaccineManager implements VaccineService {
     /**
      * Gets all vaccines.
      *
-     * @return the list of vaccine DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of vaccine DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<VaccineDTO> getAllVaccines() {
-        return vaccineRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<VaccineDTO> getAllVaccines(String cursor, int size) {
+        Long afterId = CursorUtils.decodeId(cursor);
+        List<Vaccine> vaccines = vaccineRepository.findByIdGreaterThanOrderById(afterId, CursorUtils.limit(size));
+        return CursorUtils.toPage(vaccines, size, Vaccine::getId, this::convertToDTO);
     }
 
     /**
      * Gets vaccines by animal ID.
      *
      * @param animalId the animal ID
-     * @return the list of vaccine DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of vaccine DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
      */
     @Override
-    public List<VaccineDTO> getVaccinesByAnimalId(Long animalId) {
-        return vaccineRepository.findByAnimalId(animalId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPageDTO<VaccineDTO> getVaccinesByAnimalId(Long animalId, String cursor, int size) {
+        Long afterId = CursorUtils.decodeId(cursor);
+        List<Vaccine> vaccines = vaccineRepository.findByAnimalIdAndIdGreaterThanOrderById(animalId, afterId,
+                CursorUtils.limit(size));
+        return CursorUtils.toPage(vaccines, size, Vaccine::getId, this::convertToDTO);
     }
 
     /**
@@ -158,26 +278,436 @@ public class VaccineManager implements VaccineService {
      *
      * @param startDate the start date
      * @param endDate the end date
-     * @return the list of vaccine DTOs
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of vaccine DTOs
+     * @throws InvalidRequestException if the cursor or the page size is invalid
+     */
+    @Override
+    public CursorPageDTO<VaccineDTO> getVaccinesByProtectionEndDateRange(Date startDate, Date endDate,
+                                                                         String cursor, int size) {
+        CursorUtils.Keyset<Date> after = CursorUtils.decode(cursor, Date.class);
+        List<Vaccine> vaccines = vaccineRepository.findByProtectionFinishDateBetweenAfter(startDate, endDate, after.getKey(), after.getId(),
+                CursorUtils.limit(size));
+        return CursorUtils.toPage(vaccines, size, Vaccine::getProtectionFinishDate, Vaccine::getId, this::convertToDTO);
+    }
+
+    /**
+     * Gets the protection timeline of an animal: per vaccine code, the continuous protections with
+     * overlapping and adjacent vaccines merged, and the gaps between them.
+     * <p>
+     * The protection ranges are read with one query ordered by code and start date and merged in
+     * a single pass. The timeline is cached until one of the animal's vaccines changes.
+     *
+     * @param animalId the animal ID
+     * @return the protection timeline
+     * @throws ResourceNotFoundException if the animal is not found
+     */
+    @Override
+    public VaccineTimelineDTO getVaccineTimeline(Long animalId) {
+        if (!animalRepository.existsById(animalId)) {
+            throw new ResourceNotFoundException("Animal not found with id: " + animalId);
+        }
+        return vaccineTimelineCache.get(animalId,
+                () -> buildTimeline(animalId, vaccineRepository.findProtectionRanges(animalId)));
+    }
+
+    /**
+     * Gets the vaccinations due in a date range, computed from the vaccination schedules.
+     *
+     * @param startDate the first due date
+     * @param endDate the last due date
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param size the page size
+     * @return the page of due vaccinations
+     * @throws InvalidRequestException if the cursor or the page size is invalid
+     */
+    @Override
+    public CursorPageDTO<VaccineDueDTO> getVaccinesDue(LocalDate startDate, LocalDate endDate, String cursor, int size) {
+        return vaccineDueEngine.getDue(startDate, endDate, cursor, size);
+    }
+
+    /**
+     * Recomputes the due vaccinations of all animals.
+     *
+     * @return the result of the recomputation
+     */
+    @Override
+    public VaccineDueRecomputeDTO recomputeVaccinesDue() {
+        return vaccineDueEngine.recompute();
+    }
+
+    /**
+     * Runs the vaccine expiry reminders now: queues the reminders of today's scan and sends
+     * the pending ones.
+     *
+     * @return the result of the run
+     */
+    @Override
+    public VaccineReminderRunDTO runVaccineReminders() {
+        return vaccineReminderPipeline.run();
+    }
+
+    /**
+     * Imports vaccines from a CSV or JSON stream.
+     * <p>
+     * The input is read row by row and processed in chunks, so memory use depends on the chunk
+     * size and not on the size of the input. Per chunk, the products are looked up in the
+     * catalog in memory, all animals are checked with one query and all active protections with
+     * one lookup of the active vaccine index, or one query while it is loading. The accepted
+     * vaccines are inserted with one JDBC batch in the chunk's transaction, which also moves the
+     * coverage rollups of the chunk's animals. Rows are checked and take their dose from stock
+     * like {@link #saveVaccine(VaccineDTO)} does, and a row that repeats an active vaccine of an
+     * earlier row of the import is rejected as well. Rows whose product has no usable stock left
+     * are reported as out of stock, and the doses of a chunk that is rolled back are put back.
+     * Failed rows do not stop the import, and neither does a chunk that cannot be saved: its rows
+     * are reported as failed and the next chunk is imported.
+     *
+     * @param input the import stream
+     * @param contentType the content type of the stream, CSV or JSON
+     * @return the counts and the failed rows
+     * @throws IOException if the stream cannot be read
+     * @throws InvalidRequestException if the CSV header is missing or incomplete
+     */
+    @Override
+    public VaccineImportResultDTO importVaccines(InputStream input, String contentType) throws IOException {
+        long startNanos = System.nanoTime();
+        boolean csv = contentType != null && MediaType.parseMediaType(contentType).isCompatibleWith(TEXT_CSV);
+        ImportProgress progress = new ImportProgress(importMaxErrors);
+        try (VaccineImportReader reader = csv
+                ? VaccineImportReader.csv(input)
+                : VaccineImportReader.json(input, objectMapper)) {
+            List<VaccineImportReader.Row> chunk = new ArrayList<>(importChunkSize);
+            VaccineImportReader.Row row;
+            while ((row = reader.next()) != null) {
+                progress.rowCount++;
+                if (row.getError() != null) {
+                    progress.fail(row.getNumber(), VaccineImportErrorDTO.Status.INVALID, row.getError());
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == importChunkSize) {
+                    importChunk(chunk, progress);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, progress);
+            }
+        }
+        // Read errors are reported as they are read and the others per chunk
+        progress.errors.sort(Comparator.comparing(VaccineImportErrorDTO::getRow));
+        return new VaccineImportResultDTO(progress.rowCount, progress.createdCount, progress.failedCount,
+                progress.errors, progress.failedCount > progress.errors.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Gets the vaccine catalog.
+     *
+     * @return the vaccine products with their standard protection duration
+     */
+    @Override
+    public List<VaccineCatalogDTO> getVaccineCatalog() {
+        return vaccineCatalogCache.getAll().stream()
+                .map(product -> new VaccineCatalogDTO(product.getId(), product.getName(), product.getCode(),
+                        product.getProtectionDays()))
+                .toList();
+    }
+
+    /**
+     * Gets the vaccination coverage of a vaccine code from the coverage rollups.
+     *
+     * @param code the vaccine code
+     * @param species the species filter, or null for all
+     * @param breed the breed filter, or null for all
+     * @param city the owner city filter, or null for all
+     * @param groupBy the dimensions to group by, out of species, breed and city
+     * @return the coverage of each group
+     * @throws ResourceNotFoundException if no vaccine product has the code
+     * @throws InvalidRequestException if a dimension is unknown
+     */
+    @Override
+    public VaccineCoverageReportDTO getVaccineCoverage(String code, String species, String breed, String city,
+                                                       List<String> groupBy) {
+        if (vaccineCatalogCache.getAll().stream().noneMatch(product -> product.getCode().equals(code))) {
+            throw new ResourceNotFoundException("Vaccine not found with code: " + code);
+        }
+        return vaccineCoverageRollup.getCoverage(code, species, breed, city, groupBy);
+    }
+
+    /**
+     * Recounts the vaccination coverage rollups and corrects the counts that drifted.
+     *
+     * @return the result of the rebuild
      */
     @Override
-    public List<VaccineDTO> getVaccinesByProtectionEndDateRange(Date startDate, Date endDate) {
-        return vaccineRepository.findByProtectionFinishDateBetween(startDate, endDate).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public VaccineCoverageRebuildDTO rebuildVaccineCoverage() {
+        return vaccineCoverageRollup.rebuild();
     }
 
     /**
-     * Checks if a vaccine is active for the given animal.
+     * Merges the protection ranges of an animal into a timeline. A range starting on or before
+     * the finish date of the protection so far extends it, any other range starts a new one and
+     * leaves a gap. Ranges that do not end after their start protect no day and are skipped.
      *
      * @param animalId the animal ID
-     * @param vaccineName the vaccine name
-     * @param vaccineCode the vaccine code
+     * @param rows the vaccine code, start date and finish date of each vaccine, ordered by code and start date
+     * @return the protection timeline
+     */
+    private VaccineTimelineDTO buildTimeline(Long animalId, List<Object[]> rows) {
+        List<VaccineCodeTimelineDTO> codes = new ArrayList<>();
+        VaccineCodeTimelineDTO current = null;
+        ProtectionIntervalDTO interval = null;
+        for (Object[] row : rows) {
+            String code = (String) row[0];
+            LocalDate startDate = DateUtils.toLocalDate((Date) row[1]);
+            LocalDate finishDate = DateUtils.toLocalDate((Date) row[2]);
+            if (current == null || !current.getCode().equals(code)) {
+                current = new VaccineCodeTimelineDTO(code, 0, new ArrayList<>(), new ArrayList<>());
+                codes.add(current);
+                interval = null;
+            }
+            current.setVaccineCount(current.getVaccineCount() + 1);
+            if (!finishDate.isAfter(startDate)) {
+                continue;
+            }
+            if (interval != null && !startDate.isAfter(interval.getFinishDate())) {
+                if (finishDate.isAfter(interval.getFinishDate())) {
+                    interval.setFinishDate(finishDate);
+                    interval.setDays(ChronoUnit.DAYS.between(interval.getStartDate(), finishDate));
+                }
+                interval.setVaccineCount(interval.getVaccineCount() + 1);
+            } else {
+                if (interval != null) {
+                    current.getGaps().add(new ProtectionIntervalDTO(interval.getFinishDate(), startDate,
+                            ChronoUnit.DAYS.between(interval.getFinishDate(), startDate), 0));
+                }
+                interval = new ProtectionIntervalDTO(startDate, finishDate,
+                        ChronoUnit.DAYS.between(startDate, finishDate), 1);
+                current.getIntervals().add(interval);
+            }
+        }
+        return new VaccineTimelineDTO(animalId, codes);
+    }
+
+    /**
+     * Checks if a vaccine is active for the given animal. Answered from the active vaccine index,
+     * or by the database while the index is still loading after a restart.
+     *
+     * @param animalId the animal ID
+     * @param catalogId the catalog ID of the vaccine
      * @return true if the vaccine is active, false otherwise
      */
-    private boolean isVaccineActive(Long animalId, String vaccineName, String vaccineCode) {
-        Date currentDate = new Date();
-        return vaccineRepository.existsByAnimalIdAndNameAndCodeAndProtectionFinishDateAfter(animalId, vaccineName, vaccineCode, currentDate);
+    private boolean isVaccineActive(Long animalId, Integer catalogId) {
+        return activeVaccineIndex.isActive(animalId, catalogId);
+    }
+
+    /**
+     * Saves a new vaccine with the coverage and due vaccinations of its animal, and updates the
+     * in-memory active protections and timeline.
+     *
+     * @param vaccine the vaccine
+     * @return the saved vaccine
+     */
+    private Vaccine save(Vaccine vaccine) {
+        Long animalId = vaccine.getAnimal().getId();
+        Vaccine savedVaccine = vaccineCoverageRollup.update(List.of(animalId),
+                () -> vaccineDueEngine.addVaccines(() -> List.of(vaccineRepository.save(vaccine))).get(0));
+        activeVaccineIndex.put(savedVaccine);
+        vaccineTimelineCache.invalidate(List.of(animalId));
+        return savedVaccine;
+    }
+
+    /**
+     * Gets the catalog entry of a vaccine's name and code, adding the product to the catalog if
+     * it is new. A new product takes the vaccine's protection duration as its standard.
+     *
+     * @param dto the vaccine DTO
+     * @return the catalog entry
+     * @throws InvalidRequestException if the name, code or start date is missing, or the finish
+     *         date is missing and the product has no standard protection duration
+     */
+    private VaccineCatalog resolveCatalog(VaccineDTO dto) {
+        if (dto.getName() == null || dto.getCode() == null || dto.getProtectionStartDate() == null) {
+            throw new InvalidRequestException("Vaccine name, code and protection start date are required");
+        }
+        if (dto.getProtectionFinishDate() == null) {
+            return vaccineCatalogCache.find(dto.getName(), dto.getCode())
+                    .filter(product -> product.getProtectionDays() != null)
+                    .orElseThrow(() -> new InvalidRequestException(
+                            "Protection finish date is required for a vaccine without a standard protection duration"));
+        }
+        long protectionDays = ChronoUnit.DAYS.between(DateUtils.toLocalDate(dto.getProtectionStartDate()),
+                DateUtils.toLocalDate(dto.getProtectionFinishDate()));
+        return vaccineCatalogCache.intern(dto.getName(), dto.getCode(),
+                protectionDays > 0 ? (int) protectionDays : null);
+    }
+
+    /**
+     * Checks and inserts one chunk of an import. The rows are resolved against the catalog in the
+     * chunk's transaction, so products added for a chunk that is rolled back are not kept. If the
+     * chunk cannot be saved, all its rows are reported as failed and the import goes on.
+     *
+     * @param rows the rows of the chunk, all with a vaccine
+     * @param progress the progress of the import
+     */
+    private void importChunk(List<VaccineImportReader.Row> rows, ImportProgress progress) {
+        List<VaccineImportReader.Row> chunkRows = new ArrayList<>(rows.size());
+        Set<Long> animalIds = new HashSet<>();
+        for (VaccineImportReader.Row row : rows) {
+            if (row.getVaccine().getAnimalId() == null) {
+                progress.fail(row.getNumber(), VaccineImportErrorDTO.Status.INVALID, "Animal is required");
+                continue;
+            }
+            chunkRows.add(row);
+            animalIds.add(row.getVaccine().getAnimalId());
+        }
+        if (chunkRows.isEmpty()) {
+            return;
+        }
+
+        // Failed rows are only taken over once the chunk is committed
+        ImportProgress chunkProgress = new ImportProgress(Integer.MAX_VALUE);
+        List<LotCounter> takenLots = new ArrayList<>();
+        List<Integer> addedCatalogIds = new ArrayList<>();
+        List<Vaccine> inserted;
+        try {
+            inserted = vaccineCoverageRollup.addVaccines(animalIds, () -> vaccineDueEngine.addVaccines(() -> {
+                List<Vaccine> vaccines = new ArrayList<>(chunkRows.size());
+                List<Long> rowNumbers = new ArrayList<>(chunkRows.size());
+                for (VaccineImportReader.Row row : chunkRows) {
+                    VaccineDTO dto = row.getVaccine();
+                    try {
+                        boolean known = vaccineCatalogCache.find(dto.getName(), dto.getCode()).isPresent();
+                        VaccineCatalog catalog = resolveCatalog(dto);
+                        if (!known) {
+                            addedCatalogIds.add(catalog.getId());
+                        }
+                        Vaccine vaccine = convertToEntity(dto, catalog);
+                        vaccine.setAnimal(new Animal(dto.getAnimalId()));
+                        vaccines.add(vaccine);
+                        rowNumbers.add(row.getNumber());
+                    } catch (InvalidRequestException e) {
+                        chunkProgress.fail(row.getNumber(), VaccineImportErrorDTO.Status.INVALID, e.getMessage());
+                    }
+                }
+                if (vaccines.isEmpty()) {
+                    return vaccines;
+                }
+
+                Set<Long> existingAnimalIds = new HashSet<>(animalRepository.findExistingIds(animalIds));
+                Date currentDate = new Date();
+                List<Vaccine> accepted = new ArrayList<>(vaccines.size());
+                List<Integer> candidates = new ArrayList<>();
+                List<Long> candidateAnimalIds = new ArrayList<>();
+                List<Integer> candidateCatalogIds = new ArrayList<>();
+                for (int i = 0; i < vaccines.size(); i++) {
+                    Vaccine vaccine = vaccines.get(i);
+                    if (!existingAnimalIds.contains(vaccine.getAnimal().getId())) {
+                        chunkProgress.fail(rowNumbers.get(i), VaccineImportErrorDTO.Status.NOT_FOUND,
+                                "Animal not found with id: " + vaccine.getAnimal().getId());
+                    } else if (vaccine.getProtectionFinishDate().before(currentDate)) {
+                        // Protection period has ended, no active check
+                        accepted.add(vaccine);
+                    } else {
+                        candidates.add(i);
+                        candidateAnimalIds.add(vaccine.getAnimal().getId());
+                        candidateCatalogIds.add(vaccine.getCatalog().getId());
+                    }
+                }
+
+                boolean[] active = candidates.isEmpty()
+                        ? new boolean[0]
+                        : activeVaccineIndex.areActive(candidateAnimalIds, candidateCatalogIds);
+                Set<List<Number>> importedPairs = new HashSet<>();
+                for (int j = 0; j < candidates.size(); j++) {
+                    int i = candidates.get(j);
+                    List<Number> pair = List.of(candidateAnimalIds.get(j), candidateCatalogIds.get(j));
+                    if (active[j]) {
+                        chunkProgress.fail(rowNumbers.get(i), VaccineImportErrorDTO.Status.CONFLICT,
+                                "This vaccine is already active for the animal");
+                    } else if (importedPairs.contains(pair)) {
+                        chunkProgress.fail(rowNumbers.get(i), VaccineImportErrorDTO.Status.CONFLICT,
+                                "This vaccine is already active for the animal in this import");
+                    } else {
+                        try {
+                            vaccineStockLedger.take(candidateCatalogIds.get(j)).ifPresent(takenLots::add);
+                            importedPairs.add(pair);
+                            accepted.add(vaccines.get(i));
+                        } catch (OutOfStockException e) {
+                            chunkProgress.fail(rowNumbers.get(i), VaccineImportErrorDTO.Status.OUT_OF_STOCK, e.getMessage());
+                        }
+                    }
+                }
+                insertVaccines(accepted);
+                return accepted;
+            }));
+        } catch (RuntimeException e) {
+            // The chunk was rolled back, so its doses go back to stock and its new products are gone
+            log.warn("Vaccine import chunk of rows {} to {} could not be saved", chunkRows.get(0).getNumber(),
+                    chunkRows.get(chunkRows.size() - 1).getNumber(), e);
+            takenLots.forEach(vaccineStockLedger::release);
+            vaccineCatalogCache.evict(addedCatalogIds);
+            chunkRows.forEach(row -> progress.fail(row.getNumber(), VaccineImportErrorDTO.Status.FAILED,
+                    "Vaccines of this chunk could not be saved, import them again"));
+            return;
+        }
+        chunkProgress.errors.forEach(error -> progress.fail(error.getRow(), error.getStatus(), error.getMessage()));
+        activeVaccineIndex.putAll(inserted);
+        vaccineTimelineCache.invalidate(animalIds);
+        progress.createdCount += inserted.size();
+    }
+
+    /**
+     * Inserts vaccines with one JDBC batch and sets their generated IDs.
+     *
+     * @param vaccines the vaccines
+     */
+    private void insertVaccines(List<Vaccine> vaccines) {
+        if (vaccines.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[]{"vaccine_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Vaccine vaccine = vaccines.get(i);
+                        ps.setInt(1, vaccine.getCatalog().getId());
+                        ps.setDate(2, new java.sql.Date(vaccine.getProtectionStartDate().getTime()));
+                        ps.setDate(3, new java.sql.Date(vaccine.getProtectionFinishDate().getTime()));
+                        ps.setLong(4, vaccine.getAnimal().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return vaccines.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < vaccines.size(); i++) {
+            vaccines.get(i).setId(((Number) keys.get(i).get("vaccine_id")).longValue());
+        }
+    }
+
+    /**
+     * Gets the protection finish date of a vaccine, or the start date plus the standard
+     * protection duration of its product if none was given.
+     *
+     * @param dto the vaccine DTO
+     * @param catalog the catalog entry of the vaccine
+     * @return the protection finish date
+     */
+    private Date protectionFinishDate(VaccineDTO dto, VaccineCatalog catalog) {
+        if (dto.getProtectionFinishDate() != null) {
+            return dto.getProtectionFinishDate();
+        }
+        LocalDate startDate = DateUtils.toLocalDate(dto.getProtectionStartDate());
+        return DateUtils.toDate(startDate.plusDays(catalog.getProtectionDays()));
     }
 
     /**
@@ -187,10 +717,11 @@ public class VaccineManager implements VaccineService {
      * @return the vaccine DTO
      */
     private VaccineDTO convertToDTO(Vaccine vaccine) {
+        VaccineCatalog catalog = vaccineCatalogCache.get(vaccine.getCatalog().getId());
         VaccineDTO dto = new VaccineDTO();
         dto.setId(vaccine.getId());
-        dto.setName(vaccine.getName());
-        dto.setCode(vaccine.getCode());
+        dto.setName(catalog.getName());
+        dto.setCode(catalog.getCode());
         dto.setProtectionStartDate(vaccine.getProtectionStartDate());
         dto.setProtectionFinishDate(vaccine.getProtectionFinishDate());
         dto.setAnimalId(vaccine.getAnimal().getId());
@@ -201,14 +732,36 @@ public class VaccineManager implements VaccineService {
      * Converts a vaccine DTO to an entity.
      *
      * @param dto the vaccine DTO
+     * @param catalog the catalog entry of the vaccine's name and code
      * @return the vaccine entity
      */
-    private Vaccine convertToEntity(VaccineDTO dto) {
+    private Vaccine convertToEntity(VaccineDTO dto, VaccineCatalog catalog) {
         Vaccine vaccine = new Vaccine();
-        vaccine.setName(dto.getName());
-        vaccine.setCode(dto.getCode());
+        vaccine.setCatalog(catalog);
         vaccine.setProtectionStartDate(dto.getProtectionStartDate());
-        vaccine.setProtectionFinishDate(dto.getProtectionFinishDate());
+        vaccine.setProtectionFinishDate(protectionFinishDate(dto, catalog));
         return vaccine;
     }
+
+    /**
+     * Counts and failed rows of a running import. Failed rows are listed up to a maximum.
+     */
+    private static final class ImportProgress {
+        private final int maxErrors;
+        private final List<VaccineImportErrorDTO> errors = new ArrayList<>();
+        private long rowCount;
+        private long createdCount;
+        private long failedCount;
+
+        private ImportProgress(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        private void fail(long row, VaccineImportErrorDTO.Status status, String message) {
+            failedCount++;
+            if (errors.size() < maxErrors) {
+                errors.add(new VaccineImportErrorDTO(row, status, message));
+            }
+        }
+    }
 }
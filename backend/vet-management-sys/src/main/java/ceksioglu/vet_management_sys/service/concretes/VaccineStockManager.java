@@ -0,0 +1,136 @@
+package ceksioglu.vet_management_sys.service.concretes;
+
+import ceksioglu.vet_management_sys.core.cache.VaccineCatalogCache;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.exception.ResourceAlreadyExistsException;
+import ceksioglu.vet_management_sys.core.stock.LotCounter;
+import ceksioglu.vet_management_sys.core.stock.VaccineStockLedger;
+import ceksioglu.vet_management_sys.core.util.ConstraintUtils;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.VaccineStockAlertDTO;
+import ceksioglu.vet_management_sys.dto.VaccineStockLotDTO;
+import ceksioglu.vet_management_sys.entity.VaccineCatalog;
+import ceksioglu.vet_management_sys.entity.VaccineStockLot;
+import ceksioglu.vet_management_sys.repository.VaccineStockLotRepository;
+import ceksioglu.vet_management_sys.service.abstracts.VaccineStockService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Service implementation for managing the vaccine stock. Quantities are read from the
+ * {@link VaccineStockLedger}, which also takes the doses of administered vaccines.
+ */
+@Service
+public class VaccineStockManager implements VaccineStockService {
+
+    private final VaccineStockLotRepository vaccineStockLotRepository;
+    private final VaccineCatalogCache vaccineCatalogCache;
+    private final VaccineStockLedger vaccineStockLedger;
+
+    /**
+     * Constructor for VaccineStockManager.
+     *
+     * @param vaccineStockLotRepository the vaccine stock lot repository
+     * @param vaccineCatalogCache the in-memory vaccine catalog
+     * @param vaccineStockLedger the in-memory stock counters
+     */
+    @Autowired
+    public VaccineStockManager(VaccineStockLotRepository vaccineStockLotRepository,
+                               VaccineCatalogCache vaccineCatalogCache,
+                               VaccineStockLedger vaccineStockLedger) {
+        this.vaccineStockLotRepository = vaccineStockLotRepository;
+        this.vaccineCatalogCache = vaccineCatalogCache;
+        this.vaccineStockLedger = vaccineStockLedger;
+    }
+
+    /**
+     * Receives a lot of a vaccine product, adding the product to the catalog if it is new.
+     *
+     * @param vaccineStockLotDTO the vaccine stock lot DTO
+     * @return the saved vaccine stock lot DTO
+     * @throws InvalidRequestException if a required field is missing or the quantity is not positive
+     * @throws ResourceAlreadyExistsException if the product already has a lot with the lot number
+     */
+    @Override
+    public VaccineStockLotDTO receiveLot(VaccineStockLotDTO vaccineStockLotDTO) {
+        if (vaccineStockLotDTO.getName() == null || vaccineStockLotDTO.getCode() == null
+                || vaccineStockLotDTO.getLotNumber() == null || vaccineStockLotDTO.getExpiryDate() == null
+                || vaccineStockLotDTO.getReceivedQuantity() == null) {
+            throw new InvalidRequestException("Vaccine name, code, lot number, expiry date and received quantity are required");
+        }
+        if (vaccineStockLotDTO.getReceivedQuantity() < 1 || vaccineStockLotDTO.getReceivedQuantity() > Integer.MAX_VALUE) {
+            throw new InvalidRequestException("Received quantity must be a positive number");
+        }
+        VaccineCatalog catalog = vaccineCatalogCache.intern(vaccineStockLotDTO.getName(), vaccineStockLotDTO.getCode(), null);
+        int quantity = vaccineStockLotDTO.getReceivedQuantity().intValue();
+        VaccineStockLot lot = new VaccineStockLot(null, catalog, vaccineStockLotDTO.getLotNumber(),
+                DateUtils.toDate(vaccineStockLotDTO.getExpiryDate()), quantity, quantity);
+
+        VaccineStockLot savedLot;
+        try {
+            savedLot = vaccineStockLotRepository.saveAndFlush(lot);
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintUtils.isViolated(e, "uk_vaccine_stock_lots_catalog_lot")) {
+                throw new ResourceAlreadyExistsException("Vaccine already has a lot with this lot number");
+            }
+            throw e;
+        }
+        vaccineStockLedger.register(savedLot);
+        return new VaccineStockLotDTO(savedLot.getId(), catalog.getName(), catalog.getCode(), savedLot.getLotNumber(),
+                vaccineStockLotDTO.getExpiryDate(), (long) quantity, (long) quantity);
+    }
+
+    /**
+     * Gets the stock lots, optionally of one vaccine code.
+     *
+     * @param code the vaccine code, or null for all lots
+     * @return the vaccine stock lot DTOs ordered by product and expiry date
+     */
+    @Override
+    public List<VaccineStockLotDTO> getLots(String code) {
+        List<VaccineStockLotDTO> lots = new ArrayList<>();
+        for (LotCounter lot : vaccineStockLedger.getLots()) {
+            VaccineCatalog catalog = vaccineCatalogCache.get(lot.getCatalogId());
+            if (code == null || code.equals(catalog.getCode())) {
+                lots.add(new VaccineStockLotDTO(lot.getLotId(), catalog.getName(), catalog.getCode(),
+                        lot.getLotNumber(), lot.getExpiryDate(), lot.getReceivedQuantity(),
+                        lot.getAvailableQuantity()));
+            }
+        }
+        return lots;
+    }
+
+    /**
+     * Gets the vaccine products whose usable stock is at or below the low stock threshold.
+     *
+     * @return the low stock alert DTOs, the lowest quantity first
+     */
+    @Override
+    public List<VaccineStockAlertDTO> getLowStockAlerts() {
+        LocalDate today = LocalDate.now();
+        int threshold = vaccineStockLedger.getLowStockThreshold();
+        List<VaccineStockAlertDTO> alerts = new ArrayList<>();
+        for (Integer catalogId : vaccineStockLedger.getCatalogIds()) {
+            long quantity = vaccineStockLedger.getAvailableQuantity(catalogId, today);
+            if (quantity <= threshold) {
+                VaccineCatalog catalog = vaccineCatalogCache.get(catalogId);
+                LocalDate nextExpiryDate = vaccineStockLedger.getLots(catalogId).stream()
+                        .filter(lot -> lot.isUsableOn(today) && lot.getAvailableQuantity() > 0)
+                        .map(LotCounter::getExpiryDate)
+                        .findFirst()
+                        .orElse(null);
+                alerts.add(new VaccineStockAlertDTO(catalog.getName(), catalog.getCode(), quantity, threshold,
+                        nextExpiryDate));
+            }
+        }
+        alerts.sort(Comparator.comparing(VaccineStockAlertDTO::getQuantity)
+                .thenComparing(VaccineStockAlertDTO::getCode));
+        return alerts;
+    }
+}
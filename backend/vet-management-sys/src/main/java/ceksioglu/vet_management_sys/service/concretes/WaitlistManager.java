@@ -0,0 +1,155 @@
+package ceksioglu.vet_management_sys.service.concretes;
+
+import ceksioglu.vet_management_sys.core.booking.DoctorDay;
+import ceksioglu.vet_management_sys.core.booking.WaitlistPromoter;
+import ceksioglu.vet_management_sys.core.exception.InvalidRequestException;
+import ceksioglu.vet_management_sys.core.exception.ResourceAlreadyExistsException;
+import ceksioglu.vet_management_sys.core.exception.ResourceNotFoundException;
+import ceksioglu.vet_management_sys.core.util.ConstraintUtils;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.dto.WaitlistEntryDTO;
+import ceksioglu.vet_management_sys.entity.WaitlistEntry;
+import ceksioglu.vet_management_sys.repository.AnimalRepository;
+import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
+import ceksioglu.vet_management_sys.repository.DoctorRepository;
+import ceksioglu.vet_management_sys.repository.WaitlistEntryRepository;
+import ceksioglu.vet_management_sys.service.abstracts.WaitlistService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Service implementation for managing the appointment waitlist.
+ */
+@Service
+public class WaitlistManager implements WaitlistService {
+
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final DoctorRepository doctorRepository;
+    private final AnimalRepository animalRepository;
+    private final AvailableDateRepository availableDateRepository;
+    private final WaitlistPromoter waitlistPromoter;
+
+    /**
+     * Constructor for WaitlistManager.
+     *
+     * @param waitlistEntryRepository the waitlist entry repository
+     * @param doctorRepository the doctor repository
+     * @param animalRepository the animal repository
+     * @param availableDateRepository the available date repository
+     * @param waitlistPromoter the waitlist promoter
+     */
+    @Autowired
+    public WaitlistManager(WaitlistEntryRepository waitlistEntryRepository,
+                           DoctorRepository doctorRepository,
+                           AnimalRepository animalRepository,
+                           AvailableDateRepository availableDateRepository,
+                           WaitlistPromoter waitlistPromoter) {
+        this.waitlistEntryRepository = waitlistEntryRepository;
+        this.doctorRepository = doctorRepository;
+        this.animalRepository = animalRepository;
+        this.availableDateRepository = availableDateRepository;
+        this.waitlistPromoter = waitlistPromoter;
+    }
+
+    /**
+     * Puts an animal on the waitlist of a doctor-day. The entry is promoted to an appointment
+     * in the background as soon as the day has free capacity, oldest entries first.
+     *
+     * @param waitlistEntryDTO the waitlist entry DTO
+     * @return the saved waitlist entry DTO
+     * @throws InvalidRequestException if the date, doctor or animal is missing, or the date has passed
+     * @throws ResourceNotFoundException if the doctor or animal is not found, or the doctor is not available on the date
+     * @throws ResourceAlreadyExistsException if the animal is already waiting for the doctor on the date
+     */
+    @Override
+    public WaitlistEntryDTO joinWaitlist(WaitlistEntryDTO waitlistEntryDTO) {
+        if (waitlistEntryDTO.getAppointmentDate() == null || waitlistEntryDTO.getDoctorId() == null ||
+                waitlistEntryDTO.getAnimalId() == null) {
+            throw new InvalidRequestException("Appointment date, doctor and animal are required");
+        }
+        if (!doctorRepository.existsById(waitlistEntryDTO.getDoctorId())) {
+            throw new ResourceNotFoundException("Doctor not found with id: " + waitlistEntryDTO.getDoctorId());
+        }
+        if (!animalRepository.existsById(waitlistEntryDTO.getAnimalId())) {
+            throw new ResourceNotFoundException("Animal not found with id: " + waitlistEntryDTO.getAnimalId());
+        }
+
+        DoctorDay doctorDay = new DoctorDay(waitlistEntryDTO.getDoctorId(),
+                DateUtils.toLocalDate(waitlistEntryDTO.getAppointmentDate()));
+        if (doctorDay.getDay().isBefore(LocalDate.now())) {
+            throw new InvalidRequestException("Cannot join the waitlist of a past date");
+        }
+        Date waitlistDay = DateUtils.toDate(doctorDay.getDay());
+        if (!availableDateRepository.existsByDoctorIdAndAvailableDate(doctorDay.getDoctorId(), waitlistDay)) {
+            throw new ResourceNotFoundException("Doctor is not available on this date");
+        }
+
+        WaitlistEntry waitlistEntry = new WaitlistEntry();
+        waitlistEntry.setAppointmentDate(waitlistEntryDTO.getAppointmentDate());
+        waitlistEntry.setWaitlistDay(waitlistDay);
+        waitlistEntry.setStatus(WaitlistEntry.Status.WAITING);
+        waitlistEntry.setDoctor(doctorRepository.getReferenceById(doctorDay.getDoctorId()));
+        waitlistEntry.setAnimal(animalRepository.getReferenceById(waitlistEntryDTO.getAnimalId()));
+
+        WaitlistEntry savedWaitlistEntry;
+        try {
+            savedWaitlistEntry = waitlistEntryRepository.saveAndFlush(waitlistEntry);
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintUtils.isViolated(e, "uk_waitlist_entries_waiting")) {
+                throw new ResourceAlreadyExistsException("Animal is already on the waitlist of the doctor for this date");
+            }
+            throw e;
+        }
+        waitlistPromoter.entryAdded(doctorDay);
+        return convertToDTO(savedWaitlistEntry);
+    }
+
+    /**
+     * Gets a waitlist entry by ID. Clients poll their entry to learn about its promotion.
+     *
+     * @param id the waitlist entry ID
+     * @return the waitlist entry DTO
+     * @throws ResourceNotFoundException if the waitlist entry is not found
+     */
+    @Override
+    public WaitlistEntryDTO getWaitlistEntryById(Long id) {
+        WaitlistEntry waitlistEntry = waitlistEntryRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Waitlist entry not found with id: " + id));
+        return convertToDTO(waitlistEntry);
+    }
+
+    /**
+     * Deletes a waitlist entry by ID. A promoted entry's appointment is kept.
+     *
+     * @param id the waitlist entry ID
+     * @throws ResourceNotFoundException if the waitlist entry is not found
+     */
+    @Override
+    public void deleteWaitlistEntry(Long id) {
+        if (!waitlistEntryRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Waitlist entry not found with id: " + id);
+        }
+        waitlistEntryRepository.deleteById(id);
+    }
+
+    /**
+     * Converts a waitlist entry entity to a DTO.
+     *
+     * @param waitlistEntry the waitlist entry entity
+     * @return the waitlist entry DTO
+     */
+    private WaitlistEntryDTO convertToDTO(WaitlistEntry waitlistEntry) {
+        WaitlistEntryDTO dto = new WaitlistEntryDTO();
+        dto.setId(waitlistEntry.getId());
+        dto.setAppointmentDate(waitlistEntry.getAppointmentDate());
+        dto.setDoctorId(waitlistEntry.getDoctor().getId());
+        dto.setAnimalId(waitlistEntry.getAnimal().getId());
+        dto.setStatus(waitlistEntry.getStatus());
+        dto.setAppointmentId(waitlistEntry.getAppointmentId());
+        return dto;
+    }
+}
@@ -0,0 +1,27 @@
+-- A doctor cannot be in two appointments at once. The services check this under the lock of the
+-- doctor's day, which leaves out appointments running past midnight into the next day; the
+-- constraint rejects any overlap that gets past them, and lets the conflict check rely on the
+-- doctor's appointments never overlapping. Appointments stored before their end was recorded
+-- are left out.
+
+-- Overlapping appointments of a doctor may have been booked on purpose, so they are not removed
+-- automatically; the upgrade stops and lists them to be corrected first.
+DO $$
+DECLARE
+    overlapping TEXT;
+BEGIN
+    SELECT string_agg(a.appointment_id || ' and ' || b.appointment_id, '; ' ORDER BY a.appointment_id, b.appointment_id)
+    INTO overlapping
+    FROM appointments a
+    JOIN appointments b ON b.doctor_id = a.doctor_id
+                       AND b.appointment_id > a.appointment_id
+                       AND b.appointment_date < a.appointment_end_date
+                       AND a.appointment_date < b.appointment_end_date;
+    IF overlapping IS NOT NULL THEN
+        RAISE EXCEPTION 'Appointments of the same doctor overlap, move or delete them before upgrading. Appointment IDs: %', overlapping;
+    END IF;
+END $$;
+
+ALTER TABLE appointments ADD CONSTRAINT ex_appointments_doctor_time
+    EXCLUDE USING gist (doctor_id WITH =, tsrange(appointment_date, appointment_end_date) WITH &&)
+    WHERE (appointment_end_date IS NOT NULL);
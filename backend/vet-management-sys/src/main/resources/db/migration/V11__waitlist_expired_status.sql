@@ -0,0 +1,4 @@
+-- Waiting entries of days that have passed are expired instead of being kept waiting forever.
+ALTER TABLE waitlist_entries DROP CONSTRAINT IF EXISTS waitlist_entries_waitlist_status_check;
+ALTER TABLE waitlist_entries ADD CONSTRAINT waitlist_entries_waitlist_status_check
+    CHECK (waitlist_status IN ('WAITING', 'PROMOTED', 'EXPIRED'));
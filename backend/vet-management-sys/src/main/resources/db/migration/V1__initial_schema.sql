@@ -0,0 +1,68 @@
+-- Schema as it was created by Hibernate before migrations were introduced.
+-- Existing databases are baselined at this version, new ones start here.
+
+CREATE TABLE customers (
+    customer_id      BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    customer_name    VARCHAR(255) NOT NULL,
+    customer_phone   VARCHAR(255) NOT NULL,
+    customer_mail    VARCHAR(255) NOT NULL,
+    customer_address VARCHAR(255) NOT NULL,
+    customer_city    VARCHAR(255) NOT NULL,
+    PRIMARY KEY (customer_id)
+);
+
+CREATE TABLE animals (
+    animal_id            BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    animal_name          VARCHAR(255) NOT NULL,
+    animal_species       VARCHAR(255) NOT NULL,
+    animal_breed         VARCHAR(255) NOT NULL,
+    animal_gender        VARCHAR(255) NOT NULL CHECK (animal_gender IN ('MALE', 'FEMALE')),
+    animal_color         VARCHAR(255) NOT NULL,
+    animal_date_of_birth DATE         NOT NULL,
+    customer_id          BIGINT       NOT NULL,
+    PRIMARY KEY (animal_id)
+);
+
+CREATE TABLE doctors (
+    doctor_id      BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    doctor_name    VARCHAR(255) NOT NULL,
+    doctor_phone   VARCHAR(255) NOT NULL,
+    doctor_mail    VARCHAR(255) NOT NULL,
+    doctor_address VARCHAR(255) NOT NULL,
+    doctor_city    VARCHAR(255) NOT NULL,
+    PRIMARY KEY (doctor_id)
+);
+
+CREATE TABLE available_dates (
+    available_date_id         BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    available_date            DATE   NOT NULL,
+    doctor_id                 BIGINT NOT NULL,
+    daily_appointment_limit   INTEGER,
+    current_appointment_count INTEGER,
+    PRIMARY KEY (available_date_id)
+);
+
+CREATE TABLE appointments (
+    appointment_id   BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    appointment_date TIMESTAMP(6) NOT NULL,
+    doctor_id        BIGINT       NOT NULL,
+    animal_id        BIGINT       NOT NULL,
+    PRIMARY KEY (appointment_id)
+);
+
+CREATE TABLE vaccines (
+    vaccine_id             BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    vaccine_name           VARCHAR(255) NOT NULL,
+    vaccine_code           VARCHAR(255) NOT NULL,
+    protection_start_date  DATE         NOT NULL,
+    protection_finish_date DATE         NOT NULL,
+    animal_id              BIGINT       NOT NULL,
+    PRIMARY KEY (vaccine_id)
+);
+
+-- Foreign key names are the ones Hibernate generated, so that baselined databases match
+ALTER TABLE animals ADD CONSTRAINT FKb36lt3kj4mrbdx5btxmp4j60n FOREIGN KEY (customer_id) REFERENCES customers;
+ALTER TABLE appointments ADD CONSTRAINT FK95vepu86o8syqtux9gkr71bhy FOREIGN KEY (animal_id) REFERENCES animals;
+ALTER TABLE appointments ADD CONSTRAINT FKmujeo4tymoo98cmf7uj3vsv76 FOREIGN KEY (doctor_id) REFERENCES doctors;
+ALTER TABLE available_dates ADD CONSTRAINT FKnb419ilm71d71rm584rk460pk FOREIGN KEY (doctor_id) REFERENCES doctors;
+ALTER TABLE vaccines ADD CONSTRAINT FKeasdy15b2kp5j4k13x2dfudqs FOREIGN KEY (animal_id) REFERENCES animals;
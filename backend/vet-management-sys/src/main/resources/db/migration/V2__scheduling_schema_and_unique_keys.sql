@@ -0,0 +1,132 @@
+-- Scheduling schema added since the initial schema. Databases that were run with a version
+-- in between, while Hibernate still updated the schema, may already have parts of it, so every
+-- step is skipped when its object exists.
+
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS doctor_slot_minutes INTEGER;
+ALTER TABLE available_dates ADD COLUMN IF NOT EXISTS last_appointment_order INTEGER;
+ALTER TABLE appointments ADD COLUMN IF NOT EXISTS appointment_end_date TIMESTAMP(6);
+ALTER TABLE appointments ADD COLUMN IF NOT EXISTS appointment_order INTEGER;
+
+CREATE TABLE IF NOT EXISTS waitlist_entries (
+    waitlist_entry_id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    appointment_date  TIMESTAMP(6) NOT NULL,
+    waitlist_day      DATE         NOT NULL,
+    waitlist_status   VARCHAR(255) NOT NULL CHECK (waitlist_status IN ('WAITING', 'PROMOTED')),
+    appointment_id    BIGINT,
+    doctor_id         BIGINT       NOT NULL,
+    animal_id         BIGINT       NOT NULL,
+    PRIMARY KEY (waitlist_entry_id)
+);
+
+CREATE TABLE IF NOT EXISTS availability_templates (
+    availability_template_id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    days_of_week             INTEGER NOT NULL,
+    daily_appointment_limit  INTEGER NOT NULL,
+    valid_from               DATE    NOT NULL,
+    valid_until              DATE,
+    expanded_until           DATE,
+    doctor_id                BIGINT  NOT NULL,
+    PRIMARY KEY (availability_template_id)
+);
+
+CREATE TABLE IF NOT EXISTS availability_overrides (
+    availability_override_id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    override_date            DATE   NOT NULL,
+    daily_appointment_limit  INTEGER,
+    doctor_id                BIGINT NOT NULL,
+    PRIMARY KEY (availability_override_id),
+    CONSTRAINT uk_availability_overrides_doctor_date UNIQUE (doctor_id, override_date)
+);
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fkjpo0uhefix56qjc2gql2uuem9') THEN
+        ALTER TABLE availability_overrides ADD CONSTRAINT FKjpo0uhefix56qjc2gql2uuem9 FOREIGN KEY (doctor_id) REFERENCES doctors;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fks5fgey9p0u9astdqcrx0cvt1y') THEN
+        ALTER TABLE availability_templates ADD CONSTRAINT FKs5fgey9p0u9astdqcrx0cvt1y FOREIGN KEY (doctor_id) REFERENCES doctors;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fkausox1ro3j0ewhlk74lpifo51') THEN
+        ALTER TABLE waitlist_entries ADD CONSTRAINT FKausox1ro3j0ewhlk74lpifo51 FOREIGN KEY (animal_id) REFERENCES animals;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fkl4a8tgenfif8tawpj1hsv514m') THEN
+        ALTER TABLE waitlist_entries ADD CONSTRAINT FKl4a8tgenfif8tawpj1hsv514m FOREIGN KEY (doctor_id) REFERENCES doctors;
+    END IF;
+END $$;
+
+-- Lookup and keyset pagination indexes.
+CREATE INDEX IF NOT EXISTS idx_animals_customer_id ON animals (customer_id, animal_id);
+CREATE INDEX IF NOT EXISTS idx_animals_name ON animals (animal_name, animal_id);
+CREATE INDEX IF NOT EXISTS idx_appointments_date ON appointments (appointment_date, appointment_id);
+CREATE INDEX IF NOT EXISTS idx_appointments_doctor_date ON appointments (doctor_id, appointment_date, appointment_id);
+CREATE INDEX IF NOT EXISTS idx_appointments_animal_date ON appointments (animal_id, appointment_date, appointment_id);
+CREATE INDEX IF NOT EXISTS idx_availability_templates_doctor ON availability_templates (doctor_id);
+CREATE INDEX IF NOT EXISTS idx_available_dates_date ON available_dates (available_date, available_date_id);
+CREATE INDEX IF NOT EXISTS idx_available_dates_doctor_date ON available_dates (doctor_id, available_date, available_date_id);
+CREATE INDEX IF NOT EXISTS idx_vaccines_animal_id ON vaccines (animal_id, vaccine_id);
+CREATE INDEX IF NOT EXISTS idx_vaccines_finish_date ON vaccines (protection_finish_date, vaccine_id);
+CREATE INDEX IF NOT EXISTS idx_waitlist_entries_doctor_day ON waitlist_entries (doctor_id, waitlist_day, waitlist_status, waitlist_entry_id);
+
+-- The initial schema did not keep a doctor from having the same day twice. Such days are merged
+-- into the first one, which keeps the higher limit and gets its count from the appointments;
+-- nothing else refers to available dates.
+UPDATE available_dates d
+SET daily_appointment_limit = m.daily_appointment_limit,
+    current_appointment_count = (SELECT COUNT(*) FROM appointments a
+                                 WHERE a.doctor_id = d.doctor_id
+                                   AND a.appointment_date >= d.available_date
+                                   AND a.appointment_date < d.available_date + 1)
+FROM (SELECT MIN(available_date_id) AS available_date_id, MAX(daily_appointment_limit) AS daily_appointment_limit
+      FROM available_dates
+      GROUP BY doctor_id, available_date
+      HAVING COUNT(*) > 1) m
+WHERE d.available_date_id = m.available_date_id;
+
+DELETE FROM available_dates d
+USING available_dates k
+WHERE k.doctor_id = d.doctor_id AND k.available_date = d.available_date AND k.available_date_id < d.available_date_id;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_available_dates_doctor_date') THEN
+        ALTER TABLE available_dates ADD CONSTRAINT uk_available_dates_doctor_date UNIQUE (doctor_id, available_date);
+    END IF;
+END $$;
+
+-- Customers sharing a phone number and doctors sharing a mail address may be different people,
+-- so they are not merged automatically; the upgrade stops and lists them to be corrected first.
+DO $$
+DECLARE
+    duplicates TEXT;
+BEGIN
+    SELECT string_agg(ids, '; ') INTO duplicates
+    FROM (SELECT string_agg(customer_id::TEXT, ', ' ORDER BY customer_id) AS ids
+          FROM customers GROUP BY customer_phone HAVING COUNT(*) > 1) d;
+    IF duplicates IS NOT NULL THEN
+        RAISE EXCEPTION 'Customers share a phone number, correct or merge them before upgrading. Customer IDs per phone number: %', duplicates;
+    END IF;
+    SELECT string_agg(ids, '; ') INTO duplicates
+    FROM (SELECT string_agg(doctor_id::TEXT, ', ' ORDER BY doctor_id) AS ids
+          FROM doctors GROUP BY doctor_mail HAVING COUNT(*) > 1) d;
+    IF duplicates IS NOT NULL THEN
+        RAISE EXCEPTION 'Doctors share a mail address, correct or merge them before upgrading. Doctor IDs per mail address: %', duplicates;
+    END IF;
+END $$;
+
+-- Duplicate checks of the services rely on these keys instead of an exists query before the insert.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_customers_phone') THEN
+        ALTER TABLE customers ADD CONSTRAINT uk_customers_phone UNIQUE (customer_phone);
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_doctors_mail') THEN
+        ALTER TABLE doctors ADD CONSTRAINT uk_doctors_mail UNIQUE (doctor_mail);
+    END IF;
+END $$;
+
+-- An animal waits at most once for a doctor-day; promoted entries are kept as history.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_waitlist_entries_waiting ON waitlist_entries (doctor_id, waitlist_day, animal_id)
+    WHERE waitlist_status = 'WAITING';
+
+-- Foreign key lookups of animal deletes.
+CREATE INDEX IF NOT EXISTS idx_waitlist_entries_animal ON waitlist_entries (animal_id);
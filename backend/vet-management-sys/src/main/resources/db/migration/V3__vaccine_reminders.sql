@@ -0,0 +1,35 @@
+-- Outbox of vaccine expiry reminders. Contact data is copied at queueing time, so a reminder
+-- is sent to the address it was queued for. One reminder per vaccine and finish date.
+CREATE TABLE vaccine_reminders (
+    vaccine_reminder_id    BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    vaccine_id             BIGINT       NOT NULL,
+    protection_finish_date DATE         NOT NULL,
+    vaccine_name           VARCHAR(255) NOT NULL,
+    animal_id              BIGINT       NOT NULL,
+    animal_name            VARCHAR(255) NOT NULL,
+    customer_id            BIGINT       NOT NULL,
+    customer_name          VARCHAR(255) NOT NULL,
+    customer_phone         VARCHAR(255) NOT NULL,
+    customer_mail          VARCHAR(255) NOT NULL,
+    reminder_status        VARCHAR(255) NOT NULL CHECK (reminder_status IN ('PENDING', 'SENT')),
+    created_at             TIMESTAMP(6) NOT NULL,
+    sent_at                TIMESTAMP(6),
+    PRIMARY KEY (vaccine_reminder_id),
+    CONSTRAINT uk_vaccine_reminders_vaccine_finish UNIQUE (vaccine_id, protection_finish_date),
+    CONSTRAINT fk_vaccine_reminders_vaccine FOREIGN KEY (vaccine_id) REFERENCES vaccines ON DELETE CASCADE
+);
+
+-- Pending reminders are taken oldest first by the sender.
+CREATE INDEX idx_vaccine_reminders_pending ON vaccine_reminders (vaccine_reminder_id)
+    WHERE reminder_status = 'PENDING';
+
+-- Progress of resumable background jobs: the day a run belongs to and the last key it finished.
+CREATE TABLE job_checkpoints (
+    job_name   VARCHAR(255) NOT NULL,
+    run_day    DATE         NOT NULL,
+    after_date DATE         NOT NULL,
+    after_id   BIGINT       NOT NULL,
+    finished   BOOLEAN      NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (job_name)
+);
@@ -0,0 +1,71 @@
+-- Vaccine products are kept once in a catalog and referenced from vaccines by a small key.
+-- This script runs outside of a transaction (see V4__vaccine_catalog.sql.conf), so that the
+-- backfill commits batch by batch. Every step skips what is already done, so the script can
+-- be run again after a failure.
+
+CREATE TABLE IF NOT EXISTS vaccine_catalog (
+    vaccine_catalog_id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    vaccine_name       VARCHAR(255) NOT NULL,
+    vaccine_code       VARCHAR(255) NOT NULL,
+    protection_days    INTEGER,
+    PRIMARY KEY (vaccine_catalog_id),
+    CONSTRAINT uk_vaccine_catalog_name_code UNIQUE (vaccine_name, vaccine_code)
+);
+
+ALTER TABLE vaccines ADD COLUMN IF NOT EXISTS vaccine_catalog_id INTEGER;
+
+-- One product per name and code in use, with the most common protection duration as its
+-- standard. Then vaccines are pointed at their product in ID ranges of 10000, one
+-- transaction each, instead of rewriting the whole table in one transaction.
+DO $$
+DECLARE
+    last_id BIGINT := 0;
+    max_id  BIGINT;
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = current_schema() AND table_name = 'vaccines' AND column_name = 'vaccine_name') THEN
+        RETURN;
+    END IF;
+
+    INSERT INTO vaccine_catalog (vaccine_name, vaccine_code, protection_days)
+    SELECT vaccine_name, vaccine_code,
+           mode() WITHIN GROUP (ORDER BY protection_finish_date - protection_start_date)
+    FROM vaccines
+    GROUP BY vaccine_name, vaccine_code
+    ORDER BY vaccine_name, vaccine_code
+    ON CONFLICT (vaccine_name, vaccine_code) DO NOTHING;
+    COMMIT;
+
+    SELECT COALESCE(MAX(vaccine_id), 0) INTO max_id FROM vaccines;
+    WHILE last_id < max_id LOOP
+        UPDATE vaccines v SET vaccine_catalog_id = c.vaccine_catalog_id
+        FROM vaccine_catalog c
+        WHERE v.vaccine_id > last_id AND v.vaccine_id <= last_id + 10000
+          AND v.vaccine_catalog_id IS NULL
+          AND c.vaccine_name = v.vaccine_name AND c.vaccine_code = v.vaccine_code;
+        last_id := last_id + 10000;
+        COMMIT;
+    END LOOP;
+END $$;
+
+-- Every vaccine must have a product. Checking that while SET NOT NULL or a plain foreign key
+-- holds an ACCESS EXCLUSIVE lock would block reads and writes of vaccines for the whole scan,
+-- so the constraints are added NOT VALID and validated afterwards under a lock that leaves
+-- them running. SET NOT NULL then relies on the validated check instead of scanning again.
+ALTER TABLE vaccines DROP CONSTRAINT IF EXISTS ck_vaccines_vaccine_catalog_id_not_null;
+ALTER TABLE vaccines ADD CONSTRAINT ck_vaccines_vaccine_catalog_id_not_null
+    CHECK (vaccine_catalog_id IS NOT NULL) NOT VALID;
+ALTER TABLE vaccines VALIDATE CONSTRAINT ck_vaccines_vaccine_catalog_id_not_null;
+ALTER TABLE vaccines ALTER COLUMN vaccine_catalog_id SET NOT NULL;
+ALTER TABLE vaccines DROP CONSTRAINT ck_vaccines_vaccine_catalog_id_not_null;
+
+ALTER TABLE vaccines DROP CONSTRAINT IF EXISTS fk_vaccines_vaccine_catalog;
+ALTER TABLE vaccines ADD CONSTRAINT fk_vaccines_vaccine_catalog
+    FOREIGN KEY (vaccine_catalog_id) REFERENCES vaccine_catalog NOT VALID;
+ALTER TABLE vaccines VALIDATE CONSTRAINT fk_vaccines_vaccine_catalog;
+ALTER TABLE vaccines DROP COLUMN IF EXISTS vaccine_name, DROP COLUMN IF EXISTS vaccine_code;
+
+-- The rows left behind by the backfill are reclaimed by autovacuum. The space of the dropped
+-- columns is only given back when the table is rewritten, which locks it for the whole rewrite
+-- and is therefore left to an operator, e.g. with pg_repack or VACUUM FULL in a maintenance
+-- window.
@@ -0,0 +1,50 @@
+-- Vaccination coverage rollups, moved by the vaccine, animal and customer writes in their own
+-- transaction and recounted by the rebuild.
+
+-- Animals per species, breed and owner city.
+CREATE TABLE animal_population_rollup (
+    animal_species VARCHAR(255) NOT NULL,
+    animal_breed   VARCHAR(255) NOT NULL,
+    customer_city  VARCHAR(255) NOT NULL,
+    animal_count   BIGINT       NOT NULL,
+    PRIMARY KEY (animal_species, animal_breed, customer_city)
+);
+
+-- Animals of the same groups protected by a vaccine code.
+CREATE TABLE vaccine_coverage_rollup (
+    vaccine_code    VARCHAR(255) NOT NULL,
+    animal_species  VARCHAR(255) NOT NULL,
+    animal_breed    VARCHAR(255) NOT NULL,
+    customer_city   VARCHAR(255) NOT NULL,
+    protected_count BIGINT       NOT NULL,
+    PRIMARY KEY (vaccine_code, animal_species, animal_breed, customer_city)
+);
+
+-- The day the coverage is counted for: a protection counts while it finishes after it. The
+-- daily rollover moves it forward.
+CREATE TABLE coverage_rollup_state (
+    rollup_id  SMALLINT     NOT NULL CHECK (rollup_id = 1),
+    as_of_date DATE         NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (rollup_id)
+);
+
+INSERT INTO coverage_rollup_state (rollup_id, as_of_date, updated_at) VALUES (1, CURRENT_DATE, now());
+
+INSERT INTO animal_population_rollup (animal_species, animal_breed, customer_city, animal_count)
+SELECT a.animal_species, a.animal_breed, c.customer_city, COUNT(*)
+FROM animals a JOIN customers c ON c.customer_id = a.customer_id
+GROUP BY a.animal_species, a.animal_breed, c.customer_city;
+
+INSERT INTO vaccine_coverage_rollup (vaccine_code, animal_species, animal_breed, customer_city, protected_count)
+SELECT k.vaccine_code, a.animal_species, a.animal_breed, c.customer_city, COUNT(DISTINCT a.animal_id)
+FROM vaccines v
+JOIN vaccine_catalog k ON k.vaccine_catalog_id = v.vaccine_catalog_id
+JOIN animals a ON a.animal_id = v.animal_id
+JOIN customers c ON c.customer_id = a.customer_id
+WHERE v.protection_finish_date > CURRENT_DATE
+GROUP BY k.vaccine_code, a.animal_species, a.animal_breed, c.customer_city;
+
+-- Whether an animal is protected by a product: coverage of imported vaccines and the duplicate
+-- check while the active vaccine index is loading.
+CREATE INDEX idx_vaccines_animal_catalog_finish ON vaccines (animal_id, vaccine_catalog_id, protection_finish_date);
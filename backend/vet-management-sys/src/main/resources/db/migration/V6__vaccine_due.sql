@@ -0,0 +1,27 @@
+-- Species-specific vaccination schedules and the next due date of every scheduled vaccine per
+-- animal, recomputed by the vaccine due engine.
+
+-- When a vaccine code is first due for animals of a species, and how often it is repeated.
+CREATE TABLE vaccination_schedules (
+    vaccination_schedule_id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    animal_species          VARCHAR(255) NOT NULL,
+    vaccine_code            VARCHAR(255) NOT NULL,
+    first_dose_age_days     INTEGER      NOT NULL,
+    booster_interval_days   INTEGER,
+    PRIMARY KEY (vaccination_schedule_id),
+    CONSTRAINT uk_vaccination_schedules_species_code UNIQUE (animal_species, vaccine_code)
+);
+
+-- One row per animal and vaccine code of its species' schedules. The due date is null once a
+-- vaccine without booster has been given.
+CREATE TABLE vaccine_due (
+    vaccine_due_id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    animal_id      BIGINT       NOT NULL REFERENCES animals (animal_id) ON DELETE CASCADE,
+    vaccine_code   VARCHAR(255) NOT NULL,
+    last_dose_date DATE,
+    due_date       DATE,
+    PRIMARY KEY (vaccine_due_id),
+    CONSTRAINT uk_vaccine_due_animal_code UNIQUE (animal_id, vaccine_code)
+);
+
+CREATE INDEX idx_vaccine_due_date ON vaccine_due (due_date, vaccine_due_id);
@@ -0,0 +1,12 @@
+-- Vaccine stock per lot. The remaining quantity is decremented in memory by the stock ledger
+-- and written here by its periodic flush.
+CREATE TABLE vaccine_stock_lots (
+    vaccine_stock_lot_id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    vaccine_catalog_id   INTEGER      NOT NULL REFERENCES vaccine_catalog (vaccine_catalog_id),
+    lot_number           VARCHAR(255) NOT NULL,
+    expiry_date          DATE         NOT NULL,
+    received_quantity    INTEGER      NOT NULL,
+    quantity             INTEGER      NOT NULL CHECK (quantity >= 0),
+    PRIMARY KEY (vaccine_stock_lot_id),
+    CONSTRAINT uk_vaccine_stock_lots_catalog_lot UNIQUE (vaccine_catalog_id, lot_number)
+);
@@ -0,0 +1,26 @@
+-- An animal cannot be in two appointments at once. The services check this under a lock on the
+-- animal; the constraint rejects any overlap that gets past them. Appointments stored before
+-- their end was recorded are left out.
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+-- Overlapping appointments of an animal may have been booked on purpose by two doctors, so they
+-- are not removed automatically; the upgrade stops and lists them to be corrected first.
+DO $$
+DECLARE
+    overlapping TEXT;
+BEGIN
+    SELECT string_agg(a.appointment_id || ' and ' || b.appointment_id, '; ' ORDER BY a.appointment_id, b.appointment_id)
+    INTO overlapping
+    FROM appointments a
+    JOIN appointments b ON b.animal_id = a.animal_id
+                       AND b.appointment_id > a.appointment_id
+                       AND b.appointment_date < a.appointment_end_date
+                       AND a.appointment_date < b.appointment_end_date;
+    IF overlapping IS NOT NULL THEN
+        RAISE EXCEPTION 'Appointments of the same animal overlap, move or delete them before upgrading. Appointment IDs: %', overlapping;
+    END IF;
+END $$;
+
+ALTER TABLE appointments ADD CONSTRAINT ex_appointments_animal_time
+    EXCLUDE USING gist (animal_id WITH =, tsrange(appointment_date, appointment_end_date) WITH &&)
+    WHERE (appointment_end_date IS NOT NULL);
@@ -0,0 +1,28 @@
+-- Appointments booked before queue positions were stored have none, so releasing them could not
+-- move the later appointments of their day up. Every day with such appointments is numbered from
+-- one: appointments that have a position keep their order, the others follow by time.
+UPDATE appointments a SET appointment_order = r.new_order
+FROM (
+    SELECT appointment_id,
+           ROW_NUMBER() OVER (PARTITION BY doctor_id, CAST(appointment_date AS date)
+                              ORDER BY appointment_order NULLS LAST, appointment_date, appointment_id) AS new_order
+    FROM appointments
+    WHERE (doctor_id, CAST(appointment_date AS date)) IN (
+        SELECT doctor_id, CAST(appointment_date AS date) FROM appointments WHERE appointment_order IS NULL)
+) r
+WHERE a.appointment_id = r.appointment_id
+  AND a.appointment_order IS DISTINCT FROM r.new_order;
+
+-- The last given position of a day must not be below a position in use, or the next booking
+-- would hand it out twice.
+UPDATE available_dates d SET last_appointment_order = m.max_order
+FROM (
+    SELECT doctor_id, CAST(appointment_date AS date) AS day, MAX(appointment_order) AS max_order
+    FROM appointments
+    GROUP BY doctor_id, CAST(appointment_date AS date)
+) m
+WHERE d.doctor_id = m.doctor_id
+  AND d.available_date = m.day
+  AND (d.last_appointment_order IS NULL OR d.last_appointment_order < m.max_order);
+
+UPDATE available_dates SET last_appointment_order = 0 WHERE last_appointment_order IS NULL;
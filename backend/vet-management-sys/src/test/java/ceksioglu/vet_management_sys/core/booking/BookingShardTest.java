@@ -0,0 +1,339 @@
+package ceksioglu.vet_management_sys.core.booking;
+
+import ceksioglu.vet_management_sys.core.exception.AppointmentConflictException;
+import ceksioglu.vet_management_sys.core.util.DateUtils;
+import ceksioglu.vet_management_sys.entity.AvailableDate;
+import ceksioglu.vet_management_sys.repository.AppointmentRepository;
+import ceksioglu.vet_management_sys.repository.AvailableDateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookingShardTest {
+
+    private static final LocalDate DAY = LocalDate.of(2030, 5, 1);
+    // Doctor 1 and doctor 2 belong to different shards of a two-shard engine
+    private static final DoctorDay FIRST = new DoctorDay(1L, DAY);
+    private static final DoctorDay SECOND = new DoctorDay(2L, DAY);
+
+    private final Database database = new Database();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private BookingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        AvailableDateRepository availableDateRepository = mock(AvailableDateRepository.class);
+        when(availableDateRepository.findByDoctorIdAndAvailableDate(anyLong(), any(Date.class)))
+                .thenAnswer(invocation -> database.find(invocation.getArgument(0), invocation.getArgument(1)));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenAnswer(invocation -> database.flush(invocation.getArgument(1)));
+
+        engine = new BookingEngine(availableDateRepository, mock(AppointmentRepository.class),
+                mock(AvailabilityExpander.class), jdbcTemplate, database.transactionTemplate(),
+                mock(ApplicationEventPublisher.class), AppointmentOrderPolicy.KEEP, true, 2, 64, 1000, 100,
+                Duration.ofSeconds(10));
+        engine.start();
+        assertNotSame(engine.shardFor(FIRST.getDoctorId()), engine.shardFor(SECOND.getDoctorId()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.stop();
+    }
+
+    @Test
+    void concurrentReservesAndReleasesKeepCountWithinLimit() throws Exception {
+        database.add(1L, FIRST, 50, 0);
+        int threads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int granted = 0;
+                for (int i = 0; i < 10; i++) {
+                    if (engine.execute(FIRST.getDoctorId(), ledger -> ledger.reserve(FIRST)).isPresent()) {
+                        granted++;
+                    }
+                }
+                return granted;
+            }));
+        }
+        start.countDown();
+        int granted = 0;
+        for (Future<Integer> result : results) {
+            granted += result.get();
+        }
+        assertEquals(50, granted);
+        assertEquals(50, database.count(1L));
+
+        List<Future<?>> releases = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            releases.add(executor.submit(() -> {
+                for (int i = 0; i < 3; i++) {
+                    engine.execute(FIRST.getDoctorId(), ledger -> {
+                        ledger.release(FIRST, null);
+                        return null;
+                    });
+                }
+            }));
+        }
+        for (Future<?> release : releases) {
+            release.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(26, database.count(1L));
+        assertTrue(engine.execute(FIRST.getDoctorId(), ledger -> ledger.reserve(FIRST)).isPresent());
+        assertEquals(27, database.count(1L));
+    }
+
+    @Test
+    void commandForTwoShardsHoldsTheOtherShardUntilDone() throws Exception {
+        database.add(1L, FIRST, 10, 0);
+        database.add(2L, SECOND, 10, 0);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+
+        CompletableFuture<Object> twoDoctors = CompletableFuture.supplyAsync(() ->
+                engine.execute(FIRST.getDoctorId(), SECOND.getDoctorId(), ledger -> {
+                    ledger.reserve(FIRST);
+                    ledger.reserve(SECOND);
+                    entered.countDown();
+                    try {
+                        proceed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return null;
+                }));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // Both doctors' shards are busy with the command, whichever of them runs it
+        CompletableFuture<Optional<Integer>> first = engine.submit(FIRST.getDoctorId(), ledger -> ledger.reserve(FIRST));
+        CompletableFuture<Optional<Integer>> second = engine.submit(SECOND.getDoctorId(), ledger -> ledger.reserve(SECOND));
+        Thread.sleep(200);
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        proceed.countDown();
+        twoDoctors.get(5, TimeUnit.SECONDS);
+        assertEquals(Optional.of(2), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Optional.of(2), second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, database.count(1L));
+        assertEquals(2, database.count(2L));
+    }
+
+    @Test
+    void databaseErrorFailsOnlyItsCommandAfterRerun() throws Exception {
+        database.add(1L, FIRST, 10, 0);
+        BookingShard.Hold hold = engine.shardFor(FIRST.getDoctorId()).hold();
+        assertTrue(hold.awaitParked(5000));
+
+        CompletableFuture<Optional<Integer>> before = engine.submit(FIRST.getDoctorId(), ledger -> ledger.reserve(FIRST));
+        CompletableFuture<Optional<Integer>> failing = engine.submit(FIRST.getDoctorId(), ledger -> {
+            ledger.reserve(FIRST);
+            throw new DataIntegrityViolationException("duplicate key");
+        });
+        CompletableFuture<Optional<Integer>> after = engine.submit(FIRST.getDoctorId(), ledger -> ledger.reserve(FIRST));
+        hold.release();
+
+        assertEquals(Optional.of(1), before.get(5, TimeUnit.SECONDS));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+        assertEquals(Optional.of(2), after.get(5, TimeUnit.SECONDS));
+        assertEquals(2, database.count(1L));
+        // The rolled back batch never reached its flush, the two commands run again flush one by one
+        assertEquals(2, database.flushes);
+    }
+
+    @Test
+    void flushRejectsSlotsBeyondLimitLoweredInDatabase() throws Exception {
+        database.add(1L, FIRST, 5, 0);
+        assertEquals(Optional.of(1), engine.execute(FIRST.getDoctorId(), ledger -> ledger.reserve(FIRST)));
+        // Lowered outside the engine, before the eviction of the cached day comes up in the queue
+        database.setLimit(1L, 2);
+
+        BookingShard.Hold hold = engine.shardFor(FIRST.getDoctorId()).hold();
+        assertTrue(hold.awaitParked(5000));
+        List<CompletableFuture<Optional<Integer>>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(engine.submit(FIRST.getDoctorId(), ledger -> ledger.reserve(FIRST)));
+        }
+        hold.release();
+
+        assertEquals(Optional.of(2), futures.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals(Optional.empty(), futures.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals(Optional.empty(), futures.get(2).get(5, TimeUnit.SECONDS));
+        assertEquals(2, database.count(1L));
+
+        // A single command on a stale day is rejected by the flush itself
+        engine.execute(FIRST.getDoctorId(), ledger -> {
+            ledger.release(FIRST, null);
+            return null;
+        });
+        database.setCount(1L, 2);
+        assertThrows(AppointmentConflictException.class,
+                () -> engine.execute(FIRST.getDoctorId(), ledger -> ledger.reserve(FIRST)));
+        assertEquals(2, database.count(1L));
+    }
+
+    @Test
+    void onlyFirstAnimalLockOfBatchWaits() throws Exception {
+        database.add(1L, FIRST, 10, 0);
+        BookingShard.Hold hold = engine.shardFor(FIRST.getDoctorId()).hold();
+        assertTrue(hold.awaitParked(5000));
+        CompletableFuture<Object> first = engine.submit(FIRST.getDoctorId(), ledger -> {
+            ledger.lockAnimals(List.of(7L, 3L));
+            return null;
+        });
+        CompletableFuture<Object> second = engine.submit(FIRST.getDoctorId(), ledger -> {
+            ledger.lockAnimals(List.of(3L, 9L));
+            return null;
+        });
+        hold.release();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        verify(jdbcTemplate).queryForList(
+                "SELECT animal_id FROM animals WHERE animal_id IN (?, ?) ORDER BY animal_id FOR NO KEY UPDATE",
+                Long.class, 3L, 7L);
+        // Animal 3 is already held by the batch, and waiting for 9 could deadlock with another shard
+        verify(jdbcTemplate).queryForList(
+                "SELECT animal_id FROM animals WHERE animal_id IN (?) ORDER BY animal_id FOR NO KEY UPDATE NOWAIT",
+                Long.class, 9L);
+    }
+
+    /**
+     * The available_dates rows the engine reads and flushes. Writes of a transaction are undone
+     * when it rolls back.
+     */
+    private static final class Database {
+        private final Map<Long, Row> rows = new HashMap<>();
+        private final ThreadLocal<List<Runnable>> undoLog = new ThreadLocal<>();
+        private int flushes;
+
+        synchronized void add(Long id, DoctorDay doctorDay, int limit, int count) {
+            rows.put(id, new Row(id, doctorDay, limit, count));
+        }
+
+        synchronized void setLimit(Long id, int limit) {
+            rows.get(id).limit = limit;
+        }
+
+        synchronized void setCount(Long id, int count) {
+            rows.get(id).count = count;
+        }
+
+        synchronized int count(Long id) {
+            return rows.get(id).count;
+        }
+
+        synchronized Optional<AvailableDate> find(Long doctorId, Date day) {
+            LocalDate localDay = DateUtils.toLocalDate(day);
+            return rows.values().stream()
+                    .filter(row -> row.doctorDay.getDoctorId().equals(doctorId) && row.doctorDay.getDay().equals(localDay))
+                    .findFirst()
+                    .map(row -> new AvailableDate(row.id, day, null, row.limit, row.count, row.lastOrder));
+        }
+
+        synchronized int[] flush(List<Object[]> arguments) {
+            flushes++;
+            int[] updated = new int[arguments.size()];
+            for (int i = 0; i < arguments.size(); i++) {
+                Object[] values = arguments.get(i);
+                int taken = (int) values[0];
+                Row row = rows.get((Long) values[2]);
+                if (row == null || (taken > 0 && row.count + taken > row.limit)) {
+                    continue;
+                }
+                int previousCount = row.count;
+                int previousLastOrder = row.lastOrder;
+                row.count = Math.max(row.count + taken, 0);
+                row.lastOrder = Math.max(row.lastOrder + (int) values[1], 0);
+                undoLog.get().add(() -> {
+                    row.count = previousCount;
+                    row.lastOrder = previousLastOrder;
+                });
+                updated[i] = 1;
+            }
+            return updated;
+        }
+
+        TransactionTemplate transactionTemplate() {
+            return new TransactionTemplate() {
+                @Override
+                public <T> T execute(TransactionCallback<T> action) {
+                    undoLog.set(new ArrayList<>());
+                    try {
+                        return action.doInTransaction(null);
+                    } catch (RuntimeException e) {
+                        synchronized (Database.this) {
+                            List<Runnable> undo = undoLog.get();
+                            for (int i = undo.size() - 1; i >= 0; i--) {
+                                undo.get(i).run();
+                            }
+                        }
+                        throw e;
+                    } finally {
+                        undoLog.remove();
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class Row {
+        private final Long id;
+        private final DoctorDay doctorDay;
+        private int limit;
+        private int count;
+        private int lastOrder;
+
+        private Row(Long id, DoctorDay doctorDay, int limit, int count) {
+            this.id = id;
+            this.doctorDay = doctorDay;
+            this.limit = limit;
+            this.count = count;
+            this.lastOrder = count;
+        }
+    }
+}
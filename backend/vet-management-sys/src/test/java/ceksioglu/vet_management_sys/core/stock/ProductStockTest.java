@@ -0,0 +1,105 @@
+package ceksioglu.vet_management_sys.core.stock;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductStockTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2030, 5, 1);
+
+    @Test
+    void concurrentTakesNeverGoBelowZero() throws Exception {
+        ProductStock stock = new ProductStock();
+        stock.add(lot(1L, TODAY.plusDays(30), 10));
+        stock.add(lot(2L, TODAY.plusDays(10), 20));
+        stock.add(lot(3L, TODAY.plusDays(60), 30));
+        int threads = 16;
+        int takesPerThread = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean negativeSeen = new AtomicBoolean();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int taken = 0;
+                for (int i = 0; i < takesPerThread; i++) {
+                    ProductStock.Take take = stock.take(TODAY);
+                    if (take != null) {
+                        taken++;
+                        // Every other take fails to save and puts its dose back
+                        if (i % 2 == 0) {
+                            take.getLot().release();
+                            taken--;
+                        }
+                    }
+                    for (LotCounter counter : stock.getLots()) {
+                        if (counter.getAvailableQuantity() < 0) {
+                            negativeSeen.set(true);
+                        }
+                    }
+                }
+                return taken;
+            }));
+        }
+        start.countDown();
+        int taken = 0;
+        for (Future<Integer> result : results) {
+            taken += result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertFalse(negativeSeen.get());
+        assertEquals(60, taken);
+        assertEquals(0, stock.getAvailableQuantity(TODAY));
+        assertNull(stock.take(TODAY));
+    }
+
+    @Test
+    void takesFromUsableLotExpiringFirst() {
+        ProductStock stock = new ProductStock();
+        stock.add(lot(1L, TODAY.plusDays(30), 5));
+        stock.add(lot(2L, TODAY.minusDays(1), 5));
+        stock.add(lot(3L, TODAY, 1));
+
+        assertEquals(3L, stock.take(TODAY).getLot().getLotId());
+        assertEquals(1L, stock.take(TODAY).getLot().getLotId());
+        assertEquals(4, stock.getAvailableQuantity(TODAY));
+    }
+
+    @Test
+    void takeReportsUsableQuantityLeft() {
+        ProductStock stock = new ProductStock();
+        stock.add(lot(1L, TODAY.plusDays(30), 2));
+        stock.add(lot(2L, TODAY.minusDays(1), 5));
+        stock.add(lot(3L, TODAY.plusDays(10), 1));
+
+        assertEquals(2, stock.take(TODAY).getRemaining());
+        ProductStock.Take take = stock.take(TODAY);
+        assertEquals(1, take.getRemaining());
+        take.getLot().release();
+        assertEquals(1, stock.take(TODAY).getRemaining());
+        assertEquals(0, stock.take(TODAY).getRemaining());
+        assertNull(stock.take(TODAY));
+    }
+
+    private static LotCounter lot(Long id, LocalDate expiryDate, long quantity) {
+        return new LotCounter(id, 1, "L" + id, expiryDate, quantity, quantity);
+    }
+}
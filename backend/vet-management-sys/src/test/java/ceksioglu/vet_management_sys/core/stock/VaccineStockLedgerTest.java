@@ -0,0 +1,143 @@
+package ceksioglu.vet_management_sys.core.stock;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(OutputCaptureExtension.class)
+class VaccineStockLedgerTest {
+
+    private static final LocalDate EXPIRY = LocalDate.now().plusYears(1);
+    private static final String LOW_STOCK = "is low on stock";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWritesTakenDosesAsDelta() {
+        VaccineStockLedger ledger = ledger(10, List.of(lot(1L, 1, EXPIRY, 10), lot(2L, 1, EXPIRY.plusDays(1), 5)));
+        ledger.take(1);
+        ledger.take(1);
+        ledger.take(1);
+
+        assertEquals(1, ledger.flush());
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertEquals(1, rows.getValue().size());
+        assertArrayEquals(new Object[]{3L, 1L}, rows.getValue().get(0));
+
+        // Nothing changed since, so nothing is written
+        assertEquals(0, ledger.flush());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), any(List.class));
+    }
+
+    @Test
+    void reconcileAppliesChangesMadeInDatabase() {
+        VaccineStockLedger ledger = ledger(1, List.of(lot(1L, 1, EXPIRY, 10), lot(2L, 1, EXPIRY.plusDays(1), 5),
+                        lot(3L, 2, EXPIRY, 4)),
+                // Lot 1 was flushed at 8 and corrected to 5, lot 3 deleted and lot 4 received
+                List.of(lot(1L, 1, EXPIRY, 5), lot(2L, 1, EXPIRY.plusDays(1), 5), lot(4L, 2, EXPIRY, 7)));
+        ledger.take(1);
+        ledger.take(1);
+
+        assertEquals(3, ledger.reconcile());
+        assertEquals(10, ledger.getAvailableQuantity(1, LocalDate.now()));
+        assertEquals(5, ledger.getLots(1).get(0).getAvailableQuantity());
+        assertEquals(List.of(4L), ledger.getLots(2).stream().map(LotCounter::getLotId).toList());
+        assertEquals(7, ledger.getAvailableQuantity(2, LocalDate.now()));
+
+        // The corrected total is what the next take starts from
+        ledger.take(1);
+        assertEquals(9, ledger.getAvailableQuantity(1, LocalDate.now()));
+    }
+
+    @Test
+    void lowStockWarningFiresOnceWhenConcurrentTakesCrossThreshold(CapturedOutput output) throws Exception {
+        VaccineStockLedger ledger = ledger(10, List.of(lot(1L, 1, EXPIRY, 20), lot(2L, 1, EXPIRY.plusDays(1), 20)));
+        int threads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 4; i++) {
+                    ledger.take(1);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(8, ledger.getAvailableQuantity(1, LocalDate.now()));
+        assertEquals(1, count(output.getOut(), LOW_STOCK));
+
+        for (int i = 0; i < 8; i++) {
+            ledger.take(1);
+        }
+        assertEquals(2, count(output.getOut(), LOW_STOCK));
+    }
+
+    @Test
+    void lowStockWarningIgnoresExpiredLots(CapturedOutput output) {
+        VaccineStockLedger ledger = ledger(2, List.of(lot(1L, 1, LocalDate.now().minusDays(1), 50),
+                lot(2L, 1, EXPIRY, 4)));
+        ledger.take(1);
+        assertEquals(0, count(output.getOut(), LOW_STOCK));
+        ledger.take(1);
+        assertEquals(1, count(output.getOut(), LOW_STOCK));
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    private VaccineStockLedger ledger(int lowStockThreshold, List<LotCounter>... reads) {
+        var stubbing = when(jdbcTemplate.query(anyString(), any(RowMapper.class)));
+        for (List<LotCounter> read : reads) {
+            stubbing = stubbing.thenReturn(read);
+        }
+        VaccineStockLedger ledger = new VaccineStockLedger(jdbcTemplate, lowStockThreshold);
+        ledger.load();
+        return ledger;
+    }
+
+    private static LotCounter lot(Long id, Integer catalogId, LocalDate expiryDate, long quantity) {
+        return new LotCounter(id, catalogId, "L" + id, expiryDate, quantity, quantity);
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}